@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.alarm.beast.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/** JUnit test of the {@link PVStarter}, using dummy PVs
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class PVStarterUnitTest
+{
+    final private AtomicInteger running = new AtomicInteger();
+    final private AtomicInteger max_running = new AtomicInteger();
+
+    private class DummyPV implements PVStarter.Startable
+    {
+        final private String name;
+        private volatile boolean connected = false;
+
+        DummyPV(final String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public String getName()
+        {
+            return name;
+        }
+
+        @Override
+        public void start() throws Exception
+        {
+            final int now = running.incrementAndGet();
+            synchronized (max_running)
+            {
+                if (now > max_running.get())
+                    max_running.set(now);
+            }
+            try
+            {
+                if (name.endsWith("bad"))
+                    throw new Exception("Cannot start " + name);
+                Thread.sleep(1);
+                connected = true;
+            }
+            finally
+            {
+                running.decrementAndGet();
+            }
+        }
+
+        @Override
+        public boolean isConnected()
+        {
+            return connected;
+        }
+    }
+
+    private DummyPV[] createPVs(final int count)
+    {
+        final DummyPV[] pvs = new DummyPV[count];
+        for (int i=0; i<count; ++i)
+            pvs[i] = new DummyPV(i % 100 == 99 ? "pv" + i + "bad" : "pv" + i);
+        return pvs;
+    }
+
+    @Test(timeout=10000)
+    public void testRate() throws Exception
+    {
+        final PVStarter starter = new PVStarter(createPVs(1000), 2000.0, 4, 50);
+        starter.run();
+        System.out.println(starter);
+        assertTrue(starter.isDone());
+        assertEquals(1000, starter.getTotal());
+        assertEquals(990, starter.getStarted());
+        assertEquals(10, starter.getFailed());
+        assertEquals(990, starter.getConnected());
+        // Last batch is due after 950 channels at 2000 per second
+        assertTrue(starter.getSeconds() >= 0.45);
+        assertTrue(max_running.get() > 1);
+        assertTrue(max_running.get() <= 4);
+    }
+
+    @Test(timeout=10000)
+    public void testSequential() throws Exception
+    {
+        final PVStarter starter = new PVStarter(createPVs(200), 0.0, 1, 1);
+        starter.run();
+        System.out.println(starter);
+        assertEquals(198, starter.getConnected());
+        assertEquals(2, starter.getFailed());
+        assertEquals(1, max_running.get());
+    }
+}
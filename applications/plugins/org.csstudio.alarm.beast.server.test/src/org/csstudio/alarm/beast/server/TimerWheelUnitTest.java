@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.alarm.beast.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/** JUnit test of the {@link TimerWheel}
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class TimerWheelUnitTest
+{
+    final private StringBuilder buf = new StringBuilder();
+
+    private Runnable check(final String name)
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                synchronized (buf)
+                {
+                    buf.append(name).append(" done\n");
+                }
+            }
+        };
+    }
+
+    private String getResult()
+    {
+        synchronized (buf)
+        {
+            return buf.toString();
+        }
+    }
+
+    @Test(timeout=5000)
+    public void testTimerWheel() throws Exception
+    {
+        // Small wheel: 8 slots * 10ms = 80ms per rotation,
+        // so most delays require several rotations
+        final TimerWheel timer = new TimerWheel("Test", 10, 5);
+        try
+        {
+            timer.schedule(check("300ms"), 300);
+            timer.schedule(check("100ms"), 100);
+            final TimerWheel.Timeout last = timer.schedule(check("500ms"), 500);
+            timer.schedule(check("200ms"), 200);
+            assertEquals(4, timer.getPendingCount());
+
+            Thread.sleep(400);
+            assertEquals("100ms done\n200ms done\n300ms done\n", getResult());
+            assertEquals(1, timer.getPendingCount());
+
+            // Cancel last one before it runs
+            assertTrue(last.cancel());
+            assertFalse(last.cancel());
+            assertEquals(0, timer.getPendingCount());
+
+            Thread.sleep(200);
+            assertEquals("100ms done\n200ms done\n300ms done\n", getResult());
+            assertEquals(3, timer.getFiredCount());
+            System.out.println(timer);
+            // Resolution is one tick, allow for slow test machine
+            assertTrue(timer.getMaxLagMillis() < 100);
+        }
+        finally
+        {
+            timer.stop();
+        }
+    }
+
+    @Test(timeout=5000)
+    public void testPeriodic() throws Exception
+    {
+        final TimerWheel timer = new TimerWheel("Test", 10, 16);
+        try
+        {
+            final AtomicInteger count = new AtomicInteger();
+            final TimerWheel.Timeout periodic = timer.schedulePeriodic(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    count.incrementAndGet();
+                }
+            }, 100);
+            Thread.sleep(550);
+            assertTrue(periodic.cancel());
+            final int runs = count.get();
+            System.out.println("Periodic task ran " + runs + " times");
+            assertTrue(runs >= 4  &&  runs <= 6);
+            assertEquals(0, timer.getPendingCount());
+
+            // No more runs after cancel
+            Thread.sleep(300);
+            assertEquals(runs, count.get());
+        }
+        finally
+        {
+            timer.stop();
+        }
+    }
+
+    @Test(timeout=20000)
+    public void testManyTimers() throws Exception
+    {
+        final TimerWheel timer = new TimerWheel("Test", 10, 1024);
+        try
+        {
+            final int N = 100000;
+            final TimerWheel.Timeout timeouts[] = new TimerWheel.Timeout[N];
+            final Runnable nop = check("unexpected");
+
+            // Schedule and cancel, as for PVs with alarm delays
+            // that briefly enter and leave the alarm state
+            long start = System.nanoTime();
+            for (int i=0; i<N; ++i)
+                timeouts[i] = timer.schedule(nop, 10000 + i);
+            assertEquals(N, timer.getPendingCount());
+            for (int i=0; i<N; ++i)
+                timeouts[i].cancel();
+            final double secs = (System.nanoTime() - start) / 1e9;
+            System.out.format("Scheduled and canceled %d timers: %.0f per second\n", N, N / secs);
+            assertEquals(0, timer.getPendingCount());
+            assertEquals("", getResult());
+        }
+        finally
+        {
+            timer.stop();
+        }
+    }
+}
@@ -9,8 +9,6 @@ package org.csstudio.alarm.beast.server;
 
 
 import java.io.PrintStream;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.logging.Level;
 
 import org.csstudio.alarm.beast.AnnunciationFormatter;
@@ -27,11 +25,11 @@ import org.epics.util.time.Timestamp;
  *  @author Kay Kasemir
  */
 @SuppressWarnings("nls")
-public class AlarmPV extends TreeItem implements AlarmLogicListener, FilterListener, PVListener
+public class AlarmPV extends TreeItem implements AlarmLogicListener, FilterListener, PVListener,
+                                             PVStarter.Startable
 {
     /** Timer used to check for connections at some delay after 'start */
-    final private static Timer connection_timer =
-        new Timer("Connection Check", true);
+    final private static TimerWheel connection_timer = TimerWheel.getShared();
 
     final private AlarmLogic logic;
 
@@ -48,7 +46,7 @@ public class AlarmPV extends TreeItem implements AlarmLogicListener, FilterListe
     private volatile boolean is_connected = false;
 
     /** Started when pv is created to check if it ever connects */
-    private TimerTask connection_timeout_task = null;
+    private TimerWheel.Timeout connection_timeout_task = null;
 
     /** Filter that might be used to compute 'enabled' state;
      *  can be <code>null</code>
@@ -143,11 +141,12 @@ public class AlarmPV extends TreeItem implements AlarmLogicListener, FilterListe
     }
     
     /** Connect to control system */
+    @Override
     public void start() throws Exception
     {
         // Seconds to millisecs
         final long delay = Preferences.getConnectionGracePeriod() * 1000;
-        connection_timeout_task = new TimerTask()
+        connection_timeout_task = connection_timer.schedule(new Runnable()
         {
             @Override
             public void run()
@@ -155,8 +154,7 @@ public class AlarmPV extends TreeItem implements AlarmLogicListener, FilterListe
                 if (! is_connected)
                     pvConnectionTimeout();
             }
-        };
-        connection_timer.schedule(connection_timeout_task, delay);
+        }, delay);
 
         pv = PVPool.getPV(getName());
         pv.addListener(this);
@@ -181,6 +179,7 @@ public class AlarmPV extends TreeItem implements AlarmLogicListener, FilterListe
     }
 
     /** @return <code>true</code> if PV is connected */
+    @Override
     public boolean isConnected()
     {
         return is_connected;
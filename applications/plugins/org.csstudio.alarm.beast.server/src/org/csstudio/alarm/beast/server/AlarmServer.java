@@ -43,44 +43,6 @@ import org.epics.util.time.Timestamp;
 @SuppressWarnings("nls")
 public class AlarmServer implements Runnable 
 {
-	/** BatchUpdater takes care of periodic updates of alarm states into the RDB and
-	 *  to the JMS. This allows for the updates to queue up to sizable number.
-	 *  Then they are sent in batches, which allows for better performance. 
-	 */
-	private class BatchUpdater extends Thread
-	{
-		boolean run = true;
-		
-		public BatchUpdater()
-		{
-			setDaemon(true);
-			setPriority(MIN_PRIORITY);
-		}
-		
-		@Override
-		public void run()
-		{
-			try
-			{
-				while (run)
-				{
-					work_queue.executeIfNotPending(AlarmServer.this);
-					Thread.sleep(updatePeriod);
-				}
-			}
-			catch (InterruptedException e)
-			{
-				// Ignore: Server has been terminated, there is no need for further updates
-			}
-		}
-		
-		public void terminate()
-		{
-			run = false;
-			this.interrupt();
-		}
-	}
-	
 	/** Update is a wrapper about a single PV update received by the server.
 	 *  It is used to queue data for later processing.*
 	 */
@@ -137,6 +99,9 @@ public class AlarmServer implements Runnable
     /** Messenger to communicate with clients */
     final private ServerCommunicator messenger;
 
+    /** Progress of starting the PVs, <code>null</code> before PVs are started */
+    private volatile PVStarter pv_starter = null;
+
     /** {@link NagTimer} or <code>null</code> if not used */
     private volatile NagTimer nag_timer;
 
@@ -158,9 +123,12 @@ public class AlarmServer implements Runnable
     /** Indicator for communication errors */
     private volatile boolean had_RDB_error = false;
 
-    /** Updater thread */
-    private BatchUpdater batchExecutor;
-    /** The period of the updater thread - how frequently it executes message persisting */
+    /** Periodic timer task that takes care of updates of alarm states into the RDB and
+     *  to the JMS. This allows for the updates to queue up to sizable number.
+     *  Then they are sent in batches, which allows for better performance.
+     */
+    private TimerWheel.Timeout batchExecutor;
+    /** The period of the batch updates - how frequently it executes message persisting */
     private final long updatePeriod;
     /** The maximum size of batches when persisting messages */
     private final int batchSize;
@@ -230,6 +198,10 @@ public class AlarmServer implements Runnable
         }
 
         out.println("Work queue size: " + work_queue.size());
+        out.println(TimerWheel.getShared());
+        final PVStarter starter = pv_starter;
+        if (starter != null)
+            out.println(starter);
 
         // Log memory usage in MB
         final double free = Runtime.getRuntime().freeMemory() / (1024.0*1024.0);
@@ -325,15 +297,22 @@ public class AlarmServer implements Runnable
         }
 
         if (batchExecutor != null)
-        	batchExecutor.terminate();
-        batchExecutor = new BatchUpdater();
-        batchExecutor.start();
+        	batchExecutor.cancel();
+        // Timer only queues the update on the work queue,
+        // since persisting to RDB and JMS takes too long for the timer thread
+        batchExecutor = TimerWheel.getShared().schedulePeriodic(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                work_queue.executeIfNotPending(AlarmServer.this);
+            }
+        }, updatePeriod);
     }
 
     /** Start PVs */
     private void startPVs()
     {
-        final long delay = Preferences.getPVStartDelay();
         // Must not sync while calling PV, because Channel Access updates
         // might arrive while we're trying to start/stop channels,
         // and those updates will try to lock the Alarm Server,
@@ -347,20 +326,33 @@ public class AlarmServer implements Runnable
         {
             pvs = pv_list.clone();
         }
-        for (AlarmPV pv : pvs)
+        final double rate = AlarmServerPreferences.getPVStartRate();
+        final PVStarter starter;
+        if (rate > 0)
+            starter = new PVStarter(pvs, rate,
+                    AlarmServerPreferences.getPVStartThreads(),
+                    AlarmServerPreferences.getPVStartBatchSize());
+        else
+        {   // Start PVs one by one, with optional delay between them
+            final long delay = Preferences.getPVStartDelay();
+            starter = new PVStarter(pvs, delay > 0 ? 1000.0 / delay : 0.0, 1, 1);
+        }
+        pv_starter = starter;
+        try
         {
-            try
-            {
-                pv.start();
-                if (delay > 0)
-                    Thread.sleep(delay);
-            }
-            catch (Exception ex)
-            {
-                Activator.getLogger().log(Level.SEVERE,
-                    "Error starting PV " + pv.getName(), ex);
-            }
+            starter.run();
+        }
+        catch (InterruptedException ex)
+        {
+            Activator.getLogger().log(Level.WARNING, "Interrupted while starting PVs", ex);
         }
+        Activator.getLogger().log(Level.INFO, starter.toString());
+    }
+
+    /** @return Info about starting the PVs, <code>null</code> before PVs are started */
+    public PVStarter getPVStarter()
+    {
+        return pv_starter;
     }
 
     /** Stop all the PVs, disconnect from JMS */
@@ -375,7 +367,7 @@ public class AlarmServer implements Runnable
         stopPVs();
         messenger.stop();
         if (batchExecutor != null)
-        	batchExecutor.terminate();
+        	batchExecutor.cancel();
         try
         {
         	//send pending updates
@@ -694,7 +686,7 @@ public class AlarmServer implements Runnable
 		}
     }
 
-    /** Runnable entry point used by BatchUpdater */
+    /** Runnable entry point used by periodic batch update */
 	@Override
 	public void run()
 	{
@@ -24,6 +24,9 @@ public class AlarmServerPreferences
 {
     final public static String GLOBAL_ALARM_DELAY = "global_alarm_delay";
     final public static String NAG_PERIOD = "nag_period";
+    final public static String PV_START_RATE = "pv_start_rate";
+    final public static String PV_START_THREADS = "pv_start_threads";
+    final public static String PV_START_BATCH_SIZE = "pv_start_batch_size";
 
     /** @return Period for repeated 'There are .. active alarms' annunciations [seconds]
      *  @throws Exception on error in period specification
@@ -45,4 +48,31 @@ public class AlarmServerPreferences
             return 0;
         return service.getInt(Activator.ID, GLOBAL_ALARM_DELAY, 0, null);
     }
+
+    /** @return Rate for starting PVs [channels per second], 0 to start them one by one */
+    public static double getPVStartRate()
+    {
+        final IPreferencesService service = Platform.getPreferencesService();
+        if (service == null)
+            return 0.0;
+        return service.getDouble(Activator.ID, PV_START_RATE, 0.0, null);
+    }
+
+    /** @return Number of threads for starting PVs */
+    public static int getPVStartThreads()
+    {
+        final IPreferencesService service = Platform.getPreferencesService();
+        if (service == null)
+            return 4;
+        return service.getInt(Activator.ID, PV_START_THREADS, 4, null);
+    }
+
+    /** @return Number of PVs started as one batch, i.e. with one network flush */
+    public static int getPVStartBatchSize()
+    {
+        final IPreferencesService service = Platform.getPreferencesService();
+        if (service == null)
+            return 100;
+        return service.getInt(Activator.ID, PV_START_BATCH_SIZE, 100, null);
+    }
 }
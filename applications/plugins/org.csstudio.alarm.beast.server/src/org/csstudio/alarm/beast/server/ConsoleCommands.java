@@ -66,6 +66,8 @@ public class ConsoleCommands implements CommandProvider
         buf.append("\tpwd                 - Print working 'directory'\n");
         buf.append("\tcd '/path'          - Change working 'directory'\n");
         buf.append("\tprefs               - List all preferences\n");
+        buf.append("\ttimers              - Show pending timers and their lag\n");
+        buf.append("\tstartup             - Show progress of connecting PVs\n");
         return buf.toString();
     }
 
@@ -127,6 +129,38 @@ public class ConsoleCommands implements CommandProvider
         return null;
     }
 
+    /** 'timers' command */
+    public Object _timers(final CommandInterpreter intp)
+    {
+        final TimerWheel timer = TimerWheel.getShared();
+        intp.println("Pending timers : " + timer.getPendingCount());
+        intp.println("Executed timers: " + timer.getFiredCount());
+        intp.println(String.format("Lag            : last %.1f ms, average %.1f ms, max %.1f ms",
+                timer.getLastLagMillis(), timer.getAverageLagMillis(), timer.getMaxLagMillis()));
+        return null;
+    }
+
+    /** 'startup' command */
+    public Object _startup(final CommandInterpreter intp)
+    {
+        final PVStarter starter = server.getPVStarter();
+        if (starter == null)
+        {
+            intp.println("PVs have not been started");
+            return null;
+        }
+        final int connected = starter.getConnected();
+        final int failed = starter.getFailed();
+        intp.println("PVs      : " + starter.getTotal());
+        intp.println("Started  : " + starter.getStarted());
+        intp.println("Connected: " + connected);
+        intp.println("Pending  : " + (starter.getTotal() - connected - failed));
+        intp.println("Failed   : " + failed);
+        intp.println(String.format("%s after %.1f seconds",
+                starter.isDone() ? "Done" : "Starting", starter.getSeconds()));
+        return null;
+    }
+
     /** 'pwd' command */
     public Object _pwd(final CommandInterpreter intp)
     {
@@ -7,8 +7,6 @@
  ******************************************************************************/
 package org.csstudio.alarm.beast.server;
 
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.logging.Level;
 
 /** Helper for checking alarms after a delay.
@@ -25,7 +23,7 @@ import java.util.logging.Level;
 @SuppressWarnings("nls")
 public class DelayedAlarmUpdate
 {
-    final private static Timer timer = new Timer("DelayedAlarmUpdate", true);
+    final private static TimerWheel timer = TimerWheel.getShared();
 
     /** Listener to notify when delay expires */
     final private DelayedAlarmListener listener;
@@ -34,7 +32,7 @@ public class DelayedAlarmUpdate
     private AlarmState state;
 
     /** Timer task used to perform the delay */
-    private TimerTask scheduled_task = null;
+    private TimerWheel.Timeout scheduled_task = null;
 
     /** Initialize
      *  @param listener Listener to notify when delay expires
@@ -59,7 +57,6 @@ public class DelayedAlarmUpdate
             new NullPointerException("DelayedAlarmUpdate with null").printStackTrace();
             return;
         }
-        final TimerTask new_task;
         synchronized (this)
         {
             this.state = new_state;
@@ -67,7 +64,7 @@ public class DelayedAlarmUpdate
             if (scheduled_task != null)
                 return;
             // Schedule in timer
-            new_task = new TimerTask()
+            scheduled_task = timer.schedule(new Runnable()
             {
                 @Override
                 public void run()
@@ -96,10 +93,8 @@ public class DelayedAlarmUpdate
                         Activator.getLogger().log(Level.SEVERE, "Error in delayed alarm update", ex);
                     }
                 }
-            };
-            scheduled_task = new_task;
+            }, seconds * 1000L);
         }
-        timer.schedule(new_task, seconds * 1000L);
     }
 
     /** @return Alarm state to which we'll go after the delay expires */
@@ -113,7 +108,7 @@ public class DelayedAlarmUpdate
      */
     public void cancel()
     {
-        final TimerTask task;
+        final TimerWheel.Timeout task;
         synchronized (this)
         {
             state = null;
@@ -7,9 +7,6 @@
  ******************************************************************************/
 package org.csstudio.alarm.beast.server;
 
-import java.util.Timer;
-import java.util.TimerTask;
-
 /** Helper for sending global alarm updates after a delay.
  *
  *  After the delay, it will invoke the listener.
@@ -18,13 +15,13 @@ import java.util.TimerTask;
  */
 public class GlobalAlarmUpdate
 {
-    final private static Timer timer = new Timer("GlobalAlarmUpdate", true); //$NON-NLS-1$
+    final private static TimerWheel timer = TimerWheel.getShared();
 
     /** Listener to notify when delay expires */
     final private GlobalAlarmListener listener;
 
     /** Timer task used to perform the delay */
-    private TimerTask scheduled_task = null;
+    private TimerWheel.Timeout scheduled_task = null;
 
     /** Initialize
      *  @param listener Listener to notify when delay expires
@@ -42,14 +39,13 @@ public class GlobalAlarmUpdate
      */
     void schedule_update(final int seconds)
     {
-        final TimerTask new_task;
         synchronized (this)
         {
             // Already scheduled?
             if (scheduled_task != null)
                 return;
             // Schedule in timer
-            new_task = new TimerTask()
+            scheduled_task = timer.schedule(new Runnable()
             {
                 @Override
                 public void run()
@@ -62,10 +58,8 @@ public class GlobalAlarmUpdate
                     //  not allowing any further delays.
                     listener.updateGlobalState();
                 }
-            };
-            scheduled_task = new_task;
+            }, seconds * 1000L);
         }
-        timer.schedule(new_task, seconds * 1000L);
     }
 
     /** Cancel delayed alarm check because control system PV cleared.
@@ -73,7 +67,7 @@ public class GlobalAlarmUpdate
      */
     public void cancel()
     {
-        final TimerTask task;
+        final TimerWheel.Timeout task;
         synchronized (this)
         {
             task = scheduled_task;
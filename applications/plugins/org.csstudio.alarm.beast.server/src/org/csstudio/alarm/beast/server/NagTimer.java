@@ -7,35 +7,94 @@
  ******************************************************************************/
 package org.csstudio.alarm.beast.server;
 
-import org.csstudio.alarm.beast.TimeoutTimer;
-
 /** Timer that 'nags' when there are active alarms
  *  @author Kay Kasemir
  */
-@SuppressWarnings("nls")
-public class NagTimer extends TimeoutTimer
+public class NagTimer
 {
+    final private TimerWheel timer = TimerWheel.getShared();
+
+    final private long period_ms;
+
     final private NagTimerHandler listener;
 
+    /** Pending nag or <code>null</code>. SYNC on this */
+    private TimerWheel.Timeout timeout = null;
+
+    /** Identifies the most recently scheduled nag,
+     *  so a nag that was already executing while
+     *  the timer was reset will not schedule another nag.
+     *  SYNC on this
+     */
+    private long generation = 0;
+
     /** Initialize
      *  @param period_ms Period between nags in milliseconds
      *  @param listener Who to notify
      */
     public NagTimer(final long period_ms, final NagTimerHandler listener)
     {
-        super("Nag Timer", period_ms);
+        this.period_ms = period_ms;
         this.listener = listener;
     }
 
-    /** Check for active alarms, issue 'nag' */
-    @Override
-    protected void timeout()
+    /** Start the timer */
+    public synchronized void start()
+    {
+        schedule();
+    }
+
+    /** Reset the timer, restarting the period */
+    public synchronized void reset()
+    {
+        if (timeout == null)
+            return;
+        timeout.cancel();
+        schedule();
+    }
+
+    /** Cancel the timer */
+    public synchronized void cancel()
+    {
+        ++generation;
+        if (timeout != null)
+            timeout.cancel();
+        timeout = null;
+    }
+
+    /** Schedule next nag. SYNC on this */
+    private void schedule()
+    {
+        final long scheduled = ++generation;
+        timeout = timer.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                timeout(scheduled);
+            }
+        }, period_ms);
+    }
+
+    /** Check for active alarms, issue 'nag'
+     *  @param scheduled Generation of the nag
+     */
+    private void timeout(final long scheduled)
     {
+        synchronized (this)
+        {
+            if (scheduled != generation)
+                return;
+        }
         final int active = listener.getActiveAlarmCount();
         if (active > 0)
             listener.nagAboutActiveAlarms(active);
 
         // Allow another time out
-        reset();
+        synchronized (this)
+        {
+            if (scheduled == generation)
+                schedule();
+        }
     }
 }
@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.alarm.beast.server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import org.csstudio.vtype.pv.jca.JCAContext;
+
+/** Start alarm PVs in batches at a limited rate.
+ *
+ *  <p>PVs are split into batches which are started on a pool of threads.
+ *  Channel Access flushes are deferred until all PVs of a batch
+ *  have been created, so the search requests of a batch
+ *  go out in few network packets.
+ *  Batches are submitted at a pace that results in the
+ *  configured number of channels per second,
+ *  to avoid flooding the network and IOCs with search requests.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class PVStarter
+{
+    /** Interface for starting a PV, allows tests without control system */
+    public interface Startable
+    {
+        /** @return Name of the PV */
+        public String getName();
+
+        /** Connect to control system
+         *  @throws Exception on error
+         */
+        public void start() throws Exception;
+
+        /** @return <code>true</code> if PV is connected */
+        public boolean isConnected();
+    }
+
+    final private Startable[] pvs;
+
+    /** Channels per second, 0 for 'as fast as possible' */
+    final private double rate;
+
+    final private int threads;
+
+    final private int batch_size;
+
+    final private AtomicInteger started = new AtomicInteger();
+
+    final private AtomicInteger failed = new AtomicInteger();
+
+    /** Start and end time of starting the PVs in nanoseconds, 0 while not known */
+    private volatile long start_time = 0, end_time = 0;
+
+    /** Initialize
+     *  @param pvs PVs to start
+     *  @param rate Channels per second, 0 for 'as fast as possible'
+     *  @param threads Number of threads that start PVs
+     *  @param batch_size Number of PVs per batch, i.e. per flush
+     */
+    public PVStarter(final Startable[] pvs, final double rate,
+            final int threads, final int batch_size)
+    {
+        this.pvs = pvs;
+        this.rate = Math.max(0.0, rate);
+        this.threads = Math.max(1, threads);
+        this.batch_size = Math.max(1, batch_size);
+    }
+
+    /** Start all PVs, returning once all batches have been started.
+     *  Connections will typically complete later.
+     *  @throws InterruptedException when interrupted
+     */
+    public void run() throws InterruptedException
+    {
+        start_time = System.nanoTime();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            final private AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable)
+            {
+                final Thread thread = new Thread(runnable, "PVStarter" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try
+        {
+            for (int first=0; first<pvs.length; first += batch_size)
+            {
+                // Delay batch until it's due based on the number of channels before it
+                if (rate > 0)
+                {
+                    final long due = start_time + Math.round(first / rate * 1e9);
+                    final long wait = due - System.nanoTime();
+                    if (wait > 0)
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                final int start = first;
+                final int end = Math.min(pvs.length, first + batch_size);
+                executor.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        startBatch(start, end);
+                    }
+                });
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+            end_time = System.nanoTime();
+        }
+    }
+
+    /** Start PVs with one flush at the end
+     *  @param start Index of first PV
+     *  @param end Index after last PV
+     */
+    private void startBatch(final int start, final int end)
+    {
+        JCAContext.deferFlush();
+        try
+        {
+            for (int i=start; i<end; ++i)
+            {
+                try
+                {
+                    pvs[i].start();
+                    started.incrementAndGet();
+                }
+                catch (Exception ex)
+                {
+                    failed.incrementAndGet();
+                    Activator.getLogger().log(Level.SEVERE,
+                        "Error starting PV " + pvs[i].getName(), ex);
+                }
+            }
+        }
+        finally
+        {
+            try
+            {
+                JCAContext.flushDeferred();
+            }
+            catch (Exception ex)
+            {
+                Activator.getLogger().log(Level.WARNING, "Cannot flush PV start requests", ex);
+            }
+        }
+    }
+
+    /** @return Total number of PVs */
+    public int getTotal()
+    {
+        return pvs.length;
+    }
+
+    /** @return Number of PVs that have been started */
+    public int getStarted()
+    {
+        return started.get();
+    }
+
+    /** @return Number of PVs that could not be started */
+    public int getFailed()
+    {
+        return failed.get();
+    }
+
+    /** @return Number of connected PVs */
+    public int getConnected()
+    {
+        int connected = 0;
+        for (Startable pv : pvs)
+            if (pv.isConnected())
+                ++connected;
+        return connected;
+    }
+
+    /** @return <code>true</code> when all PVs have been started */
+    public boolean isDone()
+    {
+        return end_time != 0;
+    }
+
+    /** @return Seconds spent starting the PVs, so far */
+    public double getSeconds()
+    {
+        if (start_time == 0)
+            return 0.0;
+        final long end = end_time != 0 ? end_time : System.nanoTime();
+        return (end - start_time) / 1e9;
+    }
+
+    /** @return Progress info */
+    @Override
+    public String toString()
+    {
+        final int connected = getConnected();
+        final int failed = getFailed();
+        return String.format("PV startup: %d PVs, %d connected, %d pending, %d failed, %s after %.1f seconds",
+                pvs.length, connected, pvs.length - connected - failed, failed,
+                isDone() ? "done" : "starting", getSeconds());
+    }
+}
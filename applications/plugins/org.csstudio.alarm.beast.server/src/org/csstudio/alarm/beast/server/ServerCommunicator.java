@@ -9,6 +9,10 @@ package org.csstudio.alarm.beast.server;
 
 import java.net.InetAddress;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 
 import javax.jms.MapMessage;
@@ -17,6 +21,7 @@ import javax.jms.MessageConsumer;
 import javax.jms.MessageListener;
 import javax.jms.MessageProducer;
 
+import org.csstudio.alarm.beast.AlarmStateBatch;
 import org.csstudio.alarm.beast.JMSAlarmMessage;
 import org.csstudio.alarm.beast.JMSCommunicationWorkQueueThread;
 import org.csstudio.alarm.beast.Preferences;
@@ -36,6 +41,35 @@ public class ServerCommunicator extends JMSCommunicationWorkQueueThread
     /** TYPE identifier used for talk messages */
     private static final String TYPE_TALK = "talk";
 
+    /** Maximum number of PV states in one batched state update message */
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    /** PV state to send to clients */
+    private static class StateUpdate
+    {
+        final String name;
+        final SeverityLevel current_severity;
+        final String current_message;
+        final SeverityLevel alarm_severity;
+        final String alarm_message;
+        final String value;
+        final Timestamp timestamp;
+
+        StateUpdate(final String name,
+                final SeverityLevel current_severity, final String current_message,
+                final SeverityLevel alarm_severity, final String alarm_message,
+                final String value, final Timestamp timestamp)
+        {
+            this.name = name;
+            this.current_severity = current_severity;
+            this.current_message = current_message;
+            this.alarm_severity = alarm_severity;
+            this.alarm_message = alarm_message;
+            this.value = value;
+            this.timestamp = timestamp;
+        }
+    }
+
     /** Format of time stamps */
     final private SimpleDateFormat date_format =
         new SimpleDateFormat(JMSLogMessage.DATE_FORMAT);
@@ -58,6 +92,53 @@ public class ServerCommunicator extends JMSCommunicationWorkQueueThread
     /** User for messages. Updated with authenticated user */
     final private String user = System.getProperty("user.name"); //$NON-NLS-1$
 
+    /** Period in ms for collecting state updates into one message, 0 to send each update */
+    final private long batch_period = Preferences.getJMS_StateBatchPeriod();
+
+    /** Latest state update for each PV, waiting to be sent as a batch.
+     *  <br><b>SYNC:</b> Access needs to synchronize on <code>pending_states</code>
+     */
+    final private Map<String, StateUpdate> pending_states = new LinkedHashMap<String, StateUpdate>();
+
+    /** Scheduled sending of the <code>pending_states</code>, or <code>null</code>.
+     *  <br><b>SYNC:</b> Access needs to synchronize on <code>pending_states</code>
+     */
+    private TimerWheel.Timeout batch_timeout = null;
+
+    /** Sends the <code>pending_states</code>. Runs on the JMS thread. */
+    final private Runnable send_batch = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            final List<StateUpdate> updates;
+            synchronized (pending_states)
+            {
+                updates = new ArrayList<StateUpdate>(pending_states.values());
+                pending_states.clear();
+            }
+            if (! updates.isEmpty())
+                sendStates(updates);
+        }
+    };
+
+    /** Queues <code>send_batch</code> at the end of the batch period.
+     *  Runs on the timer thread, so the JMS thread is free to send other messages
+     *  while the batch is collected.
+     */
+    final private Runnable batch_expired = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            synchronized (pending_states)
+            {
+                batch_timeout = null;
+            }
+            execute(send_batch);
+        }
+    };
+
     // Note on synchronization:
     //
     // Access to the producer is within the JMSCommunicationThread
@@ -167,6 +248,14 @@ public class ServerCommunicator extends JMSCommunicationWorkQueueThread
     @Override
     public void stop()
     {
+        synchronized (pending_states)
+        {
+            if (batch_timeout != null)
+            {
+                batch_timeout.cancel();
+                batch_timeout = null;
+            }
+        }
         idle_timer.cancel();
         try
         {
@@ -223,6 +312,15 @@ public class ServerCommunicator extends JMSCommunicationWorkQueueThread
                            AlarmLogic.getMaintenanceMode()
                            ? JMSAlarmMessage.TEXT_IDLE_MAINTENANCE
                            : JMSAlarmMessage.TEXT_IDLE);
+                    final PVStarter starter = server.getPVStarter();
+                    if (starter != null)
+                    {
+                        final int connected = starter.getConnected();
+                        final int failed = starter.getFailed();
+                        map.setInt(JMSAlarmMessage.PVS_CONNECTED, connected);
+                        map.setInt(JMSAlarmMessage.PVS_PENDING, starter.getTotal() - connected - failed);
+                        map.setInt(JMSAlarmMessage.PVS_FAILED, failed);
+                    }
                     server_producer.send(map);
                 }
                 catch (Exception ex)
@@ -259,6 +357,11 @@ public class ServerCommunicator extends JMSCommunicationWorkQueueThread
     }
 
     /** Notify clients of new alarm state.
+     *  <p>
+     *  When batching is enabled, the update is sent with other updates
+     *  at the end of the batch period.
+     *  Only the latest update for each PV is sent.
+     *
      *  @param pv PV that changes alarm state
      *  @param current_severity Current severity of the PV
      *  @param current_message Current message of the PV
@@ -274,36 +377,94 @@ public class ServerCommunicator extends JMSCommunicationWorkQueueThread
             final String value,
             final Timestamp timestamp)
     {
-        execute(new Runnable()
+        final StateUpdate update = new StateUpdate(pv.getName(), current_severity, current_message,
+                                                   alarm_severity, alarm_message, value, timestamp);
+        if (batch_period > 0)
         {
-            @Override
-            public void run()
+            synchronized (pending_states)
             {
-            	try
-                {
-                    final MapMessage map = createAlarmMessage(
-                            AlarmLogic.getMaintenanceMode()
-                            ? JMSAlarmMessage.TEXT_STATE_MAINTENANCE
-                            : JMSAlarmMessage.TEXT_STATE);
-                    map.setString(JMSLogMessage.NAME, pv.getName());
-                    map.setString(JMSLogMessage.SEVERITY, alarm_severity.name());
-                    map.setString(JMSAlarmMessage.STATUS,  alarm_message);
-                    if (value != null)
-                        map.setString(JMSAlarmMessage.VALUE, value);
-                    map.setString(JMSAlarmMessage.EVENTTIME, date_format.format(timestamp.toDate()));
-                    map.setString(JMSAlarmMessage.CURRENT_SEVERITY, current_severity.name());
-                    map.setString(JMSAlarmMessage.CURRENT_STATUS, current_message);
-                    server_producer.send(map);
-                }
-                catch (Exception ex)
+                pending_states.put(update.name, update);
+                if (batch_timeout == null)
+                    batch_timeout = TimerWheel.getShared().schedule(batch_expired, batch_period);
+            }
+        }
+        else
+            execute(new Runnable()
+            {
+                @Override
+                public void run()
                 {
-                    Activator.getLogger().log(Level.WARNING, "Cannot send state update message", ex);
+                    final List<StateUpdate> updates = new ArrayList<StateUpdate>(1);
+                    updates.add(update);
+                    sendStates(updates);
                 }
-            }
-        });
+            });
         idle_timer.reset();
     }
 
+    /** Send state updates to clients.
+     *  A single update is sent as a plain state message,
+     *  several updates as batched state messages.
+     *  Must be called on the JMS thread.
+     *  @param updates State updates
+     */
+    private void sendStates(final List<StateUpdate> updates)
+    {
+        final boolean maintenance = AlarmLogic.getMaintenanceMode();
+        if (updates.size() == 1)
+        {
+            final StateUpdate update = updates.get(0);
+            try
+            {
+                final MapMessage map = createAlarmMessage(
+                        maintenance
+                        ? JMSAlarmMessage.TEXT_STATE_MAINTENANCE
+                        : JMSAlarmMessage.TEXT_STATE);
+                map.setString(JMSLogMessage.NAME, update.name);
+                map.setString(JMSLogMessage.SEVERITY, update.alarm_severity.name());
+                map.setString(JMSAlarmMessage.STATUS,  update.alarm_message);
+                if (update.value != null)
+                    map.setString(JMSAlarmMessage.VALUE, update.value);
+                map.setString(JMSAlarmMessage.EVENTTIME, date_format.format(update.timestamp.toDate()));
+                map.setString(JMSAlarmMessage.CURRENT_SEVERITY, update.current_severity.name());
+                map.setString(JMSAlarmMessage.CURRENT_STATUS, update.current_message);
+                server_producer.send(map);
+            }
+            catch (Exception ex)
+            {
+                Activator.getLogger().log(Level.WARNING, "Cannot send state update message", ex);
+            }
+            return;
+        }
+        final int n = updates.size();
+        for (int start=0; start<n; start+=MAX_BATCH_SIZE)
+        {
+            final AlarmStateBatch batch = new AlarmStateBatch();
+            final int end = Math.min(n, start + MAX_BATCH_SIZE);
+            for (int i=start; i<end; ++i)
+            {
+                final StateUpdate update = updates.get(i);
+                batch.add(update.name, update.alarm_severity, update.alarm_message,
+                          update.current_severity, update.current_message,
+                          update.value, date_format.format(update.timestamp.toDate()));
+            }
+            try
+            {
+                final MapMessage map = createAlarmMessage(
+                        maintenance
+                        ? JMSAlarmMessage.TEXT_STATE_BATCH_MAINTENANCE
+                        : JMSAlarmMessage.TEXT_STATE_BATCH);
+                map.setString(JMSAlarmMessage.STATES, batch.getText());
+                server_producer.send(map);
+            }
+            catch (Exception ex)
+            {
+                Activator.getLogger().log(Level.WARNING,
+                    "Cannot send batch of " + batch.size() + " state updates", ex);
+            }
+        }
+    }
+
     /** Notify 'global' clients of new alarm state.
      *  @param pv PV that changes alarm state
      *  @param alarm_severity Alarm severity
@@ -0,0 +1,339 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.alarm.beast.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/** Hashed timer wheel.
+ *
+ *  <p>Scheduled tasks are kept in a ring of slots, one slot per 'tick'.
+ *  A task is added to the slot of its deadline tick,
+ *  with a count of the full rotations of the wheel that need to pass
+ *  before it is due.
+ *  Each slot is a doubly linked list, so scheduling and canceling a task
+ *  are O(1), unlike a {@link java.util.Timer} where canceled tasks remain
+ *  in the heap until they are purged.
+ *  The alarm server has many PVs with alarm delays that are constantly
+ *  scheduled and canceled.
+ *
+ *  <p>Tasks are executed on the thread of the wheel,
+ *  so they must not block.
+ *  The resolution of deadlines is one tick.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class TimerWheel
+{
+    /** Tick period of the shared instance in milliseconds */
+    final private static long SHARED_TICK_MS = 10;
+
+    /** Slots of the shared instance, 10ms * 1024 = about 10 seconds per rotation */
+    final private static int SHARED_SLOTS = 1024;
+
+    /** Shared instance */
+    private static TimerWheel shared = null;
+
+    /** Handle to a scheduled task */
+    public class Timeout
+    {
+        final private Runnable task;
+
+        /** Period in nanoseconds, 0 for a one-time task */
+        final private long period;
+
+        /** Deadline in nanoseconds, relative to <code>start</code> */
+        private long deadline;
+
+        /** Remaining rotations of the wheel before the task is due */
+        private long rounds;
+
+        /** Neighbors in the slot list */
+        private Timeout previous, next;
+
+        /** Slot index, -1 when not in the wheel */
+        private int slot = -1;
+
+        private boolean cancelled = false;
+
+        Timeout(final Runnable task, final long deadline, final long period)
+        {
+            this.task = task;
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        /** Cancel the task.
+         *  OK to call multiple times.
+         *  @return <code>true</code> if the task had not run,
+         *          <code>false</code> if it already ran or was canceled
+         */
+        public boolean cancel()
+        {
+            synchronized (TimerWheel.this)
+            {
+                if (cancelled)
+                    return false;
+                cancelled = true;
+                // Remove from wheel unless it's already been
+                // collected for execution, where it will be skipped
+                if (slot >= 0)
+                    remove(this);
+                return true;
+            }
+        }
+    }
+
+    /** Tick period in nanoseconds */
+    final private long tick;
+
+    /** Mask to get slot index from tick count */
+    final private int mask;
+
+    /** Head of the list for each slot */
+    final private Timeout[] slots;
+
+    /** Start time in nanoseconds, all deadlines are relative to this */
+    final private long start = System.nanoTime();
+
+    final private Thread thread;
+
+    private volatile boolean run = true;
+
+    /** Next tick to process. SYNC on this */
+    private long next_tick = 1;
+
+    /** Number of scheduled tasks. SYNC on this */
+    private int pending = 0;
+
+    /** Statistics. SYNC on this */
+    private long fired = 0, total_lag = 0, last_lag = 0, max_lag = 0;
+
+    /** @return Timer wheel shared by the alarm server */
+    public static synchronized TimerWheel getShared()
+    {
+        if (shared == null)
+            shared = new TimerWheel("Alarm Server Timer", SHARED_TICK_MS, SHARED_SLOTS);
+        return shared;
+    }
+
+    /** Initialize
+     *  @param name Name of the timer thread
+     *  @param tick_ms Tick period in milliseconds
+     *  @param slot_count Number of slots, will be rounded up to power of 2
+     */
+    public TimerWheel(final String name, final long tick_ms, final int slot_count)
+    {
+        if (tick_ms <= 0)
+            throw new IllegalArgumentException("Tick must be positive");
+        tick = TimeUnit.MILLISECONDS.toNanos(tick_ms);
+        int size = 1;
+        while (size < slot_count)
+            size <<= 1;
+        slots = new Timeout[size];
+        mask = size - 1;
+        thread = new Thread(name)
+        {
+            @Override
+            public void run()
+            {
+                process();
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Schedule a task to run once
+     *  @param task Task to run
+     *  @param delay_ms Delay in milliseconds
+     *  @return Handle for canceling the task
+     */
+    public Timeout schedule(final Runnable task, final long delay_ms)
+    {
+        final Timeout timeout = new Timeout(task,
+                System.nanoTime() - start + TimeUnit.MILLISECONDS.toNanos(delay_ms), 0);
+        synchronized (this)
+        {
+            add(timeout);
+        }
+        return timeout;
+    }
+
+    /** Schedule a task to run periodically
+     *  @param task Task to run
+     *  @param period_ms Period in milliseconds, also used as initial delay
+     *  @return Handle for canceling the task
+     */
+    public Timeout schedulePeriodic(final Runnable task, final long period_ms)
+    {
+        final long period = Math.max(tick, TimeUnit.MILLISECONDS.toNanos(period_ms));
+        final Timeout timeout = new Timeout(task, System.nanoTime() - start + period, period);
+        synchronized (this)
+        {
+            add(timeout);
+        }
+        return timeout;
+    }
+
+    /** @param timeout Task to add to the slot of its deadline. SYNC on this */
+    private void add(final Timeout timeout)
+    {
+        // Round up to next tick, but not before the next tick to process
+        final long target = Math.max(next_tick, (timeout.deadline + tick - 1) / tick);
+        timeout.rounds = (target - next_tick) / slots.length;
+        timeout.slot = (int) (target & mask);
+        timeout.previous = null;
+        timeout.next = slots[timeout.slot];
+        if (timeout.next != null)
+            timeout.next.previous = timeout;
+        slots[timeout.slot] = timeout;
+        ++pending;
+    }
+
+    /** @param timeout Task to remove from its slot. SYNC on this */
+    private void remove(final Timeout timeout)
+    {
+        if (timeout.previous == null)
+            slots[timeout.slot] = timeout.next;
+        else
+            timeout.previous.next = timeout.next;
+        if (timeout.next != null)
+            timeout.next.previous = timeout.previous;
+        timeout.previous = timeout.next = null;
+        timeout.slot = -1;
+        --pending;
+    }
+
+    /** Thread runnable: Process ticks */
+    private void process()
+    {
+        final List<Timeout> expired = new ArrayList<Timeout>();
+        while (run)
+        {
+            // Wait for next tick
+            final long tick_time;
+            synchronized (this)
+            {
+                tick_time = next_tick * tick;
+            }
+            final long wait = tick_time - (System.nanoTime() - start);
+            if (wait > 0)
+            {
+                try
+                {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                catch (InterruptedException ex)
+                {
+                    continue;
+                }
+            }
+            // Collect expired tasks of this tick's slot
+            synchronized (this)
+            {
+                Timeout timeout = slots[(int) (next_tick & mask)];
+                while (timeout != null)
+                {
+                    final Timeout next = timeout.next;
+                    if (timeout.rounds > 0)
+                        --timeout.rounds;
+                    else
+                    {
+                        remove(timeout);
+                        expired.add(timeout);
+                    }
+                    timeout = next;
+                }
+                ++next_tick;
+            }
+            // Run tasks outside of lock
+            for (Timeout timeout : expired)
+            {
+                synchronized (this)
+                {
+                    if (timeout.cancelled)
+                        continue;
+                }
+                final long lag = System.nanoTime() - start - timeout.deadline;
+                try
+                {
+                    timeout.task.run();
+                }
+                catch (Throwable ex)
+                {
+                    Activator.getLogger().log(Level.SEVERE, "Error in timer task", ex);
+                }
+                synchronized (this)
+                {
+                    ++fired;
+                    last_lag = Math.max(0, lag);
+                    total_lag += last_lag;
+                    if (last_lag > max_lag)
+                        max_lag = last_lag;
+                    if (timeout.period > 0  &&  !timeout.cancelled)
+                    {
+                        timeout.deadline += timeout.period;
+                        add(timeout);
+                    }
+                    else
+                        timeout.cancelled = true;
+                }
+            }
+            expired.clear();
+        }
+    }
+
+    /** @return Number of pending tasks */
+    public synchronized int getPendingCount()
+    {
+        return pending;
+    }
+
+    /** @return Number of tasks that were executed */
+    public synchronized long getFiredCount()
+    {
+        return fired;
+    }
+
+    /** @return Lag of the last executed task behind its deadline in milliseconds */
+    public synchronized double getLastLagMillis()
+    {
+        return last_lag / 1e6;
+    }
+
+    /** @return Maximum lag of executed tasks behind their deadline in milliseconds */
+    public synchronized double getMaxLagMillis()
+    {
+        return max_lag / 1e6;
+    }
+
+    /** @return Average lag of executed tasks behind their deadline in milliseconds */
+    public synchronized double getAverageLagMillis()
+    {
+        return fired > 0 ? total_lag / 1e6 / fired : 0.0;
+    }
+
+    /** Stop the timer thread. Pending tasks will not run. */
+    public void stop()
+    {
+        run = false;
+        thread.interrupt();
+    }
+
+    /** @return Info about pending tasks and lag */
+    @Override
+    public synchronized String toString()
+    {
+        return String.format("Timer: %d pending, %d executed, lag last %.1f ms, average %.1f ms, max %.1f ms",
+                pending, fired, last_lag / 1e6, getAverageLagMillis(), max_lag / 1e6);
+    }
+}
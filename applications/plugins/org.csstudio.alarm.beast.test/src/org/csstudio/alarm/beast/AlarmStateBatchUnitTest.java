@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.alarm.beast;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/** JUnit test of AlarmStateBatch
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class AlarmStateBatchUnitTest
+{
+    @Test
+    public void testEncoding() throws Exception
+    {
+        final AlarmStateBatch batch = new AlarmStateBatch();
+        assertThat(AlarmStateBatch.parse(batch.getText()).size(), equalTo(0));
+
+        batch.add("pv1", SeverityLevel.MAJOR, "HIHI_ALARM", SeverityLevel.MINOR, "HIGH_ALARM",
+                  "3.14", "2015/01/02 03:04:05.678");
+        batch.add("loc://odd\tname\\", SeverityLevel.OK, "", SeverityLevel.OK, "Line1\nLine2",
+                  null, "2015/01/02 03:04:06.000");
+        assertThat(batch.size(), equalTo(2));
+
+        final List<String[]> states = AlarmStateBatch.parse(batch.getText());
+        assertThat(states.size(), equalTo(2));
+
+        String[] state = states.get(0);
+        assertThat(state[AlarmStateBatch.NAME], equalTo("pv1"));
+        assertThat(state[AlarmStateBatch.SEVERITY], equalTo("MAJOR"));
+        assertThat(state[AlarmStateBatch.STATUS], equalTo("HIHI_ALARM"));
+        assertThat(state[AlarmStateBatch.CURRENT_SEVERITY], equalTo("MINOR"));
+        assertThat(state[AlarmStateBatch.CURRENT_STATUS], equalTo("HIGH_ALARM"));
+        assertThat(state[AlarmStateBatch.VALUE], equalTo("3.14"));
+        assertThat(state[AlarmStateBatch.EVENTTIME], equalTo("2015/01/02 03:04:05.678"));
+
+        state = states.get(1);
+        assertThat(state[AlarmStateBatch.NAME], equalTo("loc://odd\tname\\"));
+        assertThat(state[AlarmStateBatch.STATUS], equalTo(""));
+        assertThat(state[AlarmStateBatch.CURRENT_STATUS], equalTo("Line1\nLine2"));
+        assertThat(state[AlarmStateBatch.VALUE], nullValue());
+    }
+
+    @Test(expected=Exception.class)
+    public void testBadText() throws Exception
+    {
+        AlarmStateBatch.parse("pv1\tMAJOR\tToo few fields");
+    }
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.alarm.beast.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.epics.util.time.Timestamp;
+import org.junit.Test;
+
+/** JUnit Test of the {@link AlarmConfigurationSnapshot}
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class AlarmConfigurationSnapshotUnitTest
+{
+    @Test
+    public void testSnapshot() throws Exception
+    {
+        final GDCDataStructure guidance[] = new GDCDataStructure[]
+        {
+                new GDCDataStructure("Run", "Run as fast as you can"),
+                new GDCDataStructure("Fix", "Try to fix it")
+        };
+        final AADataStructure automated_actions[] = new AADataStructure[]
+        {
+                new AADataStructure("Send Mail", "paul@home.there", 30)
+        };
+
+        // Root
+        //    DTL
+        //       Vacuum
+        //            ...1:Pressure
+        final AlarmTreeRoot tree = new AlarmTreeRoot("Test Config", 1);
+        tree.setGuidance(guidance);
+        final AlarmTreeItem dtl = new AlarmTreeItem(tree, "DTL", 2);
+        dtl.setConfigTime(Timestamp.of(1000, 42));
+        final AlarmTreeItem dtl_vac = new AlarmTreeItem(dtl, "Vacuum", 3);
+        final AlarmTreePV pv = new AlarmTreePV(dtl_vac, "DTL_Vac:Sensor1:Pressure", 4);
+        pv.setDescription("Pressure is high");
+        pv.setEnabled(false);
+        pv.setLatching(true);
+        pv.setDelay(5);
+        pv.setCount(2);
+        pv.setFilter("DTL_Vac:Valve:Open");
+        pv.setDisplays(guidance);
+        pv.setAutomatedActions(automated_actions);
+
+        final File dir = File.createTempFile("alarm_snapshot", "");
+        dir.delete();
+        final AlarmConfigurationSnapshot snapshot = new AlarmConfigurationSnapshot(dir.getPath(), tree.getName());
+        try
+        {
+            snapshot.write(tree, "1/2/3/4");
+            assertTrue(snapshot.getFile().canRead());
+
+            // Outdated snapshot is ignored
+            AlarmTreeRoot copy = new AlarmTreeRoot("Test Config", 1);
+            final Map<String, AlarmTreePV> pvs = new HashMap<String, AlarmTreePV>();
+            final Map<Integer, AlarmTreePV> pvs_by_id = new HashMap<Integer, AlarmTreePV>();
+            assertFalse(snapshot.read(copy, "1/2/3/5", pvs, pvs_by_id));
+            assertEquals(0, copy.getChildCount());
+
+            // Snapshot of other configuration is ignored
+            copy = new AlarmTreeRoot("Test Config", 2);
+            assertFalse(snapshot.read(copy, "1/2/3/4", pvs, pvs_by_id));
+
+            // Matching snapshot
+            copy = new AlarmTreeRoot("Test Config", 1);
+            assertTrue(snapshot.read(copy, "1/2/3/4", pvs, pvs_by_id));
+            assertEquals(1, copy.getChildCount());
+            final AlarmTreeItem dtl_copy = copy.getChild("DTL");
+            assertEquals(2, dtl_copy.getID());
+            assertEquals(1, dtl_copy.getChildCount());
+            assertEquals(3, dtl_copy.getChild("Vacuum").getID());
+            assertEquals(1, copy.getLeafCount());
+            assertArrayEquals(guidance, copy.getGuidance());
+            assertEquals(dtl.getConfigTime(), copy.getChild("DTL").getConfigTime());
+            assertEquals(1, pvs.size());
+            final AlarmTreePV pv_copy = pvs_by_id.get(4);
+            assertEquals(pv_copy, copy.getItemByPath("/Test Config/DTL/Vacuum/DTL_Vac:Sensor1:Pressure"));
+            assertEquals(pv_copy, pvs.get(pv.getName()));
+            assertEquals("Pressure is high", pv_copy.getDescription());
+            assertFalse(pv_copy.isEnabled());
+            assertTrue(pv_copy.isLatching());
+            assertEquals(5, pv_copy.getDelay());
+            assertEquals(2, pv_copy.getCount());
+            assertEquals("DTL_Vac:Valve:Open", pv_copy.getFilter());
+            assertArrayEquals(guidance, pv_copy.getDisplays());
+            assertEquals(0, pv_copy.getCommands().length);
+            assertEquals(1, pv_copy.getAutomatedActions().length);
+            assertEquals("Send Mail", pv_copy.getAutomatedActions()[0].getTitle());
+            assertEquals("paul@home.there", pv_copy.getAutomatedActions()[0].getDetails());
+            assertEquals(30, pv_copy.getAutomatedActions()[0].getDelay());
+
+            // Restored tree has the same configuration as the original
+            assertEquals(toXML(tree), toXML(copy));
+        }
+        finally
+        {
+            snapshot.getFile().delete();
+            dir.delete();
+        }
+    }
+
+    /** @param root Alarm tree
+     *  @return XML for the configuration of the tree
+     */
+    private String toXML(final AlarmTreeRoot root) throws Exception
+    {
+        final StringWriter buf = new StringWriter();
+        final PrintWriter out = new PrintWriter(buf);
+        root.writeXML(out);
+        out.flush();
+        return buf.toString();
+    }
+}
@@ -8,6 +8,7 @@
 package org.csstudio.alarm.beast.client;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -117,4 +118,219 @@ public class AlarmTreeItemUnitTest
         System.out.println("Total tree element count: " + tree.getElementCount());
         assertEquals(11, tree.getElementCount());
     }
+
+    @Test
+    public void testBatchedUpdates() throws Exception
+    {
+        // Root
+        //    Area 0..2
+        //       System 0..2
+        //            PV 0..9
+        final AlarmTreeRoot tree = new AlarmTreeRoot("Root", 0);
+        final List<AlarmTreePV> pvs = new ArrayList<AlarmTreePV>();
+        for (int a=0; a<3; ++a)
+        {
+            final AlarmTreeItem area = new AlarmTreeItem(tree, "Area" + a, 0);
+            for (int s=0; s<3; ++s)
+            {
+                final AlarmTreeItem system = new AlarmTreeItem(area, "System" + s, 0);
+                for (int p=0; p<10; ++p)
+                    pvs.add(new AlarmTreePV(system, "PV" + a + s + p, 0));
+            }
+        }
+        final AlarmTreeItem area1 = tree.getChild("Area1");
+        final AlarmTreeItem system1 = area1.getChild("System1");
+
+        // Within a batch, only the direct parent is updated
+        tree.startUpdates();
+        for (AlarmTreePV pv : pvs)
+            if (pv.getParent() == system1)
+                pv.setAlarmState(SeverityLevel.MINOR, "Low", SeverityLevel.MINOR, "Low",
+                                 "1", Timestamp.now());
+        final AlarmTreePV major = (AlarmTreePV) system1.getChild("PV115");
+        major.setAlarmState(SeverityLevel.MAJOR, "LoLo", SeverityLevel.MAJOR, "LoLo",
+                            "0", Timestamp.now());
+        assertEquals(SeverityLevel.MAJOR, system1.getSeverity());
+        assertEquals(10, system1.getAlarmChildCount());
+        assertEquals(SeverityLevel.OK, tree.getSeverity());
+        tree.endUpdates();
+
+        // After the batch, changes reached the root
+        assertEquals(SeverityLevel.MAJOR, area1.getSeverity());
+        assertEquals(SeverityLevel.MAJOR, tree.getSeverity());
+        assertEquals(SeverityLevel.MAJOR, tree.getCurrentSeverity());
+        assertEquals("LoLo", tree.getMessage());
+        assertEquals(1, tree.getAlarmChildCount());
+        assertEquals(area1, tree.getAlarmChild(0));
+
+        // Clearing the PV that provided the message selects another one
+        major.setAlarmState(SeverityLevel.OK, "OK", SeverityLevel.MINOR, "Low",
+                            "1", Timestamp.now());
+        assertEquals(SeverityLevel.MINOR, tree.getSeverity());
+        assertEquals(SeverityLevel.MINOR, tree.getCurrentSeverity());
+        assertEquals("Low", tree.getMessage());
+
+        // Clear all
+        tree.startUpdates();
+        for (AlarmTreePV pv : pvs)
+            pv.setAlarmState(SeverityLevel.OK, "OK", SeverityLevel.OK, "OK",
+                             "2", Timestamp.now());
+        tree.endUpdates();
+        assertEquals(SeverityLevel.OK, tree.getSeverity());
+        assertEquals(SeverityLevel.OK, system1.getSeverity());
+        assertEquals(0, system1.getAlarmChildCount());
+        assertEquals(0, tree.getAlarmChildCount());
+
+        // Removing a PV in alarm updates the parents
+        major.setAlarmState(SeverityLevel.INVALID, "Disconnected", SeverityLevel.INVALID, "Disconnected",
+                            "", Timestamp.now());
+        assertEquals(SeverityLevel.INVALID, tree.getSeverity());
+        major.detachFromParent();
+        assertEquals(SeverityLevel.OK, system1.getSeverity());
+        assertEquals(SeverityLevel.OK, tree.getSeverity());
+    }
+
+    /** Updates of a disabled PV must keep the counts of its parent consistent */
+    @Test
+    public void testDisabledUpdates() throws Exception
+    {
+        final AlarmTreeRoot tree = new AlarmTreeRoot("Root", 0);
+        final AlarmTreeItem system = new AlarmTreeItem(tree, "System", 0);
+        final AlarmTreePV a = new AlarmTreePV(system, "A", 0);
+        final AlarmTreePV b = new AlarmTreePV(system, "B", 0);
+        a.setAlarmState(SeverityLevel.MAJOR, "High", SeverityLevel.MAJOR, "High",
+                        "10", Timestamp.now());
+        assertEquals(SeverityLevel.MAJOR, tree.getSeverity());
+
+        // Disable as the client model does it
+        a.setEnabled(false);
+        system.maximizeSeverity();
+        assertEquals(SeverityLevel.OK, system.getSeverity());
+        assertEquals(SeverityLevel.OK, tree.getSeverity());
+        assertEquals(0, system.getAlarmChildCount());
+
+        // Update while disabled does not affect the parent
+        a.setAlarmState(SeverityLevel.MINOR, "Low", SeverityLevel.MINOR, "Low",
+                        "5", Timestamp.now());
+        assertEquals(SeverityLevel.OK, system.getSeverity());
+        assertEquals(0, system.getAlarmChildCount());
+
+        // .. nor the alarms of other PVs
+        b.setAlarmState(SeverityLevel.MAJOR, "High", SeverityLevel.MAJOR, "High",
+                        "10", Timestamp.now());
+        assertEquals(SeverityLevel.MAJOR, system.getSeverity());
+        assertEquals(SeverityLevel.MAJOR, tree.getSeverity());
+        assertEquals(1, system.getAlarmChildCount());
+        b.setAlarmState(SeverityLevel.OK, "OK", SeverityLevel.OK, "OK",
+                        "0", Timestamp.now());
+        assertEquals(SeverityLevel.OK, system.getSeverity());
+        assertEquals(SeverityLevel.OK, tree.getSeverity());
+
+        // Re-enable: Parent reflects the latest state of the PV
+        a.setEnabled(true);
+        system.maximizeSeverity();
+        assertEquals(SeverityLevel.MINOR, system.getSeverity());
+        assertEquals(SeverityLevel.MINOR, tree.getSeverity());
+        assertEquals("Low", tree.getMessage());
+        assertEquals(1, system.getAlarmChildCount());
+
+        // Incremental updates continue from the re-computed counts
+        a.setAlarmState(SeverityLevel.OK, "OK", SeverityLevel.OK, "OK",
+                        "0", Timestamp.now());
+        assertEquals(SeverityLevel.OK, system.getSeverity());
+        assertEquals(SeverityLevel.OK, tree.getSeverity());
+        assertEquals(0, tree.getAlarmChildCount());
+    }
+
+    /** Batched updates, re-computation and readers in parallel must not deadlock */
+    @Test(timeout=60000)
+    public void testConcurrentUpdates() throws Exception
+    {
+        final AlarmTreeRoot tree = new AlarmTreeRoot("Root", 0);
+        final List<AlarmTreePV> pvs = new ArrayList<AlarmTreePV>();
+        final List<AlarmTreeItem> systems = new ArrayList<AlarmTreeItem>();
+        for (int a=0; a<3; ++a)
+        {
+            final AlarmTreeItem area = new AlarmTreeItem(tree, "Area" + a, 0);
+            for (int s=0; s<3; ++s)
+            {
+                final AlarmTreeItem system = new AlarmTreeItem(area, "System" + s, 0);
+                systems.add(system);
+                for (int p=0; p<10; ++p)
+                    pvs.add(new AlarmTreePV(system, "PV" + a + s + p, 0));
+            }
+        }
+        final SeverityLevel levels[] = SeverityLevel.values();
+        final Thread threads[] = new Thread[]
+        {
+            new Thread("Batches")
+            {
+                @Override
+                public void run()
+                {
+                    for (int i=0; i<2000; ++i)
+                    {
+                        tree.startUpdates();
+                        for (int p=i%7; p<pvs.size(); p+=7)
+                        {
+                            final SeverityLevel level = levels[(i+p) % levels.length];
+                            pvs.get(p).setAlarmState(level, "X", level, "X", "1", Timestamp.now());
+                        }
+                        tree.endUpdates();
+                    }
+                }
+            },
+            new Thread("Updates")
+            {
+                @Override
+                public void run()
+                {
+                    for (int i=0; i<20000; ++i)
+                    {
+                        final SeverityLevel level = levels[i % levels.length];
+                        pvs.get(i % pvs.size()).setAlarmState(level, "Y", level, "Y", "2", Timestamp.now());
+                    }
+                }
+            },
+            new Thread("Maximize")
+            {
+                @Override
+                public void run()
+                {
+                    for (int i=0; i<20000; ++i)
+                        systems.get(i % systems.size()).maximizeSeverity();
+                }
+            },
+            new Thread("Readers")
+            {
+                @Override
+                public void run()
+                {
+                    for (int i=0; i<20000; ++i)
+                    {
+                        final AlarmTreeItem system = systems.get(i % systems.size());
+                        system.getAlarmChildCount();
+                        system.getParent().getAlarmChildCount();
+                        tree.getToolTipText();
+                    }
+                }
+            }
+        };
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+        {
+            thread.join(50000);
+            assertFalse(thread.getName() + " is blocked", thread.isAlive());
+        }
+
+        // Counts are consistent once all updates are done
+        for (AlarmTreePV pv : pvs)
+            pv.setAlarmState(SeverityLevel.OK, "OK", SeverityLevel.OK, "OK", "0", Timestamp.now());
+        assertEquals(SeverityLevel.OK, tree.getSeverity());
+        assertEquals(0, tree.getAlarmChildCount());
+        pvs.get(0).setAlarmState(SeverityLevel.MINOR, "Low", SeverityLevel.MINOR, "Low", "1", Timestamp.now());
+        assertEquals(SeverityLevel.MINOR, tree.getSeverity());
+        assertEquals(1, tree.getAlarmChildCount());
+    }
 }
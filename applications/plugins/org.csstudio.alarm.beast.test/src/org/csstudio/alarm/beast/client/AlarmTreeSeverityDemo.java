@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.alarm.beast.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.csstudio.alarm.beast.SeverityLevel;
+import org.epics.util.time.Timestamp;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Benchmark of severity propagation in a large alarm tree.
+ *
+ *  <p>Synthetic tree with 10 areas, 50 systems per area
+ *  and 100 PVs per system, i.e. 50000 PVs.
+ *  Compares single updates, batched updates,
+ *  and the full re-count of {@link AlarmTreeItem#maximizeSeverity()}.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class AlarmTreeSeverityDemo
+{
+    final private static int AREAS = 10, SYSTEMS = 50, PVS = 100;
+    final private static int UPDATES = 200000, BATCH = 1000, RUNS = 5;
+    final private static SeverityLevel LEVELS[] =
+    {
+        SeverityLevel.OK, SeverityLevel.MINOR, SeverityLevel.MAJOR, SeverityLevel.MAJOR_ACK
+    };
+
+    private AlarmTreeRoot tree;
+    final private List<AlarmTreePV> pvs = new ArrayList<AlarmTreePV>();
+
+    @Before
+    public void createTree()
+    {
+        tree = new AlarmTreeRoot("Root", 0);
+        pvs.clear();
+        for (int a=0; a<AREAS; ++a)
+        {
+            final AlarmTreeItem area = new AlarmTreeItem(tree, "Area" + a, 0);
+            for (int s=0; s<SYSTEMS; ++s)
+            {
+                final AlarmTreeItem system = new AlarmTreeItem(area, "System" + s, 0);
+                for (int p=0; p<PVS; ++p)
+                    pvs.add(new AlarmTreePV(system, "PV" + a + "_" + s + "_" + p, 0));
+            }
+        }
+        assertEquals(AREAS*SYSTEMS*PVS, tree.getLeafCount());
+    }
+
+    /** @param pv PV to update
+     *  @param random Random number source
+     */
+    private void update(final AlarmTreePV pv, final Random random)
+    {
+        final SeverityLevel level = LEVELS[random.nextInt(LEVELS.length)];
+        pv.setAlarmState(level, level.name(), level, level.name(), "", Timestamp.now());
+    }
+
+    /** Single updates, each percolating to the root */
+    private double runSingle()
+    {
+        final Random random = new Random(42);
+        final long start = System.nanoTime();
+        for (int i=0; i<UPDATES; ++i)
+            update(pvs.get(random.nextInt(pvs.size())), random);
+        return UPDATES / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /** Same updates, handled in batches */
+    private double runBatched()
+    {
+        final Random random = new Random(42);
+        final long start = System.nanoTime();
+        for (int i=0; i<UPDATES; i+=BATCH)
+        {
+            tree.startUpdates();
+            for (int b=0; b<BATCH; ++b)
+                update(pvs.get(random.nextInt(pvs.size())), random);
+            tree.endUpdates();
+        }
+        return UPDATES / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /** Single updates followed by full re-count of the parent, as done before severity counts */
+    private double runRecount()
+    {
+        final Random random = new Random(42);
+        final int updates = UPDATES / 10;
+        final long start = System.nanoTime();
+        for (int i=0; i<updates; ++i)
+        {
+            final AlarmTreePV pv = pvs.get(random.nextInt(pvs.size()));
+            update(pv, random);
+            pv.getParent().maximizeSeverity();
+        }
+        return updates / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /** Check that the root severity matches a full re-count */
+    private void checkRoot()
+    {
+        final SeverityLevel severity = tree.getSeverity();
+        final SeverityLevel current = tree.getCurrentSeverity();
+        for (int a=0; a<AREAS; ++a)
+            for (int s=0; s<SYSTEMS; ++s)
+                tree.getChild(a).getChild(s).maximizeSeverity();
+        assertEquals(severity, tree.getSeverity());
+        assertEquals(current, tree.getCurrentSeverity());
+    }
+
+    @Test
+    public void benchmark()
+    {
+        System.out.println("Tree with " + pvs.size() + " PVs");
+        for (int run=0; run<RUNS; ++run)
+        {
+            final double single = runSingle();
+            checkRoot();
+            final double batched = runBatched();
+            checkRoot();
+            final double recount = runRecount();
+            checkRoot();
+            System.out.format("Run %d: single %10.0f updates/sec, batched %10.0f updates/sec, re-count %10.0f updates/sec\n",
+                              run, single, batched, recount);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.alarm.beast;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Encoding of several PV states for one {@link JMSAlarmMessage#TEXT_STATE_BATCH}.
+ *  <p>
+ *  Each PV state is one line of tab-separated fields
+ *  in the order NAME, SEVERITY, STATUS, CURRENT_SEVERITY, CURRENT_STATUS,
+ *  VALUE, EVENTTIME, i.e. the same information as a
+ *  {@link JMSAlarmMessage#TEXT_STATE} message.
+ *  Tabs, newlines and backslashes within a field are escaped.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class AlarmStateBatch
+{
+    /** Index of fields in a decoded state */
+    final public static int NAME = 0,
+                            SEVERITY = 1,
+                            STATUS = 2,
+                            CURRENT_SEVERITY = 3,
+                            CURRENT_STATUS = 4,
+                            VALUE = 5,
+                            EVENTTIME = 6;
+
+    /** Number of fields per state */
+    final public static int FIELDS = 7;
+
+    /** Encoding of a <code>null</code> field */
+    final private static String NULL = "\\0";
+
+    final private StringBuilder buf = new StringBuilder();
+
+    private int count = 0;
+
+    /** Add the state of a PV
+     *  @param name PV name
+     *  @param severity Alarm severity
+     *  @param status Alarm message
+     *  @param current_severity Current severity of the PV
+     *  @param current_status Current message of the PV
+     *  @param value Value that triggered update, may be <code>null</code>
+     *  @param eventtime Formatted time stamp
+     */
+    public void add(final String name,
+            final SeverityLevel severity, final String status,
+            final SeverityLevel current_severity, final String current_status,
+            final String value, final String eventtime)
+    {
+        if (count > 0)
+            buf.append('\n');
+        append(name);
+        buf.append('\t');
+        append(severity.name());
+        buf.append('\t');
+        append(status);
+        buf.append('\t');
+        append(current_severity.name());
+        buf.append('\t');
+        append(current_status);
+        buf.append('\t');
+        append(value);
+        buf.append('\t');
+        append(eventtime);
+        ++count;
+    }
+
+    /** @param text Text to append with escaped tabs etc. */
+    private void append(final String text)
+    {
+        if (text == null)
+        {
+            buf.append(NULL);
+            return;
+        }
+        final int n = text.length();
+        for (int i=0; i<n; ++i)
+        {
+            final char c = text.charAt(i);
+            switch (c)
+            {
+            case '\\': buf.append("\\\\"); break;
+            case '\t': buf.append("\\t");  break;
+            case '\n': buf.append("\\n");  break;
+            case '\r': buf.append("\\r");  break;
+            default:   buf.append(c);
+            }
+        }
+    }
+
+    /** @return Number of PV states */
+    public int size()
+    {
+        return count;
+    }
+
+    /** @return Encoded PV states for the {@link JMSAlarmMessage#STATES} property */
+    public String getText()
+    {
+        return buf.toString();
+    }
+
+    /** Decode PV states
+     *  @param text Encoded PV states
+     *  @return List of states, each an array of {@link #FIELDS} strings
+     *  @throws Exception on error
+     */
+    public static List<String[]> parse(final String text) throws Exception
+    {
+        final List<String[]> states = new ArrayList<String[]>();
+        if (text == null  ||  text.isEmpty())
+            return states;
+        String[] fields = new String[FIELDS];
+        int field = 0;
+        final StringBuilder value = new StringBuilder();
+        boolean is_null = false;
+        final int n = text.length();
+        for (int i=0; i<=n; ++i)
+        {
+            final char c = i < n ? text.charAt(i) : '\n';
+            if (c == '\t'  ||  c == '\n')
+            {
+                if (field >= FIELDS)
+                    throw new Exception("Too many fields in alarm state batch");
+                fields[field++] = is_null ? null : value.toString();
+                value.setLength(0);
+                is_null = false;
+                if (c == '\n')
+                {
+                    if (field != FIELDS)
+                        throw new Exception("Missing fields in alarm state batch");
+                    states.add(fields);
+                    fields = new String[FIELDS];
+                    field = 0;
+                }
+            }
+            else if (c == '\\'  &&  i+1 < n)
+            {
+                final char esc = text.charAt(++i);
+                switch (esc)
+                {
+                case 't': value.append('\t'); break;
+                case 'n': value.append('\n'); break;
+                case 'r': value.append('\r'); break;
+                case '0': is_null = true;     break;
+                default:  value.append(esc);
+                }
+            }
+            else
+                value.append(c);
+        }
+        return states;
+    }
+}
@@ -54,6 +54,18 @@ public class JMSAlarmMessage
      */
     final public static String TEXT_STATE_MAINTENANCE = "STATE_MAINTENANCE";
 
+    /** Value for TEXT that indicates several state changes.
+     *  STATES will contain the state of each PV
+     *  @see AlarmStateBatch
+     */
+    final public static String TEXT_STATE_BATCH = "STATE_BATCH";
+
+    /** Value for TEXT that indicates several state changes while in maintenance mode.
+     *  STATES will contain the state of each PV
+     *  @see AlarmStateBatch
+     */
+    final public static String TEXT_STATE_BATCH_MAINTENANCE = "STATE_BATCH_MAINTENANCE";
+
     /** Value for TEXT that indicates a configuration change.
      *  NAME will contain path to item that was added, removed,
      *  reconfigured, or null for an overall change.
@@ -94,4 +106,16 @@ public class JMSAlarmMessage
 
     /** Value that caused the severity/message update */
     final public static String VALUE = "VALUE";
+
+    /** Message property that holds the encoded states of a TEXT_STATE_BATCH */
+    final public static String STATES = "STATES";
+
+    /** Property of TEXT_IDLE message with number of connected PVs */
+    final public static String PVS_CONNECTED = "PVS_CONNECTED";
+
+    /** Property of TEXT_IDLE message with number of PVs that are not yet connected */
+    final public static String PVS_PENDING = "PVS_PENDING";
+
+    /** Property of TEXT_IDLE message with number of PVs that failed to start */
+    final public static String PVS_FAILED = "PVS_FAILED";
 }
@@ -41,6 +41,8 @@ public class Preferences
     final public static String JMS_PASSWORD = "jms_password";
     final public static String JMS_IDLE_TIMEOUT = "jms_idle_timeout";
     final public static String PV_START_DELAY = "pv_start_delay";
+    final public static String CONFIG_SNAPSHOT_DIRECTORY = "config_snapshot_directory";
+    final public static String JMS_STATE_BATCH_PERIOD = "jms_state_batch_period";
     final public static String CONNECTION_GRACE_PERIOD = "connection_grace_period";
     final public static String COMMAND_DIRECTORY = "command_directory";
     final public static String COMMAND_CHECK_TIME = "command_check_time";
@@ -188,6 +190,34 @@ public class Preferences
         return service.getLong(Activator.ID, JMS_IDLE_TIMEOUT, 10, null);
     }
 
+    /** @return Period in ms for collecting state updates into one message, 0 to send each update */
+    public static long getJMS_StateBatchPeriod()
+    {
+        final IPreferencesService service = Platform.getPreferencesService();
+        return service.getLong(Activator.ID, JMS_STATE_BATCH_PERIOD, 0, null);
+    }
+
+    /** @return Directory for local snapshots of the alarm configuration,
+     *          or <code>null</code> to always read the full configuration from RDB
+     *  @throws Exception on error in the setting
+     */
+    public static String getConfigSnapshotDirectory() throws Exception
+    {
+        final String directory = getString(CONFIG_SNAPSHOT_DIRECTORY);
+        if (directory == null  ||  directory.trim().isEmpty())
+            return null;
+        try
+        {
+            return replaceProperties(directory.trim());
+        }
+        catch (Exception ex)
+        {
+            throw new Exception(
+                    "Error in config_snapshot_directory preference setting, "
+                    + ex.getMessage());
+        }
+    }
+
     /** @return Delay in ms between PV startups */
     public static long getPVStartDelay()
     {
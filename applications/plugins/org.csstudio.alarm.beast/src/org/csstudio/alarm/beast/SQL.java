@@ -30,6 +30,13 @@ public class SQL
 	final public String sel_auto_actions_by_id;
     final public String sel_items_by_parent;
     final public String sel_item_by_parent_and_name;
+    final public String sel_all_items;
+    final public String sel_all_guidance;
+    final public String sel_all_displays;
+    final public String sel_all_commands;
+    final public String sel_all_auto_actions;
+    final public String sel_all_pv_states;
+    final public String sel_config_version;
     final public String sel_last_item_id;
     final public String insert_item;
 
@@ -134,13 +141,54 @@ public class SQL
             " LEFT JOIN " + schema_prefix + "PV p ON p.COMPONENT_ID = t.COMPONENT_ID" +
             " WHERE t.PARENT_CMPNT_ID=? AND t.NAME=?";
 
-        sel_last_item_id =
-            "SELECT MAX(COMPONENT_ID) FROM " + schema_prefix + "ALARM_TREE";
-
+        // Selects all components and PVs of all configurations in one query.
+        // Columns 1-17 must match sel_items_by_parent.
+        sel_all_items =
+            //        1               2
+            "SELECT t.COMPONENT_ID, t.CONFIG_TIME," +
+            //  3               4        5              6
+            " p.COMPONENT_ID, p.DESCR, p.ENABLED_IND, p.ANNUNCIATE_IND," +
+            //  7            8        9              10        11
+            " p.LATCH_IND, p.DELAY, p.DELAY_COUNT, p.FILTER, p.CUR_SEVERITY_ID," +
+            //  12               13             14           15          16
+            " p.CUR_STATUS_ID, p.SEVERITY_ID, p.STATUS_ID, p.PV_VALUE, p.ALARM_TIME," +
+            //  17      18
+            " t.NAME, t.PARENT_CMPNT_ID" +
+            " FROM " + schema_prefix + "ALARM_TREE t" +
+            " LEFT JOIN " + schema_prefix + "PV p ON p.COMPONENT_ID = t.COMPONENT_ID" +
+            " ORDER BY t.COMPONENT_ID";
+        sel_all_guidance =
+            "select COMPONENT_ID, TITLE, DETAIL FROM " + schema_prefix + "GUIDANCE ORDER BY COMPONENT_ID, GUIDANCE_ORDER";
+        sel_all_displays =
+            "select COMPONENT_ID, TITLE, DETAIL FROM " + schema_prefix + "DISPLAY ORDER BY COMPONENT_ID, DISPLAY_ORDER";
+        sel_all_commands =
+            "select COMPONENT_ID, TITLE, DETAIL FROM " + schema_prefix + "COMMAND ORDER BY COMPONENT_ID, COMMAND_ORDER";
+        sel_all_auto_actions =
+            "select COMPONENT_ID, TITLE, DETAIL, DELAY FROM " + schema_prefix + "AUTOMATED_ACTION ORDER BY COMPONENT_ID, AUTO_ACTION_ORDER";
+        // Alarm state and enablement of all PVs, the part of the
+        // configuration that changes without updating the CONFIG_TIME
+        sel_all_pv_states =
+            //       1             2            3                4
+            "SELECT COMPONENT_ID, ENABLED_IND, CUR_SEVERITY_ID, CUR_STATUS_ID," +
+            //  5            6          7         8
+            " SEVERITY_ID, STATUS_ID, PV_VALUE, ALARM_TIME" +
+            " FROM " + schema_prefix + "PV";
         // Database might not provide a default config time, so include
-        // that in the INSERT statement
+        // that in the INSERT statement.
+        // All changes use the clock of the database for the CONFIG_TIME,
+        // so the sel_config_version doesn't depend on client clocks.
         final String now = rdb.getDialect() == Dialect.Oracle
                          ? "SYSDATE" : "NOW()";
+
+        // Changes whenever items are added, removed, moved, renamed or re-configured.
+        // Also reads the current time of the database, see AlarmConfigurationBulkReader
+        sel_config_version =
+            "SELECT COUNT(*), MAX(CONFIG_TIME), SUM(COMPONENT_ID), SUM(PARENT_CMPNT_ID), " + now +
+            " FROM " + schema_prefix + "ALARM_TREE";
+
+        sel_last_item_id =
+            "SELECT MAX(COMPONENT_ID) FROM " + schema_prefix + "ALARM_TREE";
+
         insert_item =
             "INSERT INTO " + schema_prefix +
             "ALARM_TREE(COMPONENT_ID, PARENT_CMPNT_ID, NAME, CONFIG_TIME)" +
@@ -164,7 +212,7 @@ public class SQL
                 "INSERT INTO " + schema_prefix + "AUTOMATED_ACTION(COMPONENT_ID, AUTO_ACTION_ORDER, TITLE, DETAIL, DELAY) VALUES(?,?,?,?,?)";
         
         update_item_config_time =
-            "UPDATE " + schema_prefix + "ALARM_TREE SET CONFIG_TIME=? WHERE COMPONENT_ID=?";
+            "UPDATE " + schema_prefix + "ALARM_TREE SET CONFIG_TIME=" + now + " WHERE COMPONENT_ID=?";
 
         delete_component_by_id = "DELETE FROM " + schema_prefix + "ALARM_TREE WHERE COMPONENT_ID = ?";
 
@@ -200,8 +248,9 @@ public class SQL
         update_pv_enablement =
             "UPDATE " + schema_prefix + "PV SET ENABLED_IND=?  WHERE COMPONENT_ID=?";
         delete_pv_by_id = "DELETE FROM " + schema_prefix + "PV WHERE COMPONENT_ID = ?";
-        rename_item = "UPDATE " + schema_prefix + "ALARM_TREE SET NAME=? WHERE COMPONENT_ID=?";
-        move_item = "UPDATE " + schema_prefix + "ALARM_TREE SET PARENT_CMPNT_ID=? WHERE COMPONENT_ID=?";
+        // Rename and move also update the CONFIG_TIME to change the sel_config_version
+        rename_item = "UPDATE " + schema_prefix + "ALARM_TREE SET NAME=?, CONFIG_TIME=" + now + " WHERE COMPONENT_ID=?";
+        move_item = "UPDATE " + schema_prefix + "ALARM_TREE SET PARENT_CMPNT_ID=?, CONFIG_TIME=" + now + " WHERE COMPONENT_ID=?";
 
         sel_severity =
             "SELECT SEVERITY_ID FROM " + schema_prefix + "SEVERITY WHERE NAME=?";
@@ -174,9 +174,19 @@ public class TreeItem
             parent = null;
         }
         p.removeChild(this);
+        p.childRemoved(this);
         return true;
     }
 
+    /** Called after a child item was detached from this item.
+     *  Default does nothing.
+     *  @param child Child that was removed
+     */
+    protected void childRemoved(final TreeItem child)
+    {
+        // NOP
+    }
+
     /** Remove child
      *  @param child
      *  @throws Error if child not known
@@ -18,7 +18,6 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import org.csstudio.alarm.beast.Activator;
@@ -26,7 +25,6 @@ import org.csstudio.alarm.beast.AlarmTreePath;
 import org.csstudio.alarm.beast.Messages;
 import org.csstudio.alarm.beast.SQL;
 import org.csstudio.alarm.beast.TimestampHelper;
-import org.csstudio.apputil.time.DelayCheck;
 import org.csstudio.platform.utility.rdb.RDBUtil;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.osgi.util.NLS;
@@ -64,6 +62,11 @@ public class AlarmConfiguration
 
     final private AlarmConfigurationReader config_reader;
 
+    final private AlarmConfigurationBulkReader bulk_reader;
+
+    /** Directory for configuration snapshot or <code>null</code> */
+    private String snapshot_directory = null;
+
     /** Root of the alarm tree.
      *  SYNC on this for access
      */
@@ -73,7 +76,7 @@ public class AlarmConfiguration
     private HashMap<String, AlarmTreePV> pvs = new HashMap<String, AlarmTreePV>();
 
     /** Re-used statements */
-    private PreparedStatement sel_items_by_parent_statement, sel_pv_by_id_statement;
+    private PreparedStatement sel_pv_by_id_statement;
 
 
     /** Initialize
@@ -106,6 +109,7 @@ public class AlarmConfiguration
         severity_mapping = new SeverityReader(rdb, sql);
         message_mapping = new MessageReader(rdb, sql);
         config_reader = new AlarmConfigurationReader(rdb, sql);
+        bulk_reader = new AlarmConfigurationBulkReader(rdb, sql, severity_mapping, message_mapping);
 
         // Re-enable auto-connect if that was requested
         if (auto_reconnect)
@@ -151,6 +155,20 @@ public class AlarmConfiguration
     }
 
 
+    /** Enable the use of a local configuration snapshot.
+     *
+     *  <p>When reading the configuration, a snapshot that matches the
+     *  configuration version in the RDB is used instead of reading the
+     *  complete configuration, and only the current PV states are read from the RDB.
+     *  Otherwise the configuration is read from the RDB and saved as a new snapshot.
+     *
+     *  @param directory Directory for snapshot files, <code>null</code> to disable
+     */
+    public void setSnapshotDirectory(final String directory)
+    {
+        snapshot_directory = directory;
+    }
+
     /** Read configuration.
      *  @param root_name Name of root element.
      *  @param create Set <code>true</code> to create new tree if nothing found
@@ -162,10 +180,9 @@ public class AlarmConfiguration
         if (auto_reconnect)
             rdb.setAutoReconnect(false);
         final AlarmTreeRoot new_config;
-        final DelayCheck monitor_update_delay = new DelayCheck(1, TimeUnit.SECONDS);
         try
         {
-            new_config = readAlarmTree(root_name, create, monitor, monitor_update_delay);
+            new_config = readAlarmTree(root_name, create, monitor);
             closeStatements();
         }
         finally
@@ -221,14 +238,13 @@ public class AlarmConfiguration
      *  @param root_name Name of root component
      *  @param create Create empty alarm tree?
      *  @param monitor Progress monitor
-     *  @param monitor_update_delay Delay for updates to monitor
      *  @return AlarmTreeRoot
      *  @throws Exception on error
      */
     @SuppressWarnings("nls")
     private AlarmTreeRoot readAlarmTree(final String root_name,
             final boolean create,
-            final IProgressMonitor monitor, final DelayCheck monitor_update_delay) throws Exception
+            final IProgressMonitor monitor) throws Exception
     {
         final Connection connection = rdb.getConnection();
         final PreparedStatement statement =
@@ -246,8 +262,25 @@ public class AlarmConfiguration
             }
             final int id = result.getInt(1);
             final AlarmTreeRoot root = createAlarmTreeRoot(id, root_name);
-            config_reader.readGuidanceDisplaysCommands(root);
-            readChildren(root, monitor, monitor_update_delay);
+            final String version = bulk_reader.readVersion();
+            if (snapshot_directory != null  &&  version != null)
+            {
+                final AlarmConfigurationSnapshot snapshot =
+                    new AlarmConfigurationSnapshot(snapshot_directory, root_name);
+                final HashMap<Integer, AlarmTreePV> pvs_by_id = new HashMap<Integer, AlarmTreePV>();
+                if (snapshot.read(root, version, pvs, pvs_by_id))
+                {
+                    Activator.getLogger().log(Level.INFO,
+                        "Using configuration snapshot {0}", snapshot.getFile());
+                    bulk_reader.readStates(pvs_by_id);
+                    return root;
+                }
+                bulk_reader.read(root, pvs, monitor);
+                if (! monitor.isCanceled())
+                    snapshot.write(root, version);
+            }
+            else
+                bulk_reader.read(root, pvs, monitor);
             return root;
         }
         finally
@@ -257,62 +290,6 @@ public class AlarmConfiguration
         }
     }
 
-    /** Read configuration for child elements
-     *  @param parent Parent node. Children get added to it.
-     *  @param monitor Progress monitor
-     *  @param monitor_update_delay Delay for updates to monitor
-     *  @throws Exception on error
-     */
-    private void readChildren(final AlarmTreeItem parent,
-            final IProgressMonitor monitor, final DelayCheck monitor_update_delay) throws Exception
-    {
-        if (sel_items_by_parent_statement == null)
-            sel_items_by_parent_statement =
-                rdb.getConnection().prepareStatement(sql.sel_items_by_parent);
-        sel_items_by_parent_statement.setInt(1, parent.getID());
-        final ResultSet result = sel_items_by_parent_statement.executeQuery();
-
-        final List<AlarmTreeItem> recurse_items = new ArrayList<AlarmTreeItem>();
-        while (result.next()  &&  !monitor.isCanceled())
-        {
-            final int id = result.getInt(1);
-            final String name = result.getString(17);
-            final Timestamp config_time = result.getTimestamp(2);
-            final AlarmTreeItem item;
-            // Check PV's ID. If null, this is a component, not PV
-            result.getInt(3);
-            if (result.wasNull())
-            {   // Component (area, system), not a PV
-                item = new AlarmTreeItem(parent, name, id);
-                recurse_items.add(item);
-            }
-            else
-            {
-                final AlarmTreePV pv = new AlarmTreePV(parent, name, id);
-                pvs.put(name, pv);
-                // Periodically update progress monitor
-                if (monitor_update_delay.expired())
-                {
-                    final int count = pvs.size();
-                    monitor.subTask(NLS.bind(Messages.ReadConfigProgressFmt, count));
-                }
-                config_reader.configurePVfromResult(pv, result, severity_mapping, message_mapping);
-                item = pv;
-            }
-            if (config_time != null)
-                item.setConfigTime(TimestampHelper.toEPICSTime(config_time));
-            config_reader.readGuidanceDisplaysCommands(item);
-        }
-        result.close();
-
-        // Recurse to children
-        // Cannot do that inside the above while() because that would reuse
-        // the statement of the current ResultSet
-        for (AlarmTreeItem item : recurse_items)
-            readChildren(item, monitor, monitor_update_delay);
-        recurse_items.clear();
-    }
-
     /** Add a component to the model and RDB
      *  @param parent AlarmTreeRoot or ..Component under which to add the component
      *  @param name Name of the new component
@@ -537,12 +514,12 @@ public class AlarmConfiguration
         final PreparedStatement    update_item_config_time = connection.prepareStatement(sql.update_item_config_time);
         try
         {
-            final Timestamp config_time = new Timestamp(new Date().getTime());
-            update_item_config_time.setTimestamp(1, config_time);
-            update_item_config_time.setInt(2, item.getID());
+            // RDB sets the config time from its own clock,
+            // the item shows the local time of the change
+            update_item_config_time.setInt(1, item.getID());
             update_item_config_time.executeUpdate();
             connection.commit();
-            item.setConfigTime(TimestampHelper.toEPICSTime(config_time));
+            item.setConfigTime(TimestampHelper.toEPICSTime(new Timestamp(new Date().getTime())));
         }
         catch (SQLException ex)
         {
@@ -936,11 +913,6 @@ public class AlarmConfiguration
     {
         try
         {
-            if (sel_items_by_parent_statement != null)
-            {
-                sel_items_by_parent_statement.close();
-                sel_items_by_parent_statement = null;
-            }
             if (sel_pv_by_id_statement != null)
             {
                 sel_pv_by_id_statement.close();
@@ -0,0 +1,440 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.alarm.beast.client;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.csstudio.alarm.beast.Messages;
+import org.csstudio.alarm.beast.SQL;
+import org.csstudio.alarm.beast.SeverityLevel;
+import org.csstudio.alarm.beast.TimestampHelper;
+import org.csstudio.apputil.time.DelayCheck;
+import org.csstudio.platform.utility.rdb.RDBUtil;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.osgi.util.NLS;
+
+/** Reads the complete alarm configuration with one query per table.
+ *
+ *  <p>Reading the configuration item by item requires one query for
+ *  each component plus four queries (guidance, displays, commands, automated actions)
+ *  for each item.
+ *  With many thousand PVs, those round trips dominate the time to read the configuration.
+ *  This reader fetches each table once with a large fetch size and
+ *  assembles the tree in memory.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class AlarmConfigurationBulkReader
+{
+    /** Number of rows to fetch per round trip.
+     *  JDBC drivers default to as little as 10 rows (Oracle)
+     */
+    final private static int FETCH_SIZE = 5000;
+
+    /** RDB Connection */
+    final private RDBUtil rdb;
+
+    /** SQL strings */
+    final private SQL sql;
+
+    /** Mapping of severity IDs to strings */
+    final private SeverityReader severity_mapping;
+
+    /** Mapping of message IDs to strings */
+    final private MessageReader message_mapping;
+
+    /** Row of the alarm tree table, component or PV */
+    private static class ItemInfo
+    {
+        int id;
+        String name;
+        Timestamp config_time;
+        /** <code>null</code> for component */
+        PVInfo pv;
+    }
+
+    /** Configuration and state of a PV */
+    private static class PVInfo
+    {
+        String description;
+        boolean enabled, annunciating, latching;
+        int delay, count;
+        String filter;
+        SeverityLevel current_severity, severity;
+        String current_message, message, value;
+        /** <code>null</code> if PV never had an alarm state */
+        org.epics.util.time.Timestamp timestamp;
+    }
+
+    /** Initialize
+     *  @param rdb RDB connection
+     *  @param sql SQL strings
+     *  @param severity_mapping Mapping of severity IDs
+     *  @param message_mapping Mapping of message IDs
+     */
+    public AlarmConfigurationBulkReader(final RDBUtil rdb, final SQL sql,
+            final SeverityReader severity_mapping, final MessageReader message_mapping)
+    {
+        this.rdb = rdb;
+        this.sql = sql;
+        this.severity_mapping = severity_mapping;
+        this.message_mapping = message_mapping;
+    }
+
+    /** Read the version stamp of the configuration.
+     *
+     *  <p>Changes whenever items are added, removed, renamed, moved
+     *  or re-configured, but not for alarm state updates.
+     *  <p>The stamp includes the latest CONFIG_TIME, which the RDB sets
+     *  from its own clock. A change within the same tick of that clock
+     *  as the latest change might not alter the stamp,
+     *  so no stamp is provided until the clock of the RDB has advanced.
+     *  @return Version stamp of all configurations in the RDB,
+     *          or <code>null</code> if the configuration was just changed
+     *  @throws Exception on error
+     */
+    public String readVersion() throws Exception
+    {
+        final PreparedStatement statement =
+            rdb.getConnection().prepareStatement(sql.sel_config_version);
+        try
+        {
+            final ResultSet result = statement.executeQuery();
+            if (! result.next())
+                throw new Exception("Cannot read configuration version");
+            final long count = result.getLong(1);
+            final Timestamp time = result.getTimestamp(2);
+            final long id_sum = result.getLong(3);
+            final long parent_sum = result.getLong(4);
+            final Timestamp rdb_time = result.getTimestamp(5);
+            if (time != null  &&  (rdb_time == null  ||  ! rdb_time.after(time)))
+                return null;
+            return count + "/" + (time == null ? 0 : time.getTime()) + "/" + id_sum + "/" + parent_sum;
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    /** Read the configuration below the root
+     *  @param root Root item, children get added to it
+     *  @param pvs Map that will be populated with the PVs by name
+     *  @param monitor Progress monitor
+     *  @throws Exception on error
+     */
+    public void read(final AlarmTreeRoot root, final Map<String, AlarmTreePV> pvs,
+            final IProgressMonitor monitor) throws Exception
+    {
+        // Items of all configurations, grouped by parent ID
+        final Map<Integer, List<ItemInfo>> children = readItems(monitor);
+        if (monitor.isCanceled())
+            return;
+        final Map<Integer, List<GDCDataStructure>> guidance = readGDC(sql.sel_all_guidance);
+        final Map<Integer, List<GDCDataStructure>> displays = readGDC(sql.sel_all_displays);
+        final Map<Integer, List<GDCDataStructure>> commands = readGDC(sql.sel_all_commands);
+        final Map<Integer, List<AADataStructure>> actions = readAutomatedActions();
+
+        configureItem(root, guidance, displays, commands, actions);
+        final DelayCheck monitor_update_delay = new DelayCheck(1, TimeUnit.SECONDS);
+        addChildren(root, children, guidance, displays, commands, actions,
+                    pvs, monitor, monitor_update_delay);
+    }
+
+    /** Read the state of all PVs.
+     *
+     *  <p>Used to update a configuration that was loaded from a snapshot
+     *  with the alarm state and enablement,
+     *  which change without affecting the configuration version.
+     *  @param pvs PVs to update, by ID
+     *  @throws Exception on error
+     */
+    public void readStates(final Map<Integer, AlarmTreePV> pvs) throws Exception
+    {
+        final PreparedStatement statement =
+            rdb.getConnection().prepareStatement(sql.sel_all_pv_states);
+        try
+        {
+            statement.setFetchSize(FETCH_SIZE);
+            final ResultSet result = statement.executeQuery();
+            while (result.next())
+            {
+                final AlarmTreePV pv = pvs.get(result.getInt(1));
+                if (pv == null)
+                    continue; // PV of other configuration
+                pv.setEnabled(result.getBoolean(2));
+                final SeverityLevel current_severity = getSeverity(result, 3);
+                final String current_message = getMessage(result, 4);
+                final SeverityLevel severity = getSeverity(result, 5);
+                final String message = getMessage(result, 6);
+                final String value = result.getString(7);
+                final Timestamp sql_time = result.getTimestamp(8);
+                if (! result.wasNull())
+                    pv.setAlarmState(current_severity, current_message, severity, message,
+                                     value, TimestampHelper.toEPICSTime(sql_time));
+            }
+            result.close();
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    /** @param result Result
+     *  @param column Column with severity ID
+     *  @return Severity, OK for <code>null</code>
+     *  @throws Exception on error
+     */
+    private SeverityLevel getSeverity(final ResultSet result, final int column) throws Exception
+    {
+        final int id = result.getInt(column);
+        return result.wasNull() ? SeverityLevel.OK : severity_mapping.getSeverity(id);
+    }
+
+    /** @param result Result
+     *  @param column Column with message ID
+     *  @return Message, "" for <code>null</code>
+     *  @throws Exception on error
+     */
+    private String getMessage(final ResultSet result, final int column) throws Exception
+    {
+        final int id = result.getInt(column);
+        return result.wasNull() ? "" : message_mapping.getMessage(id);
+    }
+
+    /** Read all alarm tree items
+     *  @param monitor Progress monitor
+     *  @return Items by parent ID, ordered by item ID
+     *  @throws Exception on error
+     */
+    private Map<Integer, List<ItemInfo>> readItems(final IProgressMonitor monitor) throws Exception
+    {
+        final Map<Integer, List<ItemInfo>> children = new HashMap<Integer, List<ItemInfo>>();
+        final PreparedStatement statement =
+            rdb.getConnection().prepareStatement(sql.sel_all_items);
+        try
+        {
+            statement.setFetchSize(FETCH_SIZE);
+            final ResultSet result = statement.executeQuery();
+            while (result.next()  &&  !monitor.isCanceled())
+            {
+                final int parent_id = result.getInt(18);
+                if (result.wasNull())
+                    continue; // Root of a configuration
+                final ItemInfo item = new ItemInfo();
+                item.id = result.getInt(1);
+                item.config_time = result.getTimestamp(2);
+                item.name = result.getString(17);
+                // Check PV's ID. If null, this is a component, not PV
+                result.getInt(3);
+                if (! result.wasNull())
+                {
+                    final PVInfo pv = new PVInfo();
+                    pv.description = result.getString(4);
+                    pv.enabled = result.getBoolean(5);
+                    pv.annunciating = result.getBoolean(6);
+                    pv.latching = result.getBoolean(7);
+                    pv.delay = result.getInt(8);
+                    pv.count = result.getInt(9);
+                    pv.filter = result.getString(10);
+                    pv.current_severity = getSeverity(result, 11);
+                    pv.current_message = getMessage(result, 12);
+                    pv.severity = getSeverity(result, 13);
+                    pv.message = getMessage(result, 14);
+                    pv.value = result.getString(15);
+                    final Timestamp sql_time = result.getTimestamp(16);
+                    if (! result.wasNull())
+                        pv.timestamp = TimestampHelper.toEPICSTime(sql_time);
+                    item.pv = pv;
+                }
+                List<ItemInfo> siblings = children.get(parent_id);
+                if (siblings == null)
+                {
+                    siblings = new ArrayList<ItemInfo>();
+                    children.put(parent_id, siblings);
+                }
+                siblings.add(item);
+            }
+            result.close();
+        }
+        finally
+        {
+            statement.close();
+        }
+        return children;
+    }
+
+    /** Read guidance, displays or commands of all items
+     *  @param select One of the sel_all_... statements for guidance, displays, commands
+     *  @return Entries by item ID
+     *  @throws Exception on error
+     */
+    private Map<Integer, List<GDCDataStructure>> readGDC(final String select) throws Exception
+    {
+        final Map<Integer, List<GDCDataStructure>> gdc = new HashMap<Integer, List<GDCDataStructure>>();
+        final PreparedStatement statement = rdb.getConnection().prepareStatement(select);
+        try
+        {
+            statement.setFetchSize(FETCH_SIZE);
+            final ResultSet result = statement.executeQuery();
+            while (result.next())
+            {
+                final int id = result.getInt(1);
+                List<GDCDataStructure> list = gdc.get(id);
+                if (list == null)
+                {
+                    list = new ArrayList<GDCDataStructure>();
+                    gdc.put(id, list);
+                }
+                list.add(new GDCDataStructure(result.getString(2), result.getString(3)));
+            }
+            result.close();
+        }
+        finally
+        {
+            statement.close();
+        }
+        return gdc;
+    }
+
+    /** Read automated actions of all items
+     *  @return Actions by item ID
+     *  @throws Exception on error
+     */
+    private Map<Integer, List<AADataStructure>> readAutomatedActions() throws Exception
+    {
+        final Map<Integer, List<AADataStructure>> actions = new HashMap<Integer, List<AADataStructure>>();
+        final PreparedStatement statement =
+            rdb.getConnection().prepareStatement(sql.sel_all_auto_actions);
+        try
+        {
+            statement.setFetchSize(FETCH_SIZE);
+            final ResultSet result = statement.executeQuery();
+            while (result.next())
+            {
+                final int id = result.getInt(1);
+                List<AADataStructure> list = actions.get(id);
+                if (list == null)
+                {
+                    list = new ArrayList<AADataStructure>();
+                    actions.put(id, list);
+                }
+                list.add(new AADataStructure(result.getString(2), result.getString(3), result.getInt(4)));
+            }
+            result.close();
+        }
+        finally
+        {
+            statement.close();
+        }
+        return actions;
+    }
+
+    /** Set guidance, displays, commands and automated actions of an item
+     *  @param item Item to configure
+     *  @param guidance Guidance by item ID
+     *  @param displays Displays by item ID
+     *  @param commands Commands by item ID
+     *  @param actions Automated actions by item ID
+     */
+    private void configureItem(final AlarmTreeItem item,
+            final Map<Integer, List<GDCDataStructure>> guidance,
+            final Map<Integer, List<GDCDataStructure>> displays,
+            final Map<Integer, List<GDCDataStructure>> commands,
+            final Map<Integer, List<AADataStructure>> actions)
+    {
+        final int id = item.getID();
+        item.setGuidance(toArray(guidance.get(id)));
+        item.setDisplays(toArray(displays.get(id)));
+        item.setCommands(toArray(commands.get(id)));
+        final List<AADataStructure> item_actions = actions.get(id);
+        item.setAutomatedActions(item_actions == null
+                ? new AADataStructure[0]
+                : item_actions.toArray(new AADataStructure[item_actions.size()]));
+    }
+
+    /** @param list List or <code>null</code>
+     *  @return Array, never <code>null</code>
+     */
+    private static GDCDataStructure[] toArray(final List<GDCDataStructure> list)
+    {
+        if (list == null)
+            return new GDCDataStructure[0];
+        return list.toArray(new GDCDataStructure[list.size()]);
+    }
+
+    /** Recursively add child items
+     *  @param parent Parent item
+     *  @param children Items by parent ID
+     *  @param guidance Guidance by item ID
+     *  @param displays Displays by item ID
+     *  @param commands Commands by item ID
+     *  @param actions Automated actions by item ID
+     *  @param pvs Map of PVs by name to update
+     *  @param monitor Progress monitor
+     *  @param monitor_update_delay Delay for updates to monitor
+     *  @throws Exception on error
+     */
+    private void addChildren(final AlarmTreeItem parent,
+            final Map<Integer, List<ItemInfo>> children,
+            final Map<Integer, List<GDCDataStructure>> guidance,
+            final Map<Integer, List<GDCDataStructure>> displays,
+            final Map<Integer, List<GDCDataStructure>> commands,
+            final Map<Integer, List<AADataStructure>> actions,
+            final Map<String, AlarmTreePV> pvs,
+            final IProgressMonitor monitor, final DelayCheck monitor_update_delay) throws Exception
+    {
+        // Remove handled entries so that a loop in the RDB hierarchy
+        // cannot cause endless recursion
+        final List<ItemInfo> infos = children.remove(parent.getID());
+        if (infos == null)
+            return;
+        for (ItemInfo info : infos)
+        {
+            if (monitor.isCanceled())
+                return;
+            final AlarmTreeItem item;
+            if (info.pv == null)
+                item = new AlarmTreeItem(parent, info.name, info.id);
+            else
+            {
+                final AlarmTreePV pv = new AlarmTreePV(parent, info.name, info.id);
+                pvs.put(info.name, pv);
+                // Periodically update progress monitor
+                if (monitor_update_delay.expired())
+                    monitor.subTask(NLS.bind(Messages.ReadConfigProgressFmt, pvs.size()));
+                pv.setDescription(info.pv.description);
+                pv.setEnabled(info.pv.enabled);
+                pv.setAnnunciating(info.pv.annunciating);
+                pv.setLatching(info.pv.latching);
+                pv.setDelay(info.pv.delay);
+                pv.setCount(info.pv.count);
+                pv.setFilter(info.pv.filter);
+                if (info.pv.timestamp != null)
+                    pv.setAlarmState(info.pv.current_severity, info.pv.current_message,
+                                     info.pv.severity, info.pv.message,
+                                     info.pv.value, info.pv.timestamp);
+                item = pv;
+            }
+            if (info.config_time != null)
+                item.setConfigTime(TimestampHelper.toEPICSTime(info.config_time));
+            configureItem(item, guidance, displays, commands, actions);
+            addChildren(item, children, guidance, displays, commands, actions,
+                        pvs, monitor, monitor_update_delay);
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.alarm.beast.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.csstudio.alarm.beast.Activator;
+import org.epics.util.time.Timestamp;
+
+/** Local file snapshot of an alarm configuration.
+ *
+ *  <p>Holds the configuration (hierarchy, guidance, displays, commands,
+ *  automated actions, PV settings) but no alarm state.
+ *  The snapshot is tagged with the configuration version of the RDB,
+ *  see {@link AlarmConfigurationBulkReader#readVersion()},
+ *  and only used when that version still matches.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class AlarmConfigurationSnapshot
+{
+    /** File format identifier */
+    final private static int MAGIC = 0x42454153;
+
+    /** File format version */
+    final private static int FORMAT = 1;
+
+    final private static Charset UTF8 = Charset.forName("UTF-8");
+
+    final private static byte COMPONENT = 0, PV = 1;
+
+    /** Snapshot file */
+    final private File file;
+
+    /** Initialize
+     *  @param directory Directory for snapshot files
+     *  @param root_name Name of the configuration
+     */
+    public AlarmConfigurationSnapshot(final String directory, final String root_name)
+    {
+        file = new File(directory, root_name.replaceAll("[^A-Za-z0-9_\\-]", "_") + ".snapshot");
+    }
+
+    /** @return Snapshot file */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /** Read configuration from snapshot
+     *  @param root Root of configuration, must be empty
+     *  @param version Current configuration version
+     *  @param pvs Map that will be populated with the PVs by name
+     *  @param pvs_by_id Map that will be populated with the PVs by ID
+     *  @return <code>true</code> if the snapshot was read,
+     *          <code>false</code> if there was no matching snapshot
+     *          and the root is unchanged
+     */
+    public boolean read(final AlarmTreeRoot root, final String version,
+            final Map<String, AlarmTreePV> pvs, final Map<Integer, AlarmTreePV> pvs_by_id)
+    {
+        if (! file.canRead())
+            return false;
+        try
+        {
+            final DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+            try
+            {
+                if (in.readInt() != MAGIC  ||  in.readInt() != FORMAT)
+                    throw new IOException("Unknown file format");
+                final String snapshot_version = in.readUTF();
+                final String name = in.readUTF();
+                final int id = in.readInt();
+                if (! version.equals(snapshot_version)  ||
+                    ! root.getName().equals(name)  ||  root.getID() != id)
+                {
+                    Activator.getLogger().log(Level.FINE,
+                        "Configuration snapshot {0} is outdated", file);
+                    return false;
+                }
+                readItemConfig(in, root);
+                readChildren(in, root, pvs, pvs_by_id);
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (Exception ex)
+        {
+            Activator.getLogger().log(Level.WARNING,
+                "Cannot read configuration snapshot " + file, ex);
+            // Discard partially read tree
+            while (root.getChildCount() > 0)
+                root.getChild(0).detachFromParent();
+            pvs.clear();
+            pvs_by_id.clear();
+            return false;
+        }
+        return true;
+    }
+
+    /** Write configuration to snapshot.
+     *
+     *  <p>Errors are logged, but otherwise ignored,
+     *  since the RDB remains the source of the configuration.
+     *  @param root Root of configuration
+     *  @param version Configuration version of the RDB when the configuration was read
+     */
+    public void write(final AlarmTreeRoot root, final String version)
+    {
+        final File tmp = new File(file.getPath() + ".tmp");
+        try
+        {
+            final File directory = file.getParentFile();
+            if (directory != null  &&  ! directory.isDirectory()  &&  ! directory.mkdirs())
+                throw new IOException("Cannot create directory " + directory);
+            final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))));
+            try
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeUTF(version);
+                out.writeUTF(root.getName());
+                out.writeInt(root.getID());
+                writeItemConfig(out, root);
+                writeChildren(out, root);
+            }
+            finally
+            {
+                out.close();
+            }
+            // Replace snapshot only once it has been written completely
+            if (file.exists()  &&  ! file.delete())
+                throw new IOException("Cannot replace " + file);
+            if (! tmp.renameTo(file))
+                throw new IOException("Cannot rename " + tmp + " to " + file);
+        }
+        catch (Exception ex)
+        {
+            Activator.getLogger().log(Level.WARNING,
+                "Cannot write configuration snapshot " + file, ex);
+            tmp.delete();
+        }
+    }
+
+    /** Write child items
+     *  @param out Output
+     *  @param parent Parent item
+     *  @throws IOException on error
+     */
+    private void writeChildren(final DataOutputStream out, final AlarmTreeItem parent) throws IOException
+    {
+        final int count = parent.getChildCount();
+        out.writeInt(count);
+        for (int i=0; i<count; ++i)
+        {
+            final AlarmTreeItem item = parent.getChild(i);
+            out.writeInt(item.getID());
+            writeString(out, item.getName());
+            if (item instanceof AlarmTreePV)
+            {
+                final AlarmTreePV pv = (AlarmTreePV) item;
+                out.writeByte(PV);
+                writeString(out, pv.getDescription());
+                out.writeBoolean(pv.isEnabled());
+                out.writeBoolean(pv.isAnnunciating());
+                out.writeBoolean(pv.isLatching());
+                out.writeInt(pv.getDelay());
+                out.writeInt(pv.getCount());
+                writeString(out, pv.getFilter());
+            }
+            else
+                out.writeByte(COMPONENT);
+            writeItemConfig(out, item);
+            writeChildren(out, item);
+        }
+    }
+
+    /** Read child items
+     *  @param in Input
+     *  @param parent Parent item
+     *  @param pvs Map of PVs by name to update
+     *  @param pvs_by_id Map of PVs by ID to update
+     *  @throws IOException on error
+     */
+    private void readChildren(final DataInputStream in, final AlarmTreeItem parent,
+            final Map<String, AlarmTreePV> pvs, final Map<Integer, AlarmTreePV> pvs_by_id) throws IOException
+    {
+        final int count = in.readInt();
+        for (int i=0; i<count; ++i)
+        {
+            final int id = in.readInt();
+            final String name = readString(in);
+            final byte type = in.readByte();
+            final AlarmTreeItem item;
+            if (type == PV)
+            {
+                final AlarmTreePV pv = new AlarmTreePV(parent, name, id);
+                pv.setDescription(readString(in));
+                pv.setEnabled(in.readBoolean());
+                pv.setAnnunciating(in.readBoolean());
+                pv.setLatching(in.readBoolean());
+                pv.setDelay(in.readInt());
+                pv.setCount(in.readInt());
+                pv.setFilter(readString(in));
+                pvs.put(name, pv);
+                pvs_by_id.put(id, pv);
+                item = pv;
+            }
+            else if (type == COMPONENT)
+                item = new AlarmTreeItem(parent, name, id);
+            else
+                throw new IOException("Unknown item type " + type);
+            readItemConfig(in, item);
+            readChildren(in, item, pvs, pvs_by_id);
+        }
+    }
+
+    /** Write config time, guidance, displays, commands, automated actions
+     *  @param out Output
+     *  @param item Item
+     *  @throws IOException on error
+     */
+    private void writeItemConfig(final DataOutputStream out, final AlarmTreeItem item) throws IOException
+    {
+        final Timestamp config_time = item.getConfigTimestamp();
+        if (config_time == null)
+            out.writeBoolean(false);
+        else
+        {
+            out.writeBoolean(true);
+            out.writeLong(config_time.getSec());
+            out.writeInt(config_time.getNanoSec());
+        }
+        writeGDC(out, item.getGuidance());
+        writeGDC(out, item.getDisplays());
+        writeGDC(out, item.getCommands());
+        final AADataStructure[] actions = item.getAutomatedActions();
+        out.writeInt(actions.length);
+        for (AADataStructure action : actions)
+        {
+            writeString(out, action.getTitle());
+            writeString(out, action.getDetails());
+            out.writeInt(action.getDelay());
+        }
+    }
+
+    /** Read config time, guidance, displays, commands, automated actions
+     *  @param in Input
+     *  @param item Item to configure
+     *  @throws IOException on error
+     */
+    private void readItemConfig(final DataInputStream in, final AlarmTreeItem item) throws IOException
+    {
+        if (in.readBoolean())
+        {
+            final long secs = in.readLong();
+            item.setConfigTime(Timestamp.of(secs, in.readInt()));
+        }
+        item.setGuidance(readGDC(in));
+        item.setDisplays(readGDC(in));
+        item.setCommands(readGDC(in));
+        final AADataStructure[] actions = new AADataStructure[in.readInt()];
+        for (int i=0; i<actions.length; ++i)
+        {
+            final String title = readString(in);
+            final String details = readString(in);
+            actions[i] = new AADataStructure(title, details, in.readInt());
+        }
+        item.setAutomatedActions(actions);
+    }
+
+    /** @param out Output
+     *  @param gdc Guidance, displays or commands to write
+     *  @throws IOException on error
+     */
+    private void writeGDC(final DataOutputStream out, final GDCDataStructure[] gdc) throws IOException
+    {
+        out.writeInt(gdc.length);
+        for (GDCDataStructure entry : gdc)
+        {
+            writeString(out, entry.getTitle());
+            writeString(out, entry.getDetails());
+        }
+    }
+
+    /** @param in Input
+     *  @return Guidance, displays or commands
+     *  @throws IOException on error
+     */
+    private GDCDataStructure[] readGDC(final DataInputStream in) throws IOException
+    {
+        final GDCDataStructure[] gdc = new GDCDataStructure[in.readInt()];
+        for (int i=0; i<gdc.length; ++i)
+        {
+            final String title = readString(in);
+            gdc[i] = new GDCDataStructure(title, readString(in));
+        }
+        return gdc;
+    }
+
+    /** Write string.
+     *  Unlike writeUTF, supports <code>null</code> and strings beyond 64k
+     *  @param out Output
+     *  @param text Text or <code>null</code>
+     *  @throws IOException on error
+     */
+    private void writeString(final DataOutputStream out, final String text) throws IOException
+    {
+        if (text == null)
+        {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = text.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** @param in Input
+     *  @return Text or <code>null</code>
+     *  @throws IOException on error
+     */
+    private String readString(final DataInputStream in) throws IOException
+    {
+        final int length = in.readInt();
+        if (length < 0)
+            return null;
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+}
@@ -38,9 +38,42 @@ import org.epics.util.time.Timestamp;
  */
 public class AlarmTreeItem extends TreeItem
 {
-    /** Sub-tree elements of this item which are currently in alarm */
+    /** Severity levels by ordinal */
+    final private static SeverityLevel LEVELS[] = SeverityLevel.values();
+
+    /** Sub-tree elements of this item which are currently in alarm.
+     *  Rebuilt on access when <code>alarm_children_valid</code> is cleared.
+     */
     final private List<AlarmTreeItem> alarm_children = new ArrayList<AlarmTreeItem>();
 
+    /** Is <code>alarm_children</code> up to date? */
+    private boolean alarm_children_valid = true;
+
+    /** Number of child items per current severity, indexed by {@link SeverityLevel#ordinal()}.
+     *  Children in OK state are not counted.
+     */
+    final private int current_counts[] = new int[LEVELS.length];
+
+    /** Number of child items per latched severity, indexed by {@link SeverityLevel#ordinal()}.
+     *  Children in OK state are not counted.
+     */
+    final private int severity_counts[] = new int[LEVELS.length];
+
+    /** Child item that provides the message of this item, or <code>null</code> */
+    private AlarmTreeItem message_child = null;
+
+    /** Has this item changed during a batch of updates
+     *  without informing the parent, yet?
+     *  @see AlarmTreeRoot#startUpdates()
+     */
+    private boolean pending = false;
+
+    /** Current severity that the parent knows while <code>pending</code> */
+    private SeverityLevel pending_current_severity;
+
+    /** Severity that the parent knows while <code>pending</code> */
+    private SeverityLevel pending_severity;
+
     // Using arrays for guidance, ..., commands to be thread-safe
 
     /** Guidance messages */
@@ -55,14 +88,20 @@ public class AlarmTreeItem extends TreeItem
     /** Automated Actions */
     private AADataStructure automated_actions[] = new AADataStructure[0];
 
+    // Alarm state is volatile so that parents can read it without locking
+    // the child, which would invert the lock order of updates
+
     /** Current severity of this item/subtree */
-    private SeverityLevel current_severity = SeverityLevel.OK;
+    private volatile SeverityLevel current_severity = SeverityLevel.OK;
 
     /** Highest/latched alarm severity of this item/subtree */
-    private SeverityLevel severity = SeverityLevel.OK;
+    private volatile SeverityLevel severity = SeverityLevel.OK;
 
     /**  Highest/latched alarm message of this item/subtree */
-    private String message = SeverityLevel.OK.getDisplayName();
+    private volatile String message = SeverityLevel.OK.getDisplayName();
+
+    /** Number of parent items between this item and the root */
+    final private int depth;
 
     /** Time of last configuration change */
     private Timestamp config_time;
@@ -76,6 +115,7 @@ public class AlarmTreeItem extends TreeItem
     public AlarmTreeItem(final AlarmTreeItem parent, final String name, final int id)
     {
         super(parent, name, id);
+        depth = parent == null ? 0 : parent.depth + 1;
     }
 
     /** @return Text (multi-line) that can be used as a tool-tip to
@@ -217,6 +257,12 @@ public class AlarmTreeItem extends TreeItem
         return TimestampHelper.format(config_time);
     }
 
+    /** @return Time of last configuration change or <code>null</code> */
+    synchronized Timestamp getConfigTimestamp()
+    {
+        return config_time;
+    }
+
     /** @param config_time Time of last configuration change */
     synchronized void setConfigTime(final Timestamp config_time)
     {
@@ -228,6 +274,7 @@ public class AlarmTreeItem extends TreeItem
      */
     public synchronized int getAlarmChildCount()
     {
+        updateAlarmChildren();
         return alarm_children.size();
     }
 
@@ -237,28 +284,46 @@ public class AlarmTreeItem extends TreeItem
      */
     public synchronized AlarmTreeItem getAlarmChild(final int index)
     {
+        updateAlarmChildren();
         return alarm_children.get(index);
     }
 
+    /** Rebuild list of child elements in alarm if necessary */
+    private void updateAlarmChildren()
+    {
+        if (alarm_children_valid)
+            return;
+        alarm_children.clear();
+        final int n = getChildCount();
+        for (int i=0; i<n; ++i)
+        {
+            final AlarmTreeItem child = getChild(i);
+            if (child.getSeverity().ordinal() > 0)
+                alarm_children.add(child);
+        }
+        alarm_children_valid = true;
+    }
+
     /** @return Current severity */
-    public synchronized SeverityLevel getCurrentSeverity()
+    public SeverityLevel getCurrentSeverity()
     {
         return current_severity;
     }
 
     /** @return Highest or latched severity */
-    public synchronized SeverityLevel getSeverity()
+    public SeverityLevel getSeverity()
     {
         return severity;
     }
 
     /** @return Highest or latched alarm message */
-    public synchronized String getMessage()
+    public String getMessage()
     {
         return message;
     }
 
     /** Update alarm state of this item, maximize alarm tree severities.
+     *  Caller must hold the lock of the root.
      *  @param current_severity Current severity of PV
      *  @param severity Alarm severity
      *  @param message Alarm message
@@ -273,12 +338,16 @@ public class AlarmTreeItem extends TreeItem
             getSeverity() == severity  &&
             getMessage().equals(message))
             return false;
+        // Parent counted the severities as returned by the getters,
+        // which may differ from the fields, for example for a disabled PV
+        final SeverityLevel old_current_severity = getCurrentSeverity();
+        final SeverityLevel old_severity = getSeverity();
         this.current_severity = current_severity;
         this.severity = severity;
         this.message = message;
         final AlarmTreeItem parent = getParent();
         if (parent != null)
-            return parent.maximizeSeverity();
+            return parent.childChanged(this, old_current_severity, old_severity);
         return true;
     }
 
@@ -311,37 +380,55 @@ public class AlarmTreeItem extends TreeItem
     /** Set severity/status of this item by maximizing over its child
      *  severities.
      *  Recursively updates parent items.
+     *  <p>
+     *  Re-computes the severity counts of this item and its parents
+     *  from scratch, which is necessary after configuration changes.
+     *  Alarm state changes of leaves use the quicker
+     *  {@link #childChanged(AlarmTreeItem, SeverityLevel, SeverityLevel)}.
      *  
      *  @return <code>true</code> if the severity of this item or any of its parents changed after 
      *  		this method is executed, or <code>false</code> if the severity remained the same
      */
-    public synchronized boolean maximizeSeverity()
+    public boolean maximizeSeverity()
+    {
+        // Pending updates need to be applied before the counts are re-computed.
+        // To prevent deadlocks, first lock the root, then this item and its parents
+        final AlarmTreeRoot root = findRoot();
+        if (root == null)
+            return maximizeSeverityLocked();
+        synchronized (root)
+        {
+            root.flushUpdates();
+            return maximizeSeverityLocked();
+        }
+    }
+
+    /** @see #maximizeSeverity() */
+    private synchronized boolean maximizeSeverityLocked()
     {
     	boolean changed = false;
-    	// Get maximum child severity and its status
-    	SeverityLevel new_current_severity = SeverityLevel.OK;
-    	SeverityLevel new_severity = SeverityLevel.OK;
-        String new_message = SeverityLevel.OK.getDisplayName();
-        alarm_children.clear();
+        Arrays.fill(current_counts, 0);
+        Arrays.fill(severity_counts, 0);
+        message_child = null;
         final int n = getChildCount();
         for (int i=0; i<n; ++i)
         {
             final AlarmTreeItem child = getChild(i);
-            // Maximize 'current' severity
-            if (child.getCurrentSeverity().ordinal() > new_current_severity.ordinal())
-            	new_current_severity = child.getCurrentSeverity();
-            // Maximize latched severity/status
+            count(current_counts, child.getCurrentSeverity(), 1);
             final SeverityLevel child_sevr = child.getSeverity();
-            final int level = child_sevr.ordinal();
-            if (level > 0)
-                alarm_children.add(child);
-            if (level > new_severity.ordinal())
-            {
-            	new_severity = child_sevr;
-            	new_message = child.getMessage();
-            }
+            count(severity_counts, child_sevr, 1);
+            // First child with the highest severity provides the message
+            if (child_sevr.ordinal() > 0  &&
+                (message_child == null  ||  child_sevr.ordinal() > message_child.getSeverity().ordinal()))
+                message_child = child;
         }
+        alarm_children_valid = false;
 
+        final SeverityLevel new_current_severity = getMaximum(current_counts);
+        final SeverityLevel new_severity = getMaximum(severity_counts);
+        final String new_message = message_child == null
+            ? SeverityLevel.OK.getDisplayName()
+            : message_child.getMessage();
         if (new_current_severity != current_severity  ||
             new_severity != severity  ||
             !new_message.equals(message))
@@ -351,6 +438,8 @@ public class AlarmTreeItem extends TreeItem
             message = new_message;
             changed = true;
         }
+        // Counts now reflect the current state, nothing left to tell the parent
+        pending = false;
 
         // Percolate changes towards root
         final AlarmTreeItem parent = getParent();
@@ -359,6 +448,152 @@ public class AlarmTreeItem extends TreeItem
         return changed;
     }
 
+    /** Update alarm state after the alarm state of a child item changed.
+     *  <p>
+     *  Adjusts the severity counts for the child,
+     *  so the cost does not depend on the number of children.
+     *  Changes percolate towards the root unless the root
+     *  is handling a batch of updates, in which case this item
+     *  informs its parent when the batch ends.
+     *  Caller must hold the lock of the root and of the child.
+     *
+     *  @param child Child item that changed
+     *  @param old_current_severity Previous current severity of the child
+     *  @param old_severity Previous latched severity of the child
+     *  @return <code>true</code> if the alarm state of this item changed
+     */
+    synchronized boolean childChanged(final AlarmTreeItem child,
+            final SeverityLevel old_current_severity, final SeverityLevel old_severity)
+    {
+        final SeverityLevel child_current_severity = child.getCurrentSeverity();
+        final SeverityLevel child_severity = child.getSeverity();
+        count(current_counts, old_current_severity, -1);
+        count(current_counts, child_current_severity, 1);
+        count(severity_counts, old_severity, -1);
+        count(severity_counts, child_severity, 1);
+        if ((old_severity == SeverityLevel.OK) != (child_severity == SeverityLevel.OK))
+            alarm_children_valid = false;
+
+        final SeverityLevel new_current_severity = getMaximum(current_counts);
+        final SeverityLevel new_severity = getMaximum(severity_counts);
+
+        // Keep the child that provides the message as long as it has the highest severity,
+        // only search all children when it no longer does
+        String new_message = message;
+        if (new_severity == SeverityLevel.OK)
+        {
+            message_child = null;
+            new_message = SeverityLevel.OK.getDisplayName();
+        }
+        else
+        {
+            if (message_child == null  ||  message_child.getSeverity() != new_severity)
+                message_child = (child_severity == new_severity) ? child : findChild(new_severity);
+            if (message_child != null)
+                new_message = message_child.getMessage();
+        }
+
+        if (new_current_severity == current_severity  &&
+            new_severity == severity  &&
+            new_message.equals(message))
+            return false;
+        final SeverityLevel my_old_current_severity = current_severity;
+        final SeverityLevel my_old_severity = severity;
+        current_severity = new_current_severity;
+        severity = new_severity;
+        message = new_message;
+
+        final AlarmTreeItem parent = getParent();
+        if (parent == null)
+            return true;
+        if (pending)  // Parent is already informed at the end of the batch
+            return true;
+        final AlarmTreeRoot root = findRoot();
+        pending = true;
+        pending_current_severity = my_old_current_severity;
+        pending_severity = my_old_severity;
+        if (root == null  ||  ! root.addPending(this))
+        {   // Not batching, tell parent right away
+            pending = false;
+            parent.childChanged(this, my_old_current_severity, my_old_severity);
+        }
+        return true;
+    }
+
+    /** Inform parent about changes accumulated during a batch of updates.
+     *  Called by the {@link AlarmTreeRoot} with the root locked.
+     */
+    synchronized void propagatePending()
+    {
+        if (! pending)
+            return;
+        pending = false;
+        final AlarmTreeItem parent = getParent();
+        if (parent != null)
+            parent.childChanged(this, pending_current_severity, pending_severity);
+    }
+
+    /** @return Number of parent items between this item and the root */
+    final int getDepth()
+    {
+        return depth;
+    }
+
+    /** @return Alarm tree root element or <code>null</code> when not attached to one */
+    private AlarmTreeRoot findRoot()
+    {
+        final TreeItem root = super.getRoot();
+        if (root instanceof AlarmTreeRoot)
+            return (AlarmTreeRoot) root;
+        return null;
+    }
+
+    /** @param level Severity level
+     *  @return First child with that severity level or <code>null</code>
+     */
+    private AlarmTreeItem findChild(final SeverityLevel level)
+    {
+        final int n = getChildCount();
+        for (int i=0; i<n; ++i)
+        {
+            final AlarmTreeItem child = getChild(i);
+            if (child.getSeverity() == level)
+                return child;
+        }
+        return null;
+    }
+
+    /** @param counts Counts per severity level
+     *  @param level Severity level to count
+     *  @param delta Change of count
+     */
+    private static void count(final int counts[], final SeverityLevel level, final int delta)
+    {
+        final int ordinal = level.ordinal();
+        if (ordinal > 0)
+            counts[ordinal] += delta;
+    }
+
+    /** @param counts Counts per severity level
+     *  @return Highest severity level with non-zero count
+     */
+    private static SeverityLevel getMaximum(final int counts[])
+    {
+        for (int ordinal = LEVELS.length-1; ordinal > 0; --ordinal)
+            if (counts[ordinal] > 0)
+                return LEVELS[ordinal];
+        return SeverityLevel.OK;
+    }
+
+    /** Update severity after child was removed from the configuration
+     *  {@inheritDoc}
+     */
+    @Override
+    protected void childRemoved(final TreeItem child)
+    {
+        maximizeSeverity();
+    }
+
     /** {@inheritDoc} */
     @Override
     @SuppressWarnings("nls")
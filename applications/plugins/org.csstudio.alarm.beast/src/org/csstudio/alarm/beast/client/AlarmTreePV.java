@@ -23,7 +23,8 @@ import org.epics.util.time.Timestamp;
  */
 public class AlarmTreePV extends AlarmTreeLeaf
 {
-    private boolean enabled = true;
+    /** Volatile, read by the severity getters without locking */
+    private volatile boolean enabled = true;
     private boolean latching = true;
     private boolean annunciating = false;
 
@@ -77,7 +78,7 @@ public class AlarmTreePV extends AlarmTreeLeaf
 
     /** @return Current severity */
     @Override
-    public synchronized SeverityLevel getCurrentSeverity()
+    public SeverityLevel getCurrentSeverity()
     {
         return enabled ? super.getCurrentSeverity() : SeverityLevel.OK;
     }
@@ -90,14 +91,14 @@ public class AlarmTreePV extends AlarmTreeLeaf
 
     /** @return Highest or latched severity */
     @Override
-    public synchronized SeverityLevel getSeverity()
+    public SeverityLevel getSeverity()
     {
         return enabled ? super.getSeverity() : SeverityLevel.OK;
     }
 
     /** @return Highest or latched alarm message */
     @Override
-    public synchronized String getMessage()
+    public String getMessage()
     {
         return enabled ? super.getMessage() : SeverityLevel.OK.getDisplayName();
     }
@@ -8,7 +8,9 @@
 package org.csstudio.alarm.beast.client;
 
 import java.io.PrintWriter;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 
 import org.csstudio.alarm.beast.ui.clientmodel.AlarmClientModelRoot;
 import org.csstudio.apputil.xml.XMLWriter;
@@ -18,6 +20,30 @@ import org.csstudio.apputil.xml.XMLWriter;
  */
 public class AlarmTreeRoot extends AlarmTreeItem
 {
+    /** Lock for <code>batch_level</code> and <code>pending_items</code>.
+     *  <p>
+     *  Tree updates lock the root, then the affected items from the leaf
+     *  towards the root. This lock is taken last and never held while
+     *  locking a tree item.
+     */
+    final private Object batch_lock = new Object();
+
+    /** Nesting level of {@link #startUpdates()} */
+    private int batch_level = 0;
+
+    /** Items that need to inform their parent at the end of a batch of updates,
+     *  deepest items first
+     */
+    final private PriorityQueue<AlarmTreeItem> pending_items =
+        new PriorityQueue<AlarmTreeItem>(100, new Comparator<AlarmTreeItem>()
+        {
+            @Override
+            public int compare(final AlarmTreeItem a, final AlarmTreeItem b)
+            {
+                return b.getDepth() - a.getDepth();
+            }
+        });
+
     /** Initialize alarm tree root
      * @param name Name of root element
      * @param id RDB ID of root element
@@ -34,6 +60,91 @@ public class AlarmTreeRoot extends AlarmTreeItem
         return AlarmTreePosition.Root;
     }
 
+    /** Start a batch of alarm state updates.
+     *  <p>
+     *  Until the matching {@link #endUpdates()}, alarm state changes of
+     *  leaves only update the severity counts of their direct parent.
+     *  At the end of the batch, each affected item then informs its
+     *  parent once, so many leaf updates within the same sub-tree
+     *  result in one pass towards the root.
+     *  <p>
+     *  Severities of items above the parents of changed leaves are
+     *  not updated until the end of the batch.
+     *  Calls may be nested.
+     */
+    public void startUpdates()
+    {
+        synchronized (batch_lock)
+        {
+            ++batch_level;
+        }
+    }
+
+    /** End a batch of alarm state updates, update severities
+     *  @see #startUpdates()
+     */
+    public void endUpdates()
+    {
+        // To prevent deadlock, first lock the root, then the pending items
+        synchronized (this)
+        {
+            synchronized (batch_lock)
+            {
+                if (batch_level <= 0)
+                    throw new IllegalStateException("endUpdates() without startUpdates()"); //$NON-NLS-1$
+                if (batch_level > 1)
+                {
+                    --batch_level;
+                    return;
+                }
+            }
+            // Flush while still batching, so each item informs its parent only once
+            flushUpdates();
+            synchronized (batch_lock)
+            {
+                --batch_level;
+            }
+        }
+    }
+
+    /** @param item Item that needs to inform its parent at the end of the batch
+     *  @return <code>true</code> if the item was added,
+     *          <code>false</code> if no batch of updates is active
+     */
+    boolean addPending(final AlarmTreeItem item)
+    {
+        synchronized (batch_lock)
+        {
+            if (batch_level <= 0)
+                return false;
+            pending_items.add(item);
+            return true;
+        }
+    }
+
+    /** Let pending items inform their parents, deepest items first,
+     *  so each parent is handled after all its changed children.
+     *  Caller must hold the lock of the root.
+     */
+    void flushUpdates()
+    {
+        AlarmTreeItem item = pollPending();
+        while (item != null)
+        {
+            item.propagatePending();
+            item = pollPending();
+        }
+    }
+
+    /** @return Next pending item or <code>null</code> */
+    private AlarmTreeItem pollPending()
+    {
+        synchronized (batch_lock)
+        {
+            return pending_items.poll();
+        }
+    }
+
     /** Called for each PV in the tree that's acknowledged.
      *  <p>
      *  When calling the public <code>acknowledge()</code> method,
@@ -79,7 +190,7 @@ public class AlarmTreeRoot extends AlarmTreeItem
     }
 
     /** @param leaves List to which all leaves of this tree are added */
-    public void addLeavesToList(final List<AlarmTreeLeaf> leaves)
+    public synchronized void addLeavesToList(final List<AlarmTreeLeaf> leaves)
     {
         addLeavesToList(leaves, this);
     }
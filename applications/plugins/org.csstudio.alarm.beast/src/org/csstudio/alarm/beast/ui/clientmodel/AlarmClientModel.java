@@ -8,6 +8,7 @@
 package org.csstudio.alarm.beast.ui.clientmodel;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -122,6 +123,11 @@ public class AlarmClientModel
     /** Send events? */
     private boolean notify_listeners = true;
 
+    /** Handling a batch of PV updates, suppressing events for individual PVs?
+     *  <br><b>SYNC:</b> Access needs to synchronize on <code>this</code>
+     */
+    private boolean batch_update = false;
+
     /** @return <code>true</code> for read-only model */
     final private boolean allow_write = ! Preferences.isReadOnly();
 
@@ -371,6 +377,7 @@ public class AlarmClientModel
                                                     AlarmClientModel.this);
                 }
             };
+            new_config.setSnapshotDirectory(Preferences.getConfigSnapshotDirectory());
 
             // Read names of available configurations
             final String new_root_names[] = new_config.listConfigurations();
@@ -931,6 +938,42 @@ public class AlarmClientModel
             "Received update for unknown PV {0}", name);
     }
 
+    /** Update the state of several PVs in model.
+     *  <p>
+     *  Severities of the alarm tree are updated once for the whole batch,
+     *  and listeners receive a single event instead of one per PV.
+     *  <p>
+     *  Called by AlarmUpdateCommunicator, i.e. from JMS thread.
+     *
+     *  @param infos Alarm update infos
+     */
+    void updatePVs(final List<AlarmUpdateInfo> infos)
+    {
+        final AlarmTreeRoot root;
+        synchronized (this)
+        {
+            root = config_tree;
+            batch_update = true;
+        }
+        if (root != null)
+            root.startUpdates();
+        try
+        {
+            for (AlarmUpdateInfo info : infos)
+                updatePV(info);
+        }
+        finally
+        {
+            if (root != null)
+                root.endUpdates();
+            synchronized (this)
+            {
+                batch_update = false;
+            }
+        }
+        fireNewAlarmState(null, true);
+    }
+
     /** Locate PV by name
      *  @param name Name of PV to locate. May be <code>null</code>.
      *  @return PV or <code>null</code> when not found
@@ -1064,7 +1107,7 @@ public class AlarmClientModel
                     active_alarms.remove(pv);
                     acknowledged_alarms.remove(pv);
                 }
-                if (!notify_listeners )
+                if (!notify_listeners  ||  batch_update)
                     return;
             }
         }
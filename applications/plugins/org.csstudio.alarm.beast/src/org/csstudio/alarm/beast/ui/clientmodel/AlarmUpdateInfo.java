@@ -7,14 +7,16 @@
  ******************************************************************************/
 package org.csstudio.alarm.beast.ui.clientmodel;
 
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.logging.Level;
 
 import javax.jms.MapMessage;
 
 import org.csstudio.alarm.beast.Activator;
+import org.csstudio.alarm.beast.AlarmStateBatch;
 import org.csstudio.alarm.beast.JMSAlarmMessage;
 import org.csstudio.alarm.beast.SeverityLevel;
 import org.csstudio.logging.JMSLogMessage;
@@ -50,20 +52,52 @@ public class AlarmUpdateInfo
                 message.getString(JMSAlarmMessage.CURRENT_SEVERITY));
         final String current_message = message.getString(JMSAlarmMessage.CURRENT_STATUS);
         final String value = message.getString(JMSAlarmMessage.VALUE);
-        final String timetext = message.getString(JMSAlarmMessage.EVENTTIME);
+        final Timestamp timestamp = parseTime(message.getString(JMSAlarmMessage.EVENTTIME));
+        return new AlarmUpdateInfo(name, current_severity, current_message,
+                severity, status, value, timestamp);
+    }
+
+    /** Initialize from JMS batch message
+     *  @param message Message that must contain a batch of alarm states
+     *  @return {@link AlarmUpdateInfo} for each PV in the batch
+     *  @throws Exception on error in JMS access or parsing of received data
+     *  @see AlarmStateBatch
+     */
+    public static List<AlarmUpdateInfo> fromBatchMessage(final MapMessage message)
+            throws Exception
+    {
+        final List<String[]> states = AlarmStateBatch.parse(message.getString(JMSAlarmMessage.STATES));
+        final List<AlarmUpdateInfo> infos = new ArrayList<AlarmUpdateInfo>(states.size());
+        for (String[] state : states)
+            infos.add(new AlarmUpdateInfo(state[AlarmStateBatch.NAME],
+                    SeverityLevel.parse(state[AlarmStateBatch.CURRENT_SEVERITY]),
+                    state[AlarmStateBatch.CURRENT_STATUS],
+                    SeverityLevel.parse(state[AlarmStateBatch.SEVERITY]),
+                    state[AlarmStateBatch.STATUS],
+                    state[AlarmStateBatch.VALUE],
+                    parseTime(state[AlarmStateBatch.EVENTTIME])));
+        return infos;
+    }
+
+    /** @param timetext Received time stamp
+     *  @return Time stamp, using 'now' if text cannot be parsed
+     */
+    private static Timestamp parseTime(final String timetext)
+    {
         Date date;
         try
         {
-            date = date_format.parse(timetext);
+            synchronized (date_format)
+            {
+                date = date_format.parse(timetext);
+            }
         }
-        catch (ParseException ex)
+        catch (Exception ex)
         {
             Activator.getLogger().log(Level.WARNING, "Received invalid time {0}", timetext);
             date = new Date();
         }
-        final Timestamp timestamp = Timestamp.of(date);
-        return new AlarmUpdateInfo(name, current_severity, current_message,
-                severity, status, value, timestamp);
+        return Timestamp.of(date);
     }
 
     /** Initialize from pieces
@@ -8,18 +8,48 @@
 package org.csstudio.archive.engine.model;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.csstudio.archive.vtype.ArchiveVString;
 import org.csstudio.archive.vtype.VTypeHelper;
+import org.epics.util.time.TimeDuration;
+import org.epics.util.time.Timestamp;
+import org.epics.vtype.AlarmSeverity;
+import org.epics.vtype.VNumber;
+import org.epics.vtype.VString;
 import org.epics.vtype.VType;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
 
 /** JUnit test of the {@link SampleBuffer}
  *  @author Kay Kasemir
  */
+@RunWith(Parameterized.class)
 @SuppressWarnings("nls")
 public class SampleBufferUnitTest
 {
-	final private SampleBuffer buffer = new SampleBuffer("Demo", 10);
+	@Parameters
+	public static Collection<Object[]> getModes()
+	{
+		final Collection<Object[]> modes = new ArrayList<Object[]>();
+		for (BufferMode mode : BufferMode.values())
+			modes.add(new Object[] { mode });
+		return modes;
+	}
+
+	final private SampleBuffer buffer;
+
+	public SampleBufferUnitTest(final BufferMode mode)
+	{
+		buffer = new SampleBuffer("Demo", 10, mode);
+	}
 
 	/** Add and remove one value */
 	@Test
@@ -53,6 +83,36 @@ public class SampleBufferUnitTest
 		assertEquals(1.0, VTypeHelper.toDouble(value), 0.01);
 	}
 
+	/** Check that samples are returned unchanged */
+	@Test
+	public void testSampleDetail()
+	{
+		final Timestamp stamp = Timestamp.of(1234567890L, 123456789);
+		buffer.add(new ArchiveVNumber(stamp, AlarmSeverity.MINOR, "LOW", TestHelper.display, Integer.valueOf(42)));
+		buffer.add(new ArchiveVNumber(stamp.plus(TimeDuration.ofSeconds(1)),
+		                              AlarmSeverity.NONE, "NO_ALARM", TestHelper.display, Double.valueOf(3.14)));
+		buffer.add(new ArchiveVString(stamp, AlarmSeverity.INVALID, "Disconnected", "Text"));
+
+		VType value = buffer.remove();
+		assertTrue(value instanceof VNumber);
+		assertEquals(Integer.valueOf(42), ((VNumber)value).getValue());
+		assertEquals(stamp, VTypeHelper.getTimestamp(value));
+		assertEquals(AlarmSeverity.MINOR, VTypeHelper.getSeverity(value));
+		assertEquals("LOW", VTypeHelper.getMessage(value));
+		assertEquals("Eggs", ((VNumber)value).getUnits());
+
+		value = buffer.remove();
+		assertEquals(Double.valueOf(3.14), ((VNumber)value).getValue());
+		assertEquals("NO_ALARM", VTypeHelper.getMessage(value));
+
+		value = buffer.remove();
+		assertTrue(value instanceof VString);
+		assertEquals("Text", ((VString)value).getValue());
+		assertEquals("Disconnected", VTypeHelper.getMessage(value));
+
+		assertNull(buffer.remove());
+	}
+
 	final private static long TEST_RUNS = 1000L;
 
 	class FillThread extends Thread
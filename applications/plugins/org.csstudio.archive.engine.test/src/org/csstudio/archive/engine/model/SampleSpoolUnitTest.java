@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.csstudio.archive.vtype.ArchiveVString;
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.csstudio.archive.writer.ArchiveWriter;
+import org.csstudio.archive.writer.WriteChannel;
+import org.epics.util.time.Timestamp;
+import org.epics.vtype.AlarmSeverity;
+import org.epics.vtype.Display;
+import org.epics.vtype.VType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** JUnit test of the {@link SampleSpool}
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class SampleSpoolUnitTest
+{
+    /** {@link ArchiveWriter} that remembers the samples */
+    static class DemoWriter implements ArchiveWriter
+    {
+        final List<String> names = new ArrayList<String>();
+        final List<VType> samples = new ArrayList<VType>();
+        int flushes = 0;
+
+        @Override
+        public WriteChannel getChannel(final String name) throws Exception
+        {
+            return new WriteChannel()
+            {
+                @Override
+                public String getName()
+                {
+                    return name;
+                }
+            };
+        }
+
+        @Override
+        public void addSample(final WriteChannel channel, final VType sample) throws Exception
+        {
+            names.add(channel.getName());
+            samples.add(sample);
+        }
+
+        @Override
+        public void flush() throws Exception
+        {
+            ++flushes;
+        }
+
+        @Override
+        public void close()
+        {
+            // NOP
+        }
+    }
+
+    private File directory;
+
+    @Before
+    public void setup() throws Exception
+    {
+        directory = File.createTempFile("spool", "");
+        directory.delete();
+    }
+
+    @After
+    public void cleanup()
+    {
+        final File[] files = directory.listFiles();
+        if (files != null)
+            for (File file : files)
+                file.delete();
+        directory.delete();
+    }
+
+    @Test
+    public void testSpoolAndReplay() throws Exception
+    {
+        SampleSpool spool = new SampleSpool(directory, 1024, 1024*1024);
+        for (int i=0; i<100; ++i)
+            assertTrue(spool.add("Demo" + (i % 3), TestHelper.newValue(i)));
+        spool.add("Text", new ArchiveVString(Timestamp.now(), AlarmSeverity.INVALID, "Disconnected", "Off"));
+        assertEquals(101, spool.getSampleCount());
+        // Small segments, so there should be several files
+        assertTrue(directory.list().length > 1);
+        System.out.println(spool);
+
+        // Re-open, as after engine restart
+        spool.force();
+        spool = new SampleSpool(directory, 1024, 1024*1024);
+        assertEquals(101, spool.getSampleCount());
+
+        final DemoWriter writer = new DemoWriter();
+        while (spool.getSampleCount() > 0)
+            spool.replay(writer, 10);
+        assertEquals(101, writer.samples.size());
+        assertTrue(writer.flushes > 1);
+        for (int i=0; i<100; ++i)
+        {
+            assertEquals("Demo" + (i % 3), writer.names.get(i));
+            assertEquals(i, VTypeHelper.toDouble(writer.samples.get(i)), 0.01);
+            assertEquals("Eggs", ((Display) writer.samples.get(i)).getUnits());
+        }
+        assertEquals("Text", writer.names.get(100));
+        assertEquals("Disconnected", VTypeHelper.getMessage(writer.samples.get(100)));
+        // Replayed segments are removed
+        assertEquals(0, spool.getSize());
+    }
+
+    @Test
+    public void testSkipUnknownChannel() throws Exception
+    {
+        final SampleSpool spool = new SampleSpool(directory, 1024, 1024*1024);
+        for (int i=0; i<30; ++i)
+            assertTrue(spool.add(i % 3 == 0 ? "Removed" : "Demo", TestHelper.newValue(i)));
+
+        // Channel was removed from the configuration
+        final DemoWriter writer = new DemoWriter()
+        {
+            @Override
+            public WriteChannel getChannel(final String name) throws Exception
+            {
+                if (name.equals("Removed"))
+                    throw new Exception("Unknown channel " + name);
+                return super.getChannel(name);
+            }
+        };
+        int loops = 0;
+        while (spool.getSampleCount() > 0  &&  ++loops < 100)
+            spool.replay(writer, 7);
+        assertEquals(0, spool.getSampleCount());
+        assertEquals(10, spool.getSkippedCount());
+        assertEquals(20, writer.samples.size());
+        for (int i=0; i<20; ++i)
+            assertEquals("Demo", writer.names.get(i));
+    }
+
+    @Test
+    public void testLimit() throws Exception
+    {
+        final SampleSpool spool = new SampleSpool(directory, 1024, 2048);
+        int added = 0;
+        for (int i=0; i<1000; ++i)
+            if (spool.add("Demo", TestHelper.newValue(i)))
+                ++added;
+        assertTrue(added < 1000);
+        assertEquals(1000 - added, spool.getDroppedCount());
+        assertFalse(spool.add("Demo", TestHelper.newValue(0)));
+    }
+
+    @Test
+    public void testSegmentSize() throws Exception
+    {
+        final long MB = 1024L*1024L;
+        // 2 GB segments cannot be memory-mapped, and used to overflow to a negative int
+        try
+        {
+            new SampleSpool(directory, 2048 * MB, 4096 * MB);
+            fail("Accepted 2 GB segment");
+        }
+        catch (IllegalArgumentException ex)
+        {
+            // Expected
+        }
+        try
+        {
+            new SampleSpool(directory, 4, 1024);
+            fail("Accepted segment without room for a sample");
+        }
+        catch (IllegalArgumentException ex)
+        {
+            // Expected
+        }
+    }
+}
@@ -46,6 +46,7 @@ public class Messages
     final public static String HTTP_QueueOverruns = "Overruns";
     final public static String HTTP_ReceivedValues = "Received Values";
     final public static String HTTP_StartTime = "Start Time";
+    final public static String HTTP_Spool = "Spool";
     final public static String HTTP_State = "State";
     final public static String HTTP_Status = "Status";
     final public static String HTTP_Total = "Total";
@@ -57,4 +58,6 @@ public class Messages
     final public static String HTTP_WriteError = "Write Error";
     final public static String HTTP_WritePeriod = "Write Period";
     final public static String HTTP_WriteState = "Write State";
+    final public static String HTTP_WriteThread = "Write Thread";
+    final public static String HTTP_WriteThreads = "Write Threads";
 }
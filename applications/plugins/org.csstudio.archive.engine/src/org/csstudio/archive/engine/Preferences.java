@@ -7,6 +7,10 @@
  ******************************************************************************/
 package org.csstudio.archive.engine;
 
+import java.util.logging.Level;
+
+import org.csstudio.archive.engine.model.BufferMode;
+import org.csstudio.archive.engine.model.WritePartition;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.preferences.IPreferencesService;
 
@@ -49,6 +53,69 @@ public class Preferences
         return prefs.getInt(Activator.ID, "batch_size", batch_size, null);
 	}
 	
+	public static int getWriteThreads()
+	{
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        final int write_threads = 1;
+        if (prefs == null)
+        	return write_threads;
+        return Math.max(1, prefs.getInt(Activator.ID, "write_threads", write_threads, null));
+	}
+
+	public static WritePartition getWritePartition()
+	{
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        final WritePartition write_partition = WritePartition.Channel;
+        if (prefs == null)
+        	return write_partition;
+        final String text = prefs.getString(Activator.ID, "write_partition", write_partition.name(), null);
+        try
+        {
+            return WritePartition.fromString(text);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            Activator.getLogger().log(Level.WARNING, "Using write_partition " + write_partition, ex);
+            return write_partition;
+        }
+	}
+
+	public static String getSpoolDirectory()
+	{
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        final String spool_directory = "";
+        if (prefs == null)
+        	return spool_directory;
+        return prefs.getString(Activator.ID, "spool_directory", spool_directory, null).trim();
+	}
+
+	public static int getSpoolSegmentMB()
+	{
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        final int spool_segment_size = 16;
+        if (prefs == null)
+        	return spool_segment_size;
+        return Math.max(1, prefs.getInt(Activator.ID, "spool_segment_size", spool_segment_size, null));
+	}
+
+	public static int getSpoolMaxMB()
+	{
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        final int spool_max_size = 1024;
+        if (prefs == null)
+        	return spool_max_size;
+        return prefs.getInt(Activator.ID, "spool_max_size", spool_max_size, null);
+	}
+
+	public static int getSpoolReplayRate()
+	{
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        final int spool_replay_rate = 5000;
+        if (prefs == null)
+        	return spool_replay_rate;
+        return Math.max(1, prefs.getInt(Activator.ID, "spool_replay_rate", spool_replay_rate, null));
+	}
+
 	public static double getBufferReserve()
 	{
         final IPreferencesService prefs = Platform.getPreferencesService();
@@ -58,5 +125,23 @@ public class Preferences
         return prefs.getDouble(Activator.ID, "buffer_reserve", buffer_reserve, null);
 	}
 
+	public static BufferMode getBufferMode()
+	{
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        final BufferMode buffer_mode = BufferMode.Synchronized;
+        if (prefs == null)
+        	return buffer_mode;
+        final String text = prefs.getString(Activator.ID, "buffer_mode", buffer_mode.name(), null);
+        try
+        {
+            return BufferMode.fromString(text);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            Activator.getLogger().log(Level.WARNING, "Using buffer_mode " + buffer_mode, ex);
+            return buffer_mode;
+        }
+	}
+
 	
 }
@@ -125,7 +125,7 @@ abstract public class ArchiveChannel extends PVListenerAdapter
         this.name = name;
         this.enablement = enablement;
         this.last_archived_value = last_archived_value;
-        this.buffer = new SampleBuffer(name, buffer_capacity);
+        this.buffer = new SampleBuffer(name, buffer_capacity, EngineModel.getBufferMode());
         if (last_archived_value == null)
             Activator.getLogger().log(Level.INFO, "No known last value for {0}", name);
     }
@@ -456,8 +456,9 @@ abstract public class ArchiveChannel extends PVListenerAdapter
             }
             // else ...
 	        last_archived_value = value;
+	        // Add while locked: Sample buffer supports only one producer at a time
+	        buffer.add(value);
         }
-        buffer.add(value);
         if (SampleBuffer.isInErrorState())
             need_write_error_sample = true;
         return true;
@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+/** How a {@link SampleBuffer} keeps its samples.
+ *  @author agent
+ */
+public enum BufferMode
+{
+    /** Ring buffer of samples, every access synchronized */
+    Synchronized,
+    /** Lock-free single-producer/single-consumer ring of samples */
+    LockFree,
+    /** Lock-free ring that keeps scalar numbers in primitive arrays */
+    Primitive;
+
+    /** @param text Name of a mode, case-insensitive
+     *  @return Matching {@link BufferMode}
+     *  @throws IllegalArgumentException for unknown mode
+     */
+    public static BufferMode fromString(final String text)
+    {
+        for (BufferMode mode : values())
+            if (mode.name().equalsIgnoreCase(text.trim()))
+                return mode;
+        throw new IllegalArgumentException("Unknown buffer mode '" + text + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
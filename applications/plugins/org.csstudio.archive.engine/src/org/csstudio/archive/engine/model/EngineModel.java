@@ -7,6 +7,7 @@
  ******************************************************************************/
 package org.csstudio.archive.engine.model;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -40,8 +41,10 @@ public class EngineModel
     /** Name of this model */
     private String name = "Archive Engine";  //$NON-NLS-1$
 
-    /** Thread that writes to the <code>archive</code> */
-    final private WriteThread writer;
+    /** Threads that write to the <code>archive</code>,
+     *  each handling a partition of the channels
+     */
+    final private WriteThread[] writers;
 
     /** All the channels.
      *  <p>
@@ -97,16 +100,33 @@ public class EngineModel
     /** Write batch size */
     final private static int batch_size = Preferences.getBatchSize();
 
+    /** Number of write threads */
+    final private static int write_threads = Preferences.getWriteThreads();
+
+    /** How channels are assigned to write threads */
+    final private static WritePartition write_partition = Preferences.getWritePartition();
+
+    /** Spool directory, empty to disable spooling */
+    final private static String spool_directory = Preferences.getSpoolDirectory();
+
     /** Buffer reserve (N times what's ideally needed) */
     final private static double buffer_reserve = Preferences.getBufferReserve();
 
     /** Samples with time stamps this far ahead of the local time are ignored */
     final private static long ignored_future = Preferences.getIgnoredFutureSecs();
 
+    /** How sample buffers keep their samples */
+    final private static BufferMode buffer_mode = Preferences.getBufferMode();
+
     /** Construct model that writes to archive */
     public EngineModel()
     {
-        writer = new WriteThread();
+        writers = new WriteThread[write_threads];
+        if (write_threads == 1)
+            writers[0] = new WriteThread();
+        else
+            for (int i=0; i<write_threads; ++i)
+                writers[i] = new WriteThread("WriteThread " + (i+1)); //$NON-NLS-1$
     }
 
     /** @return Name (description) */
@@ -121,6 +141,12 @@ public class EngineModel
         return ignored_future;
     }
 
+    /** @return How sample buffers keep their samples */
+    public static BufferMode getBufferMode()
+    {
+        return buffer_mode;
+    }
+
     /** @return Write period in seconds */
     public int getWritePeriod()
     {
@@ -133,6 +159,26 @@ public class EngineModel
         return batch_size;
     }
 
+    /** @return How channels are assigned to write threads */
+    public WritePartition getWritePartition()
+    {
+        return write_partition;
+    }
+
+    /** @return Number of write threads */
+    public int getWriteThreadCount()
+    {
+        return writers.length;
+    }
+
+    /** @param i Write thread index, 0 ... <code>getWriteThreadCount()-1</code>
+     *  @return Write thread
+     */
+    public WriteThread getWriteThread(final int i)
+    {
+        return writers[i];
+    }
+
     /** @return Current model state */
     public State getState()
     {
@@ -277,7 +323,7 @@ public class EngineModel
             channels.add(channel);
             channel_by_name.put(channel.getName(), channel);
         }
-        writer.addChannel(channel);
+        getWriteThread(name, group).addChannel(channel);
 
         // Connect new or old channel to group
         channel.addGroup(group);
@@ -286,12 +332,45 @@ public class EngineModel
         return channel;
     }
 
+    /** @param name Channel name
+     *  @param group Group of the channel
+     *  @return Write thread for that channel
+     */
+    private WriteThread getWriteThread(final String name, final ArchiveGroup group)
+    {
+        if (writers.length == 1)
+            return writers[0];
+        final int hash;
+        if (write_partition == WritePartition.Group)
+        {
+            synchronized (this)
+            {
+                hash = groups.indexOf(group);
+            }
+        }
+        else
+            hash = name.hashCode();
+        return writers[(hash & Integer.MAX_VALUE) % writers.length];
+    }
+
     /** Start processing all channels and writing to archive. */
     public void start() throws Exception
     {
         start_time = Timestamp.now();
         state = State.RUNNING;
-        writer.start(write_period, batch_size);
+        if (! spool_directory.isEmpty())
+            for (int i=0; i<writers.length; ++i)
+            {
+                final File directory = writers.length == 1
+                    ? new File(spool_directory)
+                    : new File(spool_directory, "writer" + (i+1)); //$NON-NLS-1$
+                final long MB = 1024L*1024L;
+                writers[i].setSpool(new SampleSpool(directory,
+                        Preferences.getSpoolSegmentMB() * MB, Preferences.getSpoolMaxMB() * MB),
+                        Preferences.getSpoolReplayRate());
+            }
+        for (WriteThread writer : writers)
+            writer.start(write_period, batch_size);
         for (ArchiveGroup group : groups)
         {
             group.start();
@@ -307,19 +386,78 @@ public class EngineModel
     /** @return Timestamp of end of last write run */
     public Timestamp getLastWriteTime()
     {
-        return writer.getLastWriteTime();
+        Timestamp last = null;
+        for (WriteThread writer : writers)
+        {
+            final Timestamp time = writer.getLastWriteTime();
+            if (time != null  &&  (last == null  ||  time.compareTo(last) > 0))
+                last = time;
+        }
+        return last;
     }
 
-    /** @return Average number of values per write run */
+    /** @return Average number of values per write run, summed over all write threads */
     public double getWriteCount()
     {
-        return writer.getWriteCount();
+        double count = 0.0;
+        for (WriteThread writer : writers)
+            count += writer.getWriteCount();
+        return count;
     }
 
-    /** @return  Average duration of write run in seconds */
+    /** @return  Average duration of write run in seconds, maximum of all write threads */
     public double getWriteDuration()
     {
-        return writer.getWriteDuration();
+        double duration = 0.0;
+        for (WriteThread writer : writers)
+            duration = Math.max(duration, writer.getWriteDuration());
+        return duration;
+    }
+
+    /** @return <code>true</code> if samples are spooled while the archive cannot be written */
+    public boolean isSpoolEnabled()
+    {
+        return ! spool_directory.isEmpty();
+    }
+
+    /** @return Number of spooled samples, summed over all write threads */
+    public long getSpoolSampleCount()
+    {
+        long count = 0;
+        for (WriteThread writer : writers)
+            if (writer.getSpool() != null)
+                count += writer.getSpool().getSampleCount();
+        return count;
+    }
+
+    /** @return Size of spool files in bytes, summed over all write threads */
+    public long getSpoolSize()
+    {
+        long size = 0;
+        for (WriteThread writer : writers)
+            if (writer.getSpool() != null)
+                size += writer.getSpool().getSize();
+        return size;
+    }
+
+    /** @return Number of samples that could not be spooled, summed over all write threads */
+    public long getSpoolDroppedCount()
+    {
+        long count = 0;
+        for (WriteThread writer : writers)
+            if (writer.getSpool() != null)
+                count += writer.getSpool().getDroppedCount();
+        return count;
+    }
+
+    /** @return Number of spooled samples that could not be replayed, summed over all write threads */
+    public long getSpoolSkippedCount()
+    {
+        long count = 0;
+        for (WriteThread writer : writers)
+            if (writer.getSpool() != null)
+                count += writer.getSpool().getSkippedCount();
+        return count;
     }
 
     /** @see Scanner#getIdlePercentage() */
@@ -352,7 +490,8 @@ public class EngineModel
     /** Reset engine statistics */
     public void reset()
     {
-        writer.reset();
+        for (WriteThread writer : writers)
+            writer.reset();
         scanner.reset();
         synchronized (this)
         {
@@ -377,7 +516,21 @@ public class EngineModel
             group.stop();
         // Flush all values out
         Activator.getLogger().info("Stopping writer");
-        writer.shutdown();
+        Exception error = null;
+        for (WriteThread writer : writers)
+        {
+            try
+            {
+                writer.shutdown();
+            }
+            catch (Exception ex)
+            {   // Still stop remaining writers, then report first error
+                if (error == null)
+                    error = ex;
+            }
+        }
+        if (error != null)
+            throw error;
         // Update state
         state = State.IDLE;
         start_time = null;
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.epics.vtype.VType;
+
+/** Lock-free single-producer/single-consumer {@link SampleQueue}.
+ *  <p>
+ *  <code>head</code> and <code>tail</code> are ever-increasing counters
+ *  of removed resp. added samples; the slot of a sample is the
+ *  counter modulo the capacity.
+ *  <p>
+ *  Only the producer updates <code>tail</code>.
+ *  Normally only the consumer updates <code>head</code>,
+ *  but on overrun the producer drops the oldest sample by advancing
+ *  <code>head</code> <u>before</u> it overwrites that slot.
+ *  Both therefore use compare-and-set on <code>head</code>:
+ *  A consumer that read a slot which the producer meanwhile
+ *  dropped will fail to advance <code>head</code> and simply retry.
+ *  <p>
+ *  Callers must assert that there is at most one
+ *  producer and one consumer at any time.
+ *
+ *  @author agent
+ */
+abstract class LockFreeSampleQueue implements SampleQueue
+{
+    /** Maximum number of samples */
+    final protected int capacity;
+
+    /** Count of samples that were removed or dropped */
+    final private AtomicLong head = new AtomicLong();
+
+    /** Count of samples that were added */
+    final private AtomicLong tail = new AtomicLong();
+
+    /** @param capacity Maximum number of samples */
+    LockFreeSampleQueue(final int capacity)
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be > 0"); //$NON-NLS-1$
+        this.capacity = capacity;
+    }
+
+    /** Store sample in slot.
+     *  <p>Called by the producer for a slot that the consumer cannot read.
+     *  @param slot Slot index 0 .. capacity-1
+     *  @param value Sample
+     */
+    abstract protected void store(int slot, VType value);
+
+    /** Read sample from slot.
+     *  <p>Called by the consumer. Result is only used
+     *  if the slot is then successfully claimed.
+     *  @param slot Slot index 0 .. capacity-1
+     *  @return Sample in that slot
+     */
+    abstract protected VType load(int slot);
+
+    /** Release references held by a slot that the consumer claimed
+     *  @param slot Slot index 0 .. capacity-1
+     *  @param value Sample that was loaded from that slot
+     */
+    protected void release(final int slot, final VType value)
+    {
+        // NOP
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    final public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    final public int size()
+    {
+        final long removed = head.get();
+        final long size = tail.get() - removed;
+        if (size < 0)
+            return 0;
+        return size > capacity ? capacity : (int) size;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    final public boolean add(final VType value)
+    {
+        final long t = tail.get();
+        final long h = head.get();
+        boolean overrun = false;
+        // When full, drop the oldest sample.
+        // If that fails, the consumer just removed it, so there's room.
+        if (t - h >= capacity  &&  head.compareAndSet(h, h+1))
+            overrun = true;
+        store((int) (t % capacity), value);
+        // Publish the sample to the consumer
+        tail.lazySet(t+1);
+        return overrun;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    final public VType remove()
+    {
+        while (true)
+        {
+            final long h = head.get();
+            if (h >= tail.get())
+                return null;
+            final int slot = (int) (h % capacity);
+            final VType value = load(slot);
+            if (head.compareAndSet(h, h+1))
+            {
+                release(slot, value);
+                return value;
+            }
+            // else: Producer dropped that sample, try next one
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.epics.vtype.VType;
+
+/** {@link LockFreeSampleQueue} that keeps the {@link VType} samples
+ *  @author agent
+ */
+class ObjectSampleQueue extends LockFreeSampleQueue
+{
+    final private AtomicReferenceArray<VType> samples;
+
+    ObjectSampleQueue(final int capacity)
+    {
+        super(capacity);
+        samples = new AtomicReferenceArray<VType>(capacity);
+    }
+
+    @Override
+    protected void store(final int slot, final VType value)
+    {
+        samples.set(slot, value);
+    }
+
+    @Override
+    protected VType load(final int slot)
+    {
+        return samples.get(slot);
+    }
+
+    /** Clear the slot unless the producer already re-used it */
+    @Override
+    protected void release(final int slot, final VType value)
+    {
+        samples.compareAndSet(slot, value, null);
+    }
+}
@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.csstudio.archive.vtype.MetaDataHelper;
+import org.epics.util.time.Timestamp;
+import org.epics.vtype.AlarmSeverity;
+import org.epics.vtype.Display;
+import org.epics.vtype.VNumber;
+import org.epics.vtype.VType;
+import org.epics.vtype.ValueFactory;
+
+/** {@link LockFreeSampleQueue} that keeps scalar numbers
+ *  in parallel primitive arrays.
+ *  <p>
+ *  Time stamp, value, severity and status of scalar
+ *  {@link VNumber} samples are unpacked into primitive arrays,
+ *  and an {@link ArchiveVNumber} is re-created when the sample is removed.
+ *  The {@link Display} is copied once and then shared by all
+ *  following samples until it changes.
+ *  All other samples, for example arrays, strings or
+ *  the engine's info samples, are kept as objects.
+ *
+ *  @author agent
+ */
+class PrimitiveSampleQueue extends LockFreeSampleQueue
+{
+    /** Slot holds a sample object */
+    final private static byte OBJECT = 0;
+    /** Slot holds a number of given type */
+    final private static byte DOUBLE = 1, FLOAT = 2, LONG = 3, INTEGER = 4, SHORT = 5, BYTE = 6;
+
+    /** Largest long that is exactly represented by a double */
+    final private static long MAX_EXACT_LONG = 1L << 53;
+
+    final private static AlarmSeverity[] severities = AlarmSeverity.values();
+
+    /** Type of sample in each slot */
+    final private byte[] type;
+
+    /** Time stamp as nanoseconds since epoch */
+    final private long[] time;
+
+    final private double[] value;
+
+    /** {@link AlarmSeverity} ordinal */
+    final private byte[] severity;
+
+    /** Index into <code>stati</code> */
+    final private short[] status;
+
+    final private Display[] display;
+
+    /** Samples that are not kept as primitives */
+    final private AtomicReferenceArray<VType> objects;
+
+    /** Copy of the most recent display info, only updated by producer */
+    private Display last_display = null;
+
+    /** Status strings, only updated by producer */
+    final private Map<String, Short> status_ids = new HashMap<String, Short>();
+
+    /** Status strings, indexed by <code>status</code>.
+     *  Replaced by producer with a larger copy when a new status is added.
+     */
+    private volatile String[] stati = new String[0];
+
+    PrimitiveSampleQueue(final int capacity)
+    {
+        super(capacity);
+        type = new byte[capacity];
+        time = new long[capacity];
+        value = new double[capacity];
+        severity = new byte[capacity];
+        status = new short[capacity];
+        display = new Display[capacity];
+        objects = new AtomicReferenceArray<VType>(capacity);
+    }
+
+    /** @param number Number
+     *  @return Type code for primitive storage or <code>OBJECT</code>
+     */
+    private static byte getType(final Number number)
+    {
+        if (number instanceof Double)
+            return DOUBLE;
+        if (number instanceof Float)
+            return FLOAT;
+        if (number instanceof Integer)
+            return INTEGER;
+        if (number instanceof Short)
+            return SHORT;
+        if (number instanceof Byte)
+            return BYTE;
+        if (number instanceof Long)
+        {
+            final long l = number.longValue();
+            if (l <= MAX_EXACT_LONG  &&  l >= -MAX_EXACT_LONG)
+                return LONG;
+        }
+        return OBJECT;
+    }
+
+    /** @param text Status text
+     *  @return Index of status in <code>stati</code> or -1 if table is full
+     */
+    private int getStatusID(final String text)
+    {
+        final Short id = status_ids.get(text);
+        if (id != null)
+            return id;
+        final String[] current = stati;
+        if (current.length >= Short.MAX_VALUE)
+            return -1;
+        final String[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = text;
+        status_ids.put(text, (short) current.length);
+        stati = updated;
+        return current.length;
+    }
+
+    /** @param sample Sample with display info
+     *  @return Shared copy of that display info
+     */
+    private Display getDisplay(final Display sample)
+    {
+        if (! MetaDataHelper.equals(sample, last_display))
+            last_display = ValueFactory.newDisplay(sample.getLowerDisplayLimit(),
+                    sample.getLowerAlarmLimit(), sample.getLowerWarningLimit(),
+                    sample.getUnits(), sample.getFormat(),
+                    sample.getUpperWarningLimit(), sample.getUpperAlarmLimit(),
+                    sample.getUpperDisplayLimit(),
+                    sample.getLowerCtrlLimit(), sample.getUpperCtrlLimit());
+        return last_display;
+    }
+
+    @Override
+    protected void store(final int slot, final VType sample)
+    {
+        if (sample instanceof VNumber)
+        {
+            final VNumber number = (VNumber) sample;
+            final Number num = number.getValue();
+            final Timestamp stamp = number.getTimestamp();
+            final byte num_type = num == null  ||  stamp == null ? OBJECT : getType(num);
+            final int status_id = num_type == OBJECT ? -1 : getStatusID(number.getAlarmName());
+            if (status_id >= 0)
+            {
+                if (type[slot] == OBJECT)
+                    objects.lazySet(slot, null);
+                type[slot] = num_type;
+                time[slot] = stamp.getSec() * 1000000000L + stamp.getNanoSec();
+                value[slot] = num.doubleValue();
+                severity[slot] = (byte) number.getAlarmSeverity().ordinal();
+                status[slot] = (short) status_id;
+                display[slot] = getDisplay(number);
+                return;
+            }
+        }
+        type[slot] = OBJECT;
+        display[slot] = null;
+        objects.set(slot, sample);
+    }
+
+    @Override
+    protected VType load(final int slot)
+    {
+        final byte num_type = type[slot];
+        if (num_type == OBJECT)
+            return objects.get(slot);
+        final long nanos = time[slot];
+        final double dbl = value[slot];
+        final String[] current = stati;
+        final int status_id = status[slot];
+        // Producer may be overwriting a dropped slot,
+        // in which case the consumer will not use this result
+        final String text = status_id < current.length ? current[status_id] : ""; //$NON-NLS-1$
+        final Number number;
+        switch (num_type)
+        {
+        case DOUBLE:  number = Double.valueOf(dbl);         break;
+        case FLOAT:   number = Float.valueOf((float) dbl);  break;
+        case LONG:    number = Long.valueOf((long) dbl);    break;
+        case INTEGER: number = Integer.valueOf((int) dbl);  break;
+        case SHORT:   number = Short.valueOf((short) dbl);  break;
+        default:      number = Byte.valueOf((byte) dbl);    break;
+        }
+        return new ArchiveVNumber(Timestamp.of(nanos / 1000000000L, (int) (nanos % 1000000000L)),
+                                  severities[severity[slot]], text,
+                                  display[slot], number);
+    }
+
+    /** Clear the slot's object unless the producer already re-used it */
+    @Override
+    protected void release(final int slot, final VType sample)
+    {
+        if (sample != null)
+            objects.compareAndSet(slot, sample, null);
+    }
+}
@@ -7,9 +7,9 @@
  ******************************************************************************/
 package org.csstudio.archive.engine.model;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
-import org.csstudio.apputil.ringbuffer.RingBuffer;
 import org.csstudio.archive.engine.ThrottledLogger;
 import org.epics.vtype.VType;
 
@@ -18,6 +18,11 @@ import org.epics.vtype.VType;
  *  Assumes that one thread adds samples, while a different
  *  thread removes them.
  *  When the queue size is reached, older samples get dropped.
+ *  <p>
+ *  Depending on the {@link BufferMode}, the samples are kept
+ *  in a synchronized ring buffer or in a lock-free queue.
+ *  For the lock-free queues, there must be at most one thread
+ *  adding samples at any time.
  *
  *  @author Kay Kasemir
  */
@@ -30,7 +35,7 @@ public class SampleBuffer
     final private String channel_name;
 
     /** The actual samples in a thread-save queue. */
-    final private RingBuffer<VType> samples;
+    final private SampleQueue samples;
 
     /** Statistics */
     final private BufferStats stats = new BufferStats();
@@ -42,16 +47,36 @@ public class SampleBuffer
     final private static ThrottledLogger overrun_msg =
         new ThrottledLogger(Level.WARNING, "log_overrun"); //$NON-NLS-1$
 
-    /** Is the buffer in an error state because of RDB write errors?
+    /** Number of write threads that are in an error state because of RDB write errors.
      *  Note that this is global for all buffers, not per instance!
      */
-    private static volatile boolean error = false;
+    final private static AtomicInteger write_errors = new AtomicInteger();
 
-    /** Create sample buffer of given capacity */
+    /** Create synchronized sample buffer of given capacity */
     SampleBuffer(final String channel_name, final int capacity)
+    {
+        this(channel_name, capacity, BufferMode.Synchronized);
+    }
+
+    /** Create sample buffer of given capacity
+     *  @param channel_name Name of channel that writes to this buffer
+     *  @param capacity Maximum number of samples
+     *  @param mode How samples are kept
+     */
+    SampleBuffer(final String channel_name, final int capacity, final BufferMode mode)
     {
         this.channel_name = channel_name;
-        samples = new RingBuffer<VType>(capacity);
+        switch (mode)
+        {
+        case LockFree:
+            samples = new ObjectSampleQueue(capacity);
+            break;
+        case Primitive:
+            samples = new PrimitiveSampleQueue(capacity);
+            break;
+        default:
+            samples = new SynchronizedSampleQueue(capacity);
+        }
     }
 
     /** @return channel name of this buffer */
@@ -63,62 +88,62 @@ public class SampleBuffer
     /** @return Queue capacity, i.e. maximum queue size. */
     public int getCapacity()
     {
-    	synchronized (samples)
-        {
-    		return samples.getCapacity();
-        }
+        return samples.getCapacity();
     }
 
     /** @return Current queue size, i.e. number of samples in the queue. */
     public int getQueueSize()
     {
-    	synchronized (samples)
-        {
-    		return samples.size();
-        }
+        return samples.size();
     }
 
     /** @return <code>true</code> if currently experiencing write errors */
     public static boolean isInErrorState()
     {
-        return error;
+        return write_errors.get() > 0;
     }
 
-    /** Set the error state. */
+    /** Update the error state.
+     *  <p>
+     *  Each write thread calls this when it enters or leaves
+     *  its error state. Buffers are in the error state
+     *  while any write thread experiences errors.
+     *  @param error <code>true</code> when entering, <code>false</code> when leaving the error state
+     */
     static void setErrorState(final boolean error)
     {
-        SampleBuffer.error = error;
+        if (error)
+            write_errors.incrementAndGet();
+        else
+        {
+            int count = write_errors.get();
+            while (count > 0  &&  !write_errors.compareAndSet(count, count-1))
+                count = write_errors.get();
+        }
     }
 
     /** Add a sample to the queue, maybe dropping older samples */
     @SuppressWarnings("nls")
     void add(final VType value)
     {
-    	synchronized (samples)
-        {
-            if (samples.isFull())
-            {   // Note start of overruns, then drop older sample
-                if (start_of_overruns == null)
-                    start_of_overruns = Integer.valueOf(stats.getOverruns());
-                stats.addOverrun();
-            }
-            else if (start_of_overruns != null)
-            {   // Ending a string of overruns. Maybe log it.
-                final int overruns = stats.getOverruns() - start_of_overruns;
-                overrun_msg.log(channel_name + ": " + overruns + " overruns");
-                start_of_overruns = null;
-            }
-            samples.add(value);
+        if (samples.add(value))
+        {   // Note start of overruns, older sample was dropped
+            if (start_of_overruns == null)
+                start_of_overruns = Integer.valueOf(stats.getOverruns());
+            stats.addOverrun();
+        }
+        else if (start_of_overruns != null)
+        {   // Ending a string of overruns. Maybe log it.
+            final int overruns = stats.getOverruns() - start_of_overruns;
+            overrun_msg.log(channel_name + ": " + overruns + " overruns");
+            start_of_overruns = null;
         }
     }
 
     /** @return latest sample in queue or <code>null</code> if empty */
     VType remove()
     {
-    	synchronized (samples)
-        {
-            return samples.remove();
-        }
+        return samples.remove();
     }
 
     /** Update stats with current values */
@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.csstudio.archive.vtype.ArchiveVEnum;
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.csstudio.archive.vtype.ArchiveVNumberArray;
+import org.csstudio.archive.vtype.ArchiveVString;
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.epics.util.array.ListNumber;
+import org.epics.util.text.NumberFormats;
+import org.epics.util.time.Timestamp;
+import org.epics.vtype.AlarmSeverity;
+import org.epics.vtype.Display;
+import org.epics.vtype.VEnum;
+import org.epics.vtype.VNumber;
+import org.epics.vtype.VNumberArray;
+import org.epics.vtype.VString;
+import org.epics.vtype.VType;
+import org.epics.vtype.ValueFactory;
+
+/** Binary encoding of samples for the {@link SampleSpool}.
+ *  <p>
+ *  Keeps what the archive writer uses: Time stamp, severity, status,
+ *  value and the numeric or enumerated meta data.
+ *  Sample types that the writer would store as text are encoded as text.
+ *
+ *  @author agent
+ */
+class SampleCodec
+{
+    final private static byte DOUBLE = 1, LONG = 2, ARRAY = 3, ENUM = 4, TEXT = 5;
+
+    final private static AlarmSeverity[] severities = AlarmSeverity.values();
+
+    /** Encode sample
+     *  @param out Where to write
+     *  @param channel Name of the channel
+     *  @param sample Sample to encode
+     *  @throws IOException on error, including text that's too long to encode
+     */
+    static void encode(final DataOutput out, final String channel, final VType sample) throws IOException
+    {
+        out.writeUTF(channel);
+        final Timestamp stamp = VTypeHelper.getTimestamp(sample);
+        out.writeLong(stamp.getSec());
+        out.writeInt(stamp.getNanoSec());
+        out.writeByte(VTypeHelper.getSeverity(sample).ordinal());
+        out.writeUTF(VTypeHelper.getMessage(sample));
+        if (sample instanceof VNumber)
+        {
+            final Number number = ((VNumber) sample).getValue();
+            if (number instanceof Double)
+            {
+                out.writeByte(DOUBLE);
+                out.writeDouble(number.doubleValue());
+            }
+            else
+            {
+                out.writeByte(LONG);
+                out.writeLong(number.longValue());
+            }
+            encodeDisplay(out, (Display) sample);
+        }
+        else if (sample instanceof VNumberArray)
+        {
+            out.writeByte(ARRAY);
+            final ListNumber data = ((VNumberArray) sample).getData();
+            final int size = data.size();
+            out.writeInt(size);
+            for (int i=0; i<size; ++i)
+                out.writeDouble(data.getDouble(i));
+            encodeDisplay(out, (Display) sample);
+        }
+        else if (sample instanceof VEnum)
+        {
+            out.writeByte(ENUM);
+            final VEnum value = (VEnum) sample;
+            out.writeInt(value.getIndex());
+            final List<String> labels = value.getLabels();
+            out.writeInt(labels.size());
+            for (String label : labels)
+                out.writeUTF(label);
+        }
+        else
+        {
+            out.writeByte(TEXT);
+            if (sample instanceof VString)
+                out.writeUTF(((VString) sample).getValue());
+            else
+                out.writeUTF(sample.toString());
+        }
+    }
+
+    private static void encodeDisplay(final DataOutput out, final Display display) throws IOException
+    {
+        out.writeDouble(toDouble(display.getLowerDisplayLimit()));
+        out.writeDouble(toDouble(display.getLowerAlarmLimit()));
+        out.writeDouble(toDouble(display.getLowerWarningLimit()));
+        out.writeUTF(display.getUnits() == null ? "" : display.getUnits()); //$NON-NLS-1$
+        final NumberFormat format = display.getFormat();
+        out.writeInt(format == null ? -1 : format.getMaximumFractionDigits());
+        out.writeDouble(toDouble(display.getUpperWarningLimit()));
+        out.writeDouble(toDouble(display.getUpperAlarmLimit()));
+        out.writeDouble(toDouble(display.getUpperDisplayLimit()));
+        out.writeDouble(toDouble(display.getLowerCtrlLimit()));
+        out.writeDouble(toDouble(display.getUpperCtrlLimit()));
+    }
+
+    private static double toDouble(final Double value)
+    {
+        return value == null ? Double.NaN : value.doubleValue();
+    }
+
+    /** Decode name of channel and sample
+     *  @param in Where to read
+     *  @param channel Receives the name of the channel in element 0
+     *  @return Sample
+     *  @throws IOException on error
+     */
+    static VType decode(final DataInput in, final String[] channel) throws IOException
+    {
+        channel[0] = in.readUTF();
+        final Timestamp stamp = Timestamp.of(in.readLong(), in.readInt());
+        final AlarmSeverity severity = severities[in.readByte()];
+        final String status = in.readUTF();
+        final byte type = in.readByte();
+        switch (type)
+        {
+        case DOUBLE:
+        {
+            final double value = in.readDouble();
+            return new ArchiveVNumber(stamp, severity, status, decodeDisplay(in), Double.valueOf(value));
+        }
+        case LONG:
+        {
+            final long value = in.readLong();
+            return new ArchiveVNumber(stamp, severity, status, decodeDisplay(in), Long.valueOf(value));
+        }
+        case ARRAY:
+        {
+            final double[] data = new double[in.readInt()];
+            for (int i=0; i<data.length; ++i)
+                data[i] = in.readDouble();
+            return new ArchiveVNumberArray(stamp, severity, status, decodeDisplay(in), data);
+        }
+        case ENUM:
+        {
+            final int index = in.readInt();
+            final int count = in.readInt();
+            final List<String> labels = new ArrayList<String>(count);
+            for (int i=0; i<count; ++i)
+                labels.add(in.readUTF());
+            return new ArchiveVEnum(stamp, severity, status, labels, index);
+        }
+        case TEXT:
+            return new ArchiveVString(stamp, severity, status, in.readUTF());
+        default:
+            throw new IOException("Unknown sample type " + type); //$NON-NLS-1$
+        }
+    }
+
+    private static Display decodeDisplay(final DataInput in) throws IOException
+    {
+        final double lower_display = in.readDouble();
+        final double lower_alarm = in.readDouble();
+        final double lower_warning = in.readDouble();
+        final String units = in.readUTF();
+        final int precision = in.readInt();
+        return ValueFactory.newDisplay(lower_display, lower_alarm, lower_warning, units,
+                precision < 0 ? NumberFormats.toStringFormat() : NumberFormats.format(precision),
+                in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+    }
+}
@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import org.epics.vtype.VType;
+
+/** Storage for the samples in a {@link SampleBuffer}.
+ *  <p>
+ *  One thread adds samples, while a different
+ *  thread removes them.
+ *  When the capacity is reached, the oldest sample gets dropped.
+ *
+ *  @author agent
+ */
+interface SampleQueue
+{
+    /** @return Queue capacity, i.e. maximum queue size. */
+    public int getCapacity();
+
+    /** @return Current queue size, i.e. number of samples in the queue. */
+    public int size();
+
+    /** Add a sample to the queue, maybe dropping the oldest sample
+     *  @param value Sample to add
+     *  @return <code>true</code> if an older sample was dropped
+     */
+    public boolean add(VType value);
+
+    /** @return Oldest sample in queue or <code>null</code> if empty */
+    public VType remove();
+}
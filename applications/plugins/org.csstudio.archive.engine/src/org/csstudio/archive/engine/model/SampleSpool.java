@@ -0,0 +1,435 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.logging.Level;
+
+import org.csstudio.archive.engine.Activator;
+import org.csstudio.archive.writer.ArchiveWriter;
+import org.csstudio.archive.writer.WriteChannel;
+import org.epics.vtype.VType;
+
+/** Append-only spool of samples in memory-mapped segment files.
+ *  <p>
+ *  While the archive cannot be written, the {@link WriteThread}
+ *  moves samples from the sample buffers into the spool,
+ *  and replays them once the archive is available again.
+ *  <p>
+ *  Each segment file starts with a header that holds
+ *  the read position, followed by length-prefixed records.
+ *  A record length of 0 marks the end of the records.
+ *  Segments that have been replayed are deleted.
+ *  Segments that remain when the engine stops are replayed
+ *  after the next start.
+ *  <p>
+ *  Samples are only removed from the spool after the writer flushed them,
+ *  so samples may be written again if the engine stops
+ *  between flushing and updating the read position.
+ *  <p>
+ *  Not thread-safe: Only to be used by one write thread.
+ *  Statistics may be read by other threads.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class SampleSpool
+{
+    /** Segment file header: Magic number, read position */
+    final private static int MAGIC = 0x53504F4C, HEADER_SIZE = 8;
+
+    /** Size of record length */
+    final private static int LENGTH_SIZE = 4;
+
+    /** One memory-mapped segment file */
+    private static class Segment
+    {
+        final File file;
+        final MappedByteBuffer buffer;
+        int write_position = HEADER_SIZE;
+        int read_position = HEADER_SIZE;
+        int samples = 0;
+
+        /** Open or create segment
+         *  @param file Segment file
+         *  @param size Size of segment
+         *  @param create Create new segment?
+         *  @throws IOException on error
+         */
+        Segment(final File file, final int size, final boolean create) throws IOException
+        {
+            this.file = file;
+            final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try
+            {
+                if (create)
+                    raf.setLength(size);
+                final FileChannel channel = raf.getChannel();
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            }
+            finally
+            {   // Mapping remains valid after the file is closed
+                raf.close();
+            }
+            if (create)
+            {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(LENGTH_SIZE, read_position);
+                return;
+            }
+            if (buffer.capacity() < HEADER_SIZE  ||  buffer.getInt(0) != MAGIC)
+                throw new IOException("Invalid spool segment " + file);
+            read_position = buffer.getInt(LENGTH_SIZE);
+            // Locate end of records, count those that remain to be read
+            while (write_position + LENGTH_SIZE <= buffer.capacity())
+            {
+                final int length = buffer.getInt(write_position);
+                if (length <= 0  ||  write_position + LENGTH_SIZE + length > buffer.capacity())
+                    break;
+                if (write_position >= read_position)
+                    ++samples;
+                write_position += LENGTH_SIZE + length;
+            }
+        }
+
+        /** @return <code>true</code> if all records have been read */
+        boolean isEmpty()
+        {
+            return read_position >= write_position;
+        }
+
+        /** Persist the read position */
+        void commitReadPosition()
+        {
+            buffer.putInt(LENGTH_SIZE, read_position);
+        }
+    }
+
+    /** Directory that holds the segment files */
+    final private File directory;
+
+    /** Size of each segment file */
+    final private int segment_size;
+
+    /** Maximum number of segment files */
+    final private int max_segments;
+
+    /** Segments, oldest first. Last segment is used to add samples. */
+    final private LinkedList<Segment> segments = new LinkedList<Segment>();
+
+    /** Sequence number for the next segment file name */
+    private long next_segment = 1;
+
+    /** Buffer for encoding one record, providing access to its data */
+    private static class RecordBuffer extends ByteArrayOutputStream
+    {
+        RecordBuffer()
+        {
+            super(256);
+        }
+
+        byte[] getData()
+        {
+            return buf;
+        }
+    }
+
+    /** Buffer for encoding one record */
+    final private RecordBuffer record = new RecordBuffer();
+
+    final private DataOutputStream record_out = new DataOutputStream(record);
+
+    /** Buffer for reading one record */
+    private byte[] read_buffer = new byte[256];
+
+    /** Receives channel name when decoding */
+    final private String[] channel_name = new String[1];
+
+    /** Number of samples in the spool */
+    private volatile long samples = 0;
+
+    /** Number of segment files */
+    private volatile int segment_count = 0;
+
+    /** Number of samples that could not be spooled */
+    private volatile long dropped = 0;
+
+    /** Number of spooled samples that could not be replayed */
+    private volatile long skipped = 0;
+
+    /** Open spool, locating existing segments
+     *  @param directory Directory for the segment files, created if necessary
+     *  @param segment_size Size of each segment file in bytes, less than 2 GB
+     *  @param max_size Maximum spool size in bytes
+     *  @throws IllegalArgumentException if a size is out of range
+     *  @throws IOException on error
+     */
+    public SampleSpool(final File directory, final long segment_size, final long max_size) throws IOException
+    {
+        // Segments are memory-mapped, which is limited to an int size
+        if (segment_size <= HEADER_SIZE + LENGTH_SIZE  ||  segment_size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Spool segment size of " + segment_size +
+                                               " bytes is not between " + (HEADER_SIZE + LENGTH_SIZE) +
+                                               " bytes and 2 GB");
+        if (max_size <= 0)
+            throw new IllegalArgumentException("Invalid spool size of " + max_size + " bytes");
+        this.directory = directory;
+        this.segment_size = (int) segment_size;
+        this.max_segments = (int) Math.max(1, max_size / segment_size);
+        if (! directory.isDirectory()  &&  ! directory.mkdirs())
+            throw new IOException("Cannot create spool directory " + directory);
+
+        final String[] names = directory.list(new FilenameFilter()
+        {
+            @Override
+            public boolean accept(final File dir, final String name)
+            {
+                return name.startsWith("spool_")  &&  name.endsWith(".dat");
+            }
+        });
+        Arrays.sort(names);
+        for (String name : names)
+        {
+            final File file = new File(directory, name);
+            try
+            {
+                next_segment = Math.max(next_segment, getSequence(name) + 1);
+                final Segment segment = new Segment(file, this.segment_size, false);
+                if (segment.isEmpty())
+                {
+                    delete(segment);
+                    continue;
+                }
+                segments.add(segment);
+                samples += segment.samples;
+            }
+            catch (Exception ex)
+            {
+                Activator.getLogger().log(Level.WARNING, "Ignoring spool file " + file, ex);
+            }
+        }
+        segment_count = segments.size();
+        if (samples > 0)
+            Activator.getLogger().log(Level.INFO, "Spool {0} holds {1} samples",
+                    new Object[] { directory, samples });
+    }
+
+    /** @param name Segment file name
+     *  @return Sequence number of that segment
+     */
+    private static long getSequence(final String name)
+    {
+        try
+        {
+            return Long.parseLong(name.substring(6, name.length() - 4));
+        }
+        catch (NumberFormatException ex)
+        {
+            return 0;
+        }
+    }
+
+    /** @return Directory that holds the segment files */
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    /** @return Number of samples in the spool */
+    public long getSampleCount()
+    {
+        return samples;
+    }
+
+    /** @return Size of spool files in bytes */
+    public long getSize()
+    {
+        return (long) segment_count * segment_size;
+    }
+
+    /** @return Number of samples that could not be spooled */
+    public long getDroppedCount()
+    {
+        return dropped;
+    }
+
+    /** @return Number of spooled samples that could not be replayed */
+    public long getSkippedCount()
+    {
+        return skipped;
+    }
+
+    /** Add sample to spool
+     *  @param channel Name of channel
+     *  @param sample Sample to add
+     *  @return <code>true</code> if added, <code>false</code> if spool is full or sample cannot be encoded
+     */
+    public boolean add(final String channel, final VType sample)
+    {
+        record.reset();
+        try
+        {
+            SampleCodec.encode(record_out, channel, sample);
+        }
+        catch (IOException ex)
+        {
+            Activator.getLogger().log(Level.WARNING, "Cannot spool sample for " + channel, ex);
+            ++dropped;
+            return false;
+        }
+        final int length = record.size();
+        Segment segment = segments.peekLast();
+        if (segment == null  ||
+            segment.write_position + LENGTH_SIZE + length > segment.buffer.capacity())
+        {
+            if (HEADER_SIZE + LENGTH_SIZE + length > segment_size  ||
+                segments.size() >= max_segments)
+            {
+                ++dropped;
+                return false;
+            }
+            final File file = new File(directory, String.format("spool_%08d.dat", next_segment++));
+            try
+            {
+                segment = new Segment(file, segment_size, true);
+            }
+            catch (IOException ex)
+            {
+                Activator.getLogger().log(Level.WARNING, "Cannot create spool file " + file, ex);
+                ++dropped;
+                return false;
+            }
+            segments.add(segment);
+            segment_count = segments.size();
+        }
+        // Write data, then length, so that length > 0 marks a complete record
+        final int data_position = segment.write_position + LENGTH_SIZE;
+        segment.buffer.position(data_position);
+        segment.buffer.put(record.getData(), 0, length);
+        // Terminate the records unless the segment is full
+        if (data_position + length + LENGTH_SIZE <= segment.buffer.capacity())
+            segment.buffer.putInt(data_position + length, 0);
+        segment.buffer.putInt(segment.write_position, length);
+        segment.write_position = data_position + length;
+        ++segment.samples;
+        ++samples;
+        return true;
+    }
+
+    /** Write spooled samples to archive.
+     *  <p>
+     *  Reads samples from the oldest segment, writes and flushes them,
+     *  and only then removes them from the spool.
+     *  <p>
+     *  Records that cannot be decoded or whose channel is no longer known
+     *  to the writer are skipped and removed, so that they cannot block
+     *  the samples behind them.
+     *
+     *  @param writer {@link ArchiveWriter}
+     *  @param max_samples Maximum number of samples to write
+     *  @return Number of samples written or skipped
+     *  @throws Exception on error, in which case the samples remain in the spool
+     */
+    public int replay(final ArchiveWriter writer, final int max_samples) throws Exception
+    {
+        final Segment segment = segments.peekFirst();
+        if (segment == null)
+            return 0;
+        int position = segment.read_position;
+        int count = 0, bad = 0;
+        Exception error = null;
+        while (count < max_samples  &&  position < segment.write_position)
+        {
+            final int length = segment.buffer.getInt(position);
+            if (length <= 0  ||  position + LENGTH_SIZE + length > segment.write_position)
+            {   // Corrupted segment: Skip its remaining records
+                error = new IOException("Invalid record length " + length + " at " + position + " in " + segment.file);
+                bad += segment.samples - count;
+                count = segment.samples;
+                position = segment.write_position;
+                break;
+            }
+            if (length > read_buffer.length)
+                read_buffer = new byte[length];
+            segment.buffer.position(position + LENGTH_SIZE);
+            segment.buffer.get(read_buffer, 0, length);
+            position += LENGTH_SIZE + length;
+            ++count;
+            final VType sample;
+            final WriteChannel channel;
+            try
+            {
+                sample = SampleCodec.decode(
+                    new DataInputStream(new ByteArrayInputStream(read_buffer, 0, length)), channel_name);
+                channel = writer.getChannel(channel_name[0]);
+            }
+            catch (Exception ex)
+            {   // Unknown channel or bad record: Skip it
+                error = ex;
+                ++bad;
+                continue;
+            }
+            writer.addSample(channel, sample);
+        }
+        writer.flush();
+
+        // Samples have been written or skipped, remove them from spool
+        segment.read_position = position;
+        segment.samples -= count;
+        samples -= count;
+        if (bad > 0)
+        {
+            skipped += bad;
+            Activator.getLogger().log(Level.WARNING,
+                "Skipped " + bad + " spooled samples that cannot be written", error);
+        }
+        if (segment.isEmpty())
+            delete(segment);
+        else
+            segment.commitReadPosition();
+        return count;
+    }
+
+    /** @param segment Segment to remove */
+    private void delete(final Segment segment)
+    {
+        segments.remove(segment);
+        segment_count = segments.size();
+        if (! segment.file.delete())
+        {   // Mapped files cannot be deleted on some operating systems
+            segment.commitReadPosition();
+            segment.buffer.force();
+            segment.file.deleteOnExit();
+        }
+    }
+
+    /** Write spooled data to disk */
+    public void force()
+    {
+        for (Segment segment : segments)
+            segment.buffer.force();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("Spool %s: %d samples in %d files, %d dropped, %d skipped",
+                directory, samples, segment_count, dropped, skipped);
+    }
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import org.csstudio.apputil.ringbuffer.RingBuffer;
+import org.epics.vtype.VType;
+
+/** {@link SampleQueue} based on a {@link RingBuffer},
+ *  synchronizing every access.
+ *  @author agent
+ */
+class SynchronizedSampleQueue implements SampleQueue
+{
+    final private RingBuffer<VType> samples;
+
+    SynchronizedSampleQueue(final int capacity)
+    {
+        samples = new RingBuffer<VType>(capacity);
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        synchronized (samples)
+        {
+            return samples.getCapacity();
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        synchronized (samples)
+        {
+            return samples.size();
+        }
+    }
+
+    @Override
+    public boolean add(final VType value)
+    {
+        synchronized (samples)
+        {
+            final boolean overrun = samples.isFull();
+            samples.add(value);
+            return overrun;
+        }
+    }
+
+    @Override
+    public VType remove()
+    {
+        synchronized (samples)
+        {
+            return samples.remove();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+/** How channels are assigned to write threads.
+ *  @author agent
+ */
+public enum WritePartition
+{
+    /** Distribute channels by hash of their name */
+    Channel,
+    /** Keep all channels of an {@link ArchiveGroup} in the same write thread */
+    Group;
+
+    /** @param text Name of a partitioning, case-insensitive
+     *  @return Matching {@link WritePartition}
+     *  @throws IllegalArgumentException for unknown partitioning
+     */
+    public static WritePartition fromString(final String text)
+    {
+        for (WritePartition partition : values())
+            if (partition.name().equalsIgnoreCase(text.trim()))
+                return partition;
+        throw new IllegalArgumentException("Unknown write partition '" + text + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
@@ -37,6 +37,9 @@ public class WriteThread implements Runnable
     /** Minimum write period [seconds] */
     private static final double MIN_WRITE_PERIOD = 5.0;
 
+    /** Name of this write thread */
+    final private String name;
+
     /** Server to which this thread writes. */
     private ArchiveWriter writer;
 
@@ -67,9 +70,38 @@ public class WriteThread implements Runnable
     /** Average duration of write run */
     private Average write_time = new Average();
 
+    /** Spool for samples that cannot be written, or <code>null</code> */
+    private SampleSpool spool = null;
+
+    /** Maximum number of spooled samples to replay per second */
+    private int replay_rate;
+
+    /** Is this thread currently experiencing write errors? */
+    private volatile boolean in_error_state = false;
+
     /** Thread the executes this.run() */
     private Thread thread;
 
+    /** Create write thread */
+    public WriteThread()
+    {
+        this("WriteThread"); //$NON-NLS-1$
+    }
+
+    /** Create write thread
+     *  @param name Name of the thread
+     */
+    public WriteThread(final String name)
+    {
+        this.name = name;
+    }
+
+    /** @return Name of the thread */
+    public String getName()
+    {
+        return name;
+    }
+
     /** Add a channel's buffer that this thread reads */
     public void addChannel(final ArchiveChannel channel)
     {
@@ -82,6 +114,29 @@ public class WriteThread implements Runnable
         buffers.add(buffer);
     }
 
+    /** @return Number of sample buffers that this thread reads */
+    public int getChannelCount()
+    {
+        return buffers.size();
+    }
+
+    /** Enable spooling of samples while the archive cannot be written.
+     *  Must be called before <code>start()</code>.
+     *  @param spool {@link SampleSpool}
+     *  @param replay_rate Maximum number of spooled samples to replay per second
+     */
+    public void setSpool(final SampleSpool spool, final int replay_rate)
+    {
+        this.spool = spool;
+        this.replay_rate = replay_rate;
+    }
+
+    /** @return {@link SampleSpool} or <code>null</code> */
+    public SampleSpool getSpool()
+    {
+        return spool;
+    }
+
     /** Start the write thread.
      *  @param write_period Period between writes in seconds
      *  @param batch_size Number of values to batch
@@ -97,7 +152,7 @@ public class WriteThread implements Runnable
         }
         millisec_delay = (int)(1000.0 * write_period);
         this.batch_size = batch_size;
-        thread = new Thread(this, "WriteThread");
+        thread = new Thread(this, name);
         thread.start();
     }
 
@@ -124,6 +179,12 @@ public class WriteThread implements Runnable
         return last_write_stamp;
     }
 
+    /** @return <code>true</code> if this thread currently experiences write errors */
+    public boolean isInErrorState()
+    {
+        return in_error_state;
+    }
+
     /** @return Average number of values per write run */
     public double getWriteCount()
     {
@@ -153,7 +214,7 @@ public class WriteThread implements Runnable
     @SuppressWarnings("nls")
     public void run()
     {
-        Activator.getLogger().info("WriteThread starts");
+        Activator.getLogger().info(name + " starts");
         final BenchmarkTimer timer = new BenchmarkTimer();
         boolean write_error = false;
         do_run = true;
@@ -186,6 +247,9 @@ public class WriteThread implements Runnable
                 write_time.update(timer.getSeconds());
                 // How much of the scheduled delay is left after write()?
                 delay = millisec_delay - timer.getMilliseconds();
+                // Use some of that to replay spooled samples
+                if (spool != null  &&  spool.getSampleCount() > 0  &&  delay > 0)
+                    delay -= replay(delay / 2);
             }
             catch (Exception ex)
             {   // Error in write() or the preceding reconnect()...
@@ -193,8 +257,15 @@ public class WriteThread implements Runnable
                 // Use max. delay
                 delay = millisec_delay;
                 write_error = true;
+                // Keep samples in spool instead of letting sample buffers overrun
+                if (spool != null)
+                    spool();
+            }
+            if (write_error != in_error_state)
+            {
+                in_error_state = write_error;
+                SampleBuffer.setErrorState(write_error);
             }
-            SampleBuffer.setErrorState(write_error);
             // See if there's any time left to wait,
             // or if we already used all that time in the last 'write'
             if (delay > 0)
@@ -212,10 +283,11 @@ public class WriteThread implements Runnable
                 }
             }
         }
-        Activator.getLogger().info("WriteThread exists");
+        Activator.getLogger().info(name + " exists");
     }
 
     /** Stop the write thread, performing a final write. */
+    @SuppressWarnings("nls")
     public void shutdown() throws Exception
     {
         // Stop the thread
@@ -228,6 +300,14 @@ public class WriteThread implements Runnable
         {
         	write();
         }
+        catch (Exception ex)
+        {
+            if (spool == null)
+                throw ex;
+            // Keep samples in spool for the next start
+            Activator.getLogger().log(Level.WARNING, "Final write failed, spooling samples", ex);
+            spool();
+        }
         finally
         {
         	if (writer != null)
@@ -238,6 +318,47 @@ public class WriteThread implements Runnable
         }
     }
 
+    /** Move samples from all sample buffers into the spool */
+    @SuppressWarnings("nls")
+    private void spool()
+    {
+        for (SampleBuffer buffer : buffers)
+        {
+            buffer.updateStats();
+            final String name = buffer.getChannelName();
+            VType sample = buffer.remove();
+            while (sample != null)
+            {
+                spool.add(name, sample);
+                sample = buffer.remove();
+            }
+        }
+        spool.force();
+        Activator.getLogger().log(Level.FINE, "{0}", spool);
+    }
+
+    /** Replay spooled samples, limited by the replay rate
+     *  @param max_millisec Maximum time to spend
+     *  @return Time spent in milliseconds
+     *  @throws Exception on error
+     */
+    @SuppressWarnings("nls")
+    private long replay(final long max_millisec) throws Exception
+    {
+        final long start = System.currentTimeMillis();
+        final long max_samples = replay_rate * millisec_delay / 1000;
+        long replayed = 0;
+        long spent = 0;
+        while (replayed < max_samples  &&  spent < max_millisec  &&  spool.getSampleCount() > 0)
+        {
+            replayed += spool.replay(writer, (int) Math.min(batch_size, max_samples - replayed));
+            spent = System.currentTimeMillis() - start;
+        }
+        Activator.getLogger().log(Level.FINE, "Replayed {0} samples in {1} ms, {2}",
+                new Object[] { replayed, spent, spool });
+        return spent;
+    }
+
     /** Write right now until all sample buffers are empty
      *  @return number of samples written
      */
@@ -17,6 +17,7 @@ import org.csstudio.archive.engine.Messages;
 import org.csstudio.archive.engine.model.ArchiveGroup;
 import org.csstudio.archive.engine.model.EngineModel;
 import org.csstudio.archive.engine.model.SampleBuffer;
+import org.csstudio.archive.engine.model.WriteThread;
 import org.csstudio.archive.vtype.TimestampHelper;
 import org.eclipse.core.runtime.Platform;
 import org.epics.util.time.Timestamp;
@@ -128,6 +129,12 @@ class MainResponse extends AbstractResponse
             Messages.HTTP_WritePeriod,
             model.getWritePeriod() + " sec"
         });
+        if (model.getWriteThreadCount() > 1)
+            html.tableLine(new String[]
+            {
+                Messages.HTTP_WriteThreads,
+                model.getWriteThreadCount() + " by " + model.getWritePartition().name()
+            });
 
         // Currently in 'Write Error' state?
         html.tableLine(new String[]
@@ -156,6 +163,21 @@ class MainResponse extends AbstractResponse
             Messages.HTTP_WriteDuration,
             String.format("%.1f sec", model.getWriteDuration())
         });
+        if (model.isSpoolEnabled())
+        {
+            final long spooled = model.getSpoolSampleCount();
+            final long dropped = model.getSpoolDroppedCount();
+            final long skipped = model.getSpoolSkippedCount();
+            final String spool = String.format("%d samples in %.1f MB",
+                    spooled, model.getSpoolSize() / MB);
+            html.tableLine(new String[]
+            {
+                Messages.HTTP_Spool,
+                (spooled > 0 ? HTMLWriter.makeRedText(spool) : spool) +
+                (dropped > 0 ? HTMLWriter.makeRedText(", " + dropped + " dropped") : "") +
+                (skipped > 0 ? HTMLWriter.makeRedText(", " + skipped + " skipped") : "")
+            });
+        }
         html.tableLine(new String[]
         {
             Messages.HTTP_Idletime,
@@ -176,6 +198,48 @@ class MainResponse extends AbstractResponse
 
         html.closeTable();
 
+        if (model.getWriteThreadCount() > 1)
+            writeThreadTable(html);
+
         html.close();
     }
+
+    /** Add table with statistics of each write thread
+     *  @param html {@link HTMLWriter}
+     */
+    private void writeThreadTable(final HTMLWriter html)
+    {
+        html.openTable(1, new String[]
+        {
+            Messages.HTTP_WriteThread,
+            Messages.HTTP_ChannelCount,
+            Messages.HTTP_WriteState,
+            Messages.HTTP_LastWriteTime,
+            Messages.HTTP_WriteCount,
+            Messages.HTTP_WriteDuration,
+            Messages.HTTP_Spool,
+        });
+        for (int i=0; i<model.getWriteThreadCount(); ++i)
+        {
+            final WriteThread writer = model.getWriteThread(i);
+            final Timestamp last_write_time = writer.getLastWriteTime();
+            html.tableLine(new String[]
+            {
+                writer.getName(),
+                Integer.toString(writer.getChannelCount()),
+                writer.isInErrorState()
+                ? HTMLWriter.makeRedText(Messages.HTTP_WriteError)
+                : "OK",
+                last_write_time == null
+                ? Messages.HTTP_Never
+                : TimestampHelper.format(last_write_time),
+                (int)writer.getWriteCount() + " samples",
+                String.format("%.1f sec", writer.getWriteDuration()),
+                writer.getSpool() == null
+                ? ""
+                : writer.getSpool().getSampleCount() + " samples"
+            });
+        }
+        html.closeTable();
+    }
 }
@@ -0,0 +1,384 @@
+package org.csstudio.archive.reader.appliance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Iterator;
+
+import org.csstudio.archive.vtype.TimestampHelper;
+import org.epics.archiverappliance.retrieval.client.EpicsMessage;
+import org.epics.archiverappliance.retrieval.client.GenMsgIterator;
+import org.epics.archiverappliance.retrieval.client.InputStreamBackedGenMsg;
+import org.junit.Test;
+
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.PayloadInfo;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.PayloadType;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.ScalarDouble;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.ScalarString;
+
+/**
+ *
+ * <code>PBStreamDecoderTest</code> compares the {@link PBStreamDecoder} with the
+ * <code>InputStreamBackedGenMsg</code> of the appliance client library on a PB/HTTP
+ * stream that is created in memory and served over HTTP by a stand-in for the
+ * appliance, and reports the time taken by both decoders.
+ *
+ * @author agent
+ *
+ */
+@SuppressWarnings("nls")
+public class PBStreamDecoderTest {
+
+	private static final int YEAR = 2014;
+
+	/**
+	 * Appends a line to the stream, escaped like the appliance does.
+	 *
+	 * @param out the stream
+	 * @param line the unescaped bytes of the line
+	 */
+	private static void writeLine(ByteArrayOutputStream out, byte[] line) {
+		for (byte b : line) {
+			if (b == 0x1B) {
+				out.write(0x1B);
+				out.write(0x01);
+			} else if (b == 0x0A) {
+				out.write(0x1B);
+				out.write(0x02);
+			} else if (b == 0x0D) {
+				out.write(0x1B);
+				out.write(0x03);
+			} else {
+				out.write(b);
+			}
+		}
+		out.write('\n');
+	}
+
+	/**
+	 * Creates a stream with the given number of chunks of double samples.
+	 *
+	 * @param chunks number of chunks
+	 * @param samples number of samples per chunk
+	 * @return the stream
+	 */
+	private static byte[] createDoubleStream(int chunks, int samples) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int c = 0; c < chunks; c++) {
+			if (c > 0) {
+				out.write('\n');
+			}
+			writeLine(out, PayloadInfo.newBuilder().setPvname("test_pv_double")
+					.setType(PayloadType.SCALAR_DOUBLE).setYear(YEAR).build().toByteArray());
+			for (int i = 0; i < samples; i++) {
+				int n = c * samples + i;
+				ScalarDouble.Builder sample = ScalarDouble.newBuilder()
+						.setSecondsintoyear(n).setNano(n % 1000 * 1000)
+						// Values that include bytes which need to be escaped
+						.setVal(n * 0.5 + Double.longBitsToDouble(0x0A0D1B0A0D1B0AL));
+				if (n % 3 == 0) {
+					sample.setSeverity(n % 4).setStatus(n % 7);
+				}
+				writeLine(out, sample.build().toByteArray());
+			}
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Creates a stream with one chunk of string samples.
+	 *
+	 * @param samples number of samples
+	 * @return the stream
+	 */
+	private static byte[] createStringStream(int samples) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeLine(out, PayloadInfo.newBuilder().setPvname("test_pv_string")
+				.setType(PayloadType.SCALAR_STRING).setYear(YEAR).build().toByteArray());
+		for (int i = 0; i < samples; i++) {
+			writeLine(out, ScalarString.newBuilder().setSecondsintoyear(i).setNano(i)
+					.setVal("Value\n" + i + "\r\u001B").build().toByteArray());
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Tests that the batches of {@link PBStreamDecoder#readBatch()} match the
+	 * messages of the appliance client library, including chunk changes.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testBatches() throws Exception {
+		byte[] data = createDoubleStream(3, PBStreamDecoder.BATCH_SIZE + 100);
+		InputStreamBackedGenMsg expected = new InputStreamBackedGenMsg(new ByteArrayInputStream(data));
+		PBStreamDecoder decoder = new PBStreamDecoder(new ByteArrayInputStream(data));
+		assertEquals("Type", PayloadType.SCALAR_DOUBLE, decoder.getPayLoadInfo().getType());
+		assertTrue("Numeric scalar", PBStreamDecoder.isNumericScalar(decoder.getPayLoadInfo().getType()));
+
+		Iterator<EpicsMessage> messages = expected.iterator();
+		int count = 0;
+		int size;
+		while ((size = decoder.readBatch()) > 0) {
+			assertTrue("Batch size", size <= PBStreamDecoder.BATCH_SIZE);
+			for (int i = 0; i < size; i++) {
+				EpicsMessage message = messages.next();
+				assertEquals("Timestamp comparison",
+						TimestampHelper.fromSQLTimestamp(message.getTimestamp()),
+						decoder.getTimestamp(i));
+				assertEquals("Value comparison", message.getNumberValue().doubleValue(), decoder.getValue(i), 0.0);
+				assertEquals("Severity", message.getSeverity(), decoder.getSeverity(i));
+				assertEquals("Status", message.getStatus(), decoder.getStatus(i));
+				count++;
+			}
+		}
+		assertFalse("All messages decoded", messages.hasNext());
+		assertEquals("Number of values comparison", 3 * (PBStreamDecoder.BATCH_SIZE + 100), count);
+		decoder.close();
+		expected.close();
+	}
+
+	/**
+	 * Tests that the {@link PBStreamDecoder#iterator()} provides the same
+	 * messages as the appliance client library for a type that is not decoded
+	 * into columns.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testMessages() throws Exception {
+		byte[] data = createStringStream(100);
+		InputStreamBackedGenMsg expected = new InputStreamBackedGenMsg(new ByteArrayInputStream(data));
+		PBStreamDecoder decoder = new PBStreamDecoder(new ByteArrayInputStream(data));
+		assertFalse("Numeric scalar", PBStreamDecoder.isNumericScalar(decoder.getPayLoadInfo().getType()));
+		Iterator<EpicsMessage> messages = expected.iterator();
+		int count = 0;
+		for (EpicsMessage message : decoder) {
+			EpicsMessage other = messages.next();
+			assertEquals("Timestamp comparison", other.getTimestamp(), message.getTimestamp());
+			assertEquals("Value comparison", other.getMessage(), message.getMessage());
+			count++;
+		}
+		assertFalse("All messages decoded", messages.hasNext());
+		assertEquals("Number of values comparison", 100, count);
+		decoder.close();
+		expected.close();
+	}
+
+	/**
+	 * Tests that an empty response results in no payload info.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testEmpty() throws Exception {
+		PBStreamDecoder decoder = new PBStreamDecoder(new ByteArrayInputStream(new byte[0]));
+		assertNull("No payload info", decoder.getPayLoadInfo());
+		assertEquals("No values", 0, decoder.readBatch());
+		decoder.close();
+	}
+
+	/**
+	 * Decodes all samples of a stream via messages.
+	 *
+	 * @param stream the stream
+	 * @return sum of all values
+	 * @throws IOException
+	 */
+	private static double decodeMessages(GenMsgIterator stream) throws IOException {
+		double sum = 0;
+		for (EpicsMessage message : stream) {
+			sum += message.getNumberValue().doubleValue() + message.getTimestamp().getNanos();
+		}
+		stream.close();
+		return sum;
+	}
+
+	/**
+	 * Decodes all samples of a stream via batches.
+	 *
+	 * @param decoder the decoder
+	 * @return sum of all values
+	 * @throws IOException
+	 */
+	private static double decodeBatches(PBStreamDecoder decoder) throws IOException {
+		double sum = 0;
+		int size;
+		while ((size = decoder.readBatch()) > 0) {
+			for (int i = 0; i < size; i++) {
+				sum += decoder.getValue(i) + decoder.getTimestamp(i).getNanoSec();
+			}
+		}
+		decoder.close();
+		return sum;
+	}
+
+	/**
+	 * Tests that the {@link PBStreamDecoder} decodes a response that is read
+	 * over HTTP like the appliance client library does.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testHttp() throws Exception {
+		byte[] data = createDoubleStream(3, PBStreamDecoder.BATCH_SIZE + 100);
+		RetrievalStandIn server = new RetrievalStandIn(data);
+		try {
+			ApplianceArchiveReader reader = new ApplianceArchiveReader(server.getURL(), false, true);
+			assertEquals("Sum comparison",
+					decodeMessages(new InputStreamBackedGenMsg(openDataStream(reader))),
+					decodeBatches(new PBStreamDecoder(openDataStream(reader))), 0.0);
+			assertEquals("Requests", 2, server.getRequests());
+		} finally {
+			server.close();
+		}
+	}
+
+	/**
+	 * Compares the time it takes to decode a larger stream with the appliance
+	 * client library and the {@link PBStreamDecoder}, once from memory for the
+	 * time spent in decoding and once over HTTP from the {@link RetrievalStandIn}
+	 * for the time a reader spends on the whole response.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testPerformance() throws Exception {
+		byte[] data = createDoubleStream(10, 100000);
+		RetrievalStandIn server = new RetrievalStandIn(data);
+		try {
+			ApplianceArchiveReader reader = new ApplianceArchiveReader(server.getURL(), false, true);
+			double expected = 0, actual = 0, httpExpected = 0, httpActual = 0;
+			long messageNanos = Long.MAX_VALUE, batchNanos = Long.MAX_VALUE;
+			long httpMessageNanos = Long.MAX_VALUE, httpBatchNanos = Long.MAX_VALUE;
+			for (int run = 0; run < 5; run++) {
+				long start = System.nanoTime();
+				expected = decodeMessages(new InputStreamBackedGenMsg(new ByteArrayInputStream(data)));
+				messageNanos = Math.min(messageNanos, System.nanoTime() - start);
+				start = System.nanoTime();
+				actual = decodeBatches(new PBStreamDecoder(new ByteArrayInputStream(data)));
+				batchNanos = Math.min(batchNanos, System.nanoTime() - start);
+				start = System.nanoTime();
+				httpExpected = decodeMessages(new InputStreamBackedGenMsg(openDataStream(reader)));
+				httpMessageNanos = Math.min(httpMessageNanos, System.nanoTime() - start);
+				start = System.nanoTime();
+				httpActual = decodeBatches(new PBStreamDecoder(openDataStream(reader)));
+				httpBatchNanos = Math.min(httpBatchNanos, System.nanoTime() - start);
+			}
+			assertEquals("Sum comparison", expected, actual, 0.0);
+			assertEquals("HTTP sum comparison", expected, httpExpected, 0.0);
+			assertEquals("HTTP sum comparison", expected, httpActual, 0.0);
+			System.out.println(String.format("Decoded %d kB from memory: InputStreamBackedGenMsg %.1f ms, PBStreamDecoder %.1f ms",
+					data.length / 1024, messageNanos / 1e6, batchNanos / 1e6));
+			System.out.println(String.format("Decoded %d kB over HTTP: InputStreamBackedGenMsg %.1f ms, PBStreamDecoder %.1f ms",
+					data.length / 1024, httpMessageNanos / 1e6, httpBatchNanos / 1e6));
+		} finally {
+			server.close();
+		}
+	}
+
+	/**
+	 * Requests the test PV from the {@link RetrievalStandIn}.
+	 *
+	 * @param reader the reader that is connected to the stand-in
+	 * @return the response
+	 * @throws IOException
+	 */
+	private static InputStream openDataStream(ApplianceArchiveReader reader) throws IOException {
+		InputStream stream = reader.openDataStream("test_pv_double",
+				new java.sql.Timestamp(0), new java.sql.Timestamp(System.currentTimeMillis()));
+		assertNotNull("Response", stream);
+		return stream;
+	}
+
+	/**
+	 * Stand-in for the data retrieval of the appliance. It answers each request
+	 * with the same PB/HTTP response over a local socket.
+	 */
+	private static class RetrievalStandIn implements Runnable {
+		private final byte[] data;
+		private final ServerSocket server;
+		private volatile int requests = 0;
+
+		/**
+		 * Starts the stand-in on a free port.
+		 *
+		 * @param data the response to send
+		 * @throws IOException
+		 */
+		RetrievalStandIn(byte[] data) throws IOException {
+			this.data = data;
+			server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+			Thread thread = new Thread(this, "RetrievalStandIn");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		/**
+		 * @return the appliance URL for the {@link ApplianceArchiveReader}
+		 */
+		String getURL() {
+			return "pbraw://127.0.0.1:" + server.getLocalPort() + "/retrieval";
+		}
+
+		/**
+		 * @return number of requests that were answered
+		 */
+		int getRequests() {
+			return requests;
+		}
+
+		@Override
+		public void run() {
+			while (!server.isClosed()) {
+				try {
+					Socket socket = server.accept();
+					try {
+						BufferedReader request = new BufferedReader(
+								new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+						String line;
+						// Skip the request line and the headers
+						while ((line = request.readLine()) != null && !line.isEmpty()) {
+							continue;
+						}
+						OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+						out.write(("HTTP/1.1 200 OK\r\n"
+								+ "Content-Type: application/x-protobuf\r\n"
+								+ "Content-Length: " + data.length + "\r\n"
+								+ "Connection: close\r\n\r\n").getBytes("ISO-8859-1"));
+						out.write(data);
+						out.flush();
+						requests++;
+					} finally {
+						socket.close();
+					}
+				} catch (IOException e) {
+					// Stand-in was closed, or the client gave up
+				}
+			}
+		}
+
+		/**
+		 * Stops the stand-in.
+		 *
+		 * @throws IOException
+		 */
+		void close() throws IOException {
+			server.close();
+		}
+	}
+}
@@ -17,6 +17,7 @@ public class Activator extends Plugin {
 	private static Activator plugin;
 	
 	private Boolean useStatistics;
+	private Boolean useStreamDecoder;
 	
 	/**
 	 * The constructor
@@ -68,4 +69,20 @@ public class Activator extends Plugin {
 		}
 		return useStatistics;
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * @return true if the data stream should be decoded with the {@link PBStreamDecoder}
+	 * 			or false if the appliance client library should be used
+	 */
+	public boolean isUseStreamDecoder() {
+		if (useStreamDecoder == null) {
+			final IPreferencesService prefs = Platform.getPreferencesService();
+		    if (prefs == null) {
+		    	useStreamDecoder = true;
+		    } else {
+		    	useStreamDecoder = prefs.getBoolean(Activator.PLUGIN_ID, "useStreamDecoder", true, null);
+		    }
+		}
+		return useStreamDecoder;
+	}
+}
@@ -2,12 +2,15 @@ package org.csstudio.archive.reader.appliance;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.TimeZone;
 
 import org.csstudio.apputil.text.RegExHelper;
 import org.csstudio.archive.reader.ArchiveInfo;
@@ -31,20 +34,36 @@ public class ApplianceArchiveReader implements ArchiveReader {
 	private final String httpURL;
 	private final String pbrawURL;
 	private final boolean useStatistics;
+	private final boolean useStreamDecoder;
 			
 	/**
 	 * Constructor that sets appliance archiver reader url.
+	 * Data is decoded with the appliance client library.
 	 * 
 	 * @param url appliance archiver reader url (with specific prefix)
 	 * @param useStatistics true if statistics type data should be returned	
 	 * 			when optimized data is requested
 	 */
 	public ApplianceArchiveReader(String url, boolean useStatistics) {
+		this(url, useStatistics, false);
+	}
+	
+	/**
+	 * Constructor that sets appliance archiver reader url.
+	 * 
+	 * @param url appliance archiver reader url (with specific prefix)
+	 * @param useStatistics true if statistics type data should be returned	
+	 * 			when optimized data is requested
+	 * @param useStreamDecoder true if data should be read with the {@link PBStreamDecoder}
+	 * 			instead of the appliance client library
+	 */
+	public ApplianceArchiveReader(String url, boolean useStatistics, boolean useStreamDecoder) {
 		//if the url ends with /, strip the url of the last character
 		if (url.charAt(url.length()-1) == '/') {
 			url = url.substring(0,url.length()-1);
 		}
 		this.useStatistics = useStatistics;
+		this.useStreamDecoder = useStreamDecoder;
 		this.pbrawURL = url;
 		this.httpURL = pbrawURL.replace("pbraw://", "http://");
 	}
@@ -182,6 +201,41 @@ public class ApplianceArchiveReader implements ArchiveReader {
 		return new RawDataRetrieval(dataRetrievalURL);
 	}
 	
+	/**
+	 * @return true if data should be read with the {@link PBStreamDecoder}
+	 */
+	public boolean isUseStreamDecoder() {
+		return useStreamDecoder;
+	}
+	
+	/**
+	 * Opens the PB/HTTP data stream for the given PV, to be read with
+	 * the {@link PBStreamDecoder}. Uses the same request as the
+	 * <code>RawDataRetrieval</code> of the appliance client library.
+	 * 
+	 * @param pvName name of the PV as used in the request made to the server
+	 * @param start the start of the time window of the data
+	 * @param end the end of the time window of the data
+	 * @return the data stream or null if there is no data
+	 * @throws IOException if the request failed
+	 */
+	public InputStream openDataStream(String pvName, java.sql.Timestamp start, java.sql.Timestamp end) throws IOException {
+		final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		String getURL = new StringBuilder().append(getDataRetrievalURL())
+				.append("?pv=").append(URLEncoder.encode(pvName, "UTF-8"))
+				.append("&from=").append(URLEncoder.encode(format.format(start), "UTF-8"))
+				.append("&to=").append(URLEncoder.encode(format.format(end), "UTF-8"))
+				.toString();
+		HttpURLConnection connection = (HttpURLConnection) new URL(getURL).openConnection();
+		connection.connect();
+		if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+			connection.disconnect();
+			return null;
+		}
+		return connection.getInputStream();
+	}
+	
 	/**
 	 * Returns data retrieval URL. A data retrieval URL looks like
 	 * http://domain:port/retrieval/data/getData.raw where /data/getData is
@@ -290,4 +344,4 @@ public class ApplianceArchiveReader implements ArchiveReader {
 		}
 		return 0;
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -3,16 +3,14 @@ package org.csstudio.archive.reader.appliance;
 import java.io.IOException;
 import java.util.Iterator;
 
+import org.csstudio.archive.vtype.ArchiveVNumber;
 import org.csstudio.archive.vtype.ArchiveVStatistics;
 import org.csstudio.archive.vtype.TimestampHelper;
-import org.epics.archiverappliance.retrieval.client.DataRetrieval;
 import org.epics.archiverappliance.retrieval.client.EpicsMessage;
 import org.epics.archiverappliance.retrieval.client.GenMsgIterator;
 import org.epics.util.time.Timestamp;
 import org.epics.vtype.VType;
 
-import edu.stanford.slac.archiverappliance.PB.EPICSEvent.PayloadType;
-
 /**
  * 
  * <code>ApplianceStatisticsValueIterator</code> loads the statistical data for
@@ -63,8 +61,7 @@ public class ApplianceStatisticsValueIterator extends ApplianceMeanValueIterator
 		java.sql.Timestamp sqlEndTimestamp = TimestampHelper.toSQLTimestamp(end);
 		
 		String std = new StringBuilder().append(ApplianceArchiveReaderConstants.OP_STD).append(interval).append('(').append(pvName).append(')').toString();
-		DataRetrieval dataRetrieval = reader.createDataRetriveal(reader.getDataRetrievalURL());
-		stdStream = dataRetrieval.getDataForPV(std, sqlStartTimestamp, sqlEndTimestamp);
+		stdStream = openStream(std, sqlStartTimestamp, sqlEndTimestamp);
 		if (stdStream != null) { 
 			stdIterator = stdStream.iterator();
 		} else {
@@ -72,8 +69,7 @@ public class ApplianceStatisticsValueIterator extends ApplianceMeanValueIterator
 		}
 		
 		String min = new StringBuilder().append(ApplianceArchiveReaderConstants.OP_MIN).append(interval).append('(').append(pvName).append(')').toString();
-		dataRetrieval = reader.createDataRetriveal(reader.getDataRetrievalURL());
-		minStream = dataRetrieval.getDataForPV(min, sqlStartTimestamp, sqlEndTimestamp);
+		minStream = openStream(min, sqlStartTimestamp, sqlEndTimestamp);
 		if (minStream != null) { 
 			minIterator = minStream.iterator();
 		} else {
@@ -81,8 +77,7 @@ public class ApplianceStatisticsValueIterator extends ApplianceMeanValueIterator
 		}
 		
 		String max = new StringBuilder().append(ApplianceArchiveReaderConstants.OP_MAX).append(interval).append('(').append(pvName).append(')').toString();
-		dataRetrieval = reader.createDataRetriveal(reader.getDataRetrievalURL());
-		maxStream = dataRetrieval.getDataForPV(max, sqlStartTimestamp, sqlEndTimestamp);
+		maxStream = openStream(max, sqlStartTimestamp, sqlEndTimestamp);
 		if (maxStream != null) { 
 			maxIterator = maxStream.iterator();
 		} else {
@@ -90,8 +85,7 @@ public class ApplianceStatisticsValueIterator extends ApplianceMeanValueIterator
 		}
 		
 		String count = new StringBuilder().append(ApplianceArchiveReaderConstants.OP_COUNT).append(interval).append('(').append(pvName).append(')').toString();
-		dataRetrieval = reader.createDataRetriveal(reader.getDataRetrievalURL());
-		countStream = dataRetrieval.getDataForPV(count, sqlStartTimestamp, sqlEndTimestamp);
+		countStream = openStream(count, sqlStartTimestamp, sqlEndTimestamp);
 		if (countStream != null) { 
 			countIterator = countStream.iterator();
 		} else {
@@ -125,24 +119,21 @@ public class ApplianceStatisticsValueIterator extends ApplianceMeanValueIterator
 	
 	@Override
 	public VType next() throws Exception {
-        PayloadType type = mainStream.getPayLoadInfo().getType();
-        if (type == PayloadType.SCALAR_BYTE || 
-        		type == PayloadType.SCALAR_DOUBLE ||
-        		type == PayloadType.SCALAR_FLOAT ||
-        		type == PayloadType.SCALAR_INT ||
-        		type == PayloadType.SCALAR_SHORT) {
-        	EpicsMessage meanResult = mainIterator.next();
+		// Mean value, decoded by the base class
+		VType mean = super.next();
+		if (mean instanceof ArchiveVNumber) {
+			ArchiveVNumber meanResult = (ArchiveVNumber) mean;
 			return new ArchiveVStatistics(
-					TimestampHelper.fromSQLTimestamp(meanResult.getTimestamp()),
-					getSeverity(meanResult.getSeverity()), 
-					String.valueOf(meanResult.getStatus()), 
+					meanResult.getTimestamp(),
+					meanResult.getAlarmSeverity(), 
+					meanResult.getAlarmName(), 
 					display, 
-					meanResult.getNumberValue().doubleValue(),
+					meanResult.getValue().doubleValue(),
 					minIterator.next().getNumberValue().doubleValue(),
 					maxIterator.next().getNumberValue().doubleValue(),
 					stdIterator.next().getNumberValue().doubleValue(),
 					countIterator.next().getNumberValue().intValue());
         } 
-        throw new UnsupportedOperationException("PV type " + type + " is not supported.");
+        throw new UnsupportedOperationException("PV type " + mainStream.getPayLoadInfo().getType() + " is not supported.");
 	}
 }
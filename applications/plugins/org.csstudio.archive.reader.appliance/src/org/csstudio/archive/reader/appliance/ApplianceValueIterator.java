@@ -1,6 +1,7 @@
 package org.csstudio.archive.reader.appliance;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -44,6 +45,15 @@ public abstract class ApplianceValueIterator implements ValueIterator {
     protected GenMsgIterator mainStream;
     protected Iterator<EpicsMessage> mainIterator;
     private FieldDescriptor valDescriptor;
+    
+    /** Decoder that provides numeric scalars in columns, null when using the mainIterator */
+    private PBStreamDecoder columns;
+    private int columnIndex = 0;
+    private int columnSize = 0;
+    
+    /** Display for the payload info of the current chunk */
+    private PayloadInfo chunkInfo;
+    private Display chunkDisplay;
     	
     protected final ApplianceArchiveReader reader;
     protected final String name;
@@ -85,6 +95,10 @@ public abstract class ApplianceValueIterator implements ValueIterator {
 		java.sql.Timestamp sqlStartTimestamp = TimestampHelper.toSQLTimestamp(start);
 		java.sql.Timestamp sqlEndTimestamp = TimestampHelper.toSQLTimestamp(end);
 		
+		if (reader.isUseStreamDecoder()) {
+			fetchDataStream(pvName, sqlStartTimestamp, sqlEndTimestamp);
+			return;
+		}
 		DataRetrieval dataRetrieval = reader.createDataRetriveal(reader.getDataRetrievalURL());
 		mainStream = dataRetrieval.getDataForPV(pvName, sqlStartTimestamp, sqlEndTimestamp);
 		if (mainStream != null) { 
@@ -94,11 +108,81 @@ public abstract class ApplianceValueIterator implements ValueIterator {
 		}
 	}
 	
+	/**
+	 * Opens an additional data stream, using the {@link PBStreamDecoder} or the
+	 * appliance client library as configured for the reader.
+	 * 
+	 * @param pvName name of the PV as used in the request made to the server
+	 * @param sqlStartTimestamp the start of the time window
+	 * @param sqlEndTimestamp the end of the time window
+	 * @return the stream or null if there is no data
+	 * @throws ArchiverApplianceException if the request failed
+	 */
+	protected GenMsgIterator openStream(String pvName, java.sql.Timestamp sqlStartTimestamp, java.sql.Timestamp sqlEndTimestamp) throws ArchiverApplianceException {
+		if (!reader.isUseStreamDecoder()) {
+			DataRetrieval dataRetrieval = reader.createDataRetriveal(reader.getDataRetrievalURL());
+			return dataRetrieval.getDataForPV(pvName, sqlStartTimestamp, sqlEndTimestamp);
+		}
+		try {
+			InputStream stream = reader.openDataStream(pvName, sqlStartTimestamp, sqlEndTimestamp);
+			return stream == null ? null : new PBStreamDecoder(stream);
+		} catch (IOException e) {
+			throw new ArchiverApplianceException("Could not fetch data.", e);
+		}
+	}
+	
+	/**
+	 * Fetches data using the {@link PBStreamDecoder}. Numeric scalars are decoded
+	 * into columns, other types are read via the {@link GenMsgIterator} API of the decoder. 
+	 * 
+	 * @param pvName name of the PV as used in the request made to the server
+	 * @param sqlStartTimestamp the start of the time window
+	 * @param sqlEndTimestamp the end of the time window
+	 * @throws ArchiverApplianceException if the data for the pv could not be loaded
+	 */
+	private void fetchDataStream(String pvName, java.sql.Timestamp sqlStartTimestamp, java.sql.Timestamp sqlEndTimestamp) throws ArchiverApplianceException {
+		PBStreamDecoder decoder = (PBStreamDecoder) openStream(pvName, sqlStartTimestamp, sqlEndTimestamp);
+		if (decoder == null || decoder.getPayLoadInfo() == null) {
+			close(decoder);
+			throw new ArchiverApplianceException("Could not fetch data.");
+		}
+		mainStream = decoder;
+		if (PBStreamDecoder.isNumericScalar(decoder.getPayLoadInfo().getType())) {
+			columns = decoder;
+			columnIndex = 0;
+			try {
+				columnSize = decoder.readBatch();
+			} catch (IOException e) {
+				throw new ArchiverApplianceException("Could not decode data.", e);
+			}
+		} else {
+			mainIterator = decoder.iterator();
+		}
+	}
+	
+	/**
+	 * Closes the stream, ignoring errors.
+	 * 
+	 * @param stream the stream to close, may be null
+	 */
+	private static void close(GenMsgIterator stream) {
+		if (stream != null) {
+			try {
+				stream.close();
+			} catch (IOException e) {
+				// Ignore
+			}
+		}
+	}
+	
 	/* (non-Javadoc)
 	 * @see org.csstudio.archive.reader.ValueIterator#hasNext()
 	 */
 	@Override
 	public boolean hasNext() {
+		if (columns != null) {
+			return columnIndex < columnSize;
+		}
 		return mainIterator != null && mainIterator.hasNext();
 	}
 
@@ -107,6 +191,9 @@ public abstract class ApplianceValueIterator implements ValueIterator {
 	 */
 	@Override
 	public VType next() throws Exception {
+		if (columns != null) {
+			return nextFromColumns();
+		}
         EpicsMessage result = mainIterator.next();
         PayloadType type = mainStream.getPayLoadInfo().getType();
         if (type == PayloadType.SCALAR_BYTE || 
@@ -118,7 +205,7 @@ public abstract class ApplianceValueIterator implements ValueIterator {
 					TimestampHelper.fromSQLTimestamp(result.getTimestamp()),
 					getSeverity(result.getSeverity()), 
 					String.valueOf(result.getStatus()), 
-					display == null ? getDisplay(mainStream.getPayLoadInfo()) : display, 
+					getChunkDisplay(), 
 					result.getNumberValue());
         } else if (type == PayloadType.SCALAR_ENUM) {
         	return new ArchiveVEnum(
@@ -157,7 +244,7 @@ public abstract class ApplianceValueIterator implements ValueIterator {
         			TimestampHelper.fromSQLTimestamp(result.getTimestamp()),
 					getSeverity(result.getSeverity()), 
 					String.valueOf(result.getStatus()), 
-					display == null ? getDisplay(mainStream.getPayLoadInfo()) : display, 
+					getChunkDisplay(), 
 					val);
         } else if (type == PayloadType.WAVEFORM_INT
         		|| type == PayloadType.WAVEFORM_SHORT) {
@@ -174,7 +261,7 @@ public abstract class ApplianceValueIterator implements ValueIterator {
         			TimestampHelper.fromSQLTimestamp(result.getTimestamp()),
 					getSeverity(result.getSeverity()), 
 					String.valueOf(result.getStatus()), 
-					display == null ? getDisplay(mainStream.getPayLoadInfo()) : display, 
+					getChunkDisplay(), 
 					val);
         } else if (type == PayloadType.WAVEFORM_BYTE) {
         	if (valDescriptor == null) {
@@ -185,12 +272,66 @@ public abstract class ApplianceValueIterator implements ValueIterator {
         			TimestampHelper.fromSQLTimestamp(result.getTimestamp()),
 					getSeverity(result.getSeverity()), 
 					String.valueOf(result.getStatus()), 
-					display == null ? getDisplay(mainStream.getPayLoadInfo()) : display, 
+					getChunkDisplay(), 
 					new ArrayByte(((ByteString)result.getMessage().getField(valDescriptor)).toByteArray()));
         }         
         throw new UnsupportedOperationException("PV type " + type + " is not supported.");
 	}
 	
+	/**
+	 * Converts the current sample of the column decoder into a VType
+	 * and advances to the next sample.
+	 * 
+	 * @return the value
+	 * @throws IOException on error decoding the next batch
+	 */
+	private VType nextFromColumns() throws IOException {
+		final int i = columnIndex;
+		final PayloadType type = columns.getPayLoadInfo().getType();
+		final Timestamp time = columns.getTimestamp(i);
+		final AlarmSeverity severity = getSeverity(columns.getSeverity(i));
+		final String status = String.valueOf(columns.getStatus(i));
+		final double value = columns.getValue(i);
+		final VType result;
+		if (type == PayloadType.SCALAR_ENUM) {
+			result = new ArchiveVEnum(time, severity, status, null, (int) value);
+		} else {
+			final Number number;
+			if (type == PayloadType.SCALAR_DOUBLE) {
+				number = Double.valueOf(value);
+			} else if (type == PayloadType.SCALAR_FLOAT) {
+				number = Float.valueOf((float) value);
+			} else if (type == PayloadType.SCALAR_BYTE) {
+				number = Byte.valueOf((byte) value);
+			} else {
+				number = Integer.valueOf((int) value);
+			}
+			result = new ArchiveVNumber(time, severity, status, getChunkDisplay(), number);
+		}
+		// Columns are overwritten by the next batch, so fetch it after using the current sample
+		if (++columnIndex >= columnSize) {
+			columnIndex = 0;
+			columnSize = columns.readBatch();
+		}
+		return result;
+	}
+	
+	/**
+	 * @return the display of this iterator or, if that is not set, the display
+	 * 			for the payload info of the current chunk
+	 */
+	private Display getChunkDisplay() {
+		if (display != null) {
+			return display;
+		}
+		PayloadInfo info = mainStream.getPayLoadInfo();
+		if (info != chunkInfo) {
+			chunkInfo = info;
+			chunkDisplay = getDisplay(info);
+		}
+		return chunkDisplay;
+	}
+	
 	/**
 	 * Extracts the descriptor for the value field so it can be reused on each iteration.
 	 * 
@@ -214,6 +355,7 @@ public abstract class ApplianceValueIterator implements ValueIterator {
 	 */
 	@Override
 	public void close() {
+		columns = null;
 		try {
 			if(mainStream != null) {
 				mainStream.close();
@@ -281,4 +423,4 @@ public abstract class ApplianceValueIterator implements ValueIterator {
 		   return AlarmSeverity.UNDEFINED;
 	   }
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,484 @@
+package org.csstudio.archive.reader.appliance;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TimeZone;
+
+import org.epics.archiverappliance.retrieval.client.EpicsMessage;
+import org.epics.archiverappliance.retrieval.client.GenMsgIterator;
+import org.epics.archiverappliance.retrieval.client.InfoChangeHandler;
+import org.epics.archiverappliance.retrieval.client.RuntimeIOException;
+import org.epics.util.time.Timestamp;
+
+import com.google.protobuf.GeneratedMessage;
+
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.PayloadInfo;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.PayloadType;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.ScalarByte;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.ScalarDouble;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.ScalarEnum;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.ScalarFloat;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.ScalarInt;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.ScalarShort;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.ScalarString;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.V4GenericBytes;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.VectorChar;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.VectorDouble;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.VectorEnum;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.VectorFloat;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.VectorInt;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.VectorShort;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.VectorString;
+
+/**
+ *
+ * <code>PBStreamDecoder</code> decodes the PB/HTTP stream of the appliance archiver.
+ *
+ * <p>The stream consists of chunks. Each chunk starts with a line that holds the
+ * {@link PayloadInfo}, followed by one line per sample, and chunks are separated
+ * by an empty line. Lines are escaped so that they contain no newlines.
+ *
+ * <p>The decoder reads the stream into a reusable buffer and unescapes each line
+ * into a reusable line buffer. Numeric scalar samples can be decoded in batches
+ * into primitive columns via {@link #readBatch()}, without creating protocol buffer
+ * messages. For other data types, the {@link GenMsgIterator} API provides
+ * {@link EpicsMessage}s like the <code>InputStreamBackedGenMsg</code> of the
+ * appliance client library.
+ *
+ * <p>Either use {@link #readBatch()} or {@link #iterator()}, not both.
+ *
+ * @author agent
+ */
+@SuppressWarnings("nls")
+public class PBStreamDecoder implements GenMsgIterator {
+
+	/** Maximum number of samples in a batch */
+	public static final int BATCH_SIZE = 1024;
+
+	private static final byte ESCAPE_CHAR = 0x1B;
+	private static final byte ESCAPE_ESCAPE_CHAR = 0x01;
+	private static final byte NEWLINE_CHAR = 0x0A;
+	private static final byte NEWLINE_ESCAPE_CHAR = 0x02;
+	private static final byte CARRIAGERETURN_CHAR = 0x0D;
+	private static final byte CARRIAGERETURN_ESCAPE_CHAR = 0x03;
+
+	private InputStream in;
+	private final byte[] input = new byte[64*1024];
+	private int input_pos = 0;
+	private int input_len = 0;
+
+	/** Unescaped line, grows as needed */
+	private byte[] line = new byte[1024];
+	private int line_len = 0;
+
+	/** Info for current chunk, <code>null</code> for empty stream */
+	private PayloadInfo info;
+	/** Start of the year of the current chunk in epoch seconds */
+	private long year_start;
+	/** Info for the next batch that was read while completing the previous batch */
+	private PayloadInfo pending_info = null;
+	private InfoChangeHandler info_handler = null;
+
+	/** Is there a sample in <code>line</code> that has not been decoded? */
+	private boolean have_sample = false;
+
+	// Columns of the current batch
+	private final long[] seconds = new long[BATCH_SIZE];
+	private final int[] nanos = new int[BATCH_SIZE];
+	private final double[] values = new double[BATCH_SIZE];
+	private final int[] severities = new int[BATCH_SIZE];
+	private final int[] statuses = new int[BATCH_SIZE];
+
+	/**
+	 * Constructs the decoder and reads the info of the first chunk.
+	 *
+	 * @param in stream to decode, will be closed by {@link #close()}
+	 * @throws IOException on error
+	 */
+	public PBStreamDecoder(InputStream in) throws IOException {
+		this.in = in;
+		if (readLine() && line_len > 0) {
+			setInfo(parseInfo());
+			have_sample = nextSampleLine();
+		} else {
+			info = null;
+		}
+	}
+
+	/**
+	 * @return info of the current chunk or <code>null</code> if the stream was empty
+	 */
+	@Override
+	public PayloadInfo getPayLoadInfo() {
+		return info;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.archiverappliance.retrieval.client.GenMsgIterator#onInfoChange(org.epics.archiverappliance.retrieval.client.InfoChangeHandler)
+	 */
+	@Override
+	public void onInfoChange(InfoChangeHandler handler) {
+		info_handler = handler;
+	}
+
+	/**
+	 * @param type payload type
+	 * @return true if samples of that type can be decoded into columns
+	 */
+	public static boolean isNumericScalar(PayloadType type) {
+		return type == PayloadType.SCALAR_BYTE ||
+				type == PayloadType.SCALAR_DOUBLE ||
+				type == PayloadType.SCALAR_FLOAT ||
+				type == PayloadType.SCALAR_INT ||
+				type == PayloadType.SCALAR_SHORT ||
+				type == PayloadType.SCALAR_ENUM;
+	}
+
+	/**
+	 * Decodes the next batch of samples into the columns.
+	 * A batch ends at the end of a chunk, so all samples of a batch
+	 * share the same {@link #getPayLoadInfo()}.
+	 *
+	 * @return number of samples in the batch, 0 at the end of the stream
+	 * @throws IOException on error, including data types that cannot be decoded into columns
+	 */
+	public int readBatch() throws IOException {
+		if (pending_info != null) {
+			setInfo(pending_info);
+			pending_info = null;
+		}
+		if (!have_sample) {
+			return 0;
+		}
+		if (!isNumericScalar(info.getType())) {
+			throw new IOException("Cannot decode " + info.getType() + " into columns");
+		}
+		int size = 0;
+		final PayloadInfo batch_info = info;
+		while (have_sample && size < BATCH_SIZE) {
+			decodeSample(size++);
+			have_sample = nextSampleLine();
+			if (info != batch_info) {
+				// Next sample belongs to a new chunk
+				pending_info = info;
+				info = batch_info;
+				break;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @param index index of sample in current batch
+	 * @return time stamp of the sample
+	 */
+	public Timestamp getTimestamp(int index) {
+		return Timestamp.of(seconds[index], nanos[index]);
+	}
+
+	/**
+	 * @param index index of sample in current batch
+	 * @return value of the sample
+	 */
+	public double getValue(int index) {
+		return values[index];
+	}
+
+	/**
+	 * @param index index of sample in current batch
+	 * @return severity of the sample
+	 */
+	public int getSeverity(int index) {
+		return severities[index];
+	}
+
+	/**
+	 * @param index index of sample in current batch
+	 * @return status of the sample
+	 */
+	public int getStatus(int index) {
+		return statuses[index];
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Iterable#iterator()
+	 */
+	@Override
+	public Iterator<EpicsMessage> iterator() {
+		return new Iterator<EpicsMessage>() {
+			@Override
+			public boolean hasNext() {
+				return have_sample;
+			}
+
+			@Override
+			public EpicsMessage next() {
+				if (!have_sample) {
+					throw new NoSuchElementException();
+				}
+				try {
+					if (pending_info != null) {
+						setInfo(pending_info);
+						pending_info = null;
+					}
+					final EpicsMessage message = new EpicsMessage(parseMessage(), info);
+					final PayloadInfo current = info;
+					have_sample = nextSampleLine();
+					if (info != current) {
+						// Keep info of the returned message until the next call
+						pending_info = info;
+						info = current;
+					}
+					return message;
+				} catch (IOException ex) {
+					throw new RuntimeIOException("Cannot decode sample", ex);
+				}
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		have_sample = false;
+		if (in != null) {
+			in.close();
+			in = null;
+		}
+	}
+
+	/**
+	 * @param new_info info for the following samples
+	 */
+	private void setInfo(PayloadInfo new_info) {
+		info = new_info;
+		final Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		cal.clear();
+		cal.set(info.getYear(), 0, 1, 0, 0, 0);
+		year_start = cal.getTimeInMillis() / 1000;
+	}
+
+	/**
+	 * @return info parsed from the current line
+	 * @throws IOException on error
+	 */
+	private PayloadInfo parseInfo() throws IOException {
+		return PayloadInfo.newBuilder().mergeFrom(line, 0, line_len).build();
+	}
+
+	/**
+	 * Reads the next sample line, handling the start of a new chunk.
+	 *
+	 * @return true if <code>line</code> now holds a sample
+	 * @throws IOException on error
+	 */
+	private boolean nextSampleLine() throws IOException {
+		if (!readLine()) {
+			return false;
+		}
+		if (line_len > 0) {
+			return true;
+		}
+		// Empty line: Next chunk starts with info, unless this is the end of the data
+		if (!readLine() || line_len == 0) {
+			return false;
+		}
+		setInfo(parseInfo());
+		if (info_handler != null) {
+			info_handler.handleInfoChange(info);
+		}
+		return readLine() && line_len > 0;
+	}
+
+	/**
+	 * Reads and unescapes the next line.
+	 *
+	 * @return false at the end of the stream, true if a line was read (which may be empty)
+	 * @throws IOException on error
+	 */
+	private boolean readLine() throws IOException {
+		line_len = 0;
+		boolean have_data = false;
+		while (true) {
+			if (input_pos >= input_len) {
+				if (in == null) {
+					return have_data;
+				}
+				input_len = in.read(input);
+				input_pos = 0;
+				if (input_len <= 0) {
+					input_len = 0;
+					return have_data;
+				}
+			}
+			have_data = true;
+			// Scan buffered input up to the end of the line
+			while (input_pos < input_len) {
+				byte b = input[input_pos++];
+				if (b == NEWLINE_CHAR) {
+					return true;
+				}
+				if (b == ESCAPE_CHAR) {
+					if (input_pos >= input_len) {
+						input_len = in.read(input);
+						input_pos = 0;
+						if (input_len <= 0) {
+							throw new IOException("Escape character terminated early");
+						}
+					}
+					b = input[input_pos++];
+					switch (b) {
+					case ESCAPE_ESCAPE_CHAR: b = ESCAPE_CHAR; break;
+					case NEWLINE_ESCAPE_CHAR: b = NEWLINE_CHAR; break;
+					case CARRIAGERETURN_ESCAPE_CHAR: b = CARRIAGERETURN_CHAR; break;
+					default: break;
+					}
+				}
+				if (line_len >= line.length) {
+					final byte[] bigger = new byte[line.length * 2];
+					System.arraycopy(line, 0, bigger, 0, line_len);
+					line = bigger;
+				}
+				line[line_len++] = b;
+			}
+		}
+	}
+
+	/**
+	 * Decodes the protocol buffer encoded sample in <code>line</code>
+	 * into the columns, without creating a message.
+	 *
+	 * @param index index in the columns
+	 * @throws IOException on error
+	 */
+	private void decodeSample(int index) throws IOException {
+		final PayloadType type = info.getType();
+		long secs = 0;
+		int nano = 0;
+		double value = 0;
+		int severity = 0;
+		int status = 0;
+		int pos = 0;
+		while (pos < line_len) {
+			// Read tag, then field according to wire type
+			long tag = 0;
+			for (int shift = 0; ; shift += 7) {
+				final byte b = line[pos++];
+				tag |= (long) (b & 0x7F) << shift;
+				if (b >= 0) {
+					break;
+				}
+			}
+			final int field = (int) (tag >>> 3);
+			final int wire_type = (int) (tag & 7);
+			long varint = 0;
+			long fixed = 0;
+			int length = 0;
+			switch (wire_type) {
+			case 0: // varint
+				for (int shift = 0; ; shift += 7) {
+					final byte b = line[pos++];
+					varint |= (long) (b & 0x7F) << shift;
+					if (b >= 0) {
+						break;
+					}
+				}
+				break;
+			case 1: // 64 bit, little endian
+				for (int i = 0; i < 8; ++i) {
+					fixed |= (long) (line[pos++] & 0xFF) << (8*i);
+				}
+				break;
+			case 2: // length-delimited
+				for (int shift = 0; ; shift += 7) {
+					final byte b = line[pos++];
+					length |= (b & 0x7F) << shift;
+					if (b >= 0) {
+						break;
+					}
+				}
+				break;
+			case 5: // 32 bit, little endian
+				for (int i = 0; i < 4; ++i) {
+					fixed |= (long) (line[pos++] & 0xFF) << (8*i);
+				}
+				break;
+			default:
+				throw new IOException("Unsupported wire type " + wire_type + " for " + type);
+			}
+			switch (field) {
+			case 1:
+				secs = varint;
+				break;
+			case 2:
+				nano = (int) varint;
+				break;
+			case 3:
+				if (type == PayloadType.SCALAR_DOUBLE) {
+					value = Double.longBitsToDouble(fixed);
+				} else if (type == PayloadType.SCALAR_FLOAT) {
+					value = Float.intBitsToFloat((int) fixed);
+				} else if (type == PayloadType.SCALAR_INT) {
+					value = (int) fixed;
+				} else if (type == PayloadType.SCALAR_BYTE) {
+					value = length > 0 ? line[pos] : 0;
+				} else {
+					// SHORT and ENUM are sint32, zig-zag encoded
+					final int raw = (int) varint;
+					value = (raw >>> 1) ^ -(raw & 1);
+				}
+				break;
+			case 4:
+				severity = (int) varint;
+				break;
+			case 5:
+				status = (int) varint;
+				break;
+			default:
+				break;
+			}
+			pos += length;
+		}
+		seconds[index] = year_start + secs;
+		nanos[index] = nano;
+		values[index] = value;
+		severities[index] = severity;
+		statuses[index] = status;
+	}
+
+	/**
+	 * @return protocol buffer message for the sample in <code>line</code>
+	 * @throws IOException on error
+	 */
+	private GeneratedMessage parseMessage() throws IOException {
+		switch (info.getType()) {
+		case SCALAR_BYTE: return ScalarByte.newBuilder().mergeFrom(line, 0, line_len).build();
+		case SCALAR_DOUBLE: return ScalarDouble.newBuilder().mergeFrom(line, 0, line_len).build();
+		case SCALAR_ENUM: return ScalarEnum.newBuilder().mergeFrom(line, 0, line_len).build();
+		case SCALAR_FLOAT: return ScalarFloat.newBuilder().mergeFrom(line, 0, line_len).build();
+		case SCALAR_INT: return ScalarInt.newBuilder().mergeFrom(line, 0, line_len).build();
+		case SCALAR_SHORT: return ScalarShort.newBuilder().mergeFrom(line, 0, line_len).build();
+		case SCALAR_STRING: return ScalarString.newBuilder().mergeFrom(line, 0, line_len).build();
+		case WAVEFORM_BYTE: return VectorChar.newBuilder().mergeFrom(line, 0, line_len).build();
+		case WAVEFORM_DOUBLE: return VectorDouble.newBuilder().mergeFrom(line, 0, line_len).build();
+		case WAVEFORM_ENUM: return VectorEnum.newBuilder().mergeFrom(line, 0, line_len).build();
+		case WAVEFORM_FLOAT: return VectorFloat.newBuilder().mergeFrom(line, 0, line_len).build();
+		case WAVEFORM_INT: return VectorInt.newBuilder().mergeFrom(line, 0, line_len).build();
+		case WAVEFORM_SHORT: return VectorShort.newBuilder().mergeFrom(line, 0, line_len).build();
+		case WAVEFORM_STRING: return VectorString.newBuilder().mergeFrom(line, 0, line_len).build();
+		case V4_GENERIC_BYTES: return V4GenericBytes.newBuilder().mergeFrom(line, 0, line_len).build();
+		default:
+			throw new IOException("Unknown type " + info.getType());
+		}
+	}
+}
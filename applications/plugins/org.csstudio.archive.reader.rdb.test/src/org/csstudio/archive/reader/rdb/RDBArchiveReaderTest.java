@@ -11,7 +11,11 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 
@@ -21,9 +25,13 @@ import org.csstudio.archive.reader.ArchiveInfo;
 import org.csstudio.archive.reader.ArchiveReader;
 import org.csstudio.archive.reader.ValueIterator;
 import org.csstudio.archive.vtype.TimestampHelper;
+import org.csstudio.archive.vtype.VTypeHelper;
 import org.epics.util.time.TimeDuration;
 import org.epics.util.time.Timestamp;
 import org.epics.vtype.Display;
+import org.epics.vtype.VNumber;
+import org.epics.vtype.VNumberArray;
+import org.epics.vtype.VStatistics;
 import org.epics.vtype.VType;
 import org.epics.vtype.ValueUtil;
 import org.junit.After;
@@ -49,7 +57,7 @@ public class RDBArchiveReaderTest
     final private static SimpleDateFormat parser = new SimpleDateFormat("yyyy/MM/dd");
 	
     private RDBArchiveReader reader;
-	private String proc, name, array_name;
+	private String proc, name, array_name, mixed_name;
 
     @Before
     public void connect() throws Exception
@@ -64,6 +72,7 @@ public class RDBArchiveReaderTest
 			proc = "";
 		name = settings.getString("archive_channel");
 		array_name = settings.getString("archive_array_channel");
+		mixed_name = settings.getString("archive_mixed_channel");
 		if (url == null  ||  user == null  ||  password == null  ||  name == null)
 		{
 			System.out.println("Skipping test, no archive_rdb_url, user, password, name");
@@ -238,6 +247,139 @@ public class RDBArchiveReaderTest
         values.close();
     }
 
+    /** Get raw data for a channel that has both scalar and array samples
+     *  <p>
+     *  For a time range that starts with an array sample,
+     *  each sample must have the elements found by the per-sample query.
+     */
+    @Test
+    public void testRawMixedData() throws Exception
+    {
+    	if (reader == null  ||  mixed_name == null  ||  reader.useArrayBlob())
+    		return;
+        System.out.println("Raw samples for scalars and arrays " + mixed_name + ":");
+        final Timestamp end = Timestamp.now();
+        Timestamp start = end.minus(WAVEFORM_TIMERANGE);
+
+        // Locate first array sample
+        ValueIterator values = reader.getRawValues(0, mixed_name, start, end);
+        while (values.hasNext())
+        {
+            final VType value = values.next();
+            if (value instanceof VNumberArray)
+            {
+            	start = VTypeHelper.getTimestamp(value);
+            	break;
+            }
+        }
+        values.close();
+
+        final int channel_id = reader.getChannelID(mixed_name);
+        final PreparedStatement sel_elements = reader.getRDB().getConnection().prepareStatement(
+        		reader.getSQL().sample_sel_array_vals);
+        int arrays = 0, scalars = 0;
+        values = reader.getRawValues(0, mixed_name, start, end);
+        while (values.hasNext())
+        {
+            final VType value = values.next();
+            System.out.println(value);
+            if (! (value instanceof VNumber  ||  value instanceof VNumberArray))
+            	continue;
+            final Timestamp time = VTypeHelper.getTimestamp(value);
+            sel_elements.setInt(1, channel_id);
+            sel_elements.setTimestamp(2, TimestampHelper.toSQLTimestamp(time));
+            sel_elements.setInt(3, time.getNanoSec());
+            final ResultSet result = sel_elements.executeQuery();
+            int elements = 1;
+            while (result.next())
+            	++elements;
+            result.close();
+            if (value instanceof VNumberArray)
+            {
+            	assertEquals(elements, ((VNumberArray) value).getData().size());
+            	++arrays;
+            }
+            else
+            {
+            	assertEquals(1, elements);
+            	++scalars;
+            }
+        }
+        values.close();
+        sel_elements.close();
+        System.out.println(arrays + " arrays, " + scalars + " scalars");
+        assertTrue(arrays > 0);
+    }
+
+    /** Read several channels with one call, iterating them in turns
+     *  <p>
+     *  Closing one iterator early must not affect the others,
+     *  which share the one RDB connection.
+     */
+    @Test
+    public void testInterleavedChannels() throws Exception
+    {
+    	if (reader == null  ||  array_name == null)
+    		return;
+        final List<String> channels = new ArrayList<String>();
+        channels.add(name);
+        channels.add(array_name);
+        if (mixed_name != null)
+            channels.add(mixed_name);
+        final String[] names = channels.toArray(new String[channels.size()]);
+        System.out.println("Interleaved raw samples for " + channels + ":");
+        final Timestamp end = Timestamp.now();
+        final Timestamp start = end.minus(WAVEFORM_TIMERANGE);
+
+        // Number of samples when reading each channel by itself
+        final int[] expected = new int[names.length];
+        for (int i=0; i<names.length; ++i)
+        {
+            final ValueIterator values = reader.getRawValues(0, names[i], start, end);
+            while (values.hasNext())
+            {
+                values.next();
+                ++expected[i];
+            }
+            values.close();
+        }
+
+        // Read all channels in turns, stop the first one early
+        final int early = 5;
+        final ValueIterator[] iters = reader.getRawValues(0, names, start, end);
+        final int[] counts = new int[names.length];
+        boolean more = true;
+        while (more)
+        {
+            more = false;
+            for (int i=0; i<iters.length; ++i)
+            {
+                if (iters[i] == null)
+                    continue;
+                if (iters[i].hasNext())
+                {
+                    iters[i].next();
+                    ++counts[i];
+                    more = true;
+                }
+                if (i == 0  &&  counts[i] >= early)
+                {
+                    iters[i].close();
+                    iters[i] = null;
+                }
+            }
+        }
+        for (int i=0; i<names.length; ++i)
+        {
+            System.out.println(names[i] + ": " + counts[i] + " of " + expected[i] + " samples");
+            if (iters[i] != null)
+                iters[i].close();
+        }
+        assertEquals(Math.min(early, expected[0]), counts[0]);
+        for (int i=1; i<names.length; ++i)
+            assertEquals(expected[i], counts[i]);
+    }
+
     /** Get optimized data for scalar, using the client-side {@link AveragedValueIterator} */
     @Test
     public void testJavaOptimizedScalarData() throws Exception
@@ -288,6 +430,123 @@ public class RDBArchiveReaderTest
         values.close();
     }
 
+    /** Get optimized data for scalar, using the server-side {@link BinnedValueIterator},
+     *  and check each bin against the raw samples in its time range
+     */
+    @Test
+    public void testServerSideBinning() throws Exception
+    {
+    	if (reader == null)
+    		return;
+    	if (reader.getSQL().sample_sel_bins_by_id_start_end == null)
+    	{
+    		System.out.println("No server-side binning for " + reader.getRDB().getDialect());
+    		return;
+    	}
+    	final int channel_id = reader.getChannelID(name);
+        System.out.println("Optimized samples for " + name + " (" + channel_id + "):");
+        System.out.println("-- Server-side binning --");
+
+        final Timestamp end = Timestamp.now();
+        final Timestamp start = end.minus(TIMERANGE);
+        final double seconds = end.durationFrom(start).toSeconds() / BUCKETS;
+
+        final List<VType> raw = new ArrayList<VType>();
+        final ValueIterator raw_values = reader.getRawValues(channel_id, start, end);
+        while (raw_values.hasNext())
+        {
+        	final VType value = raw_values.next();
+        	if (value instanceof VNumber)
+        		raw.add(value);
+        }
+        raw_values.close();
+
+        final TimeDuration half_bin = TimeDuration.ofSeconds(((long) seconds) / 2.0);
+        int binned = 0;
+        final ValueIterator values = new BinnedValueIterator(reader, channel_id, start, end, seconds);
+        while (values.hasNext())
+        {
+        	final VType value = values.next();
+            System.out.println(value);
+            if (! (value instanceof VNumber  ||  value instanceof VStatistics))
+            	continue;
+            // Compare with the raw samples in the bin
+            final Timestamp time = VTypeHelper.getTimestamp(value);
+            final Timestamp bin_start = time.minus(half_bin), bin_end = time.plus(half_bin);
+            int count = 0;
+            double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+            for (VType sample : raw)
+            {
+            	final Timestamp sample_time = VTypeHelper.getTimestamp(sample);
+            	if (sample_time.compareTo(bin_start) < 0  ||  sample_time.compareTo(bin_end) >= 0)
+            		continue;
+            	final double number = VTypeHelper.toDouble(sample);
+            	min = Math.min(min, number);
+            	max = Math.max(max, number);
+            	++count;
+            }
+            if (value instanceof VStatistics)
+            {
+            	final VStatistics stats = (VStatistics) value;
+            	assertEquals(count, stats.getNSamples().intValue());
+            	assertEquals(min, stats.getMin(), 1e-9);
+            	assertEquals(max, stats.getMax(), 1e-9);
+            }
+            else
+            	assertEquals(1, count);
+            binned += count;
+        }
+        values.close();
+        // Every raw sample is in exactly one bin
+        assertEquals(raw.size(), binned);
+    }
+
+    /** Compare client-side {@link AveragedValueIterator} with server-side {@link BinnedValueIterator}
+     *
+     *  <p>Use a channel with many samples in the time range
+     *  to see the difference.
+     */
+    @Test
+    public void benchmarkServerSideBinning() throws Exception
+    {
+    	if (reader == null  ||  reader.getSQL().sample_sel_bins_by_id_start_end == null)
+    		return;
+    	final int channel_id = reader.getChannelID(name);
+        final Timestamp end = Timestamp.now();
+        final Timestamp start = end.minus(TIMERANGE);
+        final double seconds = end.durationFrom(start).toSeconds() / BUCKETS;
+
+        // Run each twice, use second run to reduce effect of RDB caches
+        for (int run=0; run<2; ++run)
+        {
+        	BenchmarkTimer timer = new BenchmarkTimer();
+        	final int client = countValues(new AveragedValueIterator(reader.getRawValues(channel_id, start, end), seconds));
+        	timer.stop();
+        	System.out.println("Client-side averaging: " + client + " values in " + timer);
+
+        	timer = new BenchmarkTimer();
+        	final int server = countValues(new BinnedValueIterator(reader, channel_id, start, end, seconds));
+        	timer.stop();
+        	System.out.println("Server-side binning  : " + server + " values in " + timer);
+        }
+    }
+
+    /** @param values Values to read and close
+     *  @return Number of values
+     *  @throws Exception on error
+     */
+    private int countValues(final ValueIterator values) throws Exception
+    {
+    	int count = 0;
+    	while (values.hasNext())
+    	{
+    		assertNotNull(values.next());
+    		++count;
+    	}
+    	values.close();
+    	return count;
+    }
+
 //    /** Directly call the stored procedure */
 //    @Test
 //    @Ignore
@@ -14,6 +14,7 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.csstudio.archive.reader.ValueIterator;
@@ -22,6 +23,7 @@ import org.csstudio.archive.vtype.ArchiveVNumber;
 import org.csstudio.archive.vtype.ArchiveVNumberArray;
 import org.csstudio.archive.vtype.ArchiveVString;
 import org.csstudio.archive.vtype.TimestampHelper;
+import org.csstudio.platform.utility.rdb.RDBUtil.Dialect;
 import org.epics.util.text.NumberFormats;
 import org.epics.util.time.Timestamp;
 import org.epics.vtype.AlarmSeverity;
@@ -44,6 +46,22 @@ abstract public class AbstractRDBValueIterator  implements ValueIterator
 
     /** SELECT ... for the array samples. */
     private PreparedStatement sel_array_samples = null;
+
+    /** SELECT ... for all array elements in the time range,
+     *  <code>null</code> when reading array elements one sample at a time
+     */
+    private PreparedStatement sel_array_range = null;
+
+    /** Result of <code>sel_array_range</code> */
+    private ResultSet array_range = null;
+
+    /** End of the time range for <code>sel_array_range</code>,
+     *  <code>null</code> when reading array elements one sample at a time
+     */
+    private java.sql.Timestamp array_range_end = null;
+
+    /** Time of the current row in <code>array_range</code>, <code>null</code> at end */
+    private java.sql.Timestamp array_range_time = null;
     
     /** Before version 3.1.0, we would look for array
      *  values in the array_val table until we are sure
@@ -60,6 +78,9 @@ abstract public class AbstractRDBValueIterator  implements ValueIterator
      */
     protected boolean is_an_array = true;
 
+    /** Has this iterator joined the reader's transaction? */
+    private boolean in_transaction = false;
+
 
     /** @param reader RDBArchiveReader
      *  @param channel_id ID of channel
@@ -87,6 +108,30 @@ abstract public class AbstractRDBValueIterator  implements ValueIterator
         	display = ValueFactory.newDisplay(0.0, 0.0, 0.0, "", NumberFormats.format(0), 0.0, 0.0, 10.0, 0.0, 10.0);
     }
 
+    /** Join the reader's transaction for reading samples
+     *  @throws Exception on error
+     *  @see RDBArchiveReader#beginTransaction()
+     */
+    protected void beginTransaction() throws Exception
+    {
+        if (in_transaction)
+            return;
+        reader.beginTransaction();
+        in_transaction = true;
+    }
+
+    /** Leave the reader's transaction.
+     *  OK to call more than once.
+     *  @see RDBArchiveReader#endTransaction()
+     */
+    protected void endTransaction()
+    {
+        if (! in_transaction)
+            return;
+        in_transaction = false;
+        reader.endTransaction();
+    }
+
     /** @return Numeric meta data information for the channel or <code>null</code>
      *  @throws Exception on error
      */
@@ -163,6 +208,43 @@ abstract public class AbstractRDBValueIterator  implements ValueIterator
         return labels;
     }
 
+    /** Determine the time of the last sample at-or-before the start time,
+     *  so that the data begins with the value that was valid at the start time
+     *  @param start Start time
+     *  @return Time of that sample, or the original start time if there is none
+     *  @throws Exception on error, including cancellation
+     */
+    protected java.sql.Timestamp getActualStartTime(final Timestamp start) throws Exception
+    {
+        java.sql.Timestamp start_stamp = TimestampHelper.toSQLTimestamp(start);
+
+        // Get time of initial sample
+        final PreparedStatement statement =
+            reader.getRDB().getConnection().prepareStatement(reader.getSQL().sample_sel_initial_time);
+        reader.addForCancellation(statement);
+        try
+        {
+            statement.setInt(1, channel_id);
+            statement.setTimestamp(2, start_stamp);
+            final ResultSet result = statement.executeQuery();
+            if (result.next())
+            {
+                // System.out.print("Start time corrected from " + start_stamp);
+                start_stamp = result.getTimestamp(1);
+                // Oracle has nanoseconds in TIMESTAMP, MySQL in separate column
+                if (reader.getRDB().getDialect() == Dialect.MySQL || reader.getRDB().getDialect() == Dialect.PostgreSQL)
+                    start_stamp.setNanos(result.getInt(2));
+                // System.out.println(" to " + start_stamp);
+            }
+        }
+        finally
+        {
+            reader.removeFromCancellation(statement);
+            statement.close();
+        }
+        return start_stamp;
+    }
+
     /** Extract value from SQL result
      *  @param result ResultSet that must contain contain time, severity, ..., value
      *  @param handle_array Try to read array elements, or only a scalar value?
@@ -240,6 +322,83 @@ abstract public class AbstractRDBValueIterator  implements ValueIterator
         return severity;
     }
 
+    /** Read the array elements of the samples up to the end time
+     *  with one query, instead of querying each sample's elements.
+     *
+     *  <p>The query is only started once the first numeric sample
+     *  turns out to be an array, so scalar channels do not read
+     *  the array_val table beyond that first sample.
+     *  Samples then need to be read in time order.
+     *  Does nothing when arrays are stored as BLOB.
+     *  @param end_stamp End time
+     */
+    protected void readArrayElementsForRange(final java.sql.Timestamp end_stamp)
+    {
+        if (! reader.useArrayBlob())
+            array_range_end = end_stamp;
+    }
+
+    /** Start the query for the array elements of all samples in a time range
+     *  @param start_stamp Start time
+     *  @param end_stamp End time
+     *  @throws Exception on error, including cancellation
+     */
+    private void startArrayRange(final java.sql.Timestamp start_stamp,
+            final java.sql.Timestamp end_stamp) throws Exception
+    {
+        sel_array_range = reader.getRDB().getConnection().prepareStatement(
+                reader.getSQL().sample_sel_array_vals_by_id_start_end);
+        sel_array_range.setFetchDirection(ResultSet.FETCH_FORWARD);
+        sel_array_range.setFetchSize(Preferences.getFetchSize());
+        reader.addForCancellation(sel_array_range);
+        sel_array_range.setInt(1, channel_id);
+        sel_array_range.setTimestamp(2, start_stamp);
+        sel_array_range.setTimestamp(3, end_stamp);
+        array_range = sel_array_range.executeQuery();
+        nextArrayRangeRow();
+    }
+
+    /** Move to next row of <code>array_range</code>, updating <code>array_range_time</code>
+     *  @throws Exception on error
+     */
+    private void nextArrayRangeRow() throws Exception
+    {
+        if (array_range.next())
+        {
+            array_range_time = array_range.getTimestamp(1);
+            // Oracle has nanoseconds in TIMESTAMP, other RDBs in separate column
+            if (! reader.isOracle())
+                array_range_time.setNanos(array_range.getInt(2));
+        }
+        else
+            array_range_time = null;
+    }
+
+    /** Get array elements from the range query
+     *  @param stamp Time stamp of the sample
+     *  @param dbl0 Value of the first (maybe only) array element
+     *  @return Array with given element and maybe more.
+     *  @throws Exception on error, including 'cancel'
+     */
+    private double[] readArrayElementsFromRange(final Timestamp stamp, final double dbl0) throws Exception
+    {
+        final java.sql.Timestamp sql_stamp = TimestampHelper.toSQLTimestamp(stamp);
+        // Skip elements of samples that were not requested
+        while (array_range_time != null  &&  array_range_time.before(sql_stamp))
+            nextArrayRangeRow();
+        double[] data = new double[] { dbl0 };
+        int N = 1;
+        final int value_column = reader.isOracle() ? 2 : 3;
+        while (array_range_time != null  &&  array_range_time.equals(sql_stamp))
+        {
+            if (N >= data.length)
+                data = Arrays.copyOf(data, 2*data.length);
+            data[N++] = array_range.getDouble(value_column);
+            nextArrayRangeRow();
+        }
+        return N == data.length ? data : Arrays.copyOf(data, N);
+    }
+
     /** Given the time and first element of the  sample, see if there
      *  are more array elements.
      *  @param stamp Time stamp of the sample
@@ -252,6 +411,10 @@ abstract public class AbstractRDBValueIterator  implements ValueIterator
             final double dbl0,
             final AlarmSeverity severity) throws Exception
     {
+        // With all elements for the time range at hand, simply check those
+        if (array_range != null)
+            return readArrayElementsFromRange(stamp, dbl0);
+
         // For performance reasons, only look for array data until we hit a scalar sample.
         if (is_an_array==false)
             return new double [] { dbl0 };
@@ -294,6 +457,10 @@ abstract public class AbstractRDBValueIterator  implements ValueIterator
             // Assume that the data is scalar, skip the array check from now on
         	is_an_array = false;
         }
+        else if (N > 1  &&  array_range_end != null)
+        {   // Found an array: Read the elements of the following samples in one query
+            startArrayRange(TimestampHelper.toSQLTimestamp(stamp), array_range_end);
+        }
         return ret;
     }
 
@@ -360,6 +527,32 @@ abstract public class AbstractRDBValueIterator  implements ValueIterator
     @Override
     public void close()
     {
+        if (array_range != null)
+        {
+            try
+            {
+                array_range.close();
+            }
+            catch (Exception ex)
+            {
+                // Ignore
+            }
+            array_range = null;
+            array_range_time = null;
+        }
+        if (sel_array_range != null)
+        {
+            reader.removeFromCancellation(sel_array_range);
+            try
+            {
+                sel_array_range.close();
+            }
+            catch (Exception ex)
+            {
+                // Ignore
+            }
+            sel_array_range = null;
+        }
         if (sel_array_samples != null)
         {
             try
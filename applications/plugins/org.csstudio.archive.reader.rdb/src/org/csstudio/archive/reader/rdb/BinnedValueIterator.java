@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader.rdb;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.csstudio.archive.vtype.ArchiveVStatistics;
+import org.csstudio.archive.vtype.TimestampHelper;
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.epics.util.time.TimeDuration;
+import org.epics.util.time.Timestamp;
+import org.epics.vtype.AlarmSeverity;
+import org.epics.vtype.VType;
+
+/** Value Iterator that provides 'optimized' data by having
+ *  the RDB compute min/max/average for time bins.
+ *
+ *  <p>Unlike the {@link AveragedValueIterator}, only the bins
+ *  are transferred from the RDB, not every raw sample.
+ *  Uses {@link SQL#sample_sel_bins_by_id_start_end}
+ *  for the numeric samples.
+ *  Samples that have no numeric value, for example 'Archive_Off'
+ *  or 'Disconnected', are read with
+ *  {@link SQL#sample_sel_non_binned_by_id_start_end}
+ *  and returned as they are, in time order with the bins.
+ *
+ *  <p>Like the data of the stored procedures, bins carry no alarm severity.
+ *  Enumerated channels are not averaged but returned as raw samples.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class BinnedValueIterator extends AbstractRDBValueIterator
+{
+    /** Bin size in seconds */
+    final private long seconds;
+
+    /** Start time of the first bin */
+    private Timestamp bin_origin;
+
+    /** SELECT ... for the bins, <code>null</code> for enumerated channels */
+    private PreparedStatement sel_bins = null;
+
+    /** Result of <code>sel_bins</code> */
+    private ResultSet bins = null;
+
+    /** SELECT ... for samples that are not binned */
+    private PreparedStatement sel_samples = null;
+
+    /** Result of <code>sel_samples</code> */
+    private ResultSet samples = null;
+
+    /** Next bin or <code>null</code> */
+    private VType next_bin = null;
+
+    /** Next sample that is not binned or <code>null</code> */
+    private VType next_sample = null;
+
+    /** Initialize
+     *  @param reader RDBArchiveReader
+     *  @param channel_id ID of channel
+     *  @param start Start time
+     *  @param end End time
+     *  @param seconds Bin size in seconds
+     *  @throws Exception on error
+     */
+    public BinnedValueIterator(final RDBArchiveReader reader,
+            final int channel_id, final Timestamp start,
+            final Timestamp end, final double seconds) throws Exception
+    {
+        super(reader, channel_id);
+        // Same bin size as AveragedValueIterator
+        this.seconds = seconds < 1.0 ? 1 : (long) seconds;
+        try
+        {
+            executeQueries(start, end);
+        }
+        catch (Exception ex)
+        {
+            close();
+            if (! RDBArchiveReader.isCancellation(ex))
+                throw ex;
+            // Else: Not a real error; return empty iterator
+        }
+    }
+
+    /** Start the queries for bins and samples,
+     *  fetch the first of each
+     *  @param start Start time
+     *  @param end End time
+     *  @throws Exception on error, including cancellation
+     */
+    private void executeQueries(final Timestamp start, final Timestamp end) throws Exception
+    {
+        final java.sql.Timestamp start_stamp = getActualStartTime(start);
+        final java.sql.Timestamp end_stamp = TimestampHelper.toSQLTimestamp(end);
+
+        // Disable auto-commit to determine sample with PostgreSQL when fetch direction is FETCH_FORWARD
+        beginTransaction();
+
+        final SQL sql = reader.getSQL();
+        if (labels == null)
+        {
+            sel_bins = reader.getRDB().getConnection().prepareStatement(sql.sample_sel_bins_by_id_start_end);
+            sel_bins.setFetchDirection(ResultSet.FETCH_FORWARD);
+            sel_bins.setFetchSize(Preferences.getFetchSize());
+            reader.addForCancellation(sel_bins);
+            bin_origin = TimestampHelper.fromSQLTimestamp(start_stamp);
+            sel_bins.setTimestamp(1, start_stamp);
+            sel_bins.setLong(2, seconds);
+            sel_bins.setInt(3, channel_id);
+            sel_bins.setTimestamp(4, start_stamp);
+            sel_bins.setTimestamp(5, end_stamp);
+            bins = sel_bins.executeQuery();
+            next_bin = nextBin();
+
+            sel_samples = reader.getRDB().getConnection().prepareStatement(sql.sample_sel_non_binned_by_id_start_end);
+        }
+        else // Enumerated values cannot be averaged, get all samples
+            sel_samples = reader.getRDB().getConnection().prepareStatement(sql.sample_sel_by_id_start_end);
+        sel_samples.setFetchDirection(ResultSet.FETCH_FORWARD);
+        sel_samples.setFetchSize(Preferences.getFetchSize());
+        reader.addForCancellation(sel_samples);
+        sel_samples.setInt(1, channel_id);
+        sel_samples.setTimestamp(2, start_stamp);
+        sel_samples.setTimestamp(3, end_stamp);
+        samples = sel_samples.executeQuery();
+        next_sample = nextSample();
+    }
+
+    /** @return Value for next bin or <code>null</code>
+     *  @throws Exception on error
+     */
+    private VType nextBin() throws Exception
+    {
+        if (bins == null  ||  !bins.next())
+            return null;
+        // Columns 1 bin, 2 min, 3 max, 4 average, 5 std. dev., 6 count.
+        // Time stamp in center of bin, as in AveragedValueIterator.
+        // The bin number counts from the start time, so the time zone
+        // of the RDB and this JVM do not matter.
+        final long bin = bins.getLong(1);
+        final Timestamp time = bin_origin.plus(TimeDuration.ofNanos(bin * seconds * 1000000000L + seconds * 500000000L));
+        final int count = bins.getInt(6);
+        final double average = bins.getDouble(4);
+        if (count == 1)
+            return new ArchiveVNumber(time, AlarmSeverity.NONE, "", display, average);
+        return new ArchiveVStatistics(time, AlarmSeverity.NONE, "", display,
+                average, bins.getDouble(2), bins.getDouble(3), bins.getDouble(5), count);
+    }
+
+    /** @return Next sample that is not binned or <code>null</code>
+     *  @throws Exception on error
+     */
+    private VType nextSample() throws Exception
+    {
+        if (samples == null  ||  !samples.next())
+            return null;
+        return decodeSampleTableValue(samples, false);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean hasNext()
+    {
+        return next_bin != null  ||  next_sample != null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public VType next() throws Exception
+    {
+        // Return whichever comes first, bin or sample
+        final boolean use_bin = next_sample == null  ||
+            (next_bin != null  &&
+             VTypeHelper.getTimestamp(next_bin).compareTo(VTypeHelper.getTimestamp(next_sample)) < 0);
+        final VType result = use_bin ? next_bin : next_sample;
+        // ... and prepare next value
+        try
+        {
+            if (use_bin)
+                next_bin = nextBin();
+            else
+                next_sample = nextSample();
+            if (! hasNext())
+                close();
+        }
+        catch (Exception ex)
+        {
+            close();
+            if (! RDBArchiveReader.isCancellation(ex))
+                throw ex;
+            // Else: Not a real error; return empty iterator
+        }
+        return result;
+    }
+
+    /** Close result set and statement
+     *  @param result ResultSet or <code>null</code>
+     *  @param statement Statement or <code>null</code>
+     */
+    private void close(final ResultSet result, final PreparedStatement statement)
+    {
+        if (result != null)
+        {
+            try
+            {
+                result.close();
+            }
+            catch (Exception ex)
+            {
+                // Ignore
+            }
+        }
+        if (statement != null)
+        {
+            reader.removeFromCancellation(statement);
+            try
+            {
+                statement.close();
+            }
+            catch (Exception ex)
+            {
+                // Ignore
+            }
+        }
+    }
+
+    /** Release all database resources.
+     *  OK to call more than once.
+     */
+    @Override
+    public void close()
+    {
+        super.close();
+        next_bin = null;
+        next_sample = null;
+        close(bins, sel_bins);
+        bins = null;
+        sel_bins = null;
+        close(samples, sel_samples);
+        samples = null;
+        sel_samples = null;
+        // Restore default auto-commit when the last result set is closed
+        endTransaction();
+    }
+}
@@ -24,6 +24,7 @@ public class Preferences
 {
     final public static String FETCH_SIZE = "fetch_size";
     final public static String STORED_PROCEDURE = "use_stored_procedure";
+    final public static String SERVER_SIDE_BINNING = "server_side_binning";
 
     public static int getFetchSize()
     {
@@ -39,6 +40,17 @@ public class Preferences
         return getString(STORED_PROCEDURE, "");
     }
 
+    /** @return <code>true</code> to have the RDB compute averaged data
+     *          when there is no stored procedure
+     */
+    public static boolean useServerSideBinning()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        if (prefs == null)
+            return true;
+        return prefs.getBoolean(Activator.ID, SERVER_SIDE_BINNING, true, null);
+    }
+
     /** Get string preference
      *  @param key Preference key
      *  @return String or <code>null</code>
@@ -12,12 +12,13 @@ import java.sql.ResultSet;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.csstudio.archive.rdb.RDBArchivePreferences;
 import org.csstudio.archive.reader.ArchiveInfo;
-import org.csstudio.archive.reader.ArchiveReader;
+import org.csstudio.archive.reader.MultiChannelArchiveReader;
 import org.csstudio.archive.reader.UnknownChannelException;
 import org.csstudio.archive.reader.ValueIterator;
 import org.csstudio.archive.vtype.TimestampHelper;
@@ -32,7 +33,7 @@ import org.epics.vtype.AlarmSeverity;
  *  @author Laurent Philippe - MySQL support
  */
 @SuppressWarnings("nls")
-public class RDBArchiveReader implements ArchiveReader
+public class RDBArchiveReader implements MultiChannelArchiveReader
 {
     /** Oracle error code for canceled statements */
     final private static String ORACLE_CANCELLATION = "ORA-01013"; //$NON-NLS-1$
@@ -65,6 +66,12 @@ public class RDBArchiveReader implements ArchiveReader
     private ArrayList<Statement> cancellable_statements =
         new ArrayList<Statement>();
 
+    /** Number of iterators that read within the current transaction */
+    private int transaction_users = 0;
+
+    /** Restore auto-commit when the transaction ends? */
+    private boolean restore_auto_commit = false;
+
     /** Initialize
      *  @param url Database URL
      *  @param user .. user
@@ -371,7 +378,20 @@ public class RDBArchiveReader implements ArchiveReader
     	if (count <= 1)
             throw new Exception("Count must be > 1");
         final int channel_id = getChannelID(name);
-        
+        return getOptimizedValues(channel_id, start, end, count);
+    }
+
+    /** Fetch optimized samples
+     *  @param channel_id Channel ID in RDB
+     *  @param start Start time
+     *  @param end End time
+     *  @param count Hint for number of values
+     *  @return {@link ValueIterator} for optimized samples
+     *  @throws Exception on error
+     */
+    private ValueIterator getOptimizedValues(final int channel_id,
+            final Timestamp start, final Timestamp end, final int count) throws Exception
+    {
         // Use stored procedure in RDB server?
         if (stored_procedure.length() > 0)
             return new StoredProcedureValueIterator(this, stored_procedure, channel_id, start, end, count);
@@ -392,18 +412,111 @@ public class RDBArchiveReader implements ArchiveReader
 	        	throw new Exception("Cannot count samples");
 	        counted = result.getInt(1);
         }
-        // Fetch raw data and perform averaging
-        final ValueIterator raw_data = getRawValues(channel_id, start, end);
-        
         // If there weren't that many, that's it
         if (counted < count)
-        	return raw_data;
+        	return getRawValues(channel_id, start, end);
         
         // Else: Perform averaging to reduce sample count
         final double seconds = end.durationFrom(start).toSeconds() / count;
+        // Have RDB compute the bins instead of reading all raw samples?
+        if (sql.sample_sel_bins_by_id_start_end != null  &&  Preferences.useServerSideBinning())
+            return new BinnedValueIterator(this, channel_id, start, end, seconds);
+        // Fetch raw data and perform averaging
+        final ValueIterator raw_data = getRawValues(channel_id, start, end);
         return new AveragedValueIterator(raw_data, seconds);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public ValueIterator[] getRawValues(final int key, final String[] names,
+            final Timestamp start, final Timestamp end) throws Exception
+    {
+        final Integer[] ids = getChannelIDs(names);
+        final ValueIterator[] iters = new ValueIterator[names.length];
+        try
+        {
+            // Iterators share the one RDB connection and its transaction,
+            // so create them one by one
+            for (int i=0; i<ids.length; ++i)
+                if (ids[i] != null)
+                    iters[i] = getRawValues(ids[i], start, end);
+        }
+        catch (Exception ex)
+        {
+            close(iters);
+            throw ex;
+        }
+        return iters;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ValueIterator[] getOptimizedValues(final int key, final String[] names,
+            final Timestamp start, final Timestamp end, final int count) throws Exception
+    {
+    	if (count <= 1)
+            throw new Exception("Count must be > 1");
+        final Integer[] ids = getChannelIDs(names);
+        final ValueIterator[] iters = new ValueIterator[names.length];
+        try
+        {
+            for (int i=0; i<ids.length; ++i)
+                if (ids[i] != null)
+                    iters[i] = getOptimizedValues(ids[i], start, end, count);
+        }
+        catch (Exception ex)
+        {
+            close(iters);
+            throw ex;
+        }
+        return iters;
+    }
+
+    /** @param iters Iterators to close, may contain <code>null</code> */
+    private static void close(final ValueIterator[] iters)
+    {
+        for (ValueIterator iter : iters)
+            if (iter != null)
+                iter.close();
+    }
+
+    /** @param names Channel names
+     *  @return Numeric channel IDs, <code>null</code> for unknown channels
+     *  @throws Exception on error
+     */
+    // Allow access from 'package' for tests
+    Integer[] getChannelIDs(final String[] names) throws Exception
+    {
+        final Map<String, Integer> ids = new HashMap<String, Integer>();
+        // Query in chunks, since Oracle limits the number of IN (...) elements
+        for (int first=0; first<names.length; first += SQL.MAX_IN_ELEMENTS)
+        {
+            final int last = Math.min(names.length, first + SQL.MAX_IN_ELEMENTS);
+            final StringBuilder query = new StringBuilder(sql.channel_sel_by_names);
+            for (int i=first; i<last; ++i)
+                query.append(i > first ? ", ?" : "?");
+            query.append(")");
+            try
+            (
+                final PreparedStatement statement =
+                    rdb.getConnection().prepareStatement(query.toString());
+            )
+            {
+                if (timeout > 0)
+                    statement.setQueryTimeout(timeout);
+                for (int i=first; i<last; ++i)
+                    statement.setString(i - first + 1, names[i]);
+                final ResultSet result = statement.executeQuery();
+                while (result.next())
+                    ids.put(result.getString(1), result.getInt(2));
+            }
+        }
+        final Integer[] result = new Integer[names.length];
+        for (int i=0; i<names.length; ++i)
+            result[i] = ids.get(names[i]);
+        return result;
+    }
+
     /** @param name Channel name
      *  @return Numeric channel ID
      *  @throws UnknownChannelException when channel not known
@@ -428,6 +541,52 @@ public class RDBArchiveReader implements ArchiveReader
         }
     }
 
+    /** Start or join the transaction for reading samples.
+     *  <p>
+     *  PostgreSQL only fetches the rows of a result set
+     *  in chunks of the fetch size while auto-commit is disabled.
+     *  All iterators share the one connection, and a commit
+     *  would invalidate the result sets of the other iterators,
+     *  so the transaction remains open until the last iterator ends it.
+     *  @throws Exception on error
+     *  @see #endTransaction()
+     */
+    synchronized void beginTransaction() throws Exception
+    {
+        if (rdb.getDialect() != Dialect.PostgreSQL)
+            return;
+        if (transaction_users == 0)
+        {
+            restore_auto_commit = rdb.getConnection().getAutoCommit();
+            if (restore_auto_commit)
+                rdb.getConnection().setAutoCommit(false);
+        }
+        ++transaction_users;
+    }
+
+    /** Leave the transaction for reading samples.
+     *  <p>
+     *  When the last iterator leaves, auto-commit is restored.
+     *  @see #beginTransaction()
+     */
+    synchronized void endTransaction()
+    {
+        if (transaction_users <= 0)
+            return;
+        --transaction_users;
+        if (transaction_users == 0  &&  restore_auto_commit)
+        {
+            try
+            {
+                rdb.getConnection().setAutoCommit(true);
+            }
+            catch (Exception ex)
+            {
+                // Ignore
+            }
+        }
+    }
+
     /** Add a statement to the list of statements-to-cancel in cancel()
      *  @param statement Statement to cancel
      *  @see #cancel()
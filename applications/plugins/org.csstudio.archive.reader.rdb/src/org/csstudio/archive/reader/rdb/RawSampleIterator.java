@@ -11,7 +11,6 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 
 import org.csstudio.archive.vtype.TimestampHelper;
-import org.csstudio.platform.utility.rdb.RDBUtil.Dialect;
 import org.epics.util.time.Timestamp;
 import org.epics.vtype.VType;
 
@@ -65,39 +64,11 @@ public class RawSampleIterator extends AbstractRDBValueIterator
      */
     private void determineInitialSample(final Timestamp start, final Timestamp end) throws Exception
     {
-        java.sql.Timestamp start_stamp = TimestampHelper.toSQLTimestamp(start);
+        final java.sql.Timestamp start_stamp = getActualStartTime(start);
         final java.sql.Timestamp end_stamp = TimestampHelper.toSQLTimestamp(end);
 
-        // Get time of initial sample
-        final PreparedStatement statement =
-            reader.getRDB().getConnection().prepareStatement(reader.getSQL().sample_sel_initial_time);
-        reader.addForCancellation(statement);
-        try
-        {
-            statement.setInt(1, channel_id);
-            statement.setTimestamp(2, start_stamp);
-            final ResultSet result = statement.executeQuery();
-            if (result.next())
-            {
-                // System.out.print("Start time corrected from " + start_stamp);
-                start_stamp = result.getTimestamp(1);
-                // Oracle has nanoseconds in TIMESTAMP, MySQL in separate column
-                if (reader.getRDB().getDialect() == Dialect.MySQL || reader.getRDB().getDialect() == Dialect.PostgreSQL)
-                    start_stamp.setNanos(result.getInt(2));
-                // System.out.println(" to " + start_stamp);
-            }
-        }
-        finally
-        {
-            reader.removeFromCancellation(statement);
-            statement.close();
-        }
-
-        boolean autoCommit = reader.getRDB().getConnection().getAutoCommit();
-		// Disable auto-commit to determine sample with PostgreSQL when fetch direction is FETCH_FORWARD
-		if (reader.getRDB().getDialect() == Dialect.PostgreSQL && autoCommit) {
-			reader.getRDB().getConnection().setAutoCommit(false);
-		}
+        // Disable auto-commit to determine sample with PostgreSQL when fetch direction is FETCH_FORWARD
+        beginTransaction();
         
         // Fetch the samples
         if (reader.useArrayBlob())
@@ -119,6 +90,9 @@ public class RawSampleIterator extends AbstractRDBValueIterator
         // just to be on the safe side, use a bigger number.
         sel_samples.setFetchSize(Preferences.getFetchSize());
 
+        // Read array elements along with the samples
+        readArrayElementsForRange(end_stamp);
+
         reader.addForCancellation(sel_samples);
         sel_samples.setInt(1, channel_id);
         sel_samples.setTimestamp(2, start_stamp);
@@ -199,13 +173,7 @@ public class RawSampleIterator extends AbstractRDBValueIterator
             }
             sel_samples = null;
         }
-        if (reader.getRDB().getDialect() == Dialect.PostgreSQL) {
-        	// Restore default auto-commit on result set close 
-        	 try {
-     			reader.getRDB().getConnection().setAutoCommit(true);
-     		} catch (Exception e) {
-     			// Ignore
-     		}
-        }
+        // Restore default auto-commit when the last result set is closed
+        endTransaction();
     }
 }
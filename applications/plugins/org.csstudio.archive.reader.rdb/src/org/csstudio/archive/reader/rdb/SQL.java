@@ -17,6 +17,9 @@ import org.csstudio.platform.utility.rdb.RDBUtil.Dialect;
 @SuppressWarnings("nls")
 public class SQL
 {
+    /** Maximum number of elements in a 'WHERE .. IN (...)' clause */
+    final public static int MAX_IN_ELEMENTS = 1000;
+
     // 'status' table
     final public String sel_stati;
     
@@ -31,13 +34,25 @@ public class SQL
     final public String channel_sel_by_like;
     final public String channel_sel_by_reg_exp;
     final public String channel_sel_by_name;
+    /** Start of query for channel IDs by name, to be completed with "?, ?, ?)" */
+    final public String channel_sel_by_names;
 
     // 'sample' table
     final public String sample_sel_initial_time;
     final public String sample_sel_by_id_start_end;
     final public String sample_sel_by_id_start_end_with_blob;
     final public String sample_sel_array_vals;
+    final public String sample_sel_array_vals_by_id_start_end;
 	final public String sample_count_by_id_start_end;
+
+	/** Min/max/average/... of numeric samples per time bin,
+	 *  or <code>null</code> if the dialect does not support server-side binning.
+	 *  Bins are numbered from the start time, which is the first parameter.
+	 */
+	final public String sample_sel_bins_by_id_start_end;
+
+	/** Samples that are not included in the bins: Strings, 'Archive_Off', ... */
+	final public String sample_sel_non_binned_by_id_start_end;
     
     /** Initialize SQL statements
      *  @param dialect RDB dialect
@@ -83,6 +98,7 @@ public class SQL
         }
 
         channel_sel_by_name = "SELECT channel_id FROM " + prefix + "channel WHERE name=?";
+        channel_sel_by_names = "SELECT name, channel_id FROM " + prefix + "channel WHERE name IN (";
     
         // 'sample' table
         if (dialect == RDBUtil.Dialect.Oracle)
@@ -104,6 +120,9 @@ public class SQL
     	            "   ORDER BY smpl_time";
             sample_sel_array_vals = "SELECT float_val FROM " + prefix + "array_val" +
                 " WHERE channel_id=? AND smpl_time=? ORDER BY seq_nbr";
+            sample_sel_array_vals_by_id_start_end = "SELECT smpl_time, float_val FROM " + prefix + "array_val" +
+                " WHERE channel_id=? AND smpl_time>=? AND smpl_time<=?" +
+                " ORDER BY smpl_time, seq_nbr";
         }
         else
         {	// MySQL, Postgres
@@ -124,7 +143,50 @@ public class SQL
 	            "   ORDER BY smpl_time, nanosecs";
             sample_sel_array_vals = "SELECT float_val FROM " + prefix + "array_val" +
                 " WHERE channel_id=? AND smpl_time=? AND nanosecs=? ORDER BY seq_nbr";
+            sample_sel_array_vals_by_id_start_end = "SELECT smpl_time, nanosecs, float_val FROM " + prefix + "array_val" +
+                " WHERE channel_id=? AND smpl_time>=? AND smpl_time<=?" +
+                " ORDER BY smpl_time, nanosecs, seq_nbr";
         }
+        // Server-side binning.
+        // smpl_time holds the local time of the archive engine without a time zone,
+        // so bins are computed relative to the start time, not to the epoch.
+        // Samples with a status that indicates 'no value' are not binned,
+        // see AbstractRDBValueIterator.filterSeverity()
+        final String no_value_stati = "SELECT status_id FROM " + prefix + "status" +
+            " WHERE LOWER(name) IN ('archive_off', 'disconnected', 'write_error')";
+        final String bin;
+        if (dialect == RDBUtil.Dialect.PostgreSQL)
+            bin = "FLOOR((EXTRACT(EPOCH FROM smpl_time) - EXTRACT(EPOCH FROM CAST(? AS TIMESTAMP))) / ?)";
+        else if (dialect == RDBUtil.Dialect.MySQL)
+            bin = "FLOOR((UNIX_TIMESTAMP(smpl_time) - UNIX_TIMESTAMP(?)) / ?)";
+        else // Oracle uses the stored procedure
+            bin = null;
+        if (bin != null)
+        {
+            sample_sel_bins_by_id_start_end =
+                "SELECT " + bin + " AS bin," +
+                " MIN(COALESCE(float_val, num_val)), MAX(COALESCE(float_val, num_val))," +
+                " AVG(COALESCE(float_val, num_val)), STDDEV_POP(COALESCE(float_val, num_val)), COUNT(*)" +
+                "   FROM " + prefix + "sample" +
+                "   WHERE channel_id=?" +
+                "     AND smpl_time>=? AND smpl_time<=?" +
+                "     AND (float_val IS NOT NULL OR num_val IS NOT NULL)" +
+                "     AND status_id NOT IN (" + no_value_stati + ")" +
+                "   GROUP BY bin ORDER BY bin";
+            sample_sel_non_binned_by_id_start_end =
+                "SELECT smpl_time, severity_id, status_id, num_val, float_val, str_val, nanosecs FROM " + prefix + "sample" +
+                "   WHERE channel_id=?" +
+                "     AND smpl_time>=? AND smpl_time<=?" +
+                "     AND ((float_val IS NULL AND num_val IS NULL)" +
+                "          OR status_id IN (" + no_value_stati + "))" +
+                "   ORDER BY smpl_time, nanosecs";
+        }
+        else
+        {
+            sample_sel_bins_by_id_start_end = null;
+            sample_sel_non_binned_by_id_start_end = null;
+        }
+
         // Rough count, ignoring nanosecs for the non-Oracle dialects
         sample_count_by_id_start_end = "SELECT COUNT(*) FROM " + prefix + "sample" +
           "   WHERE channel_id=? AND smpl_time BETWEEN ? AND ?";
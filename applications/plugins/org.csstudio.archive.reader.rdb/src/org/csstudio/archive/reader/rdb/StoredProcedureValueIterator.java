@@ -113,11 +113,8 @@ public class StoredProcedureValueIterator extends AbstractRDBValueIterator
         	}
         	else if(dialect == RDBUtil.Dialect.PostgreSQL) 
         	{	//PostgreSQL
-        		boolean autoCommit = reader.getRDB().getConnection().getAutoCommit();
         		// Disable auto-commit to determine sample with PostgreSQL when fetch direction is FETCH_FORWARD
-        		if (autoCommit) {
-        			reader.getRDB().getConnection().setAutoCommit(false);
-        		}
+        		beginTransaction();
         		statement.registerOutParameter(1, Types.OTHER);
                 statement.setLong(2, channel_id);
                 SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
@@ -273,14 +270,8 @@ public class StoredProcedureValueIterator extends AbstractRDBValueIterator
         super.close();
         index = -1;
         values = null;
-        if (reader.getRDB().getDialect() == Dialect.PostgreSQL) {
-        	// Restore default auto-commit on result set close 
-        	 try {
-     			reader.getRDB().getConnection().setAutoCommit(true);
-     		} catch (Exception e) {
-     			// Ignore
-     		}
-        }
+        // Restore default auto-commit when the last result set is closed
+        endTransaction();
 
     }
 }
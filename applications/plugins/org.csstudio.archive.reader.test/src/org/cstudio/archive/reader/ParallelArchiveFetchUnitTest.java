@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.cstudio.archive.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.csstudio.archive.reader.ArchiveInfo;
+import org.csstudio.archive.reader.ArchiveReader;
+import org.csstudio.archive.reader.ArchiveReaderFactory;
+import org.csstudio.archive.reader.ParallelArchiveFetch;
+import org.csstudio.archive.reader.UnknownChannelException;
+import org.csstudio.archive.reader.ValueIterator;
+import org.epics.util.time.TimeDuration;
+import org.epics.util.time.Timestamp;
+import org.junit.Test;
+
+/** JUnit test of the {@link ParallelArchiveFetch}
+ *  for an {@link ArchiveReader} that only supports single-channel fetches
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class ParallelArchiveFetchUnitTest
+{
+    /** Number of active requests, shared by all readers */
+    final private AtomicInteger active = new AtomicInteger();
+
+    /** Maximum number of active requests */
+    final private AtomicInteger max_active = new AtomicInteger();
+
+    /** Number of times that a reader was used by more than one thread */
+    final private AtomicInteger shared_use = new AtomicInteger();
+
+    /** Readers created by the factory */
+    final private List<SlowReader> created = new CopyOnWriteArrayList<SlowReader>();
+
+    /** Factory for additional readers */
+    final private ArchiveReaderFactory factory = new ArchiveReaderFactory()
+    {
+        @Override
+        public ArchiveReader getArchiveReader(final String url) throws Exception
+        {
+            final SlowReader reader = new SlowReader();
+            created.add(reader);
+            return reader;
+        }
+    };
+
+    /** Reader that takes some time for each request */
+    private class SlowReader implements ArchiveReader
+    {
+        /** Number of threads that currently use this reader */
+        final AtomicInteger users = new AtomicInteger();
+
+        @Override
+        public String getServerName()
+        {
+            return "Slow";
+        }
+
+        @Override
+        public String getURL()
+        {
+            return "slow://";
+        }
+
+        @Override
+        public String getDescription()
+        {
+            return "Slow test reader";
+        }
+
+        @Override
+        public int getVersion()
+        {
+            return 1;
+        }
+
+        @Override
+        public ArchiveInfo[] getArchiveInfos()
+        {
+            return new ArchiveInfo[] { new ArchiveInfo("Test", "Test", 1) };
+        }
+
+        @Override
+        public String[] getNamesByPattern(final int key, final String glob_pattern) throws Exception
+        {
+            return new String[0];
+        }
+
+        @Override
+        public String[] getNamesByRegExp(final int key, final String reg_exp) throws Exception
+        {
+            return new String[0];
+        }
+
+        @Override
+        public ValueIterator getRawValues(final int key, final String name,
+                final Timestamp start, final Timestamp end) throws UnknownChannelException, Exception
+        {
+            if (users.incrementAndGet() > 1)
+                shared_use.incrementAndGet();
+            final int now = active.incrementAndGet();
+            synchronized (max_active)
+            {
+                if (now > max_active.get())
+                    max_active.set(now);
+            }
+            try
+            {
+                Thread.sleep(100);
+                if (name.startsWith("unknown"))
+                    throw new UnknownChannelException(name);
+                if (name.startsWith("broken"))
+                    throw new Exception("Cannot read " + name);
+                return DemoDataIterator.forStrings(name);
+            }
+            finally
+            {
+                active.decrementAndGet();
+                users.decrementAndGet();
+            }
+        }
+
+        @Override
+        public ValueIterator getOptimizedValues(final int key, final String name,
+                final Timestamp start, final Timestamp end, final int count) throws UnknownChannelException, Exception
+        {
+            return getRawValues(key, name, start, end);
+        }
+
+        @Override
+        public void cancel()
+        {
+            // NOP
+        }
+
+        @Override
+        public void close()
+        {
+            // NOP
+        }
+    }
+
+    @Test(timeout=10000)
+    public void testParallelFetch() throws Exception
+    {
+        final SlowReader reader = new SlowReader();
+        final String[] names = new String[] { "a", "b", "unknown1", "c", "d", "e", "f", "g" };
+        final Timestamp end = Timestamp.now();
+        final Timestamp start = end.minus(TimeDuration.ofHours(1));
+
+        final long t0 = System.nanoTime();
+        final ValueIterator[] iters = ParallelArchiveFetch.getRawValues(reader, 1, names, start, end, factory, 4, null);
+        final double secs = (System.nanoTime() - t0) / 1e9;
+        System.out.println("Fetched " + names.length + " channels in " + secs + " seconds");
+
+        assertEquals(names.length, iters.length);
+        for (int i=0; i<names.length; ++i)
+        {
+            if (names[i].startsWith("unknown"))
+                assertNull(iters[i]);
+            else
+            {
+                assertNotNull(iters[i]);
+                assertTrue(iters[i].hasNext());
+                iters[i].close();
+            }
+        }
+        // 8 fetches of 0.1 seconds on 4 threads
+        assertEquals(4, max_active.get());
+        assertTrue(secs < 0.8);
+        // .. each using a reader that no other thread used at the same time
+        System.out.println("Created " + created.size() + " additional readers");
+        assertEquals(0, shared_use.get());
+        assertTrue(created.size() <= 3);
+    }
+
+    @Test(timeout=10000)
+    public void testSequentialFetch() throws Exception
+    {
+        final SlowReader reader = new SlowReader();
+        final String[] names = new String[] { "a", "b", "unknown1", "c" };
+        final Timestamp end = Timestamp.now();
+        final Timestamp start = end.minus(TimeDuration.ofHours(1));
+
+        // Without a factory for additional readers, channels are fetched one by one
+        final ValueIterator[] iters = ParallelArchiveFetch.getRawValues(reader, 1, names, start, end);
+        assertNull(iters[2]);
+        for (int i=0; i<names.length; ++i)
+            if (iters[i] != null)
+                iters[i].close();
+        assertEquals(1, max_active.get());
+        assertEquals(0, created.size());
+    }
+
+    @Test(timeout=10000)
+    public void testErrorsPerChannel() throws Exception
+    {
+        final SlowReader reader = new SlowReader();
+        final String[] names = new String[] { "a", "unknown1", "broken1", "b" };
+        final Timestamp end = Timestamp.now();
+        final Timestamp start = end.minus(TimeDuration.ofHours(1));
+
+        // Without per-channel errors, a broken channel fails the whole fetch
+        try
+        {
+            ParallelArchiveFetch.getRawValues(reader, 1, names, start, end, factory, 4, null);
+            fail("Broken channel was not reported");
+        }
+        catch (Exception ex)
+        {
+            assertEquals("Cannot read broken1", ex.getMessage());
+        }
+
+        // With per-channel errors, the other channels are still fetched
+        final Exception[] errors = new Exception[names.length];
+        final ValueIterator[] iters = ParallelArchiveFetch.getRawValues(reader, 1, names, start, end, factory, 4, errors);
+        assertNotNull(iters[0]);
+        assertNull(errors[0]);
+        assertNull(iters[1]);
+        assertTrue(errors[1] instanceof UnknownChannelException);
+        assertNull(iters[2]);
+        assertEquals("Cannot read broken1", errors[2].getMessage());
+        assertNotNull(iters[3]);
+        assertNull(errors[3]);
+        iters[0].close();
+        iters[3].close();
+        assertEquals(0, shared_use.get());
+    }
+}
@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.cstudio.archive.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.csstudio.archive.reader.ArchiveInfo;
+import org.csstudio.archive.reader.ArchiveReader;
+import org.csstudio.archive.reader.UnknownChannelException;
+import org.csstudio.archive.reader.ValueIterator;
+import org.csstudio.archive.reader.cache.CachingArchiveReader;
+import org.csstudio.archive.reader.cache.TileCache;
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.csstudio.archive.vtype.ArchiveVString;
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.epics.util.time.Timestamp;
+import org.epics.vtype.AlarmSeverity;
+import org.epics.vtype.VStatistics;
+import org.epics.vtype.VType;
+import org.junit.Test;
+
+/** JUnit test of the {@link CachingArchiveReader} and {@link TileCache}
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class TileCacheUnitTest
+{
+    /** Reader with one sample every 10 seconds that counts requests */
+    private static class CountingReader implements ArchiveReader
+    {
+        int requests = 0;
+
+        /** Provide numbers instead of strings? */
+        boolean numbers = false;
+
+        @Override
+        public String getServerName()
+        {
+            return "Counting";
+        }
+
+        @Override
+        public String getURL()
+        {
+            return "count://";
+        }
+
+        @Override
+        public String getDescription()
+        {
+            return "Counting test reader";
+        }
+
+        @Override
+        public int getVersion()
+        {
+            return 1;
+        }
+
+        @Override
+        public ArchiveInfo[] getArchiveInfos()
+        {
+            return new ArchiveInfo[] { new ArchiveInfo("Test", "Test", 1) };
+        }
+
+        @Override
+        public String[] getNamesByPattern(final int key, final String glob_pattern) throws Exception
+        {
+            return new String[0];
+        }
+
+        @Override
+        public String[] getNamesByRegExp(final int key, final String reg_exp) throws Exception
+        {
+            return new String[0];
+        }
+
+        @Override
+        public ValueIterator getRawValues(final int key, final String name,
+                final Timestamp start, final Timestamp end) throws UnknownChannelException, Exception
+        {
+            // Last sample at or before start, then samples up to end
+            final List<VType> values = new ArrayList<VType>();
+            for (long secs = (start.getSec() / 10) * 10;  secs <= end.getSec();  secs += 10)
+                if (numbers)
+                    values.add(new ArchiveVNumber(Timestamp.of(secs, 0), AlarmSeverity.NONE, "OK", null, secs));
+                else
+                    values.add(new ArchiveVString(Timestamp.of(secs, 0), AlarmSeverity.NONE, "OK", name + " " + secs));
+            return new DemoDataIterator(values.toArray(new VType[values.size()]));
+        }
+
+        @Override
+        public ValueIterator getOptimizedValues(final int key, final String name,
+                final Timestamp start, final Timestamp end, final int count) throws UnknownChannelException, Exception
+        {
+            ++requests;
+            return getRawValues(key, name, start, end);
+        }
+
+        @Override
+        public void cancel()
+        {
+            // NOP
+        }
+
+        @Override
+        public void close()
+        {
+            // NOP
+        }
+    }
+
+    private List<VType> read(final ValueIterator iter) throws Exception
+    {
+        final List<VType> values = new ArrayList<VType>();
+        while (iter.hasNext())
+            values.add(iter.next());
+        iter.close();
+        return values;
+    }
+
+    @Test
+    public void testTiles() throws Exception
+    {
+        final CountingReader base = new CountingReader();
+        final TileCache cache = new TileCache(100000, null, 0);
+        final ArchiveReader reader = new CachingArchiveReader(base, cache);
+        final Timestamp start = Timestamp.of(1000005, 0);
+        final Timestamp end = Timestamp.of(1100000, 0);
+
+        // First request needs to fetch all tiles, but in one request
+        final List<VType> values = read(reader.getOptimizedValues(1, "x", start, end, 100));
+        System.out.println(cache.getStatistics());
+        assertEquals(1, base.requests);
+        assertTrue(cache.getMisses() > 0);
+        // Same samples as the original reader
+        assertEquals(read(base.getRawValues(1, "x", start, end)), values);
+
+        // Same request is served from the cache
+        final long misses = cache.getMisses();
+        assertEquals(values, read(reader.getOptimizedValues(1, "x", start, end, 100)));
+        assertEquals(1, base.requests);
+        assertEquals(misses, cache.getMisses());
+
+        // Pan within the same tiles
+        final Timestamp pan_start = Timestamp.of(1010000, 0);
+        final Timestamp pan_end = Timestamp.of(1090000, 0);
+        assertEquals(read(base.getRawValues(1, "x", pan_start, pan_end)),
+                     read(reader.getOptimizedValues(1, "x", pan_start, pan_end, 100)));
+        assertEquals(1, base.requests);
+
+        // Other channel is not in cache
+        read(reader.getOptimizedValues(1, "y", start, end, 100));
+        assertEquals(2, base.requests);
+        System.out.println(cache.getStatistics());
+    }
+
+    @Test
+    public void testRecentData() throws Exception
+    {
+        final CountingReader base = new CountingReader();
+        // Data of the last 100 years could still change
+        final TileCache cache = new TileCache(100000, null, 100L*365*24*60*60);
+        final ArchiveReader reader = new CachingArchiveReader(base, cache);
+        final Timestamp start = Timestamp.of(1000000, 0);
+        final Timestamp end = Timestamp.of(1100000, 0);
+        read(reader.getOptimizedValues(1, "x", start, end, 100));
+        read(reader.getOptimizedValues(1, "x", start, end, 100));
+        assertEquals(2, base.requests);
+    }
+
+    @Test
+    public void testDiskCache() throws Exception
+    {
+        final File directory = new File(System.getProperty("java.io.tmpdir"), "tile_cache_test" + System.nanoTime());
+        final CountingReader base = new CountingReader();
+        final Timestamp start = Timestamp.of(1000000, 0);
+        final Timestamp end = Timestamp.of(1100000, 0);
+        final List<VType> values = read(new CachingArchiveReader(base, new TileCache(100000, directory, 0))
+                                        .getOptimizedValues(1, "x", start, end, 100));
+        assertEquals(1, base.requests);
+
+        // New cache finds the tiles on disk
+        final TileCache cache = new TileCache(100000, directory, 0);
+        assertEquals(values, read(new CachingArchiveReader(base, cache)
+                                  .getOptimizedValues(1, "x", start, end, 100)));
+        System.out.println(cache.getStatistics());
+        assertEquals(1, base.requests);
+        assertEquals(0, cache.getMisses());
+        assertTrue(cache.getDiskHits() > 0);
+    }
+
+    @Test
+    public void testEviction() throws Exception
+    {
+        final CountingReader base = new CountingReader();
+        // Room for about one tile
+        final TileCache cache = new TileCache(30000, null, 0);
+        final ArchiveReader reader = new CachingArchiveReader(base, cache);
+        read(reader.getOptimizedValues(1, "x", Timestamp.of(1000000, 0), Timestamp.of(1100000, 0), 100));
+        read(reader.getOptimizedValues(1, "y", Timestamp.of(1000000, 0), Timestamp.of(1100000, 0), 100));
+        System.out.println(cache.getStatistics());
+        // "x" has been evicted
+        read(reader.getOptimizedValues(1, "x", Timestamp.of(1000000, 0), Timestamp.of(1100000, 0), 100));
+        assertEquals(3, base.requests);
+        assertTrue(VTypeHelper.getTimestamp(read(reader.getOptimizedValues(1, "x",
+                   Timestamp.of(1000000, 0), Timestamp.of(1100000, 0), 100)).get(0)).getSec() <= 1000000);
+    }
+
+    @Test
+    public void testBinCount() throws Exception
+    {
+        final CountingReader base = new CountingReader();
+        base.numbers = true;
+        final TileCache cache = new TileCache(100000, null, 0);
+        final ArchiveReader reader = new CachingArchiveReader(base, cache);
+        final Timestamp start = Timestamp.of(1000000, 0);
+        final Timestamp end = Timestamp.of(1100000, 0);
+        // Tiles use 512 second bins, but the result has the requested 1000 second bins
+        final List<VType> values = read(reader.getOptimizedValues(1, "x", start, end, 100));
+        assertEquals(100, values.size());
+        int samples = 0;
+        for (int i=0; i<values.size(); ++i)
+        {
+            final VStatistics bin = (VStatistics) values.get(i);
+            assertEquals(1000000 + i*1000 + 500, VTypeHelper.getTimestamp(bin).getSec());
+            assertTrue(bin.getMin() >= 1000000 + i*1000);
+            assertTrue(bin.getMax() <= 1000000 + (i+1)*1000);
+            samples += bin.getNSamples();
+        }
+        // Bins cover every sample once, the last bin includes the end
+        assertEquals(10001, samples);
+    }
+}
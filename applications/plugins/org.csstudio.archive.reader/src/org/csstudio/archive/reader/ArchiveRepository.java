@@ -11,6 +11,8 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+import org.csstudio.archive.reader.cache.CachingArchiveReader;
+import org.csstudio.archive.reader.cache.TileCache;
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IExtensionRegistry;
 import org.eclipse.core.runtime.RegistryFactory;
@@ -80,6 +82,10 @@ public class ArchiveRepository
     }
 
     /** Create archive reader for URL
+     *
+     *  <p>When the cache is enabled in the preferences,
+     *  the reader caches 'optimized' data in the {@link TileCache}.
+     *
      *  @param url Archive URL
      *  @return ArchiveReader for given URL
      *  @throws Exception on error (no suitable reader, or internal error)
@@ -96,6 +102,10 @@ public class ArchiveRepository
         final ArchiveReaderFactory factory = reader_factories.get(prefix);
         if (factory == null)
             throw new Exception("Unknown archive reader URL " + url);
-        return factory.getArchiveReader(url);
+        final ArchiveReader reader = factory.getArchiveReader(url);
+        final TileCache cache = TileCache.getInstance();
+        if (cache == null)
+            return reader;
+        return new CachingArchiveReader(reader, cache);
     }
 }
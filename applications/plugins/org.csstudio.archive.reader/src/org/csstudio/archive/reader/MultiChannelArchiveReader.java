@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader;
+
+import org.epics.util.time.Timestamp;
+
+/** Archive reader that can natively fetch data for several channels,
+ *  for example with one network request or one database query
+ *  to resolve all the channel names.
+ *  <p>
+ *  Clients should not call these methods directly
+ *  but use {@link ParallelArchiveFetch}, which falls back to
+ *  fetching channels concurrently for an {@link ArchiveReader}
+ *  that does not implement this interface.
+ *
+ *  @author agent
+ */
+public interface MultiChannelArchiveReader extends ArchiveReader
+{
+    /** Read original, raw samples for several channels
+     *  @param key Key of the archive to use for retrieval.
+     *  @param names Channel names
+     *  @param start Start time
+     *  @param end End time
+     *  @return ValueIterator for each channel,
+     *          <code>null</code> for channels that are not known
+     *  @throws Exception on error
+     *  @see ArchiveReader#getRawValues(int, String, Timestamp, Timestamp)
+     */
+    public ValueIterator[] getRawValues(int key, String[] names,
+            Timestamp start, Timestamp end) throws Exception;
+
+    /** Read optimized samples for several channels
+     *  @param key Key of the archive to use for retrieval.
+     *  @param names Channel names
+     *  @param start Start time
+     *  @param end End time
+     *  @param count Hint for number of values
+     *  @return ValueIterator for each channel,
+     *          <code>null</code> for channels that are not known
+     *  @throws Exception on error
+     *  @see ArchiveReader#getOptimizedValues(int, String, Timestamp, Timestamp, int)
+     */
+    public ValueIterator[] getOptimizedValues(int key, String[] names,
+            Timestamp start, Timestamp end, int count) throws Exception;
+}
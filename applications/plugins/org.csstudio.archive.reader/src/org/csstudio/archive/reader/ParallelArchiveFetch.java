@@ -0,0 +1,309 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.epics.util.time.Timestamp;
+
+/** Fetch data for several channels.
+ *  <p>
+ *  Uses the {@link MultiChannelArchiveReader} API when
+ *  the reader supports it.
+ *  Otherwise the channels are fetched one by one,
+ *  or concurrently on a bounded number of threads
+ *  to hide the latency of the individual requests.
+ *  <p>
+ *  An {@link ArchiveReader} is not expected to be thread-safe,
+ *  so each concurrent fetch uses a reader that no other thread
+ *  uses at the same time:
+ *  The original reader, or additional readers for the same URL
+ *  obtained from an {@link ArchiveReaderFactory}.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class ParallelArchiveFetch
+{
+    /** Default number of threads for concurrent fetches */
+    final public static int DEFAULT_THREADS = 4;
+
+    /** Fetch for one channel */
+    private interface Fetch
+    {
+        public ValueIterator fetch(ArchiveReader reader, String name) throws Exception;
+    }
+
+    /** Read original, raw samples for several channels, one by one
+     *  @param reader {@link ArchiveReader}
+     *  @param key Key of the archive to use for retrieval.
+     *  @param names Channel names
+     *  @param start Start time
+     *  @param end End time
+     *  @return ValueIterator for each channel,
+     *          <code>null</code> for channels that are not known
+     *  @throws Exception on error
+     */
+    public static ValueIterator[] getRawValues(final ArchiveReader reader, final int key,
+            final String[] names, final Timestamp start, final Timestamp end) throws Exception
+    {
+        return getRawValues(reader, key, names, start, end, null, 1, null);
+    }
+
+    /** Read original, raw samples for several channels,
+     *  reporting errors per channel
+     *  @param reader {@link ArchiveReader}
+     *  @param key Key of the archive to use for retrieval.
+     *  @param names Channel names
+     *  @param start Start time
+     *  @param end End time
+     *  @param factory Factory for additional readers of the same URL,
+     *                 which the caller needs to close when done.
+     *                 <code>null</code> to fetch the channels one by one.
+     *  @param threads Maximum number of concurrent fetches
+     *  @param errors Receives the error for each channel that could not be fetched,
+     *                {@link UnknownChannelException} for channels that are not known.
+     *                <code>null</code> to ignore unknown channels and throw other errors.
+     *  @return ValueIterator for each channel,
+     *          <code>null</code> for channels that could not be fetched
+     *  @throws Exception on error that affects all channels
+     */
+    public static ValueIterator[] getRawValues(final ArchiveReader reader, final int key,
+            final String[] names, final Timestamp start, final Timestamp end,
+            final ArchiveReaderFactory factory, final int threads,
+            final Exception[] errors) throws Exception
+    {
+        if (reader instanceof MultiChannelArchiveReader)
+            return checkUnknown(names,
+                    ((MultiChannelArchiveReader) reader).getRawValues(key, names, start, end), errors);
+        return fetch(reader, names, factory, threads, errors, new Fetch()
+        {
+            @Override
+            public ValueIterator fetch(final ArchiveReader reader, final String name) throws Exception
+            {
+                return reader.getRawValues(key, name, start, end);
+            }
+        });
+    }
+
+    /** Read optimized samples for several channels, one by one
+     *  @param reader {@link ArchiveReader}
+     *  @param key Key of the archive to use for retrieval.
+     *  @param names Channel names
+     *  @param start Start time
+     *  @param end End time
+     *  @param count Hint for number of values
+     *  @return ValueIterator for each channel,
+     *          <code>null</code> for channels that are not known
+     *  @throws Exception on error
+     */
+    public static ValueIterator[] getOptimizedValues(final ArchiveReader reader, final int key,
+            final String[] names, final Timestamp start, final Timestamp end,
+            final int count) throws Exception
+    {
+        return getOptimizedValues(reader, key, names, start, end, count, null, 1, null);
+    }
+
+    /** Read optimized samples for several channels,
+     *  reporting errors per channel
+     *  @param reader {@link ArchiveReader}
+     *  @param key Key of the archive to use for retrieval.
+     *  @param names Channel names
+     *  @param start Start time
+     *  @param end End time
+     *  @param count Hint for number of values
+     *  @param factory Factory for additional readers of the same URL,
+     *                 which the caller needs to close when done.
+     *                 <code>null</code> to fetch the channels one by one.
+     *  @param threads Maximum number of concurrent fetches
+     *  @param errors Receives the error for each channel that could not be fetched,
+     *                {@link UnknownChannelException} for channels that are not known.
+     *                <code>null</code> to ignore unknown channels and throw other errors.
+     *  @return ValueIterator for each channel,
+     *          <code>null</code> for channels that could not be fetched
+     *  @throws Exception on error that affects all channels
+     */
+    public static ValueIterator[] getOptimizedValues(final ArchiveReader reader, final int key,
+            final String[] names, final Timestamp start, final Timestamp end, final int count,
+            final ArchiveReaderFactory factory, final int threads,
+            final Exception[] errors) throws Exception
+    {
+        if (reader instanceof MultiChannelArchiveReader)
+            return checkUnknown(names,
+                    ((MultiChannelArchiveReader) reader).getOptimizedValues(key, names, start, end, count), errors);
+        return fetch(reader, names, factory, threads, errors, new Fetch()
+        {
+            @Override
+            public ValueIterator fetch(final ArchiveReader reader, final String name) throws Exception
+            {
+                return reader.getOptimizedValues(key, name, start, end, count);
+            }
+        });
+    }
+
+    /** @param names Channel names
+     *  @param iters ValueIterator for each channel, <code>null</code> for unknown channels
+     *  @param errors Errors for each channel or <code>null</code>
+     *  @return iters
+     */
+    private static ValueIterator[] checkUnknown(final String[] names, final ValueIterator[] iters,
+            final Exception[] errors)
+    {
+        if (errors != null)
+            for (int i=0; i<iters.length; ++i)
+                if (iters[i] == null)
+                    errors[i] = new UnknownChannelException(names[i]);
+        return iters;
+    }
+
+    /** Perform fetches, concurrently if possible
+     *  @param reader {@link ArchiveReader}
+     *  @param names Channel names
+     *  @param factory Factory for additional readers or <code>null</code>
+     *  @param threads Maximum number of concurrent fetches
+     *  @param errors Errors for each channel or <code>null</code>
+     *  @param fetch Fetch for one channel
+     *  @return ValueIterator for each channel, <code>null</code> for channels that could not be fetched
+     *  @throws Exception on error when not reporting errors per channel
+     */
+    private static ValueIterator[] fetch(final ArchiveReader reader, final String[] names,
+            final ArchiveReaderFactory factory, final int threads,
+            final Exception[] errors, final Fetch fetch) throws Exception
+    {
+        final ValueIterator[] iters = new ValueIterator[names.length];
+        final Exception[] fetch_errors = new Exception[names.length];
+        final int N = Math.min(threads, names.length);
+        if (factory == null  ||  N <= 1)
+        {
+            for (int i=0; i<names.length; ++i)
+            {
+                try
+                {
+                    iters[i] = fetch.fetch(reader, names[i]);
+                }
+                catch (Exception ex)
+                {
+                    fetch_errors[i] = ex;
+                }
+            }
+        }
+        else
+            fetchConcurrently(reader, names, factory, N, fetch, iters, fetch_errors);
+        return checkErrors(iters, fetch_errors, errors);
+    }
+
+    /** Perform fetches concurrently, each with a reader that is not used by other threads
+     *  @param reader {@link ArchiveReader}
+     *  @param names Channel names
+     *  @param factory Factory for additional readers
+     *  @param threads Number of concurrent fetches
+     *  @param fetch Fetch for one channel
+     *  @param iters Receives ValueIterator for each channel
+     *  @param fetch_errors Receives error for each channel
+     *  @throws Exception on error
+     */
+    private static void fetchConcurrently(final ArchiveReader reader, final String[] names,
+            final ArchiveReaderFactory factory, final int threads,
+            final Fetch fetch, final ValueIterator[] iters, final Exception[] fetch_errors) throws Exception
+    {
+        // Readers that are not in use.
+        // Since at most 'threads' fetches are active,
+        // there are at most that many readers.
+        final BlockingQueue<ArchiveReader> idle = new LinkedBlockingQueue<ArchiveReader>();
+        idle.add(reader);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            final private AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable)
+            {
+                final Thread thread = new Thread(runnable, "ArchiveFetch" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try
+        {
+            final List<Future<ValueIterator>> results = new ArrayList<Future<ValueIterator>>(names.length);
+            for (final String name : names)
+                results.add(executor.submit(new Callable<ValueIterator>()
+                {
+                    @Override
+                    public ValueIterator call() throws Exception
+                    {
+                        ArchiveReader use = idle.poll();
+                        if (use == null)
+                            use = factory.getArchiveReader(reader.getURL());
+                        try
+                        {
+                            return fetch.fetch(use, name);
+                        }
+                        finally
+                        {
+                            idle.add(use);
+                        }
+                    }
+                }));
+            for (int i=0; i<iters.length; ++i)
+            {
+                try
+                {
+                    iters[i] = results.get(i).get();
+                }
+                catch (ExecutionException ex)
+                {
+                    fetch_errors[i] = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /** @param iters ValueIterator for each channel, <code>null</code> for channels that could not be fetched
+     *  @param fetch_errors Error for each channel
+     *  @param errors Receives errors for each channel or <code>null</code>
+     *  @return iters
+     *  @throws Exception on error when not reporting errors per channel
+     */
+    private static ValueIterator[] checkErrors(final ValueIterator[] iters, final Exception[] fetch_errors,
+            final Exception[] errors) throws Exception
+    {
+        Exception error = null;
+        for (int i=0; i<iters.length; ++i)
+        {
+            if (fetch_errors[i] == null)
+                continue;
+            if (errors != null)
+                errors[i] = fetch_errors[i];
+            else if (error == null  &&  !(fetch_errors[i] instanceof UnknownChannelException))
+                error = fetch_errors[i];
+        }
+        if (error != null)
+        {   // Release the iterators that did work out
+            for (ValueIterator iter : iters)
+                if (iter != null)
+                    iter.close();
+            throw error;
+        }
+        return iters;
+    }
+}
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader;
+
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.preferences.IPreferencesService;
+
+/** Access to preferences for the archive reader.
+ *
+ *  <p>See preferences.ini for explanation of settings.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class Preferences
+{
+    /** Plugin ID */
+    final public static String ID = "org.csstudio.archive.reader";
+
+    final public static String CACHE_MEMORY_VALUES = "cache_memory_values";
+    final public static String CACHE_DIRECTORY = "cache_directory";
+    final public static String CACHE_HORIZON = "cache_horizon_secs";
+
+    /** @return Number of values to keep in the memory cache,
+     *          0 to disable the cache (which is the case when not running as plugin)
+     */
+    public static int getCacheMemoryValues()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        if (prefs == null)
+            return 0;
+        return prefs.getInt(ID, CACHE_MEMORY_VALUES, 0, null);
+    }
+
+    /** @return Directory for the disk cache, empty to disable the disk cache */
+    public static String getCacheDirectory()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        if (prefs == null)
+            return "";
+        return prefs.getString(ID, CACHE_DIRECTORY, "", null).trim();
+    }
+
+    /** @return Age in seconds after which archived data is considered immutable */
+    public static long getCacheHorizon()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        if (prefs == null)
+            return 3600;
+        return prefs.getLong(ID, CACHE_HORIZON, 3600, null);
+    }
+}
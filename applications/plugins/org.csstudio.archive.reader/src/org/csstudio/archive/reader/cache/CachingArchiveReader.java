@@ -0,0 +1,447 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.csstudio.archive.reader.ArchiveInfo;
+import org.csstudio.archive.reader.ArchiveReader;
+import org.csstudio.archive.reader.MultiChannelArchiveReader;
+import org.csstudio.archive.reader.ParallelArchiveFetch;
+import org.csstudio.archive.reader.UnknownChannelException;
+import org.csstudio.archive.reader.ValueIterator;
+import org.csstudio.archive.vtype.ArchiveVStatistics;
+import org.csstudio.archive.vtype.StatisticsAccumulator;
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.epics.util.time.TimeDuration;
+import org.epics.util.time.Timestamp;
+import org.epics.vtype.AlarmSeverity;
+import org.epics.vtype.Display;
+import org.epics.vtype.VNumber;
+import org.epics.vtype.VStatistics;
+import org.epics.vtype.VType;
+
+/** {@link ArchiveReader} that caches 'optimized' data of another reader.
+ *
+ *  <p>The time axis is divided into tiles of {@link TileKey#TILE_BINS} bins.
+ *  The requested bin size is rounded down to a power of 2 seconds,
+ *  so that requests for similar time ranges and sample counts,
+ *  as they result from zooming and panning a plot,
+ *  use the same tiles.
+ *  Tiles are fetched from the {@link TileCache}, and only the missing
+ *  tiles are requested from the archive, combining consecutive
+ *  missing tiles into one request.
+ *
+ *  <p>Each tile starts with the last sample before the tile, if there is one,
+ *  so that the tile alone provides the value at the start of the tile.
+ *
+ *  <p>Since tiles can have smaller bins than requested,
+ *  the bins of the tiles are combined into the requested number of bins.
+ *  The result therefore has the same bins as a request to the actual archive,
+ *  but the statistics of a bin can cover a slightly different time range.
+ *
+ *  <p>Raw data is passed through without caching.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class CachingArchiveReader implements MultiChannelArchiveReader
+{
+    /** Reader for the actual archive */
+    final private ArchiveReader reader;
+
+    final private TileCache cache;
+
+    /** Set when a request is cancelled, to prevent caching partial data */
+    private volatile boolean cancelled = false;
+
+    /** Initialize
+     *  @param reader Reader for the actual archive
+     *  @param cache Cache to use
+     */
+    public CachingArchiveReader(final ArchiveReader reader, final TileCache cache)
+    {
+        this.reader = reader;
+        this.cache = cache;
+    }
+
+    /** @return {@link ArchiveReader} that is cached */
+    public ArchiveReader getReader()
+    {
+        return reader;
+    }
+
+    /** @return {@link TileCache} */
+    public TileCache getCache()
+    {
+        return cache;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getServerName()
+    {
+        return reader.getServerName();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getURL()
+    {
+        return reader.getURL();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getDescription()
+    {
+        return reader.getDescription() + "\n\n" + cache.getStatistics();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getVersion()
+    {
+        return reader.getVersion();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ArchiveInfo[] getArchiveInfos()
+    {
+        return reader.getArchiveInfos();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String[] getNamesByPattern(final int key, final String glob_pattern) throws Exception
+    {
+        return reader.getNamesByPattern(key, glob_pattern);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String[] getNamesByRegExp(final int key, final String reg_exp) throws Exception
+    {
+        return reader.getNamesByRegExp(key, reg_exp);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ValueIterator getRawValues(final int key, final String name,
+            final Timestamp start, final Timestamp end) throws UnknownChannelException, Exception
+    {
+        return reader.getRawValues(key, name, start, end);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ValueIterator[] getRawValues(final int key, final String[] names,
+            final Timestamp start, final Timestamp end) throws Exception
+    {
+        return ParallelArchiveFetch.getRawValues(reader, key, names, start, end);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ValueIterator[] getOptimizedValues(final int key, final String[] names,
+            final Timestamp start, final Timestamp end, final int count) throws Exception
+    {
+        final ValueIterator[] iters = new ValueIterator[names.length];
+        for (int i=0; i<names.length; ++i)
+        {
+            try
+            {
+                iters[i] = getOptimizedValues(key, names[i], start, end, count);
+            }
+            catch (UnknownChannelException ex)
+            {
+                iters[i] = null;
+            }
+        }
+        return iters;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ValueIterator getOptimizedValues(final int key, final String name,
+            final Timestamp start, final Timestamp end, final int count)
+            throws UnknownChannelException, Exception
+    {
+        cancelled = false;
+        final long duration = end.getSec() - start.getSec();
+        if (count <= 1  ||  duration <= 0)
+            return reader.getOptimizedValues(key, name, start, end, count);
+
+        // Round bin size down to power of 2 seconds
+        final double requested_bin = (double) duration / count;
+        long bin_secs = 1;
+        while (bin_secs * 2 <= requested_bin)
+            bin_secs *= 2;
+        final long tile_secs = bin_secs * TileKey.TILE_BINS;
+        final long first = floorDiv(start.getSec(), tile_secs);
+        final long last = floorDiv(end.getSec(), tile_secs);
+
+        // Locate cached tiles
+        final int n = (int) (last - first + 1);
+        final TileKey[] keys = new TileKey[n];
+        final List<List<VType>> tiles = new ArrayList<List<VType>>(n);
+        for (int i=0; i<n; ++i)
+        {
+            keys[i] = new TileKey(reader.getURL(), key, name, bin_secs, first + i);
+            tiles.add(cache.get(keys[i]));
+        }
+
+        // Fetch runs of missing tiles
+        int i = 0;
+        while (i < n)
+        {
+            if (tiles.get(i) != null)
+            {
+                ++i;
+                continue;
+            }
+            int run_end = i;
+            while (run_end + 1 < n  &&  tiles.get(run_end + 1) == null)
+                ++run_end;
+            fetchTiles(keys, tiles, i, run_end);
+            i = run_end + 1;
+        }
+
+        return new ListValueIterator(rebin(assemble(keys, tiles, start, end), start, end, count));
+    }
+
+    /** Read tiles from archive, adding them to the cache
+     *  @param keys Keys of all tiles
+     *  @param tiles Tile data, updated for the tiles that are read
+     *  @param first Index of first tile to read
+     *  @param last Index of last tile to read
+     *  @throws Exception on error
+     */
+    private void fetchTiles(final TileKey[] keys, final List<List<VType>> tiles,
+            final int first, final int last) throws Exception
+    {
+        final int n = last - first + 1;
+        final List<List<VType>> fetched = new ArrayList<List<VType>>(n);
+        for (int i=0; i<n; ++i)
+            fetched.add(new ArrayList<VType>());
+
+        final TileKey first_key = keys[first];
+        final long tile_secs = first_key.getEndSeconds() - first_key.getStartSeconds();
+        final Timestamp start = Timestamp.of(first_key.getStartSeconds(), 0);
+        final Timestamp end = Timestamp.of(keys[last].getEndSeconds(), 0);
+        final ValueIterator values = reader.getOptimizedValues(first_key.getKey(), first_key.getName(),
+                start, end, n * TileKey.TILE_BINS);
+        try
+        {
+            // Sort values into tiles.
+            // Sample before the first tile is its initial value.
+            int current = 0;
+            VType last_value = null;
+            while (values.hasNext())
+            {
+                final VType value = values.next();
+                final long secs = VTypeHelper.getTimestamp(value).getSec();
+                final int index = (int) Math.max(0, Math.min(n - 1,
+                        floorDiv(secs, tile_secs) - first_key.getIndex()));
+                // Each following tile starts with the last value of the preceding tile
+                while (current < index)
+                {
+                    ++current;
+                    if (last_value != null)
+                        fetched.get(current).add(last_value);
+                }
+                fetched.get(index).add(value);
+                last_value = value;
+            }
+            while (current < n - 1)
+            {
+                ++current;
+                if (last_value != null)
+                    fetched.get(current).add(last_value);
+            }
+        }
+        finally
+        {
+            values.close();
+        }
+
+        for (int i=0; i<n; ++i)
+        {
+            final List<VType> tile = fetched.get(i);
+            tiles.set(first + i, tile);
+            if (! cancelled)
+                cache.put(keys[first + i], tile);
+        }
+    }
+
+    /** Combine tiles into result for requested time range
+     *  @param keys Keys of all tiles
+     *  @param tiles Data of all tiles
+     *  @param start Start time
+     *  @param end End time
+     *  @return Values starting with the last value at or before <code>start</code>,
+     *          up to <code>end</code>
+     */
+    private List<VType> assemble(final TileKey[] keys, final List<List<VType>> tiles,
+            final Timestamp start, final Timestamp end)
+    {
+        final List<VType> result = new ArrayList<VType>();
+        for (int i=0; i<tiles.size(); ++i)
+        {
+            final Timestamp tile_start = Timestamp.of(keys[i].getStartSeconds(), 0);
+            for (VType value : tiles.get(i))
+            {
+                final Timestamp time = VTypeHelper.getTimestamp(value);
+                // Skip the initial value that was carried over from the previous tile
+                if (i > 0  &&  time.compareTo(tile_start) < 0)
+                    continue;
+                if (time.compareTo(end) > 0)
+                    return result;
+                // Only keep the last value at or before the start time
+                if (time.compareTo(start) <= 0)
+                    result.clear();
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    /** Values that are combined into one bin */
+    private static class Bin
+    {
+        final int index;
+        final StatisticsAccumulator stats = new StatisticsAccumulator();
+        final Display display;
+        /** The only value in the bin, or <code>null</code> */
+        VType single;
+        AlarmSeverity severity;
+        String status;
+
+        Bin(final int index, final VType value)
+        {
+            this.index = index;
+            display = value instanceof Display ? (Display) value : null;
+            single = value;
+            severity = VTypeHelper.getSeverity(value);
+            status = VTypeHelper.getMessage(value);
+            addStatistics(value);
+        }
+
+        void add(final VType value)
+        {
+            single = null;
+            if (VTypeHelper.getSeverity(value).ordinal() > severity.ordinal())
+            {
+                severity = VTypeHelper.getSeverity(value);
+                status = VTypeHelper.getMessage(value);
+            }
+            addStatistics(value);
+        }
+
+        private void addStatistics(final VType value)
+        {
+            if (value instanceof VStatistics)
+                stats.add((VStatistics) value);
+            else
+                stats.add(((VNumber) value).getValue().doubleValue());
+        }
+
+        /** @param start Start time of the first bin
+         *  @param bin_secs Bin size in seconds
+         *  @return Single value or statistics in the center of the bin
+         */
+        VType getValue(final Timestamp start, final double bin_secs)
+        {
+            if (single != null)
+                return single;
+            return new ArchiveVStatistics(start.plus(TimeDuration.ofSeconds((index + 0.5) * bin_secs)),
+                    severity, status, display, stats);
+        }
+    }
+
+    /** Combine values into the requested number of bins
+     *
+     *  <p>Like the averaging of raw samples, bins with more than one value
+     *  become statistics with the highest severity of the values,
+     *  time-stamped in the center of the bin,
+     *  while non-numeric values are passed through.
+     *
+     *  @param values Values from the tiles
+     *  @param start Start time
+     *  @param end End time
+     *  @param count Number of bins
+     *  @return Values with at most <code>count</code> bins between start and end
+     */
+    private List<VType> rebin(final List<VType> values,
+            final Timestamp start, final Timestamp end, final int count)
+    {
+        final double bin_secs = end.durationFrom(start).toSeconds() / count;
+        final List<VType> result = new ArrayList<VType>();
+        Bin bin = null;
+        for (VType value : values)
+        {
+            final double secs = VTypeHelper.getTimestamp(value).durationFrom(start).toSeconds();
+            final boolean numeric = (value instanceof VStatistics  ||  value instanceof VNumber)  &&
+                    VTypeHelper.getSeverity(value) != AlarmSeverity.UNDEFINED;
+            final int index = Math.min(count-1, (int) Math.floor(secs / bin_secs));
+            if (numeric  &&  bin != null  &&  index == bin.index)
+            {
+                bin.add(value);
+                continue;
+            }
+            if (bin != null)
+                result.add(bin.getValue(start, bin_secs));
+            // Values before the start and non-numeric values are passed through
+            if (numeric  &&  secs >= 0)
+                bin = new Bin(index, value);
+            else
+            {
+                bin = null;
+                result.add(value);
+            }
+        }
+        if (bin != null)
+            result.add(bin.getValue(start, bin_secs));
+        return result;
+    }
+
+    /** @param value Value
+     *  @param divisor Positive divisor
+     *  @return value / divisor, rounded towards negative infinity
+     */
+    private static long floorDiv(final long value, final long divisor)
+    {
+        final long result = value / divisor;
+        if (value < 0  &&  result * divisor != value)
+            return result - 1;
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void cancel()
+    {
+        cancelled = true;
+        reader.cancel();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close()
+    {
+        reader.close();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Cached " + reader.getURL();
+    }
+}
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader.cache;
+
+import java.util.List;
+
+import org.csstudio.archive.reader.ValueIterator;
+import org.epics.vtype.VType;
+
+/** {@link ValueIterator} for a list of values
+ *  @author agent
+ */
+class ListValueIterator implements ValueIterator
+{
+    final private List<VType> values;
+    private int index = 0;
+
+    ListValueIterator(final List<VType> values)
+    {
+        this.values = values;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return index < values.size();
+    }
+
+    @Override
+    public VType next() throws Exception
+    {
+        return values.get(index++);
+    }
+
+    @Override
+    public void close()
+    {
+        index = values.size();
+    }
+}
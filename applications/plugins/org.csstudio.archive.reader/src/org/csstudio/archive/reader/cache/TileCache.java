@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader.cache;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.csstudio.archive.reader.Preferences;
+import org.epics.vtype.VType;
+
+/** Cache of archived data tiles.
+ *
+ *  <p>Tiles are kept in memory, least recently used tiles
+ *  are removed when the total number of values exceeds a limit.
+ *  When a cache directory is configured, tiles are also written
+ *  to disk, where they remain available to later sessions
+ *  and other clients that share the directory.
+ *
+ *  <p>Only tiles that end before the 'horizon' are cached,
+ *  because more recent data could still change
+ *  as the archive engine writes new samples.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class TileCache
+{
+    /** Singleton instance, configured from preferences */
+    private static TileCache instance = null;
+
+    final private Logger logger = Logger.getLogger(getClass().getName());
+
+    /** Maximum number of values in memory */
+    final private long max_values;
+
+    /** Directory for disk tier or <code>null</code> */
+    final private File directory;
+
+    /** Seconds before 'now' after which data is considered immutable */
+    final private long horizon_secs;
+
+    /** Tiles in memory, in least-recently-used order.
+     *  SYNC on this
+     */
+    final private LinkedHashMap<TileKey, List<VType>> memory =
+            new LinkedHashMap<TileKey, List<VType>>(16, 0.75f, true);
+
+    /** Number of values in memory. SYNC on this */
+    private long memory_values = 0;
+
+    /** Statistics. SYNC on this */
+    private long memory_hits = 0, disk_hits = 0, misses = 0, evictions = 0;
+
+    /** @return Cache configured from preferences
+     *          or <code>null</code> when caching is disabled
+     */
+    public static synchronized TileCache getInstance()
+    {
+        if (instance == null)
+        {
+            final int max_values = Preferences.getCacheMemoryValues();
+            if (max_values <= 0)
+                return null;
+            final String dir = Preferences.getCacheDirectory();
+            instance = new TileCache(max_values,
+                    dir.isEmpty() ? null : new File(dir),
+                    Preferences.getCacheHorizon());
+        }
+        return instance;
+    }
+
+    /** Initialize
+     *  @param max_values Maximum number of values to keep in memory
+     *  @param directory Directory for disk tier or <code>null</code>
+     *  @param horizon_secs Data older than this number of seconds is cached
+     */
+    public TileCache(final long max_values, final File directory, final long horizon_secs)
+    {
+        this.max_values = max_values;
+        this.directory = directory;
+        this.horizon_secs = horizon_secs;
+    }
+
+    /** @param tile Tile
+     *  @return <code>true</code> if data of the tile will no longer change
+     *          and may thus be cached
+     */
+    public boolean isImmutable(final TileKey tile)
+    {
+        return tile.getEndSeconds() < System.currentTimeMillis() / 1000 - horizon_secs;
+    }
+
+    /** Get tile from memory or disk
+     *  @param tile Tile key
+     *  @return Values of the tile or <code>null</code> if not cached
+     */
+    public List<VType> get(final TileKey tile)
+    {
+        synchronized (this)
+        {
+            final List<VType> values = memory.get(tile);
+            if (values != null)
+            {
+                ++memory_hits;
+                return values;
+            }
+        }
+        if (directory != null)
+        {
+            try
+            {
+                final List<VType> values = TileFile.read(directory, tile);
+                if (values != null)
+                {
+                    synchronized (this)
+                    {
+                        ++disk_hits;
+                    }
+                    addToMemory(tile, values);
+                    return values;
+                }
+            }
+            catch (Exception ex)
+            {
+                logger.log(Level.WARNING, "Cannot read cached " + tile, ex);
+            }
+        }
+        synchronized (this)
+        {
+            ++misses;
+        }
+        return null;
+    }
+
+    /** Add tile to the cache.
+     *  Ignored unless the tile is immutable.
+     *  @param tile Tile key
+     *  @param values Values of the tile
+     */
+    public void put(final TileKey tile, final List<VType> values)
+    {
+        if (! isImmutable(tile))
+            return;
+        addToMemory(tile, values);
+        if (directory != null)
+        {
+            try
+            {
+                if (! TileFile.write(directory, tile, values))
+                    logger.log(Level.FINE, "Keeping {0} only in memory", tile);
+            }
+            catch (Exception ex)
+            {
+                logger.log(Level.WARNING, "Cannot write cached " + tile, ex);
+            }
+        }
+    }
+
+    /** @param tile Tile key
+     *  @param values Values of the tile
+     */
+    private synchronized void addToMemory(final TileKey tile, final List<VType> values)
+    {
+        final List<VType> previous = memory.put(tile, values);
+        if (previous != null)
+            memory_values -= previous.size();
+        memory_values += values.size();
+        // Remove least recently used tiles, but keep the one just added
+        final Iterator<Map.Entry<TileKey, List<VType>>> entries = memory.entrySet().iterator();
+        while (memory_values > max_values  &&  memory.size() > 1)
+        {
+            final Map.Entry<TileKey, List<VType>> oldest = entries.next();
+            memory_values -= oldest.getValue().size();
+            entries.remove();
+            ++evictions;
+        }
+    }
+
+    /** @return Number of requests that were served from memory */
+    public synchronized long getMemoryHits()
+    {
+        return memory_hits;
+    }
+
+    /** @return Number of requests that were served from disk */
+    public synchronized long getDiskHits()
+    {
+        return disk_hits;
+    }
+
+    /** @return Number of requests for tiles that were not cached */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /** Remove all tiles from memory and reset statistics.
+     *  Tiles on disk remain.
+     */
+    public synchronized void clear()
+    {
+        memory.clear();
+        memory_values = 0;
+        memory_hits = disk_hits = misses = evictions = 0;
+    }
+
+    /** @return Human-readable statistics */
+    public synchronized String getStatistics()
+    {
+        final long requests = memory_hits + disk_hits + misses;
+        return String.format("Archive cache: %d tiles, %d of max. %d values in memory%s. " +
+                "%d tile requests: %d memory hits, %d disk hits, %d misses (%.1f %% hit rate), %d evicted",
+                memory.size(), memory_values, max_values,
+                directory == null ? "" : ", disk cache in " + directory,
+                requests, memory_hits, disk_hits, misses,
+                requests > 0 ? 100.0 * (memory_hits + disk_hits) / requests : 0.0,
+                evictions);
+    }
+
+    @Override
+    public String toString()
+    {
+        return getStatistics();
+    }
+}
@@ -0,0 +1,331 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.csstudio.archive.vtype.ArchiveVStatistics;
+import org.csstudio.archive.vtype.ArchiveVString;
+import org.epics.util.text.NumberFormats;
+import org.epics.util.time.Timestamp;
+import org.epics.vtype.Alarm;
+import org.epics.vtype.AlarmSeverity;
+import org.epics.vtype.Display;
+import org.epics.vtype.Time;
+import org.epics.vtype.VNumber;
+import org.epics.vtype.VStatistics;
+import org.epics.vtype.VString;
+import org.epics.vtype.VType;
+import org.epics.vtype.ValueFactory;
+
+/** Disk storage of a tile.
+ *
+ *  <p>Each tile is stored in its own file, written to a temporary file
+ *  and then renamed so that concurrent readers never see partial tiles.
+ *  Files are read via a memory-mapped buffer.
+ *
+ *  <p>Supports statistics, numbers and strings.
+ *  Tiles with other data types, for example enumerated or array samples,
+ *  are not written to disk.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class TileFile
+{
+    /** Marker at start of file, "CSTL" */
+    final private static int MAGIC = 0x4353544C;
+
+    final private static int VERSION = 1;
+
+    final private static byte TYPE_STATISTICS = 1;
+    final private static byte TYPE_DOUBLE = 2;
+    final private static byte TYPE_LONG = 3;
+    final private static byte TYPE_STRING = 4;
+
+    final private static Charset UTF8 = Charset.forName("UTF-8");
+
+    final private static AlarmSeverity[] severities = AlarmSeverity.values();
+
+    /** @param directory Cache directory
+     *  @param key Tile key
+     *  @return File for the tile
+     */
+    public static File getFile(final File directory, final TileKey key)
+    {
+        final File channel_dir = new File(directory,
+                String.format("%08X", key.getChannelID().hashCode()));
+        return new File(channel_dir, key.getBinSeconds() + "_" + key.getIndex() + ".tile");
+    }
+
+    /** Write tile to disk
+     *  @param directory Cache directory
+     *  @param key Tile key
+     *  @param values Values of the tile
+     *  @return <code>true</code> if written,
+     *          <code>false</code> if values contain unsupported data types
+     *  @throws IOException on error
+     */
+    public static boolean write(final File directory, final TileKey key,
+            final List<VType> values) throws IOException
+    {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(buf);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeString(out, key.getChannelID());
+        out.writeLong(key.getBinSeconds());
+        out.writeLong(key.getIndex());
+        out.writeInt(values.size());
+        Display last_display = null;
+        for (VType value : values)
+        {
+            if (! (value instanceof Time  &&  value instanceof Alarm))
+                return false;
+            final byte type;
+            if (value instanceof VStatistics  &&  value instanceof Display)
+                type = TYPE_STATISTICS;
+            else if (value instanceof VNumber  &&  value instanceof Display)
+            {
+                final Number number = ((VNumber) value).getValue();
+                type = (number instanceof Double  ||  number instanceof Float)
+                     ? TYPE_DOUBLE : TYPE_LONG;
+            }
+            else if (value instanceof VString)
+                type = TYPE_STRING;
+            else
+                return false;
+            out.writeByte(type);
+            final Timestamp time = ((Time) value).getTimestamp();
+            out.writeLong(time.getSec());
+            out.writeInt(time.getNanoSec());
+            final Alarm alarm = (Alarm) value;
+            out.writeByte(alarm.getAlarmSeverity().ordinal());
+            writeString(out, alarm.getAlarmName());
+            if (type == TYPE_STRING)
+            {
+                writeString(out, ((VString) value).getValue());
+                continue;
+            }
+            // Meta data is typically the same for all values of the tile
+            final Display display = (Display) value;
+            if (last_display != null  &&  isSameDisplay(last_display, display))
+                out.writeBoolean(false);
+            else
+            {
+                out.writeBoolean(true);
+                writeDisplay(out, display);
+                last_display = display;
+            }
+            if (type == TYPE_STATISTICS)
+            {
+                final VStatistics stats = (VStatistics) value;
+                out.writeDouble(stats.getAverage());
+                out.writeDouble(stats.getMin());
+                out.writeDouble(stats.getMax());
+                out.writeDouble(stats.getStdDev());
+                out.writeInt(stats.getNSamples());
+            }
+            else if (type == TYPE_DOUBLE)
+                out.writeDouble(((VNumber) value).getValue().doubleValue());
+            else
+                out.writeLong(((VNumber) value).getValue().longValue());
+        }
+        out.close();
+
+        // Write to temporary file, then rename
+        final File file = getFile(directory, key);
+        final File dir = file.getParentFile();
+        if (! dir.isDirectory()  &&  ! dir.mkdirs()  &&  ! dir.isDirectory())
+            throw new IOException("Cannot create " + dir);
+        final File tmp = File.createTempFile("tile", ".tmp", dir);
+        try
+        {
+            final FileOutputStream file_out = new FileOutputStream(tmp);
+            try
+            {
+                buf.writeTo(file_out);
+            }
+            finally
+            {
+                file_out.close();
+            }
+            if (! tmp.renameTo(file))
+            {   // Windows will not rename onto existing file
+                file.delete();
+                if (! tmp.renameTo(file))
+                    throw new IOException("Cannot rename " + tmp + " to " + file);
+            }
+        }
+        finally
+        {
+            tmp.delete();
+        }
+        return true;
+    }
+
+    /** Read tile from disk
+     *  @param directory Cache directory
+     *  @param key Tile key
+     *  @return Values of the tile or <code>null</code> if not on disk
+     *  @throws IOException on error
+     */
+    public static List<VType> read(final File directory, final TileKey key) throws IOException
+    {
+        final File file = getFile(directory, key);
+        if (! file.canRead())
+            return null;
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            final FileChannel channel = raf.getChannel();
+            final ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(buf, key);
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    /** @param buf Buffer with tile data
+     *  @param key Expected key
+     *  @return Values or <code>null</code> if buffer holds a different tile
+     *  @throws IOException on error
+     */
+    private static List<VType> decode(final ByteBuffer buf, final TileKey key) throws IOException
+    {
+        if (buf.getInt() != MAGIC  ||  buf.getInt() != VERSION)
+            throw new IOException("Invalid tile file format");
+        // Different channel with same hash code, or different tile?
+        if (! key.getChannelID().equals(readString(buf))  ||
+            buf.getLong() != key.getBinSeconds()  ||
+            buf.getLong() != key.getIndex())
+            return null;
+        final int count = buf.getInt();
+        final List<VType> values = new ArrayList<VType>(count);
+        Display display = null;
+        for (int i=0; i<count; ++i)
+        {
+            final byte type = buf.get();
+            final Timestamp time = Timestamp.of(buf.getLong(), buf.getInt());
+            final AlarmSeverity severity = severities[buf.get()];
+            final String status = readString(buf);
+            if (type == TYPE_STRING)
+            {
+                values.add(new ArchiveVString(time, severity, status, readString(buf)));
+                continue;
+            }
+            if (buf.get() != 0)
+                display = readDisplay(buf);
+            if (type == TYPE_STATISTICS)
+                values.add(new ArchiveVStatistics(time, severity, status, display,
+                        buf.getDouble(), buf.getDouble(), buf.getDouble(), buf.getDouble(), buf.getInt()));
+            else if (type == TYPE_DOUBLE)
+                values.add(new ArchiveVNumber(time, severity, status, display, buf.getDouble()));
+            else if (type == TYPE_LONG)
+                values.add(new ArchiveVNumber(time, severity, status, display, buf.getLong()));
+            else
+                throw new IOException("Invalid sample type " + type);
+        }
+        return values;
+    }
+
+    private static void writeString(final DataOutputStream out, final String text) throws IOException
+    {
+        final byte[] bytes = (text == null ? "" : text).getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer buf)
+    {
+        final byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private static void writeDouble(final DataOutputStream out, final Double value) throws IOException
+    {
+        out.writeDouble(value == null ? Double.NaN : value.doubleValue());
+    }
+
+    private static Double readDouble(final ByteBuffer buf)
+    {
+        final double value = buf.getDouble();
+        return Double.isNaN(value) ? null : Double.valueOf(value);
+    }
+
+    private static int getPrecision(final Display display)
+    {
+        final NumberFormat format = display.getFormat();
+        return format == null ? -1 : format.getMaximumFractionDigits();
+    }
+
+    private static boolean isSame(final Object a, final Object b)
+    {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static boolean isSameDisplay(final Display a, final Display b)
+    {
+        return isSame(a.getLowerDisplayLimit(), b.getLowerDisplayLimit())  &&
+               isSame(a.getUpperDisplayLimit(), b.getUpperDisplayLimit())  &&
+               isSame(a.getLowerAlarmLimit(), b.getLowerAlarmLimit())  &&
+               isSame(a.getUpperAlarmLimit(), b.getUpperAlarmLimit())  &&
+               isSame(a.getLowerWarningLimit(), b.getLowerWarningLimit())  &&
+               isSame(a.getUpperWarningLimit(), b.getUpperWarningLimit())  &&
+               isSame(a.getLowerCtrlLimit(), b.getLowerCtrlLimit())  &&
+               isSame(a.getUpperCtrlLimit(), b.getUpperCtrlLimit())  &&
+               isSame(a.getUnits(), b.getUnits())  &&
+               getPrecision(a) == getPrecision(b);
+    }
+
+    private static void writeDisplay(final DataOutputStream out, final Display display) throws IOException
+    {
+        writeDouble(out, display.getLowerDisplayLimit());
+        writeDouble(out, display.getLowerAlarmLimit());
+        writeDouble(out, display.getLowerWarningLimit());
+        writeString(out, display.getUnits());
+        out.writeInt(getPrecision(display));
+        writeDouble(out, display.getUpperWarningLimit());
+        writeDouble(out, display.getUpperAlarmLimit());
+        writeDouble(out, display.getUpperDisplayLimit());
+        writeDouble(out, display.getLowerCtrlLimit());
+        writeDouble(out, display.getUpperCtrlLimit());
+    }
+
+    private static Display readDisplay(final ByteBuffer buf)
+    {
+        final Double lower_disp = readDouble(buf);
+        final Double lower_alarm = readDouble(buf);
+        final Double lower_warn = readDouble(buf);
+        final String units = readString(buf);
+        final int precision = buf.getInt();
+        final Double upper_warn = readDouble(buf);
+        final Double upper_alarm = readDouble(buf);
+        final Double upper_disp = readDouble(buf);
+        final Double lower_ctrl = readDouble(buf);
+        final Double upper_ctrl = readDouble(buf);
+        return ValueFactory.newDisplay(lower_disp, lower_alarm, lower_warn, units,
+                precision < 0 ? null : NumberFormats.format(precision),
+                upper_warn, upper_alarm, upper_disp, lower_ctrl, upper_ctrl);
+    }
+}
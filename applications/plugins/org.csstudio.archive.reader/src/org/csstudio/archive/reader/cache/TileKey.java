@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader.cache;
+
+/** Identifies one tile of cached data:
+ *  Channel in an archive, bin size and index of the tile in time.
+ *
+ *  <p>Tile <code>index</code> covers the time range
+ *  <code>index * bin_secs * TILE_BINS</code> up to
+ *  <code>(index+1) * bin_secs * TILE_BINS</code>,
+ *  in seconds since epoch.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class TileKey
+{
+    /** Number of bins in a tile */
+    final public static int TILE_BINS = 500;
+
+    final private String url;
+    final private int key;
+    final private String name;
+    final private long bin_secs;
+    final private long index;
+
+    /** Initialize
+     *  @param url Archive URL
+     *  @param key Archive key
+     *  @param name Channel name
+     *  @param bin_secs Bin size in seconds
+     *  @param index Index of the tile
+     */
+    public TileKey(final String url, final int key, final String name,
+            final long bin_secs, final long index)
+    {
+        this.url = url;
+        this.key = key;
+        this.name = name;
+        this.bin_secs = bin_secs;
+        this.index = index;
+    }
+
+    /** @return Archive URL */
+    public String getURL()
+    {
+        return url;
+    }
+
+    /** @return Archive key */
+    public int getKey()
+    {
+        return key;
+    }
+
+    /** @return Channel name */
+    public String getName()
+    {
+        return name;
+    }
+
+    /** @return Bin size in seconds */
+    public long getBinSeconds()
+    {
+        return bin_secs;
+    }
+
+    /** @return Index of the tile */
+    public long getIndex()
+    {
+        return index;
+    }
+
+    /** @return Start of the tile in seconds since epoch */
+    public long getStartSeconds()
+    {
+        return index * bin_secs * TILE_BINS;
+    }
+
+    /** @return End of the tile in seconds since epoch (exclusive) */
+    public long getEndSeconds()
+    {
+        return (index + 1) * bin_secs * TILE_BINS;
+    }
+
+    /** @return Text that identifies the channel, used for disk files */
+    public String getChannelID()
+    {
+        return url + "|" + key + "|" + name;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        final int prime = 31;
+        int result = url.hashCode();
+        result = prime * result + key;
+        result = prime * result + name.hashCode();
+        result = prime * result + (int) (bin_secs ^ (bin_secs >>> 32));
+        result = prime * result + (int) (index ^ (index >>> 32));
+        return result;
+    }
+
+    @Override
+    public boolean equals(final Object obj)
+    {
+        if (this == obj)
+            return true;
+        if (! (obj instanceof TileKey))
+            return false;
+        final TileKey other = (TileKey) obj;
+        return index == other.index  &&
+               bin_secs == other.bin_secs  &&
+               key == other.key  &&
+               name.equals(other.name)  &&
+               url.equals(other.url);
+    }
+
+    @Override
+    public String toString()
+    {
+        return name + " @ " + url + " (key " + key + "), " +
+               bin_secs + " sec bins, tile " + index;
+    }
+}
@@ -45,6 +45,21 @@ public class StatisticsAccumulator implements Statistics
 			max = value;
 		++count;
 	}
+
+	/** @param stats Statistics of values to be added to the accumulator */
+	public void add(final Statistics stats)
+	{
+		final int n = stats.getNSamples();
+		final double average = stats.getAverage();
+		final double stddev = stats.getStdDev();
+		sum += n * average;
+		square += n * (stddev * stddev + average * average);
+		if (stats.getMin() < min)
+			min = stats.getMin();
+		if (stats.getMax() > max)
+			max = stats.getMax();
+		count += n;
+	}
 	
 	@Override
 	public Double getAverage()
@@ -0,0 +1,338 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.writer.rdb;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/** Encoder for rows in the PostgreSQL binary COPY format.
+ *
+ *  <p>Column values are set in any order, then {@link #endRow()}
+ *  encodes them in table order into a buffer that is re-used
+ *  for all batches, so no strings or other intermediate objects
+ *  are created per row.
+ *
+ *  <p>See <a href="http://www.postgresql.org/docs/9.2/static/sql-copy.html">
+ *  http://www.postgresql.org/docs/9.2/static/sql-copy.html</a>, 'Binary Format'.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class PGBinaryRowEncoder
+{
+    /** File header: Signature, flags, header extension length */
+    final private static byte[] SIGNATURE = { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte)0xFF, '\r', '\n', 0 };
+
+    /** PostgreSQL epoch 2000-01-01 00:00:00 in milliseconds since 1970 */
+    final private static long PG_EPOCH_MILLIS = 946684800000L;
+
+    /** Supported column types */
+    final private static byte INT2 = 1, INT4 = 2, INT8 = 3, FLOAT4 = 4, FLOAT8 = 5,
+                              BOOL = 6, TIMESTAMP = 7, TIMESTAMPTZ = 8, TEXT = 9, BYTEA = 10;
+
+    /** Kind of value set for a column */
+    final private static byte NULL = 0, LONG = 1, DOUBLE = 2, OBJECT = 3;
+
+    /** Column types in table order */
+    final private byte[] types;
+
+    /** Values of current row, indexed by column */
+    final private byte[] kinds;
+    final private long[] longs;
+    final private double[] doubles;
+    final private Object[] objects;
+
+    final private CharsetEncoder utf8 = Charset.forName("UTF-8").newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    final private TimeZone timezone = TimeZone.getDefault();
+
+    /** Buffer for the encoded rows */
+    private ByteBuffer buffer = ByteBuffer.allocate(64*1024);
+
+    /** Number of rows in buffer */
+    private int rows = 0;
+
+    /** Initialize
+     *  @param type_names PostgreSQL type names of all table columns, in table order
+     *  @throws SQLException if a column type is not supported
+     */
+    public PGBinaryRowEncoder(final String[] type_names) throws SQLException
+    {
+        types = new byte[type_names.length];
+        for (int i=0; i<types.length; ++i)
+            types[i] = getType(type_names[i]);
+        kinds = new byte[types.length];
+        longs = new long[types.length];
+        doubles = new double[types.length];
+        objects = new Object[types.length];
+        clear();
+    }
+
+    /** @param name PostgreSQL type name
+     *  @return Type code
+     *  @throws SQLException if type is not supported
+     */
+    private static byte getType(final String name) throws SQLException
+    {
+        if ("int2".equals(name))
+            return INT2;
+        if ("int4".equals(name)  ||  "serial".equals(name))
+            return INT4;
+        if ("int8".equals(name)  ||  "bigserial".equals(name))
+            return INT8;
+        if ("float4".equals(name))
+            return FLOAT4;
+        if ("float8".equals(name))
+            return FLOAT8;
+        if ("bool".equals(name))
+            return BOOL;
+        if ("timestamp".equals(name))
+            return TIMESTAMP;
+        if ("timestamptz".equals(name))
+            return TIMESTAMPTZ;
+        if ("varchar".equals(name)  ||  "text".equals(name)  ||  "bpchar".equals(name))
+            return TEXT;
+        if ("bytea".equals(name))
+            return BYTEA;
+        throw new SQLException("Column type " + name + " not supported by binary COPY");
+    }
+
+    /** Set column to null */
+    public void setNull(final int column)
+    {
+        kinds[column] = NULL;
+        objects[column] = null;
+    }
+
+    /** Set integer, long, boolean etc. value of column */
+    public void setLong(final int column, final long value)
+    {
+        kinds[column] = LONG;
+        longs[column] = value;
+    }
+
+    /** Set floating point value of column */
+    public void setDouble(final int column, final double value)
+    {
+        kinds[column] = DOUBLE;
+        doubles[column] = value;
+    }
+
+    /** Set {@link String}, <code>byte[]</code> or {@link Timestamp} value of column */
+    public void setObject(final int column, final Object value)
+    {
+        if (value == null)
+            setNull(column);
+        else
+        {
+            kinds[column] = OBJECT;
+            objects[column] = value;
+        }
+    }
+
+    /** Clear values of the current row */
+    public void clearRow()
+    {
+        Arrays.fill(kinds, NULL);
+        Arrays.fill(objects, null);
+    }
+
+    /** Encode current row into buffer, then clear the row
+     *  @throws SQLException if a value cannot be converted to the column type
+     */
+    public void endRow() throws SQLException
+    {
+        ensureCapacity(2 + types.length * 12);
+        buffer.putShort((short) types.length);
+        for (int i=0; i<types.length; ++i)
+            encode(i);
+        ++rows;
+        clearRow();
+    }
+
+    /** @param column Column to add to buffer */
+    private void encode(final int column) throws SQLException
+    {
+        final byte kind = kinds[column];
+        if (kind == NULL)
+        {
+            ensureCapacity(4);
+            buffer.putInt(-1);
+            return;
+        }
+        switch (types[column])
+        {
+        case INT2:
+            ensureCapacity(6);
+            buffer.putInt(2);
+            buffer.putShort((short) getLong(column));
+            break;
+        case INT4:
+            ensureCapacity(8);
+            buffer.putInt(4);
+            buffer.putInt((int) getLong(column));
+            break;
+        case INT8:
+            ensureCapacity(12);
+            buffer.putInt(8);
+            buffer.putLong(getLong(column));
+            break;
+        case FLOAT4:
+            ensureCapacity(8);
+            buffer.putInt(4);
+            buffer.putFloat((float) getDouble(column));
+            break;
+        case FLOAT8:
+            ensureCapacity(12);
+            buffer.putInt(8);
+            buffer.putDouble(getDouble(column));
+            break;
+        case BOOL:
+            ensureCapacity(5);
+            buffer.putInt(1);
+            buffer.put((byte) (getLong(column) != 0 ? 1 : 0));
+            break;
+        case TIMESTAMP:
+        case TIMESTAMPTZ:
+        {
+            final Timestamp stamp = (Timestamp) getObject(column, Timestamp.class);
+            long millis = stamp.getTime();
+            // 'timestamp without time zone' holds the local time,
+            // same as the text of Timestamp.toString()
+            if (types[column] == TIMESTAMP)
+                millis += timezone.getOffset(millis);
+            // getTime() includes milliseconds, add remaining microseconds
+            final long micros = (millis - PG_EPOCH_MILLIS) * 1000L + (stamp.getNanos() / 1000) % 1000;
+            ensureCapacity(12);
+            buffer.putInt(8);
+            buffer.putLong(micros);
+            break;
+        }
+        case TEXT:
+            encodeText(column);
+            break;
+        case BYTEA:
+        {
+            final byte[] bytes = (byte[]) getObject(column, byte[].class);
+            ensureCapacity(4 + bytes.length);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+            break;
+        }
+        default:
+            throw new SQLException("Unknown type for column " + column);
+        }
+    }
+
+    /** Add text column in UTF-8 */
+    private void encodeText(final int column) throws SQLException
+    {
+        final CharSequence text;
+        if (kinds[column] == LONG)
+            text = Long.toString(longs[column]);
+        else if (kinds[column] == DOUBLE)
+            text = Double.toString(doubles[column]);
+        else
+            text = (CharSequence) getObject(column, CharSequence.class);
+        // Reserve space for length and worst-case UTF-8 size
+        ensureCapacity(4 + 4 * text.length());
+        final int length_position = buffer.position();
+        buffer.putInt(0);
+        utf8.reset();
+        utf8.encode(CharBuffer.wrap(text), buffer, true);
+        utf8.flush(buffer);
+        buffer.putInt(length_position, buffer.position() - length_position - 4);
+    }
+
+    private long getLong(final int column) throws SQLException
+    {
+        if (kinds[column] == LONG)
+            return longs[column];
+        if (kinds[column] == DOUBLE)
+            return (long) doubles[column];
+        throw new SQLException("Column " + column + " requires a number, got " + objects[column]);
+    }
+
+    private double getDouble(final int column) throws SQLException
+    {
+        if (kinds[column] == DOUBLE)
+            return doubles[column];
+        if (kinds[column] == LONG)
+            return longs[column];
+        throw new SQLException("Column " + column + " requires a number, got " + objects[column]);
+    }
+
+    private Object getObject(final int column, final Class<?> type) throws SQLException
+    {
+        final Object value = objects[column];
+        if (kinds[column] != OBJECT  ||  !type.isInstance(value))
+            throw new SQLException("Column " + column + " requires " + type.getSimpleName());
+        return value;
+    }
+
+    /** @param needed Number of bytes that must fit into the buffer */
+    private void ensureCapacity(final int needed)
+    {
+        if (buffer.remaining() >= needed)
+            return;
+        final ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * buffer.capacity(), buffer.position() + needed));
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+    }
+
+    /** @return Number of rows in buffer */
+    public int getRowCount()
+    {
+        return rows;
+    }
+
+    /** Clear all rows, start new batch */
+    public void clear()
+    {
+        buffer.clear();
+        buffer.put(SIGNATURE);
+        // Flags, header extension length
+        buffer.putInt(0);
+        buffer.putInt(0);
+        rows = 0;
+        clearRow();
+    }
+
+    /** Terminate the batch.
+     *  <p>After calling this, the data is available via
+     *  {@link #getData()}, {@link #getLength()}, until
+     *  the encoder is cleared.
+     */
+    public void finish()
+    {
+        ensureCapacity(2);
+        buffer.putShort((short) -1);
+    }
+
+    /** @return Encoded data. Only valid up to {@link #getLength()} */
+    public byte[] getData()
+    {
+        return buffer.array();
+    }
+
+    /** @return Number of bytes in encoded data */
+    public int getLength()
+    {
+        return buffer.position();
+    }
+}
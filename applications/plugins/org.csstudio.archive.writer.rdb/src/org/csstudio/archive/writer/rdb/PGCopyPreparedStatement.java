@@ -22,6 +22,7 @@ import java.sql.RowId;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
 import java.sql.SQLXML;
+import java.sql.Statement;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.Arrays;
@@ -32,6 +33,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
 import org.postgresql.copy.CopyManager;
 
 public class PGCopyPreparedStatement implements PreparedStatement {
@@ -44,8 +46,34 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
 	private int[] columnOrderMapping;
 
+	/** Encoder for binary COPY, <code>null</code> for CSV */
+	private PGBinaryRowEncoder encoder;
+
+	/**
+	 * Create statement that uses COPY in CSV format.
+	 * 
+	 * @param connection
+	 * @param insertSqlQuery
+	 * @throws SQLException
+	 */
 	public PGCopyPreparedStatement(Connection connection, String insertSqlQuery)
 			throws SQLException {
+		this(connection, insertSqlQuery, false);
+	}
+
+	/**
+	 * Create statement that uses COPY.
+	 * 
+	 * @param connection
+	 * @param insertSqlQuery
+	 * @param binary
+	 *            Use binary COPY format instead of CSV?
+	 * @throws SQLException
+	 *             on error, including column types that are not supported by
+	 *             the binary format
+	 */
+	public PGCopyPreparedStatement(Connection connection,
+			String insertSqlQuery, boolean binary) throws SQLException {
 		this.connection = connection;
 		batchBuilder = new StringBuffer();
 
@@ -63,14 +91,27 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
 		// Get the column order as it's stored in database
 		Map<String, Integer> postgresColumnOrderMap = new HashMap<String, Integer>();
+		Map<Integer, String> postgresColumnTypeMap = new HashMap<Integer, String>();
 		ResultSet columnsRs = connection.getMetaData().getColumns(
 				connection.getCatalog(), null, "sample", null);
 		while (columnsRs.next()) {
 			postgresColumnOrderMap.put(columnsRs.getString("COLUMN_NAME"),
 					columnsRs.getInt("ORDINAL_POSITION"));
+			postgresColumnTypeMap.put(columnsRs.getInt("ORDINAL_POSITION"),
+					columnsRs.getString("TYPE_NAME"));
 		}
+		columnsRs.close();
 		rowValues = new String[postgresColumnOrderMap.size()];
 
+		if (binary) {
+			checkIntegerDatetimes(connection);
+			String[] columnTypes = new String[rowValues.length];
+			for (int i = 0; i < columnTypes.length; i++) {
+				columnTypes[i] = postgresColumnTypeMap.get(i + 1);
+			}
+			encoder = new PGBinaryRowEncoder(columnTypes);
+		}
+
 		// Generate a tab containing mapping between order in insert query and
 		// database order
 		columnOrderMapping = new int[columnsArrays.length + 1];
@@ -87,8 +128,42 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 		}
 	}
 
+	/**
+	 * Binary COPY encodes time stamps as 64 bit integers, which requires the
+	 * server to use integer date/time representation.
+	 * 
+	 * @param connection
+	 * @throws SQLException
+	 *             if server uses floating-point date/time representation
+	 */
+	private static void checkIntegerDatetimes(Connection connection)
+			throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet result = statement.executeQuery("SHOW integer_datetimes");
+			if (result.next() && !"on".equalsIgnoreCase(result.getString(1))) {
+				throw new SQLException(
+						"Binary COPY requires integer_datetimes");
+			}
+			result.close();
+		} finally {
+			statement.close();
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if statement uses binary COPY
+	 */
+	public boolean isBinary() {
+		return encoder != null;
+	}
+
 	@Override
 	public void addBatch() throws SQLException {
+		if (encoder != null) {
+			encoder.endRow();
+			return;
+		}
 		for (int i = 0; i < rowValues.length; i++) {
 			if (rowValues[i] != null) {
 				batchBuilder.append(rowValues[i]);
@@ -113,6 +188,9 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 	@Override
 	public void clearBatch() throws SQLException {
 		batchBuilder.setLength(0);
+		if (encoder != null) {
+			encoder.clear();
+		}
 	}
 
 	@Override
@@ -127,6 +205,7 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 		columnOrderMapping = null;
 		batchBuilder = null;
 		connection = null;
+		encoder = null;
 	}
 
 	@Override
@@ -161,6 +240,9 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
 	@Override
 	public int[] executeBatch() throws SQLException {
+		if (encoder != null) {
+			return executeBinaryBatch();
+		}
 		long res = 0;
 		try {
 			CopyManager cpManager = ((PGConnection) connection).getCopyAPI();
@@ -176,6 +258,32 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 		return new int[] { (int) res };
 	}
 
+	/**
+	 * Stream the binary rows to the server
+	 * 
+	 * @return Number of rows
+	 * @throws SQLException
+	 */
+	private int[] executeBinaryBatch() throws SQLException {
+		if (encoder.getRowCount() <= 0) {
+			return new int[] { 0 };
+		}
+		long res = 0;
+		encoder.finish();
+		CopyManager cpManager = ((PGConnection) connection).getCopyAPI();
+		CopyIn copy = cpManager.copyIn("COPY sample FROM STDIN WITH BINARY");
+		try {
+			copy.writeToCopy(encoder.getData(), 0, encoder.getLength());
+			res = copy.endCopy();
+		} finally {
+			if (copy.isActive()) {
+				copy.cancelCopy();
+			}
+			encoder.clear();
+		}
+		return new int[] { (int) res };
+	}
+
 	@Override
 	public ResultSet executeQuery(String arg0) throws SQLException {
 		throw new SQLException("Not implemented");
@@ -375,6 +483,9 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 	@Override
 	public void clearParameters() throws SQLException {
 		Arrays.fill(rowValues, null);
+		if (encoder != null) {
+			encoder.clearRow();
+		}
 	}
 
 	@Override
@@ -437,6 +548,15 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 	@Override
 	public void setBigDecimal(int parameterIndex, BigDecimal x)
 			throws SQLException {
+		if (encoder != null) {
+			if (x == null) {
+				encoder.setNull(columnOrderMapping[parameterIndex]);
+			} else {
+				encoder.setDouble(columnOrderMapping[parameterIndex],
+						x.doubleValue());
+			}
+			return;
+		}
 		if (x == null) {
 			rowValues[columnOrderMapping[parameterIndex]] = null;
 		} else {
@@ -487,6 +607,10 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
 	@Override
 	public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+		if (encoder != null) {
+			encoder.setLong(columnOrderMapping[parameterIndex], x ? 1 : 0);
+			return;
+		}
 		rowValues[columnOrderMapping[parameterIndex]] = Boolean.toString(x);
 	}
 
@@ -498,6 +622,10 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
 	@Override
 	public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+		if (encoder != null) {
+			encoder.setObject(columnOrderMapping[parameterIndex], x);
+			return;
+		}
 		if (x == null) {
 			rowValues[columnOrderMapping[parameterIndex]] = null;
 		} else {
@@ -590,21 +718,37 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
 	@Override
 	public void setDouble(int parameterIndex, double x) throws SQLException {
+		if (encoder != null) {
+			encoder.setDouble(columnOrderMapping[parameterIndex], x);
+			return;
+		}
 		rowValues[columnOrderMapping[parameterIndex]] = Double.toString(x);
 	}
 
 	@Override
 	public void setFloat(int parameterIndex, float x) throws SQLException {
+		if (encoder != null) {
+			encoder.setDouble(columnOrderMapping[parameterIndex], x);
+			return;
+		}
 		rowValues[columnOrderMapping[parameterIndex]] = Float.toString(x);
 	}
 
 	@Override
 	public void setInt(int parameterIndex, int x) throws SQLException {
+		if (encoder != null) {
+			encoder.setLong(columnOrderMapping[parameterIndex], x);
+			return;
+		}
 		rowValues[columnOrderMapping[parameterIndex]] = Integer.toString(x);
 	}
 
 	@Override
 	public void setLong(int parameterIndex, long x) throws SQLException {
+		if (encoder != null) {
+			encoder.setLong(columnOrderMapping[parameterIndex], x);
+			return;
+		}
 		rowValues[columnOrderMapping[parameterIndex]] = Long.toString(x);
 	}
 
@@ -644,6 +788,10 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 	@Override
 	public void setNString(int parameterIndex, String value)
 			throws SQLException {
+		if (encoder != null) {
+			encoder.setObject(columnOrderMapping[parameterIndex], value);
+			return;
+		}
 		if (value == null) {
 			rowValues[columnOrderMapping[parameterIndex]] = null;
 		} else {
@@ -653,12 +801,20 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
 	@Override
 	public void setNull(int parameterIndex, int sqlType) throws SQLException {
+		if (encoder != null) {
+			encoder.setNull(columnOrderMapping[parameterIndex]);
+			return;
+		}
 		rowValues[columnOrderMapping[parameterIndex]] = null;
 	}
 
 	@Override
 	public void setNull(int parameterIndex, int sqlType, String typeName)
 			throws SQLException {
+		if (encoder != null) {
+			encoder.setNull(columnOrderMapping[parameterIndex]);
+			return;
+		}
 		rowValues[columnOrderMapping[parameterIndex]] = null;
 	}
 
@@ -703,11 +859,19 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
 	@Override
 	public void setShort(int parameterIndex, short x) throws SQLException {
+		if (encoder != null) {
+			encoder.setLong(columnOrderMapping[parameterIndex], x);
+			return;
+		}
 		rowValues[columnOrderMapping[parameterIndex]] = Short.toString(x);
 	}
 
 	@Override
 	public void setString(int parameterIndex, String x) throws SQLException {
+		if (encoder != null) {
+			encoder.setObject(columnOrderMapping[parameterIndex], x);
+			return;
+		}
 		rowValues[columnOrderMapping[parameterIndex]] = x;
 	}
 
@@ -727,6 +891,10 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 	@Override
 	public void setTimestamp(int parameterIndex, Timestamp x)
 			throws SQLException {
+		if (encoder != null) {
+			encoder.setObject(columnOrderMapping[parameterIndex], x);
+			return;
+		}
 		if (x == null) {
 			rowValues[columnOrderMapping[parameterIndex]] = null;
 		} else {
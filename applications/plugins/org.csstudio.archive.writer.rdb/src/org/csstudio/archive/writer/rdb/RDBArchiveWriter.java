@@ -235,8 +235,19 @@ public class RDBArchiveWriter implements ArchiveWriter
 		PreparedStatement statement = null;
 		if (rdb.getDialect() == Dialect.PostgreSQL
 				&& Preferences.isUsePostgresCopy()) {
-			statement = new PGCopyPreparedStatement(rdb.getConnection(),
-					sqlQuery);
+			if (Preferences.isUsePostgresBinaryCopy()) {
+				try {
+					statement = new PGCopyPreparedStatement(
+							rdb.getConnection(), sqlQuery, true);
+				} catch (SQLException ex) {
+					Activator.getLogger().log(Level.WARNING,
+							"Cannot use binary COPY, using CSV", ex);
+				}
+			}
+			if (statement == null) {
+				statement = new PGCopyPreparedStatement(rdb.getConnection(),
+						sqlQuery);
+			}
 		} else {
 			statement = rdb.getConnection().prepareStatement(sqlQuery);
 		}
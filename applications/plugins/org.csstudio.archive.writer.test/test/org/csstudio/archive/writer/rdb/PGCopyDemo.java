@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.writer.rdb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+
+import org.csstudio.apputil.test.TestProperties;
+import org.csstudio.platform.utility.rdb.RDBUtil;
+import org.csstudio.platform.utility.rdb.RDBUtil.Dialect;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** JUnit-based demo that compares sample insert speed for
+ *  plain JDBC batches, COPY in CSV and COPY in binary format.
+ *
+ *  <p>Only runs against PostgreSQL.
+ *  Writes samples for the 'archive_channel' and 'archive_array_channel',
+ *  so use a test setup!
+ *
+ *  <p>Prints samples/sec for each variant,
+ *  results depend on the RDB setup.
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class PGCopyDemo
+{
+    final private static int BATCH_SIZE = 10000;
+    final private static int BATCHES = 10;
+    final private static int ARRAY_SIZE = 100;
+
+    private RDBUtil rdb = null;
+    private String schema;
+    private String sample_insert_double, sample_insert_double_blob;
+    private int channel_id = -1, array_channel_id = -1;
+
+    @Before
+    public void connect() throws Exception
+    {
+        final TestProperties settings = new TestProperties();
+        final String url = settings.getString("archive_rdb_url");
+        final String user = settings.getString("archive_rdb_user");
+        final String password = settings.getString("archive_rdb_password");
+        schema = settings.getString("archive_rdb_schema");
+        schema = (schema == null  ||  schema.isEmpty()) ? "" : schema + ".";
+        final String name = settings.getString("archive_channel");
+        final String array_name = settings.getString("archive_array_channel");
+        if (url == null  ||  user == null  ||  password == null  ||  name == null)
+        {
+            System.out.println("Skipping test, no archive_rdb_url, user, password");
+            return;
+        }
+        rdb = RDBUtil.connect(url, user, password, false);
+        if (rdb.getDialect() != Dialect.PostgreSQL)
+        {
+            System.out.println("Skipping test, COPY requires PostgreSQL");
+            rdb.close();
+            rdb = null;
+            return;
+        }
+        // Same as SQL.sample_insert_double..., which is not accessible from this bundle
+        sample_insert_double = "INSERT INTO " + schema + "sample " +
+            "(channel_id, smpl_time, severity_id, status_id, float_val, nanosecs)" +
+            " VALUES (?,?,?,?,?,?)";
+        sample_insert_double_blob = "INSERT INTO " + schema + "sample " +
+            "(channel_id, smpl_time, severity_id, status_id, float_val, nanosecs, datatype, array_val)" +
+            " VALUES (?,?,?,?,?,?,?,?)";
+        channel_id = getChannelID(name);
+        if (array_name != null)
+            array_channel_id = getChannelID(array_name);
+    }
+
+    private int getChannelID(final String name) throws Exception
+    {
+        final PreparedStatement statement = rdb.getConnection().prepareStatement(
+            "SELECT channel_id FROM " + schema + "channel WHERE name=?");
+        try
+        {
+            statement.setString(1, name);
+            final ResultSet result = statement.executeQuery();
+            if (! result.next())
+                throw new Exception("Unknown channel " + name);
+            return result.getInt(1);
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    @After
+    public void close()
+    {
+        if (rdb != null)
+            rdb.close();
+    }
+
+    /** Statement factory */
+    private interface StatementFactory
+    {
+        public PreparedStatement create(Connection connection, String insert) throws Exception;
+    }
+
+    final private static StatementFactory JDBC = new StatementFactory()
+    {
+        @Override
+        public PreparedStatement create(final Connection connection, final String insert) throws Exception
+        {
+            return connection.prepareStatement(insert);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "JDBC batch: ";
+        }
+    };
+
+    final private static StatementFactory CSV = new StatementFactory()
+    {
+        @Override
+        public PreparedStatement create(final Connection connection, final String insert) throws Exception
+        {
+            return new PGCopyPreparedStatement(connection, insert, false);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "COPY CSV:   ";
+        }
+    };
+
+    final private static StatementFactory BINARY = new StatementFactory()
+    {
+        @Override
+        public PreparedStatement create(final Connection connection, final String insert) throws Exception
+        {
+            return new PGCopyPreparedStatement(connection, insert, true);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "COPY binary:";
+        }
+    };
+
+    /** Insert samples, print rate
+     *  @param factory Statement factory
+     *  @param array Insert array samples, or scalars?
+     *  @throws Exception on error
+     */
+    private void insert(final StatementFactory factory, final boolean array) throws Exception
+    {
+        final Connection connection = rdb.getConnection();
+        final boolean auto_commit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        final String insert = array ? sample_insert_double_blob : sample_insert_double;
+        final PreparedStatement statement = factory.create(connection, insert);
+        // Encode array as in RDBArchiveWriter.batchDoubleSamples()
+        final byte[] blob = new byte[4 + 8 * ARRAY_SIZE];
+        final long start = System.currentTimeMillis();
+        long time = start;
+        try
+        {
+            for (int batch=0; batch<BATCHES; ++batch)
+            {
+                for (int i=0; i<BATCH_SIZE; ++i)
+                {
+                    ++time;
+                    final Timestamp stamp = new Timestamp(time);
+                    stamp.setNanos(stamp.getNanos() + i % 1000);
+                    statement.setInt(1, array ? array_channel_id : channel_id);
+                    statement.setTimestamp(2, stamp);
+                    statement.setInt(3, 1);
+                    statement.setInt(4, 1);
+                    statement.setDouble(5, i);
+                    statement.setInt(6, stamp.getNanos());
+                    if (array)
+                    {
+                        statement.setString(7, "d");
+                        statement.setBytes(8, blob);
+                    }
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            }
+        }
+        finally
+        {
+            statement.close();
+            connection.setAutoCommit(auto_commit);
+        }
+        final double secs = (System.currentTimeMillis() - start) / 1000.0;
+        System.out.format("%s %s %8.0f samples/sec\n",
+                array ? "Array " : "Scalar", factory, BATCHES*BATCH_SIZE / secs);
+    }
+
+    @Test
+    public void demoScalarInsert() throws Exception
+    {
+        if (rdb == null)
+            return;
+        insert(JDBC, false);
+        insert(CSV, false);
+        insert(BINARY, false);
+    }
+
+    @Test
+    public void demoArrayInsert() throws Exception
+    {
+        if (rdb == null  ||  array_channel_id < 0)
+            return;
+        insert(JDBC, true);
+        insert(CSV, true);
+        insert(BINARY, true);
+    }
+}
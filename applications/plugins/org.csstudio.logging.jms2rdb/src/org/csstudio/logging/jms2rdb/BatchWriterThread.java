@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.logging.jms2rdb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import javax.jms.MapMessage;
+
+import org.csstudio.logging.jms2rdb.rdb.RDBWriter;
+
+/** Thread that takes messages from a queue and writes them to the RDB in batches.
+ *  <p>
+ *  A batch is written when it reaches the batch size,
+ *  or when the first message in the batch has waited for the flush period.
+ *  Each batch is committed as one transaction.
+ *  <p>
+ *  On error, the thread reports to the {@link LogClientThread} and exits.
+ *  Messages that are still in the queue remain there
+ *  for the next writer thread.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class BatchWriterThread extends Thread
+{
+    /** Period for checking the 'run' flag while idle */
+    private static final long IDLE_POLL_MS = 1000;
+
+    final private LogClientThread log_client;
+    final private RDBWriter rdb_writer;
+    final private BlockingQueue<MapMessage> queue;
+    final private int batch_size;
+    final private long flush_ms;
+
+    /** Flag that tells thread to run or stop. */
+    private volatile boolean run = true;
+
+    /** Initialize
+     *  @param log_client {@link LogClientThread} to notify of written batches and errors
+     *  @param rdb_writer {@link RDBWriter} to use
+     *  @param queue Queue of messages to write
+     *  @param batch_size Maximum number of messages per batch
+     *  @param flush_ms Maximum time a message waits for its batch to fill
+     */
+    public BatchWriterThread(final LogClientThread log_client, final RDBWriter rdb_writer,
+            final BlockingQueue<MapMessage> queue, final int batch_size, final long flush_ms)
+    {
+        super("BatchWriterThread");
+        this.log_client = log_client;
+        this.rdb_writer = rdb_writer;
+        this.queue = queue;
+        this.batch_size = Math.max(1, batch_size);
+        this.flush_ms = Math.max(0, flush_ms);
+    }
+
+    /** Ask thread to stop.
+     *  Thread will write what is already queued, then exit.
+     */
+    public void cancel()
+    {
+        run = false;
+    }
+
+    @Override
+    public void run()
+    {
+        final List<MapMessage> batch = new ArrayList<MapMessage>(batch_size);
+        try
+        {
+            while (run)
+            {
+                final MapMessage first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+                // Collect more messages until batch is full or flush period expires
+                final long end = System.currentTimeMillis() + flush_ms;
+                while (batch.size() < batch_size)
+                {
+                    if (queue.drainTo(batch, batch_size - batch.size()) > 0)
+                        continue;
+                    final long wait = end - System.currentTimeMillis();
+                    if (wait <= 0)
+                        break;
+                    final MapMessage next = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                }
+                write(batch);
+            }
+            // Write remaining messages before exiting
+            while (queue.drainTo(batch, batch_size) > 0)
+                write(batch);
+        }
+        catch (Exception ex)
+        {
+            Activator.getLogger().log(Level.WARNING,
+                "Error writing batch of " + batch.size() + " messages", ex);
+            log_client.batchFailed(batch.size(), ex);
+        }
+    }
+
+    /** Write a batch, update statistics
+     *  @param batch Messages to write. Cleared on success.
+     *  @throws Exception on error
+     */
+    private void write(final List<MapMessage> batch) throws Exception
+    {
+        final long start = System.nanoTime();
+        rdb_writer.write(batch);
+        final long nanos = System.nanoTime() - start;
+        log_client.batchWritten(batch.size(), nanos);
+        batch.clear();
+    }
+}
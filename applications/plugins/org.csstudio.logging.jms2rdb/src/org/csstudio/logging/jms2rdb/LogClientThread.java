@@ -7,6 +7,9 @@
  ******************************************************************************/
 package org.csstudio.logging.jms2rdb;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import javax.jms.Connection;
@@ -24,14 +27,16 @@ import org.csstudio.platform.utility.jms.JMSConnectionFactory;
 
 /** Thread that receives log messages and sends them to the RDB.
  *  <p>
- *  There is no further queuing in here.
- *  All messages are directly written to the RDB.
+ *  Received messages are placed in a bounded queue.
+ *  A {@link BatchWriterThread} writes them to the RDB in batches.
  *  <p>
+ *  When the queue is full, the JMS message handler waits for
+ *  space in the queue, so messages back up in the JMS server.
  *  If messages arrive quicker than they can be written to RDB,
  *  simple test showed that ActiveMQ JMS server will queue them up
  *  for this "consumer" as long as the consumer stays connected.
- *  TODO: Limits and config. of JMS server queue unclear.
- *        Queue in here?
+ *  Messages are only dropped when the queue remains full for
+ *  {@link #QUEUE_TIMEOUT_MS}.
  *
  *  @author Kay Kasemir
  *  reviewed by Katia Danilova 08/20/08
@@ -45,6 +50,9 @@ public class LogClientThread extends Thread
      */
     private static final int RETRY_DELAY_MS = 20000;
 
+    /** Time that JMS message handler waits for space in the queue */
+    private static final long QUEUE_TIMEOUT_MS = 10000;
+
     /** JMS Server URL */
     final private String jms_url;
 
@@ -72,9 +80,21 @@ public class LogClientThread extends Thread
     /** Flag that tells thread main loop to wait. */
     private boolean do_wait;
 
+    /** Messages to write to RDB */
+    final private BlockingQueue<MapMessage> queue;
+
+    /** Maximum number of messages per RDB batch */
+    final private int batch_size;
+
+    /** Maximum time a message waits for its batch to fill */
+    final private long flush_ms;
+
     /** RDB Writer for log messages */
     private RDBWriter rdb_writer;
 
+    /** Thread that writes queued messages to RDB */
+    private BatchWriterThread batch_writer;
+
     /** Counter for received JMS messages */
     private int message_count = 0;
 
@@ -84,6 +104,27 @@ public class LogClientThread extends Thread
     /** Last error message or <code>null</code> */
     private String last_error = "";
 
+    /** Number of messages dropped because queue was full or write failed */
+    private long dropped_count = 0;
+
+    /** Number of batches written to RDB */
+    private long batch_count = 0;
+
+    /** Number of messages written to RDB */
+    private long written_count = 0;
+
+    /** Size of last batch */
+    private int last_batch_size = 0;
+
+    /** Duration of last batch insert in nanoseconds */
+    private long last_batch_nanos = 0;
+
+    /** Total duration of batch inserts in nanoseconds */
+    private long total_batch_nanos = 0;
+
+    /** Maximum number of messages that were queued */
+    private int max_queue_size = 0;
+
     /** Constructor
      *  @param jms_url JMS server URL
      *  @param jms_topic JMS topic (or list of topics, separated by ',')
@@ -91,11 +132,16 @@ public class LogClientThread extends Thread
      *  @param rdb_user User (or null)
      *  @param rdb_password Password (or null)
      *  @param rdb_schema RDB schema or ""
+     *  @param filters Filters for suppressed messages
+     *  @param queue_capacity Maximum number of messages queued for the RDB
+     *  @param batch_size Maximum number of messages per RDB batch
+     *  @param flush_ms Maximum time in millisec that a message waits for its batch to fill
      */
     public LogClientThread(final String jms_url, final String jms_topic,
             final String rdb_url, final String rdb_user, final String rdb_password,
             final String rdb_schema,
-            final Filter filters[])
+            final Filter filters[],
+            final int queue_capacity, final int batch_size, final long flush_ms)
     {
         super("LogClientThread");
         this.jms_url = jms_url;
@@ -105,6 +151,9 @@ public class LogClientThread extends Thread
         this.rdb_password = rdb_password;
         this.rdb_schema = rdb_schema;
         this.filters = filters;
+        this.queue = new ArrayBlockingQueue<MapMessage>(Math.max(1, queue_capacity));
+        this.batch_size = batch_size;
+        this.flush_ms = flush_ms;
 
         for (Filter filter : filters)
             Activator.getLogger().config(filter.toString());
@@ -128,6 +177,111 @@ public class LogClientThread extends Thread
         return last_error;
     }
 
+    /** @return Number of messages waiting to be written */
+    public int getQueueSize()
+    {
+        return queue.size();
+    }
+
+    /** @return Maximum number of messages that were queued */
+    public synchronized int getMaxQueueSize()
+    {
+        return max_queue_size;
+    }
+
+    /** @return Maximum number of messages in queue */
+    public int getQueueCapacity()
+    {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    /** @return Maximum number of messages per RDB batch */
+    public int getBatchSize()
+    {
+        return batch_size;
+    }
+
+    /** @return Number of batches written to RDB */
+    public synchronized long getBatchCount()
+    {
+        return batch_count;
+    }
+
+    /** @return Number of messages written to RDB */
+    public synchronized long getWrittenCount()
+    {
+        return written_count;
+    }
+
+    /** @return Number of messages dropped because the queue was full or RDB write failed */
+    public synchronized long getDroppedCount()
+    {
+        return dropped_count;
+    }
+
+    /** @return Number of messages in last batch */
+    public synchronized int getLastBatchSize()
+    {
+        return last_batch_size;
+    }
+
+    /** @return Duration of last batch insert in millisec */
+    public synchronized double getLastBatchMillis()
+    {
+        return last_batch_nanos / 1e6;
+    }
+
+    /** @return Average duration of batch insert in millisec */
+    public synchronized double getAverageBatchMillis()
+    {
+        if (batch_count <= 0)
+            return 0.0;
+        return total_batch_nanos / 1e6 / batch_count;
+    }
+
+    /** @return Average insert duration per message in millisec */
+    public synchronized double getAverageMessageMillis()
+    {
+        if (written_count <= 0)
+            return 0.0;
+        return total_batch_nanos / 1e6 / written_count;
+    }
+
+    /** Called by {@link BatchWriterThread} when a batch was written
+     *  @param size Number of messages in batch
+     *  @param nanos Duration of insert
+     */
+    void batchWritten(final int size, final long nanos)
+    {
+        synchronized (this)
+        {
+            ++batch_count;
+            written_count += size;
+            last_batch_size = size;
+            last_batch_nanos = nanos;
+            total_batch_nanos += nanos;
+        }
+        Activator.getLogger().log(Level.FINE,
+            "Wrote batch of {0} messages in {1} ms",
+            new Object[] { size, nanos / 1000000 });
+    }
+
+    /** Called by {@link BatchWriterThread} when writing a batch failed.
+     *  Triggers a re-connect.
+     *  @param size Number of messages in batch, which are lost
+     *  @param ex Error
+     */
+    void batchFailed(final int size, final Exception ex)
+    {
+        synchronized (this)
+        {
+            dropped_count += size;
+            last_error = ex.getMessage();
+            do_wait = false;
+            notifyAll();
+        }
+    }
+
     /** Connect to JMS, handle messages */
     @Override
     public void run()
@@ -136,6 +290,7 @@ public class LogClientThread extends Thread
         {
             Connection jms_connection = null;
             rdb_writer = null;
+            batch_writer = null;
             try
             {
                 // First open RDB, then the JMS client that writes to RDB
@@ -145,15 +300,23 @@ public class LogClientThread extends Thread
                 // Add start message
                 rdb_writer.write("JMS Log Tool started");
 
+                // Batch writer may fail and clear do_wait right away
+                synchronized (this)
+                {
+                    do_wait = true;
+                }
+                batch_writer = new BatchWriterThread(this, rdb_writer, queue, batch_size, flush_ms);
+                batch_writer.start();
+
                 jms_connection = connectJMS();
 
-                // Incoming JMS messages are handled in onMessage,
+                // Incoming JMS messages are queued in onMessage
+                // and written by the batch writer,
                 // so nothing to do here but wait...
                 synchronized (this)
                 {
-                    do_wait = true;
                     // Check some condition to please FindBugs
-                    while (do_wait)
+                    while (do_wait  &&  run)
                         wait();
                 }
             }
@@ -179,7 +342,21 @@ public class LogClientThread extends Thread
                         Activator.getLogger().log(Level.WARNING, "JMS disconnect error", e);
                     }
                 }
-                // .. then the RDB used by the JMS client.
+                // .. then the thread that writes what JMS client queued ..
+                if (batch_writer != null)
+                {
+                    batch_writer.cancel();
+                    try
+                    {
+                        batch_writer.join();
+                    }
+                    catch (InterruptedException ex)
+                    {
+                        Activator.getLogger().log(Level.WARNING, "Batch writer shutdown error", ex);
+                    }
+                    batch_writer = null;
+                }
+                // .. then the RDB used by the batch writer.
                 if (rdb_writer != null)
                 {
                     rdb_writer.close();
@@ -267,7 +444,23 @@ public class LogClientThread extends Thread
                     ++message_count;
                     last_message  = map;
                 }
-                rdb_writer.write(map);
+                if (queue.offer(map, QUEUE_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+                {
+                    final int size = queue.size();
+                    synchronized (this)
+                    {
+                        if (size > max_queue_size)
+                            max_queue_size = size;
+                    }
+                }
+                else
+                {
+                    synchronized (this)
+                    {
+                        ++dropped_count;
+                    }
+                    Activator.getLogger().log(Level.WARNING, "Queue full, dropping {0}", map);
+                }
             }
             else
                 Activator.getLogger().log(Level.WARNING, "Received unhandled message {0}", message);
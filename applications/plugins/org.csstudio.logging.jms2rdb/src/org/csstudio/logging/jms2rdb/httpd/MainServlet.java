@@ -49,6 +49,27 @@ public class MainServlet extends AbstractServlet
 
         html.h2("Message Count: " + log_client_thread.getMessageCount());
 
+        html.openTable(2, new String [] { "RDB Queue" });
+        html.tableLine(new String [] { "Queued Messages",
+                log_client_thread.getQueueSize() + " of " + log_client_thread.getQueueCapacity() });
+        html.tableLine(new String [] { "Max. Queued Messages",
+                Integer.toString(log_client_thread.getMaxQueueSize()) });
+        html.tableLine(new String [] { "Written Messages",
+                Long.toString(log_client_thread.getWrittenCount()) });
+        html.tableLine(new String [] { "Dropped Messages",
+                Long.toString(log_client_thread.getDroppedCount()) });
+        html.tableLine(new String [] { "Batches",
+                Long.toString(log_client_thread.getBatchCount()) });
+        html.tableLine(new String [] { "Last Batch Size",
+                log_client_thread.getLastBatchSize() + " of " + log_client_thread.getBatchSize() });
+        html.tableLine(new String [] { "Last Batch Insert",
+                String.format("%.1f ms", log_client_thread.getLastBatchMillis()) });
+        html.tableLine(new String [] { "Avg. Batch Insert",
+                String.format("%.1f ms", log_client_thread.getAverageBatchMillis()) });
+        html.tableLine(new String [] { "Avg. Insert per Message",
+                String.format("%.2f ms", log_client_thread.getAverageMessageMillis()) });
+        html.closeTable();
+
         final String last_error = log_client_thread.getLastError();
         if (last_error.length() > 0)
         {
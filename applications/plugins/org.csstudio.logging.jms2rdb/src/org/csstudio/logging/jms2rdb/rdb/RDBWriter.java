@@ -15,6 +15,7 @@ import java.sql.Timestamp;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -266,30 +267,13 @@ public class RDBWriter
      *  @param message MapMessage to write
      *  @throws Exception on error
      */
-    @SuppressWarnings("unchecked")
 	public void write(final MapMessage map) throws Exception
     {
-		final String type = map.getString(JMSLogMessage.TYPE);
-		final String name = map.getString(JMSLogMessage.NAME);
-		final String severity = map.getString(JMSLogMessage.SEVERITY);
-
         final Connection connection = rdb_util.getConnection();
         connection.setAutoCommit(false);
         try
         {
-    		final long message_id = insertMessage(type, name, severity);
-
-            final Enumeration<String> props = map.getMapNames();
-            while (props.hasMoreElements())
-            {
-            	final String prop = props.nextElement();
-            	// Skip properties which are already in message table columns
-            	if (JMSLogMessage.TYPE.equals(prop) ||
-            	    JMSLogMessage.NAME.equals(prop) ||
-            	    JMSLogMessage.SEVERITY.equals(prop))
-            		continue;
-            	batchProperty(message_id, prop, map.getString(prop));
-            }
+            batchMessage(map);
             insert_property_statement.executeBatch();
             connection.commit();
         }
@@ -304,6 +288,67 @@ public class RDBWriter
         }
     }
 
+    /** Write several log messages to RDB in one transaction
+     *
+     *  <p>Each message row is still inserted on its own
+     *  because its ID is needed for the properties,
+     *  but the properties of all messages are written as one batch,
+     *  followed by a single commit.
+     *
+     *  @param maps MapMessages to write
+     *  @throws Exception on error, in which case none of the messages were written
+     */
+    public void write(final List<MapMessage> maps) throws Exception
+    {
+        if (maps.isEmpty())
+            return;
+        final Connection connection = rdb_util.getConnection();
+        connection.setAutoCommit(false);
+        try
+        {
+            for (MapMessage map : maps)
+                batchMessage(map);
+            insert_property_statement.executeBatch();
+            connection.commit();
+        }
+        catch (Exception ex)
+        {
+            connection.rollback();
+            insert_property_statement.clearBatch();
+            throw ex;
+        }
+        finally
+        {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /** Insert message row, add its properties to the batch
+     *  @param map MapMessage to write
+     *  @throws Exception on error
+     */
+    @SuppressWarnings("unchecked")
+    private void batchMessage(final MapMessage map) throws Exception
+    {
+		final String type = map.getString(JMSLogMessage.TYPE);
+		final String name = map.getString(JMSLogMessage.NAME);
+		final String severity = map.getString(JMSLogMessage.SEVERITY);
+
+		final long message_id = insertMessage(type, name, severity);
+
+        final Enumeration<String> props = map.getMapNames();
+        while (props.hasMoreElements())
+        {
+        	final String prop = props.nextElement();
+        	// Skip properties which are already in message table columns
+        	if (JMSLogMessage.TYPE.equals(prop) ||
+        	    JMSLogMessage.NAME.equals(prop) ||
+        	    JMSLogMessage.SEVERITY.equals(prop))
+        		continue;
+        	batchProperty(message_id, prop, map.getString(prop));
+        }
+    }
+
     /** Insert a new message
      *  @param type  Message type
      *  @param name Primary name (PV name, ...) to which the msg refers. May be <code>null</code>
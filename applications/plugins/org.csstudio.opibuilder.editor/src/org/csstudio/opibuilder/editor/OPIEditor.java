@@ -64,11 +64,13 @@ import org.csstudio.opibuilder.model.DisplayModel;
 import org.csstudio.opibuilder.model.RulerModel;
 import org.csstudio.opibuilder.palette.OPIEditorPaletteFactory;
 import org.csstudio.opibuilder.palette.WidgetCreationFactory;
+import org.csstudio.opibuilder.persistence.DisplayTemplateCache;
 import org.csstudio.opibuilder.persistence.XMLUtil;
 import org.csstudio.opibuilder.preferences.PreferencesHelper;
 import org.csstudio.opibuilder.runmode.OPIRunner;
 import org.csstudio.opibuilder.runmode.PatchedConnectionLayerClippingStrategy;
 import org.csstudio.opibuilder.util.ErrorHandlerUtil;
+import org.csstudio.opibuilder.util.ResourceUtil;
 import org.csstudio.ui.util.NoResourceEditorInput;
 import org.eclipse.core.filesystem.URIUtil;
 import org.eclipse.core.resources.IFile;
@@ -967,6 +969,10 @@ public class OPIEditor extends GraphicalEditorWithFlyoutPalette {
 				return;
 		}
 
+		// Linking containers and displays that open the OPI again must not use the old content
+		DisplayTemplateCache.getInstance().invalidate(
+				ResourceUtil.getPathInEditor(getOriginEditorInput()));
+
 		getCommandStack().markSaveLocation();
 
 		firePropertyChange(IEditorPart.PROP_DIRTY);
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.XMLTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.csstudio.opibuilder.model.AbstractWidgetModel;
+import org.csstudio.opibuilder.model.DisplayModel;
+import org.csstudio.opibuilder.persistence.DisplayTemplateCache;
+import org.csstudio.opibuilder.persistence.XMLUtil;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.junit.Test;
+
+/** [Headless] JUnit Plug-In test that loads the generated OPIs of
+ *  org.csstudio.opibuilder.performanceTest and reports the time
+ *  and heap used to create the widget models, and the time to embed
+ *  them with and without the {@link DisplayTemplateCache}.
+ *
+ *  <p>The folder of the OPIs can be set with the system property
+ *  <code>opi_performance_dir</code>.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class DisplayLoadPerformanceTest {
+	/** Number of times each display is loaded */
+	private static final int COPIES = 10;
+
+	/** Number of times each display is embedded, like in a linking container */
+	private static final int EMBEDS = 300;
+
+	private static File[] getOPIs(){
+		final File dir = new File(System.getProperty("opi_performance_dir",
+				"../org.csstudio.opibuilder.performanceTest/ScalabilityTests"));
+		final File[] opis = dir.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(".opi");
+			}
+		});
+		assertNotNull("Cannot list OPIs in " + dir.getAbsolutePath(), opis);
+		return opis;
+	}
+
+	private static long getUsedMemory(){
+		final Runtime runtime = Runtime.getRuntime();
+		for(int i=0; i<3; i++)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	@Test
+	public void testLoadDisplays() throws Exception {
+		for(File opi : getOPIs()){
+			// Warm up, which also loads the classes of each widget type
+			final DisplayModel first = new DisplayModel();
+			XMLUtil.fillDisplayModelFromInputStream(new FileInputStream(opi), first);
+			final int widgets = first.getAllDescendants().size();
+
+			final List<DisplayModel> displays = new ArrayList<DisplayModel>();
+			final long memory = getUsedMemory();
+			final long start = System.nanoTime();
+			for(int i=0; i<COPIES; i++){
+				final DisplayModel display = new DisplayModel();
+				XMLUtil.fillDisplayModelFromInputStream(new FileInputStream(opi), display);
+				displays.add(display);
+			}
+			final double ms = (System.nanoTime() - start) / 1e6 / COPIES;
+			final double kb = (getUsedMemory() - memory) / 1024.0 / COPIES;
+			System.out.println(String.format("%s: %d widgets, %.1f ms, %.0f kB per display, %.2f kB per widget",
+					opi.getName(), widgets, ms, kb, widgets > 0 ? kb / widgets : 0.0));
+
+			// Loaded models have the same widgets and property values as the first one
+			for(DisplayModel display : displays)
+				assertSameWidgets(first, display);
+		}
+	}
+
+	private static void assertSameWidgets(DisplayModel first, DisplayModel display){
+		final List<AbstractWidgetModel> expected = first.getAllDescendants();
+		final List<AbstractWidgetModel> actual = display.getAllDescendants();
+		assertEquals(expected.size(), actual.size());
+		for(int i=0; i<expected.size(); i++){
+			final AbstractWidgetModel widget = actual.get(i);
+			assertEquals(expected.get(i).getAllPropertyIDs(), widget.getAllPropertyIDs());
+			for(String prop_id : widget.getAllPropertyIDs())
+				assertTrue(widget.getProperty(prop_id) != null);
+			assertEquals(expected.get(i).getName(), widget.getName());
+			assertEquals(expected.get(i).getBounds(), widget.getBounds());
+		}
+	}
+
+	@Test
+	public void testTemplateCache() throws Exception {
+		final DisplayTemplateCache cache = DisplayTemplateCache.getInstance();
+		for(File opi : getOPIs()){
+			final IPath path = new Path(opi.getAbsolutePath());
+			final DisplayModel first = new DisplayModel(path);
+			XMLUtil.fillDisplayModelFromInputStream(new FileInputStream(opi), first);
+
+			// Without the cache, every embed reads and parses the file
+			long start = System.nanoTime();
+			for(int i=0; i<EMBEDS; i++){
+				cache.clear();
+				final DisplayModel display = new DisplayModel(path);
+				XMLUtil.fillDisplayModelFromPath(path, display, null, false);
+			}
+			final double uncached = (System.nanoTime() - start) / 1e6 / EMBEDS;
+
+			// With the cache, only the first embed parses the file
+			cache.clear();
+			final long hits = cache.getHits();
+			final List<DisplayModel> displays = new ArrayList<DisplayModel>();
+			start = System.nanoTime();
+			for(int i=0; i<EMBEDS; i++){
+				final DisplayModel display = new DisplayModel(path);
+				XMLUtil.fillDisplayModelFromPath(path, display, null, false);
+				displays.add(display);
+			}
+			final double cached = (System.nanoTime() - start) / 1e6 / EMBEDS;
+			assertEquals(EMBEDS - 1, cache.getHits() - hits);
+			System.out.println(String.format("%s: %d embeds, %.2f ms without cache, %.2f ms with cache per display",
+					opi.getName(), EMBEDS, uncached, cached));
+
+			// Models built from the cached file are the same as the ones parsed from the file
+			for(DisplayModel display : displays)
+				assertSameWidgets(first, display);
+		}
+	}
+
+	@Test
+	public void testTemplateCacheInvalidation() throws Exception {
+		final File opi = File.createTempFile("template", ".opi");
+		opi.deleteOnExit();
+		final InputStream in = new FileInputStream(getOPIs()[0]);
+		final OutputStream out = new FileOutputStream(opi);
+		final byte[] buffer = new byte[8192];
+		int count;
+		while((count = in.read(buffer)) > 0)
+			out.write(buffer, 0, count);
+		in.close();
+		out.close();
+
+		final DisplayTemplateCache cache = DisplayTemplateCache.getInstance();
+		final IPath path = new Path(opi.getAbsolutePath());
+		cache.clear();
+		final long misses = cache.getMisses();
+		XMLUtil.fillDisplayModelFromPath(path, new DisplayModel(path), null, false);
+		XMLUtil.fillDisplayModelFromPath(path, new DisplayModel(path), null, false);
+		assertEquals(1, cache.getMisses() - misses);
+
+		// A modified file is parsed again
+		opi.setLastModified(opi.lastModified() + 2000);
+		XMLUtil.fillDisplayModelFromPath(path, new DisplayModel(path), null, false);
+		assertEquals(2, cache.getMisses() - misses);
+
+		// A saved file is parsed again
+		cache.invalidate(path);
+		XMLUtil.fillDisplayModelFromPath(path, new DisplayModel(path), null, false);
+		assertEquals(3, cache.getMisses() - misses);
+		assertEquals(1, cache.size());
+	}
+}
@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.script;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.csstudio.opibuilder.model.DisplayModel;
+import org.csstudio.opibuilder.script.RuleInputs.Kind;
+import org.csstudio.simplepv.IPV;
+import org.csstudio.simplepv.IPVListener;
+import org.epics.vtype.VType;
+import org.epics.vtype.ValueFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ImporterTopLevel;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+/**JUnit test of the {@link CompiledRule}, which compares the compiled rules with
+ * the JavaScript of the rules executed by Rhino, and a benchmark of both.
+ * @author agent
+ *
+ */
+@SuppressWarnings("nls")
+public class CompiledRuleTest {
+
+	/** Number of rules in the benchmark */
+	private static final int RULES = 2000;
+
+	/** Number of times each rule is evaluated in the benchmark */
+	private static final int ROUNDS = 50;
+
+	/** PV with a fixed value */
+	private static class DummyPV implements IPV {
+		final String name;
+		VType value;
+
+		DummyPV(String name, VType value) {
+			this.name = name;
+			this.value = value;
+		}
+
+		public void addListener(IPVListener listener) { }
+		public List<VType> getAllBufferedValues() { return null; }
+		public String getName() { return name; }
+		public VType getValue() { return value; }
+		public boolean isBufferingValues() { return false; }
+		public boolean isConnected() { return true; }
+		public boolean isPaused() { return false; }
+		public boolean isStarted() { return true; }
+		public boolean isWriteAllowed() { return false; }
+		public void removeListener(IPVListener listener) { }
+		public void setPaused(boolean paused) { }
+		public void setValue(Object value) { }
+		public boolean setValue(Object value, int timeout) { return false; }
+		public void start() { }
+		public void stop() { }
+	}
+
+	private Context context;
+
+	@Before
+	public void enterContext() {
+		context = Context.enter();
+		context.setApplicationClassLoader(getClass().getClassLoader());
+	}
+
+	@After
+	public void exitContext() {
+		Context.exit();
+	}
+
+	private static IPV[] createPVs(double... values) {
+		final IPV[] pvs = new IPV[values.length];
+		for(int i=0; i<values.length; i++)
+			pvs[i] = new DummyPV("pv" + i, ValueFactory.newVDouble(values[i]));
+		return pvs;
+	}
+
+	private Scriptable createScope(IPV[] pvs, Object widget) {
+		final Scriptable scope = new ImporterTopLevel(context);
+		ScriptableObject.putProperty(scope, ScriptService.PVS, Context.javaToJS(pvs, scope));
+		if(widget != null)
+			ScriptableObject.putProperty(scope, ScriptService.WIDGET, Context.javaToJS(widget, scope));
+		return scope;
+	}
+
+	/** Evaluate an expression as JavaScript, with the variables of a rule */
+	private Object evaluateJavaScript(String expression, IPV[] pvs) {
+		final StringBuilder sb = new StringBuilder(
+				"importPackage(Packages.org.csstudio.opibuilder.scriptUtil);\n");
+		for(int i=0; i<pvs.length; i++){
+			sb.append("var pv" + i + " = PVUtil.getDouble(pvs[" + i + "]);\n");
+			sb.append("var pvInt" + i + " = PVUtil.getLong(pvs[" + i + "]);\n");
+			sb.append("var pvStr" + i + " = PVUtil.getString(pvs[" + i + "]);\n");
+			sb.append("var pvSev" + i + " = PVUtil.getSeverity(pvs[" + i + "]);\n");
+		}
+		sb.append(expression);
+		final Object result = context.evaluateString(createScope(pvs, null), sb.toString(), "test", 1, null);
+		return Context.jsToJava(result, Object.class);
+	}
+
+	private static Object evaluateCompiled(String expression, IPV[] pvs) throws ParseException {
+		final Set<Kind> used = EnumSet.noneOf(Kind.class);
+		final RuleExpression compiled = RuleExpression.parse(expression, pvs.length, used);
+		final RuleInputs inputs = new RuleInputs(pvs, used);
+		inputs.read();
+		return compiled.evaluate(inputs);
+	}
+
+	@Test
+	public void testExpressions() throws Exception {
+		final IPV[] pvs = createPVs(7.5, 0, -2, Double.NaN);
+		final String[] expressions = {
+				"pv0 > 5 && pv1 == 0",
+				"pv0 < 5 || pv1 != 0",
+				"!(pv0 >= 7.5) || pv2 <= -2",
+				"pv3 == pv3",
+				"pv3 != pv3 && true",
+				"pv0 + pv1 * 2 - pv2 / 4 % 3",
+				"-pv0 * -(pv2 + 1.5e1)",
+				"pv0 / pv1",
+				"pvSev0 == 0 && pvSev3 === 0",
+				"pvInt0 == 7 && pvInt1 < 1 && pvInt2 != -1",
+				"pvInt0 - 1 + -pvInt2 * 2",
+				"pvStr0 != 'x' && pvStr1 == pvStr1 + ''",
+				"'abc' < 'abd' && pvStr1 >= pvStr2",
+				"pvStr0 + '\\n' + \"x\"",
+				"(pv0 > 1) == (pv1 > 1)",
+				"true",
+				".5 + 5.",
+		};
+		for(String expression : expressions){
+			final Object expected = evaluateJavaScript(expression, pvs);
+			final Object actual = evaluateCompiled(expression, pvs);
+			if(expected instanceof Number)
+				assertEquals(expression, ((Number)expected).doubleValue(), ((Number)actual).doubleValue(), 0.0);
+			else
+				assertEquals(expression, expected, actual);
+		}
+	}
+
+	@Test
+	public void testUnsupported() throws Exception {
+		final String[] expressions = {
+				"Math.abs(pv0) > 1",
+				"pv0 > '5'",
+				"pv0 && pv1",
+				"pvStr1 + pv0",
+				"pvStr0 === '1'",
+				"pvInt0 !== 1",
+				"pvStr0 == pvStr1",
+				"pvInt0 + 1",
+				"pv9 > 0",
+				"pv0 = 5",
+				"010 > pv0",
+				"0x10 > pv0",
+				"pv0 > 5 ? 1 : 0",
+				"widget.getPropertyValue('visible')",
+				"pv0 > 1 & pv1 > 1",
+				"(pv0 > 1",
+				"",
+		};
+		final IPV[] pvs = createPVs(1, 2);
+		for(String expression : expressions){
+			try {
+				evaluateCompiled(expression, pvs);
+				fail("Compiled unsupported expression " + expression);
+			} catch (ParseException e) {
+				// expected
+			}
+		}
+	}
+
+	private static RuleData createRule(DisplayModel display, int index, String expression) {
+		final RuleData rule = new RuleData(display);
+		rule.setName("Rule " + index);
+		rule.setPropId(DisplayModel.PROP_SHOW_GRID);
+		rule.addPV(new PVTuple("loc://a" + index, true));
+		rule.addPV(new PVTuple("loc://b" + index, true));
+		rule.addExpression(new Expression(expression, true));
+		return rule;
+	}
+
+	@Test
+	public void testFallback() throws Exception {
+		final DisplayModel display = new DisplayModel();
+		assertNotNull(CompiledRule.compile(createRule(display, 0, "pv0 > 5 && pv1 == 0")));
+		assertNull(CompiledRule.compile(createRule(display, 0, "Math.abs(pv0) > 5")));
+		assertNull(CompiledRule.compile(createRule(display, 0, "pv0 + 1")));
+	}
+
+	@Test
+	public void testBenchmark() throws Exception {
+		final DisplayModel display = new DisplayModel();
+		final List<Script> scripts = new ArrayList<Script>();
+		final List<Scriptable> scopes = new ArrayList<Scriptable>();
+		final List<CompiledRule> rules = new ArrayList<CompiledRule>();
+		final List<RuleInputs> inputs = new ArrayList<RuleInputs>();
+		for(int i=0; i<RULES; i++){
+			final RuleData rule = createRule(display, i, "pv0 > " + (i % 10) + " && pv1 == 0");
+			final IPV[] pvs = new IPV[]{
+					new DummyPV("a", ValueFactory.newVDouble((double)(i % 13))),
+					new DummyPV("b", ValueFactory.newVDouble((double)(i % 2)))};
+			scripts.add(context.compileString(rule.generateScript(), "rule", 1, null));
+			scopes.add(createScope(pvs, display));
+			final CompiledRule compiled = CompiledRule.compile(rule);
+			rules.add(compiled);
+			inputs.add(compiled.createInputs(pvs));
+		}
+
+		// Both give the same results
+		for(int i=0; i<RULES; i++){
+			scripts.get(i).exec(context, scopes.get(i));
+			final Object expected = display.getPropertyValue(DisplayModel.PROP_SHOW_GRID);
+			display.setPropertyValue(DisplayModel.PROP_SHOW_GRID, !(Boolean)expected);
+			rules.get(i).execute(display, inputs.get(i));
+			assertEquals("Rule " + i, expected, display.getPropertyValue(DisplayModel.PROP_SHOW_GRID));
+		}
+
+		long start = System.nanoTime();
+		for(int round=0; round<ROUNDS; round++)
+			for(int i=0; i<RULES; i++)
+				scripts.get(i).exec(context, scopes.get(i));
+		final double rhino = RULES * ROUNDS / ((System.nanoTime() - start) / 1e9);
+
+		start = System.nanoTime();
+		for(int round=0; round<ROUNDS; round++)
+			for(int i=0; i<RULES; i++)
+				rules.get(i).execute(display, inputs.get(i));
+		final double compiled = RULES * ROUNDS / ((System.nanoTime() - start) / 1e9);
+
+		System.out.println(String.format("%d rules: Rhino %.0f, compiled %.0f evaluations per second",
+				RULES, rhino, compiled));
+	}
+}
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.script;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.InputStream;
+
+import org.csstudio.opibuilder.editparts.AbstractBaseEditPart;
+import org.csstudio.opibuilder.model.DisplayModel;
+import org.csstudio.opibuilder.persistence.URLPath;
+import org.csstudio.simplepv.IPV;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.draw2d.IFigure;
+import org.junit.Before;
+import org.junit.Test;
+
+/**JUnit test of the {@link ScriptCache} and how script stores share compiled scripts.
+ * @author agent
+ *
+ */
+@SuppressWarnings("nls")
+public class ScriptCacheTest {
+
+	/** Number of compilations by the test stores */
+	private static int compilations;
+
+	/** Script store that doesn't share its compiled script */
+	private static class TestScriptStore extends AbstractScriptStore {
+		// No initializer, the script is compiled by the super constructor
+		Object script;
+
+		TestScriptStore(ScriptData scriptData, AbstractBaseEditPart editpart) throws Exception {
+			super(scriptData, editpart, new IPV[0]);
+		}
+
+		@Override
+		protected void initScriptEngine() throws Exception {
+			// no script engine needed
+		}
+
+		@Override
+		protected void compileString(String string) throws Exception {
+			++compilations;
+			script = new Object();
+		}
+
+		@Override
+		protected void compileInputStream(InputStream s) throws Exception {
+			s.close();
+			++compilations;
+			script = new Object();
+		}
+
+		@Override
+		protected void execScript(IPV triggerPV) throws Exception {
+			// nothing to execute
+		}
+	}
+
+	/** Script store that shares its compiled script */
+	private static class SharedTestScriptStore extends TestScriptStore implements ISharedScriptStore {
+		SharedTestScriptStore(ScriptData scriptData, AbstractBaseEditPart editpart) throws Exception {
+			super(scriptData, editpart);
+		}
+
+		@Override
+		public Object getCompiledScript() {
+			return script;
+		}
+
+		@Override
+		public void setCompiledScript(Object compiled) {
+			script = compiled;
+		}
+	}
+
+	private static AbstractBaseEditPart createEditPart() {
+		final AbstractBaseEditPart editpart = new AbstractBaseEditPart() {
+			@Override
+			protected IFigure doCreateFigure() {
+				return null;
+			}
+
+			@Override
+			protected void registerPropertyChangeHandlers() {
+				// no figure to update
+			}
+		};
+		editpart.setModel(new DisplayModel());
+		return editpart;
+	}
+
+	private static ScriptData createEmbeddedScript(String text) {
+		final ScriptData scriptData = new ScriptData();
+		scriptData.setEmbedded(true);
+		scriptData.setScriptText(text);
+		return scriptData;
+	}
+
+	private static File createScriptFile() throws Exception {
+		final File file = File.createTempFile("script", ".js");
+		file.deleteOnExit();
+		final FileWriter writer = new FileWriter(file);
+		writer.write("var x = 1;");
+		writer.close();
+		return file;
+	}
+
+	@Before
+	public void clearCache() {
+		ScriptCache.getInstance().clear();
+		compilations = 0;
+	}
+
+	@Test
+	public void testLeastRecentlyUsed() {
+		final ScriptCache cache = new ScriptCache(2);
+		final Object a = new Object(), b = new Object(), c = new Object();
+		cache.put("a", a);
+		cache.put("b", b);
+		assertSame(a, cache.get("a"));
+		// b is the least recently used
+		cache.put("c", c);
+		assertEquals(2, cache.size());
+		assertNull(cache.get("b"));
+		assertSame(a, cache.get("a"));
+		assertSame(c, cache.get("c"));
+		assertEquals(3, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testDisabled() {
+		final ScriptCache cache = new ScriptCache(0);
+		cache.put("a", new Object());
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getMisses());
+	}
+
+	@Test
+	public void testFileKey() throws Exception {
+		final File file = createScriptFile();
+		final IPath path = new Path(file.getAbsolutePath());
+		final String key = ScriptCache.getFileKey("engine", path);
+		assertNotNull(key);
+		assertEquals(key, ScriptCache.getFileKey("engine", path));
+		assertFalse(key.equals(ScriptCache.getFileKey("other", path)));
+		// The key changes when the file is modified
+		file.setLastModified(file.lastModified() + 2000);
+		assertFalse(key.equals(ScriptCache.getFileKey("engine", path)));
+		// Files without modification time are not cached
+		assertNull(ScriptCache.getFileKey("engine", new URLPath("http://localhost/script.js")));
+	}
+
+	@Test
+	public void testSharing() throws Exception {
+		final ScriptCache cache = ScriptCache.getInstance();
+		final long hits = cache.getHits(), misses = cache.getMisses();
+		final SharedTestScriptStore first =
+				new SharedTestScriptStore(createEmbeddedScript("a"), createEditPart());
+		final SharedTestScriptStore second =
+				new SharedTestScriptStore(createEmbeddedScript("a"), createEditPart());
+		final SharedTestScriptStore other =
+				new SharedTestScriptStore(createEmbeddedScript("b"), createEditPart());
+		assertEquals(2, compilations);
+		assertSame(first.script, second.script);
+		assertFalse(first.script == other.script);
+		assertEquals(1, cache.getHits() - hits);
+		assertEquals(2, cache.getMisses() - misses);
+
+		// Stores that don't share compile each script and don't use the cache
+		new TestScriptStore(createEmbeddedScript("a"), createEditPart());
+		new TestScriptStore(createEmbeddedScript("a"), createEditPart());
+		assertEquals(4, compilations);
+		assertEquals(1, cache.getHits() - hits);
+		assertEquals(2, cache.getMisses() - misses);
+	}
+
+	@Test
+	public void testInvalidation() throws Exception {
+		final File file = createScriptFile();
+		final ScriptData scriptData = new ScriptData(new Path(file.getAbsolutePath()));
+		final SharedTestScriptStore first = new SharedTestScriptStore(scriptData, createEditPart());
+		final SharedTestScriptStore second = new SharedTestScriptStore(scriptData, createEditPart());
+		assertEquals(1, compilations);
+		assertSame(first.script, second.script);
+
+		// A modified script file is compiled again
+		file.setLastModified(file.lastModified() + 2000);
+		final SharedTestScriptStore third = new SharedTestScriptStore(scriptData, createEditPart());
+		assertEquals(2, compilations);
+		assertFalse(first.script == third.script);
+	}
+}
@@ -0,0 +1,331 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.csstudio.simplepv.AbstractPVFactory;
+import org.csstudio.simplepv.ExceptionHandler;
+import org.csstudio.simplepv.IPV;
+import org.csstudio.simplepv.IPVListener;
+import org.epics.vtype.VType;
+import org.junit.Test;
+
+/**JUnit test of the {@link SharedPVPool}, using dummy PVs
+ * @author agent
+ *
+ */
+@SuppressWarnings("nls")
+public class SharedPVPoolTest {
+
+	/** Executor that runs tasks in the calling thread */
+	private static final Executor DIRECT = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	/** PV that connects on start and can be given values */
+	private static class DummyPV implements IPV {
+		final String name;
+		final List<IPVListener> listeners = new ArrayList<IPVListener>();
+		VType value;
+		boolean started = false;
+
+		DummyPV(String name) {
+			this.name = name;
+		}
+
+		void update(VType value) {
+			this.value = value;
+			for(IPVListener listener : listeners)
+				listener.valueChanged(this);
+		}
+
+		public void addListener(IPVListener listener) { listeners.add(listener); }
+		public List<VType> getAllBufferedValues() { return null; }
+		public String getName() { return name; }
+		public VType getValue() { return value; }
+		public boolean isBufferingValues() { return false; }
+		public boolean isConnected() { return started; }
+		public boolean isPaused() { return false; }
+		public boolean isStarted() { return started; }
+		public boolean isWriteAllowed() { return true; }
+		public void removeListener(IPVListener listener) { listeners.remove(listener); }
+		public void setPaused(boolean paused) { }
+		public void setValue(Object value) { }
+		public boolean setValue(Object value, int timeout) { return true; }
+
+		public void start() {
+			started = true;
+			for(IPVListener listener : listeners)
+				listener.connectionChanged(this);
+		}
+
+		public void stop() {
+			started = false;
+		}
+	}
+
+	private static class DummyFactory extends AbstractPVFactory {
+		final List<DummyPV> created = Collections.synchronizedList(new ArrayList<DummyPV>());
+
+		@Override
+		public IPV createPV(String name, boolean readOnly, long minUpdatePeriodInMs,
+				boolean bufferAllValues, Executor notificationThread,
+				ExceptionHandler exceptionHandler) {
+			final DummyPV pv = new DummyPV(name);
+			created.add(pv);
+			return pv;
+		}
+	}
+
+	private static class CountingListener extends IPVListener.Stub {
+		final AtomicInteger connections = new AtomicInteger();
+		final AtomicInteger values = new AtomicInteger();
+
+		@Override
+		public void connectionChanged(IPV pv) {
+			connections.incrementAndGet();
+		}
+
+		@Override
+		public void valueChanged(IPV pv) {
+			values.incrementAndGet();
+		}
+	}
+
+	@Test
+	public void testUpdateBucket() {
+		assertEquals(1, SharedPVPool.getUpdateBucket(0));
+		assertEquals(2, SharedPVPool.getUpdateBucket(3));
+		assertEquals(10, SharedPVPool.getUpdateBucket(10));
+		assertEquals(10, SharedPVPool.getUpdateBucket(19));
+		assertEquals(50, SharedPVPool.getUpdateBucket(99));
+		assertEquals(100, SharedPVPool.getUpdateBucket(100));
+		assertEquals(200, SharedPVPool.getUpdateBucket(250));
+		assertEquals(500, SharedPVPool.getUpdateBucket(999));
+	}
+
+	@Test
+	public void testSharing() throws Exception {
+		final DummyFactory factory = new DummyFactory();
+		final SharedPVPool pool = new SharedPVPool(factory, null);
+
+		final int count = 200;
+		final IPV[] pvs = new IPV[count];
+		final CountingListener[] listeners = new CountingListener[count];
+		for(int i=0; i<count; i++){
+			// Slightly different update periods share the reader
+			pvs[i] = pool.createPV("pv", false, 100 + i % 50, DIRECT);
+			listeners[i] = new CountingListener();
+			pvs[i].addListener(listeners[i]);
+		}
+		// Different PV
+		final IPV other = pool.createPV("other", false, 100, DIRECT);
+		assertEquals(0, factory.created.size());
+
+		for(IPV pv : pvs)
+			pv.start();
+		other.start();
+		System.out.println(pool.getStatistics());
+		assertEquals(2, factory.created.size());
+		assertEquals(2, pool.getReaderCount());
+		assertEquals(count + 1, pool.getAttachedCount());
+
+		final DummyPV reader = factory.created.get(0);
+		reader.update(null);
+		for(int i=0; i<count; i++){
+			assertTrue(pvs[i].isConnected());
+			assertEquals(1, listeners[i].connections.get());
+			assertEquals(1, listeners[i].values.get());
+		}
+
+		// Paused PV is not notified
+		pvs[0].setPaused(true);
+		reader.update(null);
+		assertEquals(1, listeners[0].values.get());
+		assertEquals(2, listeners[1].values.get());
+
+		// Reader is stopped with the last PV
+		for(int i=0; i<count-1; i++)
+			pvs[i].stop();
+		assertTrue(reader.isStarted());
+		assertFalse(pvs[0].isConnected());
+		pvs[count-1].stop();
+		assertFalse(reader.isStarted());
+		assertEquals(1, pool.getReaderCount());
+
+		// Restart creates a new reader
+		pvs[0].start();
+		assertEquals(3, factory.created.size());
+		pvs[0].stop();
+		other.stop();
+		assertEquals(0, pool.getReaderCount());
+	}
+
+	@Test
+	public void testSlowListener() throws Exception {
+		final DummyFactory factory = new DummyFactory();
+		final List<IPVListener> reported = new ArrayList<IPVListener>();
+		final SharedPVPool pool = new SharedPVPool(factory, null, 50,
+				new SharedPVPool.SlowListenerHandler() {
+			@Override
+			public void handleSlowListener(IPV pv, IPVListener listener, long millis) {
+				assertEquals("pv", pv.getName());
+				assertTrue(millis >= 50);
+				reported.add(listener);
+			}
+		});
+		final CountingListener fast = new CountingListener();
+		final CountingListener slow = new CountingListener() {
+			@Override
+			public void valueChanged(IPV pv) {
+				super.valueChanged(pv);
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		final IPV first = pool.createPV("pv", false, 100, DIRECT);
+		final IPV second = pool.createPV("pv", false, 100, DIRECT);
+		first.addListener(fast);
+		second.addListener(slow);
+		first.start();
+		second.start();
+		factory.created.get(0).update(null);
+		assertEquals(1, reported.size());
+		assertTrue(reported.get(0) == slow);
+
+		// Disabled
+		pool.setSlowListenerThreshold(0);
+		factory.created.get(0).update(null);
+		assertEquals(1, reported.size());
+		assertEquals(2, fast.values.get());
+		first.stop();
+		second.stop();
+	}
+
+	@Test(timeout=10000)
+	public void testSlowStart() throws Exception {
+		final CountDownLatch creating = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final DummyFactory factory = new DummyFactory() {
+			@Override
+			public IPV createPV(String name, boolean readOnly, long minUpdatePeriodInMs,
+					boolean bufferAllValues, Executor notificationThread,
+					ExceptionHandler exceptionHandler) {
+				if(name.equals("slow")){
+					creating.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return super.createPV(name, readOnly, minUpdatePeriodInMs, bufferAllValues,
+						notificationThread, exceptionHandler);
+			}
+		};
+		final SharedPVPool pool = new SharedPVPool(factory, null);
+		final IPV first = pool.createPV("slow", false, 100, DIRECT);
+		final IPV second = pool.createPV("slow", false, 100, DIRECT);
+		final CountingListener firstListener = new CountingListener();
+		final CountingListener secondListener = new CountingListener();
+		first.addListener(firstListener);
+		second.addListener(secondListener);
+		final List<Exception> errors = Collections.synchronizedList(new ArrayList<Exception>());
+		final Thread[] starters = new Thread[2];
+		for(int i=0; i<starters.length; i++){
+			final IPV pv = i == 0 ? first : second;
+			starters[i] = new Thread("Start " + i) {
+				@Override
+				public void run() {
+					try {
+						pv.start();
+					} catch (Exception e) {
+						errors.add(e);
+					}
+				}
+			};
+		}
+		starters[0].start();
+		assertTrue(creating.await(5, TimeUnit.SECONDS));
+		starters[1].start();
+
+		// While the slow reader is created, other PVs and the pool are not blocked
+		final IPV fast = pool.createPV("fast", false, 100, DIRECT);
+		fast.start();
+		assertTrue(fast.isConnected());
+		assertEquals(2, pool.getReaderCount());
+		assertFalse(second.isStarted());
+
+		release.countDown();
+		for(Thread starter : starters)
+			starter.join();
+		assertTrue(errors.isEmpty());
+		assertEquals(2, factory.created.size());
+		assertEquals(3, pool.getAttachedCount());
+		assertTrue(first.isConnected());
+		assertTrue(second.isConnected());
+		assertEquals(1, firstListener.connections.get());
+		assertEquals(1, secondListener.connections.get());
+		first.stop();
+		second.stop();
+		fast.stop();
+		assertEquals(0, pool.getReaderCount());
+	}
+
+	@Test
+	public void testListenerException() throws Exception {
+		final DummyFactory factory = new DummyFactory();
+		final List<Exception> handled = new ArrayList<Exception>();
+		final SharedPVPool pool = new SharedPVPool(factory, new ExceptionHandler() {
+			@Override
+			public void handleException(Exception exception) {
+				handled.add(exception);
+			}
+		});
+		final IPV first = pool.createPV("pv", false, 100, DIRECT);
+		final IPV second = pool.createPV("pv", false, 100, DIRECT);
+		first.addListener(new IPVListener.Stub() {
+			@Override
+			public void valueChanged(IPV pv) {
+				throw new IllegalStateException("Failing listener");
+			}
+		});
+		final CountingListener firstListener = new CountingListener();
+		final CountingListener secondListener = new CountingListener();
+		first.addListener(firstListener);
+		second.addListener(secondListener);
+		first.start();
+		second.start();
+
+		// The failing listener doesn't keep the event from the other listeners and PVs
+		factory.created.get(0).update(null);
+		assertEquals(1, firstListener.values.get());
+		assertEquals(1, secondListener.values.get());
+		assertEquals(1, handled.size());
+		assertTrue(handled.get(0) instanceof IllegalStateException);
+		first.stop();
+		second.stop();
+	}
+}
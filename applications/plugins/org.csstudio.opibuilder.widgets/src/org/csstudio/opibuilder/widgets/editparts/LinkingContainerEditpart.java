@@ -197,9 +197,8 @@ public class LinkingContainerEditpart extends AbstractContainerEditpart{
 				}
 			});
 
-			XMLUtil.fillDisplayModelFromInputStream(
-					ResourceUtil.pathToInputStream(path), tempDisplayModel,
-					getViewer().getControl().getDisplay());
+			XMLUtil.fillDisplayModelFromPath(path, tempDisplayModel,
+					getViewer().getControl().getDisplay(), true);
 			AbstractContainerModel loadTarget = tempDisplayModel;
 
 			if(!getWidgetModel().getGroupName().trim().equals("")){ //$NON-NLS-1$
@@ -11,6 +11,7 @@ import java.util.logging.Logger;
 
 import org.csstudio.opibuilder.preferences.PreferencesHelper;
 import org.csstudio.opibuilder.script.ScriptService;
+import org.csstudio.opibuilder.util.BOYPVFactory;
 import org.csstudio.opibuilder.util.ConsoleService;
 import org.csstudio.opibuilder.util.GUIRefreshThread;
 import org.csstudio.opibuilder.util.MediaService;
@@ -101,8 +102,13 @@ public class OPIBuilderPlugin extends AbstractUIPlugin {
 							PreferencesHelper.FONT_FILE))
 						MediaService.getInstance().reloadFontFile();
 					else if (event.getProperty().equals(
-							PreferencesHelper.OPI_GUI_REFRESH_CYCLE))
+							PreferencesHelper.OPI_GUI_REFRESH_CYCLE) ||
+							event.getProperty().equals(PreferencesHelper.OPI_GUI_REFRESH_BATCH) ||
+							event.getProperty().equals(PreferencesHelper.OPI_GUI_REFRESH_BUDGET))
 						GUIRefreshThread.getInstance(true).reLoadGUIRefreshCycle();
+					else if (event.getProperty().equals(
+							PreferencesHelper.PV_SLOW_LISTENER_THRESHOLD))
+						BOYPVFactory.reloadSlowListenerThreshold();
 					else if (event.getProperty().equals(
 							PreferencesHelper.DISABLE_ADVANCED_GRAPHICS)) {
 						String disabled = PreferencesHelper.isAdvancedGraphicsDisabled() ? "true" : "false";//$NON-NLS-1$ //$NON-NLS-2$	
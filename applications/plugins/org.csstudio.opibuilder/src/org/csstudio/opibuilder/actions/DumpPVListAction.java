@@ -12,6 +12,9 @@ import java.util.Arrays;
 import org.csstudio.opibuilder.OPIBuilderPlugin;
 import org.csstudio.opibuilder.editparts.AbstractBaseEditPart;
 import org.csstudio.opibuilder.editparts.DisplayEditpart;
+import org.csstudio.opibuilder.script.ScriptCache;
+import org.csstudio.opibuilder.util.BOYPVFactory;
+import org.csstudio.opibuilder.util.GUIRefreshThread;
 import org.eclipse.jface.action.IAction;
 import org.eclipse.jface.dialogs.Dialog;
 import org.eclipse.jface.dialogs.IDialogConstants;
@@ -25,10 +28,12 @@ import org.eclipse.swt.dnd.TextTransfer;
 import org.eclipse.swt.dnd.Transfer;
 import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
-import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.Text;
 import org.eclipse.ui.IObjectActionDelegate;
@@ -101,12 +106,24 @@ public class DumpPVListAction implements IObjectActionDelegate {
 			getShell().setText("PV List");			
 			getShell().setMinimumSize(200, 300);
 			Composite container = (Composite)super.createDialogArea(parent);			
-			FillLayout layout = new FillLayout();
+			GridLayout layout = new GridLayout();
 			layout.marginHeight = 10;
 			layout.marginWidth = 5;			
 			container.setLayout(layout);
 			Text text = new Text(container, SWT.BORDER|SWT.MULTI|SWT.V_SCROLL);			
 			text.setText(pvsText);			
+			text.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+			//how many PVs of all open OPIs share the PVs of the connection layer
+			String statistics = BOYPVFactory.getSharedPVStatistics();
+			//how the GUI of all open OPIs is refreshed
+			if(!statistics.isEmpty())
+				statistics += "\n"; //$NON-NLS-1$
+			statistics += GUIRefreshThread.getInstance(true).getStatistics();
+			//how many widgets share compiled scripts
+			statistics += "\n" + ScriptCache.getInstance(); //$NON-NLS-1$
+			Label label = new Label(container, SWT.WRAP);
+			label.setText(statistics);
+			label.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
 			return container;
 		}
 		
@@ -8,6 +8,7 @@
 package org.csstudio.opibuilder.actions;
 
 import org.csstudio.opibuilder.OPIBuilderPlugin;
+import org.csstudio.opibuilder.persistence.DisplayTemplateCache;
 import org.csstudio.opibuilder.runmode.IOPIRuntime;
 import org.csstudio.opibuilder.runmode.OPIView;
 import org.csstudio.opibuilder.util.ErrorHandlerUtil;
@@ -41,6 +42,8 @@ public class RefreshOPIAction extends Action {
     public void run() {
     	try {
     	    OPIView.ignoreMemento();
+    	    // Read the OPI and the OPIs embedded in it from the files again
+    	    DisplayTemplateCache.getInstance().clear();
 			opiRuntime.setOPIInput(opiRuntime.getOPIInput());
 		} catch (PartInitException e) {
 			ErrorHandlerUtil.handleError("Failed to refresh OPI", e);
@@ -13,6 +13,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import org.csstudio.opibuilder.model.AbstractWidgetModel;
 import org.csstudio.opibuilder.util.AlarmRepresentationScheme;
+import org.csstudio.opibuilder.util.BOYPVFactory;
 import org.csstudio.opibuilder.visualparts.BorderStyle;
 import org.csstudio.simplepv.IPV;
 import org.csstudio.simplepv.IPVListener;
@@ -51,6 +52,11 @@ public class ConnectionHandler {
 			else
 				markWidgetAsDisconnected(pv);
 		}		
+		
+		@Override
+		public String toString() {
+			return "Connection handler of " + BOYPVFactory.getWidgetDescription(widgetModel); //$NON-NLS-1$
+		}
 	
 	}
 
@@ -93,6 +93,12 @@ public class PVWidgetEditpartDelegate implements IPVWidgetEditpart {
 			if(isControlPV)
 				updateWritable(editpart.getWidgetModel(), pvMap.get(pvPropID));
 		}
+
+		@Override
+		public String toString() {
+			return BOYPVFactory.getWidgetDescription(editpart.getWidgetModel())
+					+ ", property " + pvPropID; //$NON-NLS-1$
+		}
 	}
 	//invisible border for no_alarm state, this can prevent the widget from resizing
 	//when alarm turn back to no_alarm state/
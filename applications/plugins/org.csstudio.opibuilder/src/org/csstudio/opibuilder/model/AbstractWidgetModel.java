@@ -215,8 +215,6 @@ public abstract class AbstractWidgetModel implements IAdaptable,
 	 */
 	private List<AbstractWidgetProperty> runtimePropertyList;
 	
-	private Map<String, IPropertyDescriptor> propertyDescriptors;
-	
 	private AbstractContainerModel parent;
 	
 	private LinkedHashMap<StringProperty, PVValueProperty> pvMap;
@@ -236,7 +234,6 @@ public abstract class AbstractWidgetModel implements IAdaptable,
 
 	public AbstractWidgetModel() {
 		propertyMap = new HashMap<String, AbstractWidgetProperty>();
-		propertyDescriptors = new HashMap<String, IPropertyDescriptor>();
 		pvMap = new LinkedHashMap<StringProperty, PVValueProperty>();
 		configureBaseProperties();
 		configureProperties();	
@@ -284,8 +281,6 @@ public abstract class AbstractWidgetModel implements IAdaptable,
 		Assert.isNotNull(property);
 		property.setWidgetModel(this);
 		propertyMap.put(property.getPropertyID(), property);
-		if(property.isVisibleInPropSheet())
-			propertyDescriptors.put(property.getPropertyID(), property.getPropertyDescriptor());		
 	}
 	
 	/**Add a property to the widget with the option to set it running changeable.
@@ -497,12 +492,16 @@ public abstract class AbstractWidgetModel implements IAdaptable,
 	}
 	
 	public IPropertyDescriptor[] getPropertyDescriptors() {
-		IPropertyDescriptor[] propArray = new IPropertyDescriptor[propertyDescriptors.size()];
-		int i=0;
-		for(IPropertyDescriptor p : propertyDescriptors.values())
-			propArray[i++] = p;		
-			
-		return propArray;
+		//descriptors are only created when the property sheet asks for them
+		List<IPropertyDescriptor> descriptors = new ArrayList<IPropertyDescriptor>();
+		for(AbstractWidgetProperty property : propertyMap.values()){
+			if(property.isVisibleInPropSheet()){
+				IPropertyDescriptor descriptor = property.getPropertyDescriptor();
+				if(descriptor != null)
+					descriptors.add(descriptor);
+			}
+		}
+		return descriptors.toArray(new IPropertyDescriptor[descriptors.size()]);
 	}
 	
 	public Object getPropertyValue(Object id) {
@@ -599,8 +598,6 @@ public abstract class AbstractWidgetModel implements IAdaptable,
 			return;
 		AbstractWidgetProperty property = propertyMap.get(prop_id);
 		property.removeAllPropertyChangeListeners();
-		if(property.isVisibleInPropSheet())
-			propertyDescriptors.remove(prop_id);
 		propertyMap.remove(prop_id);
 	}
 	
@@ -810,8 +807,6 @@ public abstract class AbstractWidgetModel implements IAdaptable,
 		if(getProperty(prop_id) == null)
 			return;
 		getProperty(prop_id).setDescription(description);
-		if(propertyDescriptors.containsKey(prop_id))			
-			propertyDescriptors.put(prop_id, getProperty(prop_id).getPropertyDescriptor());
 	}
 	
 	public void setPropertyValue(Object id, Object value) {
@@ -849,12 +844,7 @@ public abstract class AbstractWidgetModel implements IAdaptable,
 			final boolean visible, final boolean isSavable){
 		checkPropertyExist(prop_id);
 		AbstractWidgetProperty property = propertyMap.get(prop_id);
-		if(property.setVisibleInPropSheet(visible)){
-			if(visible)
-				propertyDescriptors.put(prop_id, property.getPropertyDescriptor());
-			else
-				propertyDescriptors.remove(prop_id);
-		}		
+		property.setVisibleInPropSheet(visible);
 		property.setSavable(isSavable);
 	}
 	
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.persistence;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.csstudio.opibuilder.preferences.PreferencesHelper;
+import org.eclipse.core.runtime.IPath;
+import org.jdom.Element;
+
+/**
+ * Process-wide cache of parsed OPI files. An OPI that is embedded by many linking
+ * containers or opened again is only read and parsed once; each display builds its
+ * own widget models from the cached XML, so macros are still resolved per instance.
+ * <p>
+ * OPI files are keyed by their resolved path. An entry is only used while the
+ * modification time of the file is unchanged, and the editor invalidates
+ * the entry of a file when it is saved. The least recently used entry
+ * is dropped when the cache is full.
+ * @author agent
+ *
+ */
+public class DisplayTemplateCache {
+
+	private static class Template {
+		final long modificationTime;
+		final Element root;
+
+		Template(final long modificationTime, final Element root) {
+			this.modificationTime = modificationTime;
+			this.root = root;
+		}
+	}
+
+	private static DisplayTemplateCache instance;
+
+	private final int maxSize;
+
+	private final Map<String, Template> cache;
+
+	private long hits = 0, misses = 0;
+
+	private DisplayTemplateCache(final int maxSize) {
+		this.maxSize = maxSize;
+		cache = new LinkedHashMap<String, Template>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Template> eldest) {
+				return size() > DisplayTemplateCache.this.maxSize;
+			}
+		};
+	}
+
+	/**
+	 * @return the instance of the display template cache.
+	 */
+	public static synchronized DisplayTemplateCache getInstance() {
+		if(instance == null){
+			int size;
+			try {
+				size = PreferencesHelper.getDisplayTemplateCacheSize();
+			} catch (Exception e) {
+				size = 50;
+			}
+			instance = new DisplayTemplateCache(size);
+		}
+		return instance;
+	}
+
+	/**
+	 * @param path the resolved path of the OPI file.
+	 * @param modificationTime the current modification time of the file.
+	 * @return the root element of the parsed file, or null if it is not in the cache
+	 * or the file was modified since it was parsed. It must not be modified.
+	 */
+	public synchronized Element get(final IPath path, final long modificationTime) {
+		if(path == null || modificationTime < 0 || maxSize <= 0)
+			return null;
+		final String key = path.toString();
+		final Template template = cache.get(key);
+		if(template == null || template.modificationTime != modificationTime){
+			if(template != null)
+				cache.remove(key);
+			++misses;
+			return null;
+		}
+		++hits;
+		return template.root;
+	}
+
+	/**Add a parsed OPI file to the cache.
+	 * @param path the resolved path of the OPI file.
+	 * @param modificationTime the modification time of the file when it was read.
+	 * @param root the root element of the parsed file. It must not be modified afterwards.
+	 */
+	public synchronized void put(final IPath path, final long modificationTime, final Element root) {
+		if(path == null || modificationTime < 0 || root == null || maxSize <= 0)
+			return;
+		cache.put(path.toString(), new Template(modificationTime, root));
+	}
+
+	/**Remove a parsed OPI file, for example because it was saved.
+	 * @param path the resolved path of the OPI file.
+	 */
+	public synchronized void invalidate(final IPath path) {
+		if(path != null)
+			cache.remove(path.toString());
+	}
+
+	/**
+	 * Remove all parsed OPI files.
+	 */
+	public synchronized void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * @return number of parsed OPI files in the cache.
+	 */
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	/**
+	 * @return number of lookups that found the parsed OPI file.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return number of lookups that had to parse the OPI file.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	@SuppressWarnings("nls")
+	@Override
+	public synchronized String toString() {
+		return "DisplayTemplateCache: " + cache.size() + "/" + maxSize + " OPIs, " +
+				hits + " hits, " + misses + " misses";
+	}
+}
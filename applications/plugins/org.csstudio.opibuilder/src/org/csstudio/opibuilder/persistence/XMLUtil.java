@@ -28,6 +28,7 @@ import org.csstudio.opibuilder.model.DisplayModel;
 import org.csstudio.opibuilder.preferences.PreferencesHelper;
 import org.csstudio.opibuilder.util.ConsoleService;
 import org.csstudio.opibuilder.util.ErrorHandlerUtil;
+import org.csstudio.opibuilder.util.ResourceUtil;
 import org.csstudio.opibuilder.util.SingleSourceHelper;
 import org.csstudio.opibuilder.util.WidgetDescriptor;
 import org.csstudio.opibuilder.util.WidgetsService;
@@ -163,7 +164,46 @@ public class XMLUtil {
 		if(display == null){
 			display = Display.getCurrent();
 		}
-		IPath opiPath = displayModel.getOpiFilePath();
+		try {
+			checkSecuredOPI(displayModel.getOpiFilePath(), display);
+		} catch (FailedLoginException e) {
+			inputStream.close();
+			throw e;
+		}
+		fillDisplayModelFromElement(parseOPI(inputStream), displayModel, display);
+	}
+
+	/**Fill the DisplayModel from an OPI file. The parsed file is shared via the
+	 * {@link DisplayTemplateCache}, so an OPI that is embedded or opened again is not
+	 * read and parsed again as long as it is not modified. In RAP, it must be called in UI Thread.
+	 * @param path the resolved path of the OPI file.
+	 * @param displayModel. The {@link DisplayModel} to be filled.
+	 * @param display the display in UI Thread.
+	 * @param runInUIJob true if the file should be read in a UI job when it is loaded from a URL.
+	 * @throws Exception
+	 */
+	public static void fillDisplayModelFromPath(final IPath path, final DisplayModel displayModel,
+			Display display, final boolean runInUIJob) throws Exception{
+		if(display == null){
+			display = Display.getCurrent();
+		}
+		checkSecuredOPI(displayModel.getOpiFilePath(), display);
+		final DisplayTemplateCache cache = DisplayTemplateCache.getInstance();
+		final long modificationTime = ResourceUtil.getFileModificationTime(path);
+		Element root = cache.get(path, modificationTime);
+		if(root == null){
+			root = parseOPI(ResourceUtil.pathToInputStream(path, runInUIJob));
+			cache.put(path, modificationTime, root);
+		}
+		fillDisplayModelFromElement(root, displayModel, display);
+	}
+
+	/**Check if the OPI may be opened without login in RAP, otherwise ask the user to login.
+	 * @param opiPath the path of the OPI file.
+	 * @param display the display in UI Thread.
+	 * @throws FailedLoginException if the OPI is secured and the user failed to login.
+	 */
+	private static void checkSecuredOPI(final IPath opiPath, final Display display) throws FailedLoginException{
 		if (OPIBuilderPlugin.isRAP() && opiPath != null
 				&& !SingleSourceHelper.rapIsLoggedIn(display)) {
 			//check secured opi paths
@@ -172,7 +212,6 @@ public class XMLUtil {
 				for(String securedPath : securedPaths){
 					if(opiPath.toString().startsWith(securedPath)) {
 						if (!SingleSourceHelper.rapAuthenticate(display)) {
-							inputStream.close();
 							throw new FailedLoginException();
 						}
 					}
@@ -191,7 +230,6 @@ public class XMLUtil {
 					}				
 					if(shouldBeSecured){
 						if (!SingleSourceHelper.rapAuthenticate(display)) {
-							inputStream.close();
 							throw new FailedLoginException();
 						}
 					}
@@ -199,10 +237,31 @@ public class XMLUtil {
 			}
 			
 		}
-		
-		SAXBuilder saxBuilder = new SAXBuilder();
-		Document doc = saxBuilder.build(inputStream);
-		Element root = doc.getRootElement();
+	}
+
+	/**Parse an OPI file.
+	 * @param inputStream the inputstream will be closed in this method before return.
+	 * @return the root element.
+	 * @throws Exception
+	 */
+	private static Element parseOPI(final InputStream inputStream) throws Exception{
+		try {
+			SAXBuilder saxBuilder = new SAXBuilder();
+			Document doc = saxBuilder.build(inputStream);
+			return doc.getRootElement();
+		} finally {
+			inputStream.close();
+		}
+	}
+
+	/**Fill the DisplayModel from the root element of an OPI file.
+	 * @param root the root element, which is not modified.
+	 * @param displayModel. The {@link DisplayModel} to be filled.
+	 * @param display the display in UI Thread.
+	 * @throws Exception
+	 */
+	private static void fillDisplayModelFromElement(final Element root,
+			final DisplayModel displayModel, Display display) throws Exception{
 		if(root != null){
 			 XMLElementToWidget(root, displayModel);
 			 
@@ -234,7 +293,6 @@ public class XMLUtil {
 			 }	 
 			 
 		}
-		inputStream.close();
 	}
 
 	/**Fill the DisplayModel from an OPI file inputstream. In RAP, it must be called in UI Thread.
@@ -108,6 +108,26 @@ public class OPIRuntimePreferencePage extends FieldEditorPreferencePage
 		guiRefreshCycleEditor.getTextControl(parent).setToolTipText(
 				"The fastest refresh cycle for OPI GUI in millisecond");
 		addField(guiRefreshCycleEditor);	
+		
+		IntegerFieldEditor pvNotificationLanesEditor = 
+			new IntegerFieldEditor(PreferencesHelper.PV_NOTIFICATION_LANES,
+					"PV Notification Threads", parent);
+		pvNotificationLanesEditor.setValidRange(1, 64);
+		pvNotificationLanesEditor.getTextControl(parent).setToolTipText(
+				"Number of threads that notify the widgets of PV events.\n" +
+				"Events of one PV are always handled by the same thread.\n" +
+				"Takes effect after restart.");
+		addField(pvNotificationLanesEditor);
+		
+		IntegerFieldEditor slowListenerEditor = 
+			new IntegerFieldEditor(PreferencesHelper.PV_SLOW_LISTENER_THRESHOLD,
+					"Slow PV Listener Threshold (ms)", parent);
+		slowListenerEditor.setValidRange(0, 60000);
+		slowListenerEditor.getTextControl(parent).setToolTipText(
+				"Listeners that take longer than this to handle a PV event\n" +
+				"are reported in the console, and so are notification threads\n" +
+				"that are still busy with one event after this time. 0 to disable.");
+		addField(slowListenerEditor);
 			
 		IntegerFieldEditor pulsingMinorPeriodFieldEditor = 
 				new IntegerFieldEditor(PreferencesHelper.PULSING_ALARM_MINOR_PERIOD, 
@@ -151,6 +171,11 @@ public class OPIRuntimePreferencePage extends FieldEditorPreferencePage
 		pythonPathEditor.getTextControl(parent).setToolTipText("The path to search python modules");
 		addField(pythonPathEditor);
 		
+		BooleanFieldEditor compileRulesEditor =
+			new BooleanFieldEditor(PreferencesHelper.COMPILE_RULES, 
+					"Compile simple rules into Java instead of JavaScript", parent);
+		addField(compileRulesEditor);
+		
 		BooleanFieldEditor showCompactModeDialogEditor =
 			new BooleanFieldEditor(PreferencesHelper.SHOW_COMPACT_MODE_DIALOG, 
 					"Show tip dialog about how to exit compact mode", parent);
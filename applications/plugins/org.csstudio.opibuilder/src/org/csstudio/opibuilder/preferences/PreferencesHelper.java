@@ -48,6 +48,13 @@ public class PreferencesHelper {
 	public static final String RUN_MACROS= "macros"; //$NON-NLS-1$
 	public static final String AUTOSAVE= "auto_save"; //$NON-NLS-1$
 	public static final String OPI_GUI_REFRESH_CYCLE = "opi_gui_refresh_cycle"; //$NON-NLS-1$
+	public static final String OPI_GUI_REFRESH_BATCH = "opi_gui_refresh_batch"; //$NON-NLS-1$
+	public static final String OPI_GUI_REFRESH_BUDGET = "opi_gui_refresh_budget"; //$NON-NLS-1$
+	public static final String SCRIPT_CACHE_SIZE = "script_cache_size"; //$NON-NLS-1$
+	public static final String COMPILE_RULES = "compile_rules"; //$NON-NLS-1$
+	public static final String DISPLAY_TEMPLATE_CACHE_SIZE = "display_template_cache_size"; //$NON-NLS-1$
+	public static final String PV_NOTIFICATION_LANES = "pv_notification_lanes"; //$NON-NLS-1$
+	public static final String PV_SLOW_LISTENER_THRESHOLD = "pv_slow_listener_threshold"; //$NON-NLS-1$
 	public static final String NO_EDIT = "no_edit"; //$NON-NLS-1$
 	public static final String TOP_OPIS = "top_opis"; //$NON-NLS-1$
 	public static final String DISABLE_ADVANCED_GRAPHICS = "disable_advanced_graphics"; //$NON-NLS-1$
@@ -178,6 +185,62 @@ public class PreferencesHelper {
     	return service.getInt(OPIBuilderPlugin.PLUGIN_ID, OPI_GUI_REFRESH_CYCLE, 100, null);
     }
 
+    /**
+     * @return <code>true</code> if GUI refresh tasks are executed in one batch per cycle
+     */
+    public static boolean isGUIRefreshBatched(){
+    	final IPreferencesService service = Platform.getPreferencesService();
+    	return service.getBoolean(OPIBuilderPlugin.PLUGIN_ID, OPI_GUI_REFRESH_BATCH, false, null);
+    }
+
+    /**
+     * @return time budget in milliseconds for a batch of GUI refresh tasks, 0 for no limit
+     */
+    public static Integer getGUIRefreshBudget(){
+    	final IPreferencesService service = Platform.getPreferencesService();
+    	return service.getInt(OPIBuilderPlugin.PLUGIN_ID, OPI_GUI_REFRESH_BUDGET, 50, null);
+    }
+
+    /**
+     * @return maximum number of compiled scripts shared between widgets, 0 to disable the cache
+     */
+    public static Integer getScriptCacheSize(){
+    	final IPreferencesService service = Platform.getPreferencesService();
+    	return service.getInt(OPIBuilderPlugin.PLUGIN_ID, SCRIPT_CACHE_SIZE, 200, null);
+    }
+
+    /**
+     * @return maximum number of parsed OPI files shared between displays, 0 to disable the cache
+     */
+    public static Integer getDisplayTemplateCacheSize(){
+    	final IPreferencesService service = Platform.getPreferencesService();
+    	return service.getInt(OPIBuilderPlugin.PLUGIN_ID, DISPLAY_TEMPLATE_CACHE_SIZE, 50, null);
+    }
+
+    /**
+     * @return <code>true</code> if simple rules are compiled into Java instead of JavaScript
+     */
+    public static boolean isRuleCompilationEnabled(){
+    	final IPreferencesService service = Platform.getPreferencesService();
+    	return service.getBoolean(OPIBuilderPlugin.PLUGIN_ID, COMPILE_RULES, true, null);
+    }
+
+    /**
+     * @return number of threads that notify the listeners of BOY PVs
+     */
+    public static Integer getPVNotificationLanes(){
+    	final IPreferencesService service = Platform.getPreferencesService();
+    	return service.getInt(OPIBuilderPlugin.PLUGIN_ID, PV_NOTIFICATION_LANES, 4, null);
+    }
+
+    /**
+     * @return time in milliseconds after which a PV listener is reported as slow, 0 to disable
+     */
+    public static Integer getPVSlowListenerThreshold(){
+    	final IPreferencesService service = Platform.getPreferencesService();
+    	return service.getInt(OPIBuilderPlugin.PLUGIN_ID, PV_SLOW_LISTENER_THRESHOLD, 500, null);
+    }
+
     public static Integer getPulsingAlarmMinorPeriod(){
     	final IPreferencesService service = Platform.getPreferencesService();
     	return service.getInt(OPIBuilderPlugin.PLUGIN_ID, PULSING_ALARM_MINOR_PERIOD, 3000, null);
@@ -26,8 +26,16 @@ public abstract class AbstractWidgetProperty {
 	
 	protected String description; 
 	
-	private PropertyChangeSupport pcsDelegate;
+	/**
+	 * Created when the first listener is added.
+	 * Volatile because property changes are fired from other threads
+	 * than the one that adds the listeners.
+	 */
+	private volatile PropertyChangeSupport pcsDelegate;
 	
+	/**
+	 * Created when it is first requested, usually by the property sheet.
+	 */
 	private PropertyDescriptor propertyDescriptor;
 	
 	protected Object propertyValue;
@@ -62,7 +70,6 @@ public abstract class AbstractWidgetProperty {
 		this.visibleInPropSheet = true;
 		this.defaultValue = defaultValue;
 		this.propertyValue = defaultValue;
-		pcsDelegate = new PropertyChangeSupport(this);	
 	}
 	
 	/**Add listener on property change event. The listener will be removed when widget deactivated,
@@ -74,6 +81,8 @@ public abstract class AbstractWidgetProperty {
 		if(listener == null){
 			return;
 		}
+		if(pcsDelegate == null)
+			pcsDelegate = new PropertyChangeSupport(this);
 		pcsDelegate.addPropertyChangeListener(listener);
 	}
 	
@@ -85,8 +94,9 @@ public abstract class AbstractWidgetProperty {
 	public abstract Object checkValue(final Object value);
 	
 	public final void firePropertyChange(final Object oldValue, final Object newValue){
-		if(pcsDelegate.hasListeners(prop_id))
-			pcsDelegate.firePropertyChange(prop_id, oldValue, newValue);
+		final PropertyChangeSupport pcs = pcsDelegate;
+		if(pcs != null && pcs.hasListeners(prop_id))
+			pcs.firePropertyChange(prop_id, oldValue, newValue);
 	}
 	
 	public final WidgetPropertyCategory getCategory() {
@@ -136,21 +146,29 @@ public abstract class AbstractWidgetProperty {
 	}
 
 	public final void removeAllPropertyChangeListeners(){
-		for(PropertyChangeListener l : pcsDelegate.getPropertyChangeListeners()){
+		final PropertyChangeSupport pcs = pcsDelegate;
+		if(pcs == null)
+			return;
+		for(PropertyChangeListener l : pcs.getPropertyChangeListeners()){
 			//if(l instanceof WidgetPropertyChangeListener)
 			//	((WidgetPropertyChangeListener) l).removeAllHandlers();
-			pcsDelegate.removePropertyChangeListener(l);
+			pcs.removePropertyChangeListener(l);
 		}
 	}
 	
 	public final PropertyChangeListener[] getAllPropertyChangeListeners(){
-		return pcsDelegate.getPropertyChangeListeners();
+		final PropertyChangeSupport pcs = pcsDelegate;
+		if(pcs == null)
+			return new PropertyChangeListener[0];
+		return pcs.getPropertyChangeListeners();
 	}
 	
 	public final void removePropertyChangeListener(PropertyChangeListener listener){
 		if(listener instanceof WidgetPropertyChangeListener)
 			((WidgetPropertyChangeListener) listener).removeAllHandlers();
-		pcsDelegate.removePropertyChangeListener(listener);
+		final PropertyChangeSupport pcs = pcsDelegate;
+		if(pcs != null)
+			pcs.removePropertyChangeListener(listener);
 	}
 
 	/**If the property should be saved to xml file.
@@ -173,7 +191,7 @@ public abstract class AbstractWidgetProperty {
 
 	public final void setDescription(String description) {		
 		this.description = description;
-		createPropertyDescriptor(visibleInPropSheet);
+		propertyDescriptor = null;
 	}
 
 	/**
@@ -238,7 +256,7 @@ public abstract class AbstractWidgetProperty {
 	public final boolean setVisibleInPropSheet(boolean visibleInPropSheet) {
 		if(visibleInPropSheet == this.visibleInPropSheet)
 			return false;
-		createPropertyDescriptor(visibleInPropSheet);
+		propertyDescriptor = null;
 		this.visibleInPropSheet = visibleInPropSheet;
 		return true;
 	}
@@ -134,7 +134,12 @@ public class OPIRuntimeDelegate implements IAdaptable{
                     fillDisplayModelInJob(input, display, site);
                 }
                 else
-                    inputStream = run_input.getInputStream();
+                {   // Shares the parsed file with other displays of the same OPI
+                    XMLUtil.fillDisplayModelFromPath(run_input.getPath(),
+                            displayModel, null, false);
+                    displayModelFilled = true;
+                    addRunnerInputMacros(input);
+                }
                 displayOpenManager = run_input.getDisplayOpenManager();
             }
             else
@@ -145,8 +150,6 @@ public class OPIRuntimeDelegate implements IAdaptable{
                 XMLUtil.fillDisplayModelFromInputStream(inputStream,
                         displayModel);
                 displayModelFilled = true;
-                if (input instanceof IRunnerInput)
-                    addRunnerInputMacros(input);
             }
 
         }
@@ -17,6 +17,7 @@ import java.util.logging.Level;
 import org.csstudio.opibuilder.OPIBuilderPlugin;
 import org.csstudio.opibuilder.editparts.AbstractBaseEditPart;
 import org.csstudio.opibuilder.editparts.DisplayEditpart;
+import org.csstudio.opibuilder.util.BOYPVFactory;
 import org.csstudio.opibuilder.util.ConsoleService;
 import org.csstudio.opibuilder.util.ResourceUtil;
 import org.csstudio.simplepv.IPV;
@@ -49,11 +50,21 @@ public abstract class AbstractScriptStore implements IScriptStore{
 
 	/**
 	 * A map to see if a PV was triggered before, this is used to skip the first trigger.
+	 * Guarded by {@link #triggerLock}.
 	 */
 	private Map<IPV, Boolean> pvTriggeredMap;
 
+	/**
+	 * Guarded by {@link #triggerLock}.
+	 */
 	private boolean triggerSuppressed = false;
 	
+	/**
+	 * Lock of the trigger state for the listeners of all input PVs. The PVs can
+	 * be notified on different threads, because they are notified on the lane of their name.
+	 */
+	private final Object triggerLock = new Object();
+	
 	private ScriptData scriptData;
 	private AbstractBaseEditPart editPart;
 	private IPV[] pvArray;
@@ -88,18 +99,38 @@ public abstract class AbstractScriptStore implements IScriptStore{
 						editpart.getWidgetModel().getName() ;
 		
 
-		if(scriptData instanceof RuleScriptData){
-			compileString(((RuleScriptData)scriptData).getScriptString());
-		}else if(scriptData.isEmbedded())
-			compileString(scriptData.getScriptText());
-		else{			
-			//read file
-			InputStream inputStream = ResourceUtil.pathToInputStream(absoluteScriptPath, false);
+		//share the compiled script with other widgets using the same script
+		final ScriptCache scriptCache = ScriptCache.getInstance();
+		String cacheKey = null;
+		if(this instanceof ISharedScriptStore){
+			final String engine = getClass().getName();
+			if(scriptData instanceof RuleScriptData)
+				cacheKey = ScriptCache.getTextKey(engine, ((RuleScriptData)scriptData).getScriptString());
+			else if(scriptData.isEmbedded())
+				cacheKey = ScriptCache.getTextKey(engine, scriptData.getScriptText());
+			else
+				cacheKey = ScriptCache.getFileKey(engine, absoluteScriptPath);
+		}
+		
+		final Object compiled = scriptCache.get(cacheKey);
+		if(compiled != null)
+			((ISharedScriptStore)this).setCompiledScript(compiled);
+		else{
+			if(scriptData instanceof RuleScriptData){
+				compileString(((RuleScriptData)scriptData).getScriptString());
+			}else if(scriptData.isEmbedded())
+				compileString(scriptData.getScriptText());
+			else{			
+				//read file
+				InputStream inputStream = ResourceUtil.pathToInputStream(absoluteScriptPath, false);
 
-			//compile
-			compileInputStream(inputStream);
-			inputStream.close();
-		}		
+				//compile
+				compileInputStream(inputStream);
+				inputStream.close();
+			}
+			if(cacheKey != null)
+				scriptCache.put(cacheKey, ((ISharedScriptStore)this).getCompiledScript());
+		}
 
 
 		pvListenerMap = new HashMap<IPV, IPVListener>();
@@ -107,35 +138,48 @@ public abstract class AbstractScriptStore implements IScriptStore{
 
 		IPVListener suppressPVListener = new IPVListener.Stub() {
 
-			public synchronized void valueChanged(IPV pv) {
-				if (triggerSuppressed && checkPVsConnected(scriptData, pvArray)) {
-					executeScriptInUIThread(pv);
-					triggerSuppressed = false;
+			public void valueChanged(IPV pv) {
+				synchronized (triggerLock) {
+					if (triggerSuppressed && checkPVsConnected(scriptData, pvArray)) {
+						executeScriptInUIThread(pv);
+						triggerSuppressed = false;
+					}
 				}
 			}
 			
+			@Override
+			public String toString() {
+				return getListenerDescription();
+			}
+			
 		};
 
 		IPVListener triggerPVListener = new IPVListener.Stub() {
-			public synchronized void valueChanged(IPV pv) {
-
-				// skip the first trigger if it is needed.
-				if (scriptData.isSkipPVsFirstConnection()
-						&& !pvTriggeredMap.get(pv)) {
-					pvTriggeredMap.put(pv, true);
-					return;
-				}
-
-				// execute script only if all input pvs are connected
-				if (pvArray.length > 1) {
-					if (!checkPVsConnected(scriptData, pvArray)) {
-						triggerSuppressed = true;
+			public void valueChanged(IPV pv) {
+				synchronized (triggerLock) {
+					// skip the first trigger if it is needed.
+					if (scriptData.isSkipPVsFirstConnection()
+							&& !pvTriggeredMap.get(pv)) {
+						pvTriggeredMap.put(pv, true);
 						return;
-
 					}
+	
+					// execute script only if all input pvs are connected
+					if (pvArray.length > 1) {
+						if (!checkPVsConnected(scriptData, pvArray)) {
+							triggerSuppressed = true;
+							return;
+	
+						}
+					}
+	
+					executeScriptInUIThread(pv);
 				}
-
-				executeScriptInUIThread(pv);
+			}
+			
+			@Override
+			public String toString() {
+				return getListenerDescription();
 			}
 			
 		};
@@ -181,6 +225,14 @@ public abstract class AbstractScriptStore implements IScriptStore{
 	 */
 	protected abstract void execScript(final IPV triggerPV) throws Exception;
 	
+	/**
+	 * @return description of the script and its widget for messages about its PV listeners.
+	 */
+	private String getListenerDescription() {
+		return (scriptData instanceof RuleScriptData ? "Rule " : "Script ") //$NON-NLS-1$ //$NON-NLS-2$
+				+ errorSource + ", " + BOYPVFactory.getWidgetDescription(editPart.getWidgetModel()); //$NON-NLS-1$
+	}
+
 	private void executeScriptInUIThread(final IPV triggerPV) {
 		Display display = editPart.getRoot().getViewer().getControl().getDisplay();
 		UIBundlingThread.getInstance().addRunnable(display, new Runnable() {
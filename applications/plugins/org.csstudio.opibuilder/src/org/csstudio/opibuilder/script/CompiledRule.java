@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.script;
+
+import java.text.ParseException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+
+import org.csstudio.opibuilder.OPIBuilderPlugin;
+import org.csstudio.opibuilder.model.AbstractWidgetModel;
+import org.csstudio.opibuilder.properties.AbstractWidgetProperty;
+import org.csstudio.opibuilder.script.RuleInputs.Kind;
+import org.csstudio.simplepv.IPV;
+
+/**A rule compiled into Java, which does the same as the JavaScript generated by
+ * {@link RuleData#generateScript()} without a script engine.
+ * Rules whose expressions are not supported by {@link RuleExpression} can't be compiled
+ * and have to be executed as JavaScript.
+ * @author agent
+ *
+ */
+public final class CompiledRule {
+
+	private final String propId;
+
+	private final RuleExpression[] conditions;
+
+	/** Values to set, constants or {@link RuleExpression}s */
+	private final Object[] values;
+
+	private final Object defaultValue;
+
+	private final Set<Kind> used;
+
+	private CompiledRule(final String propId, final RuleExpression[] conditions,
+			final Object[] values, final Object defaultValue, final Set<Kind> used) {
+		this.propId = propId;
+		this.conditions = conditions;
+		this.values = values;
+		this.defaultValue = defaultValue;
+		this.used = used;
+	}
+
+	/**Compile a rule.
+	 * @param ruleData the rule.
+	 * @return the compiled rule, or null if the rule can only be executed as JavaScript.
+	 */
+	public static CompiledRule compile(final RuleData ruleData) {
+		final AbstractWidgetProperty property = ruleData.getProperty();
+		if(property == null)
+			return null;
+		final List<Expression> expressions = ruleData.getExpressionList();
+		final int pvCount = ruleData.getPVList().size();
+		final Set<Kind> used = EnumSet.noneOf(Kind.class);
+		final RuleExpression[] conditions = new RuleExpression[expressions.size()];
+		final Object[] values = new Object[expressions.size()];
+		try {
+			for(int i=0; i<conditions.length; i++){
+				final Expression exp = expressions.get(i);
+				conditions[i] = RuleExpression.parse(exp.getBooleanExpression(), pvCount, used);
+				if(conditions[i].getType() != RuleExpression.Type.BOOLEAN)
+					throw new ParseException("Condition is a " + conditions[i].getType() //$NON-NLS-1$
+							+ ": " + exp.getBooleanExpression(), 0); //$NON-NLS-1$
+				if(ruleData.isOutputExpValue())
+					values[i] = RuleExpression.parse(exp.getValue().toString(), pvCount, used);
+				else
+					values[i] = exp.getValue();
+			}
+		} catch (ParseException e) {
+			OPIBuilderPlugin.getLogger().log(Level.FINE,
+					"Rule " + ruleData.getName() + " is executed as JavaScript: " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+			return null;
+		}
+		return new CompiledRule(ruleData.getPropId(), conditions, values,
+				property.getPropertyValue(), used);
+	}
+
+	/**
+	 * @param pvs the input PVs of the rule.
+	 * @return the inputs to evaluate the rule with. They must only be used
+	 * by one thread at a time.
+	 */
+	RuleInputs createInputs(final IPV[] pvs) {
+		return new RuleInputs(pvs, used);
+	}
+
+	/**Evaluate the rule.
+	 * @param inputs the inputs, from {@link #createInputs(IPV[])}.
+	 * @return the value to set to the property.
+	 * @throws RuntimeException if a PV has no value.
+	 */
+	Object evaluate(final RuleInputs inputs) {
+		inputs.read();
+		for(int i=0; i<conditions.length; i++){
+			if(conditions[i].evaluateBoolean(inputs)){
+				if(values[i] instanceof RuleExpression)
+					return ((RuleExpression) values[i]).evaluate(inputs);
+				return values[i];
+			}
+		}
+		return defaultValue;
+	}
+
+	/**Evaluate the rule and set the property of the widget.
+	 * @param widget the widget.
+	 * @param inputs the inputs, from {@link #createInputs(IPV[])}.
+	 * @throws RuntimeException if a PV has no value.
+	 */
+	void execute(final AbstractWidgetModel widget, final RuleInputs inputs) {
+		// Like the empty script of a rule without expressions
+		if(conditions.length == 0)
+			return;
+		widget.setPropertyValue(propId, evaluate(inputs));
+	}
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.script;
+
+import java.io.InputStream;
+
+import org.csstudio.opibuilder.editparts.AbstractBaseEditPart;
+import org.csstudio.simplepv.IPV;
+
+/**
+ * This is the implementation of {@link AbstractScriptStore} for rules that were
+ * compiled into Java by {@link CompiledRule}, so no script engine is involved.
+ * @author agent
+ *
+ */
+public class CompiledRuleStore extends AbstractScriptStore{
+
+	private CompiledRule rule;
+
+	private RuleInputs inputs;
+
+	public CompiledRuleStore(final RuleScriptData scriptData, final AbstractBaseEditPart editpart,
+			final IPV[] pvArray) throws Exception {
+		super(scriptData, editpart, pvArray);
+	}
+
+	@Override
+	protected void initScriptEngine() throws Exception {
+		// no script engine needed
+	}
+
+	@Override
+	protected void compileString(String string) throws Exception {
+		// The rule was compiled when it was converted to script data
+		rule = ((RuleScriptData)getScriptData()).getCompiledRule();
+		inputs = rule.createInputs(getPvArray());
+	}
+
+	@Override
+	protected void compileInputStream(InputStream s) throws Exception {
+		throw new UnsupportedOperationException("Only rules can be compiled."); //$NON-NLS-1$
+	}
+
+	@Override
+	protected void execScript(final IPV triggerPV) throws Exception {
+		rule.execute(getEditPart().getWidgetModel(), inputs);
+	}
+
+}
@@ -0,0 +1,28 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.script;
+
+/**
+ * A script store whose compiled script can be shared with other stores of the same type
+ * via the {@link ScriptCache}. Stores that don't implement it compile each script themselves.
+ * @author agent
+ *
+ */
+interface ISharedScriptStore {
+
+	/**
+	 * @return the compiled script. It must be safe to share between script stores.
+	 */
+	public Object getCompiledScript();
+
+	/**Use a compiled script from the {@link ScriptCache} instead of compiling it again.
+	 * @param compiled a compiled script returned by {@link #getCompiledScript()}
+	 * of a store of the same type.
+	 */
+	public void setCompiledScript(Object compiled);
+}
@@ -22,7 +22,7 @@ import org.python.core.PySystemState;
  * @author Xihui Chen
  *
  */
-public class JythonScriptStore extends AbstractScriptStore{
+public class JythonScriptStore extends AbstractScriptStore implements ISharedScriptStore{
 
 	private PythonInterpreter interpreter;
 
@@ -65,6 +65,16 @@ public class JythonScriptStore extends AbstractScriptStore{
 		code = interpreter.compile(s);
 	}
 
+	@Override
+	public Object getCompiledScript() {
+		return code;
+	}
+
+	@Override
+	public void setCompiledScript(Object compiled) {
+		code = (PyCode) compiled;
+	}
+
 	@Override
 	protected void execScript(final IPV triggerPV) throws Exception {
 		interpreter.set(ScriptService.WIDGET, getEditPart());
@@ -25,7 +25,7 @@ import org.mozilla.javascript.ScriptableObject;
  * @author Xihui Chen
  *
  */
-public class RhinoScriptStore extends AbstractScriptStore{
+public class RhinoScriptStore extends AbstractScriptStore implements ISharedScriptStore{
 
 	private Context scriptContext;
 
@@ -72,6 +72,16 @@ public class RhinoScriptStore extends AbstractScriptStore{
 		reader.close();
 	}
 
+	@Override
+	public Object getCompiledScript() {
+		return script;
+	}
+
+	@Override
+	public void setCompiledScript(Object compiled) {
+		script = (Script) compiled;
+	}
+
 	@Override
 	protected void execScript(final IPV triggerPV) throws Exception {
 		ScriptableObject.putProperty(scriptScope, 
@@ -14,6 +14,7 @@ import java.util.regex.Pattern;
 
 import org.csstudio.opibuilder.OPIBuilderPlugin;
 import org.csstudio.opibuilder.model.AbstractWidgetModel;
+import org.csstudio.opibuilder.preferences.PreferencesHelper;
 import org.csstudio.opibuilder.properties.AbstractWidgetProperty;
 import org.csstudio.ui.util.CustomMediaFactory;
 import org.eclipse.core.runtime.IAdaptable;
@@ -243,12 +244,16 @@ public class RuleData implements IAdaptable{
 	
 	/**Convert this {@link RuleData} to {@link RuleScriptData} so 
 	 * that the scriptEngine code can be reused for running rules.
+	 * The rule is also compiled into Java if it is enabled in preferences
+	 * and the expressions are simple enough.
 	 * @return
 	 */
 	public RuleScriptData convertToScriptData(){
 		RuleScriptData ruleScriptData  = new RuleScriptData(this);
 		ruleScriptData.setPVList(pvList);
 		ruleScriptData.setScriptString(generateScript());
+		if(PreferencesHelper.isRuleCompilationEnabled())
+			ruleScriptData.setCompiledRule(CompiledRule.compile(this));
 		return ruleScriptData;
 	}
 	
@@ -0,0 +1,625 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.script;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Set;
+
+import org.csstudio.opibuilder.script.RuleInputs.Kind;
+
+/**An expression of a rule, compiled into a tree of Java evaluators.
+ * <p>
+ * The parser understands the subset of JavaScript that is used by most rules:
+ * number, string and boolean literals, the input variables <code>pv0, pvInt0,
+ * pvStr0, pvSev0</code>..., parentheses and the operators
+ * <code>! - + * / % &lt; &lt;= &gt; &gt;= == != === !== &amp;&amp; ||</code>.
+ * The type of each operand is checked while parsing, so that the result is the
+ * same as in JavaScript. Anything else, like function calls or mixing strings with
+ * numbers, is rejected with a {@link ParseException}, and the rule has to be executed
+ * as JavaScript.
+ * </p>
+ * <p>
+ * Rhino passes the values of <code>pvInt0</code> and <code>pvStr0</code> as Java objects,
+ * which are compared by identity with <code>===</code> or with each other, and
+ * <code>pvInt0 + 1</code> concatenates strings, so these are rejected as well.
+ * </p>
+ * @author agent
+ *
+ */
+abstract class RuleExpression {
+
+	/**Type of the value of an expression. */
+	enum Type {
+		NUMBER,
+		BOOLEAN,
+		STRING;
+	}
+
+	private final Type type;
+
+	private RuleExpression(final Type type) {
+		this.type = type;
+	}
+
+	/**
+	 * @return type of the value.
+	 */
+	Type getType() {
+		return type;
+	}
+
+	/**
+	 * @param inputs the input values.
+	 * @return the value as a number, only for expressions of type {@link Type#NUMBER}.
+	 */
+	double evaluateNumber(final RuleInputs inputs) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @param inputs the input values.
+	 * @return the value as a boolean, only for expressions of type {@link Type#BOOLEAN}.
+	 */
+	boolean evaluateBoolean(final RuleInputs inputs) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @param inputs the input values.
+	 * @return the value as a string, only for expressions of type {@link Type#STRING}.
+	 */
+	String evaluateString(final RuleInputs inputs) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @param inputs the input values.
+	 * @return the value as a {@link Double}, {@link Boolean} or {@link String},
+	 * like the value of the JavaScript expression passed to Java.
+	 */
+	Object evaluate(final RuleInputs inputs) {
+		switch (type) {
+		case NUMBER:
+			return evaluateNumber(inputs);
+		case BOOLEAN:
+			return evaluateBoolean(inputs);
+		default:
+			return evaluateString(inputs);
+		}
+	}
+
+	/**Parse an expression.
+	 * @param text the expression in JavaScript.
+	 * @param pvCount number of input PVs of the rule.
+	 * @param used the kinds of input variables used by the expression are added to this set.
+	 * @return the expression.
+	 * @throws ParseException if the expression is not supported.
+	 */
+	static RuleExpression parse(final String text, final int pvCount, final Set<Kind> used)
+			throws ParseException {
+		return new Parser(text, pvCount, used).parse();
+	}
+
+	private static final class Constant extends RuleExpression {
+		private final Object value;
+
+		Constant(final Type type, final Object value) {
+			super(type);
+			this.value = value;
+		}
+
+		@Override
+		double evaluateNumber(final RuleInputs inputs) {
+			return (Double) value;
+		}
+
+		@Override
+		boolean evaluateBoolean(final RuleInputs inputs) {
+			return (Boolean) value;
+		}
+
+		@Override
+		String evaluateString(final RuleInputs inputs) {
+			return (String) value;
+		}
+
+		@Override
+		Object evaluate(final RuleInputs inputs) {
+			return value;
+		}
+	}
+
+	private static final class Variable extends RuleExpression {
+		private final Kind kind;
+		private final int index;
+
+		Variable(final Kind kind, final int index) {
+			super(kind == Kind.STRING ? Type.STRING : Type.NUMBER);
+			this.kind = kind;
+			this.index = index;
+		}
+
+		@Override
+		double evaluateNumber(final RuleInputs inputs) {
+			switch (kind) {
+			case DOUBLE:
+				return inputs.getDouble(index);
+			case LONG:
+				return inputs.getLong(index);
+			default:
+				return inputs.getSeverity(index);
+			}
+		}
+
+		@Override
+		String evaluateString(final RuleInputs inputs) {
+			return inputs.getString(index);
+		}
+
+		@Override
+		Object evaluate(final RuleInputs inputs) {
+			if(kind == Kind.LONG)
+				return inputs.getLong(index);
+			return super.evaluate(inputs);
+		}
+
+		Kind getKind() {
+			return kind;
+		}
+
+		/**
+		 * @return true if the value is a Java object in JavaScript, not a primitive.
+		 */
+		boolean isJavaObject() {
+			return kind == Kind.LONG || kind == Kind.STRING;
+		}
+	}
+
+	private static final class Negate extends RuleExpression {
+		private final RuleExpression operand;
+
+		Negate(final RuleExpression operand) {
+			super(Type.NUMBER);
+			this.operand = operand;
+		}
+
+		@Override
+		double evaluateNumber(final RuleInputs inputs) {
+			return -operand.evaluateNumber(inputs);
+		}
+	}
+
+	private static final class Not extends RuleExpression {
+		private final RuleExpression operand;
+
+		Not(final RuleExpression operand) {
+			super(Type.BOOLEAN);
+			this.operand = operand;
+		}
+
+		@Override
+		boolean evaluateBoolean(final RuleInputs inputs) {
+			return !operand.evaluateBoolean(inputs);
+		}
+	}
+
+	private static final class Arithmetic extends RuleExpression {
+		private final char op;
+		private final RuleExpression left, right;
+
+		Arithmetic(final char op, final RuleExpression left, final RuleExpression right) {
+			super(Type.NUMBER);
+			this.op = op;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		double evaluateNumber(final RuleInputs inputs) {
+			final double a = left.evaluateNumber(inputs);
+			final double b = right.evaluateNumber(inputs);
+			switch (op) {
+			case '+':
+				return a + b;
+			case '-':
+				return a - b;
+			case '*':
+				return a * b;
+			case '/':
+				return a / b;
+			default:
+				return a % b;
+			}
+		}
+	}
+
+	private static final class Concat extends RuleExpression {
+		private final RuleExpression left, right;
+
+		Concat(final RuleExpression left, final RuleExpression right) {
+			super(Type.STRING);
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		String evaluateString(final RuleInputs inputs) {
+			return left.evaluateString(inputs) + right.evaluateString(inputs);
+		}
+	}
+
+	/** Comparison, where the operator is one of <code>&lt; &lt;= &gt; &gt;= == !=</code> */
+	private static final class Compare extends RuleExpression {
+		private static final String[] OPERATORS = {"<", "<=", ">", ">=", "==", "!="}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+		private static final int LT = 0, LE = 1, GT = 2, GE = 3, EQ = 4;
+		private final int op;
+		private final RuleExpression left, right;
+
+		Compare(final String op, final RuleExpression left, final RuleExpression right) {
+			super(Type.BOOLEAN);
+			this.op = Arrays.asList(OPERATORS).indexOf(op);
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		boolean evaluateBoolean(final RuleInputs inputs) {
+			switch (left.getType()) {
+			case NUMBER:
+				final double a = left.evaluateNumber(inputs);
+				final double b = right.evaluateNumber(inputs);
+				switch (op) {
+				case LT:
+					return a < b;
+				case LE:
+					return a <= b;
+				case GT:
+					return a > b;
+				case GE:
+					return a >= b;
+				case EQ:
+					return a == b;
+				default:
+					return a != b;
+				}
+			case BOOLEAN:
+				final boolean equal = left.evaluateBoolean(inputs) == right.evaluateBoolean(inputs);
+				return op == EQ ? equal : !equal;
+			default:
+				final String sa = left.evaluateString(inputs);
+				final String sb = right.evaluateString(inputs);
+				switch (op) {
+				case LT:
+					return sa.compareTo(sb) < 0;
+				case LE:
+					return sa.compareTo(sb) <= 0;
+				case GT:
+					return sa.compareTo(sb) > 0;
+				case GE:
+					return sa.compareTo(sb) >= 0;
+				case EQ:
+					return sa.equals(sb);
+				default:
+					return !sa.equals(sb);
+				}
+			}
+		}
+	}
+
+	private static final class Logical extends RuleExpression {
+		private final boolean and;
+		private final RuleExpression left, right;
+
+		Logical(final boolean and, final RuleExpression left, final RuleExpression right) {
+			super(Type.BOOLEAN);
+			this.and = and;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		boolean evaluateBoolean(final RuleInputs inputs) {
+			if(and)
+				return left.evaluateBoolean(inputs) && right.evaluateBoolean(inputs);
+			return left.evaluateBoolean(inputs) || right.evaluateBoolean(inputs);
+		}
+	}
+
+	/** Recursive descent parser with the precedence of the JavaScript operators */
+	@SuppressWarnings("nls")
+	private static final class Parser {
+		private final String text;
+		private final int pvCount;
+		private final Set<Kind> used;
+		private int pos = 0;
+
+		Parser(final String text, final int pvCount, final Set<Kind> used) {
+			this.text = text;
+			this.pvCount = pvCount;
+			this.used = used;
+		}
+
+		RuleExpression parse() throws ParseException {
+			final RuleExpression result = parseOr();
+			skipSpace();
+			if(pos < text.length())
+				throw error("Unexpected '" + text.charAt(pos) + "'");
+			return result;
+		}
+
+		private ParseException error(final String message) {
+			return new ParseException(message + " in rule expression '" + text + "'", pos);
+		}
+
+		private void skipSpace() {
+			while(pos < text.length() && Character.isWhitespace(text.charAt(pos)))
+				++pos;
+		}
+
+		/**Consume an operator if it is next, but not if it is the start of a longer one.
+		 * @param op the operator
+		 * @param notFollowedBy characters that must not follow the operator
+		 * @return true if the operator was consumed
+		 */
+		private boolean accept(final String op, final String notFollowedBy) {
+			skipSpace();
+			if(!text.startsWith(op, pos))
+				return false;
+			final int end = pos + op.length();
+			if(end < text.length() && notFollowedBy.indexOf(text.charAt(end)) >= 0)
+				return false;
+			pos = end;
+			return true;
+		}
+
+		private RuleExpression check(final RuleExpression operand, final Type type, final String op)
+				throws ParseException {
+			if(operand.getType() != type)
+				throw error("Operator " + op + " is only supported for " + type + ", not " + operand.getType());
+			return operand;
+		}
+
+		private RuleExpression parseOr() throws ParseException {
+			RuleExpression result = parseAnd();
+			while(accept("||", ""))
+				result = new Logical(false, check(result, Type.BOOLEAN, "||"), check(parseAnd(), Type.BOOLEAN, "||"));
+			return result;
+		}
+
+		private RuleExpression parseAnd() throws ParseException {
+			RuleExpression result = parseEquality();
+			while(accept("&&", ""))
+				result = new Logical(true, check(result, Type.BOOLEAN, "&&"), check(parseEquality(), Type.BOOLEAN, "&&"));
+			return result;
+		}
+
+		private RuleExpression parseEquality() throws ParseException {
+			RuleExpression result = parseRelational();
+			while(true){
+				final String op;
+				final boolean strict;
+				if(accept("===", "") || accept("!==", "")){
+					strict = true;
+					op = text.charAt(pos - 3) == '=' ? "==" : "!=";
+				}else if(accept("==", "") || accept("!=", "")){
+					strict = false;
+					op = text.substring(pos - 2, pos);
+				}else
+					return result;
+				final RuleExpression right = parseRelational();
+				// JavaScript converts operands of different types, which is not supported
+				check(right, result.getType(), op);
+				if(isJavaObject(result) || isJavaObject(right)){
+					if(strict || (isJavaObject(result) && isJavaObject(right)))
+						throw error("Operator " + op + " compares Java objects by identity");
+				}
+				result = new Compare(op, result, right);
+			}
+		}
+
+		private RuleExpression parseRelational() throws ParseException {
+			RuleExpression result = parseAdditive();
+			while(true){
+				final String op;
+				if(accept("<=", ""))
+					op = "<=";
+				else if(accept(">=", ""))
+					op = ">=";
+				else if(accept("<", "<"))
+					op = "<";
+				else if(accept(">", ">"))
+					op = ">";
+				else
+					return result;
+				final RuleExpression right = parseAdditive();
+				if(result.getType() == Type.BOOLEAN)
+					check(result, Type.NUMBER, op);
+				check(right, result.getType(), op);
+				result = new Compare(op, result, right);
+			}
+		}
+
+		private RuleExpression parseAdditive() throws ParseException {
+			RuleExpression result = parseMultiplicative();
+			while(true){
+				if(accept("+", "+=")){
+					final RuleExpression right = parseMultiplicative();
+					if(isLong(result) || isLong(right))
+						throw error("Operator + converts pvInt to a string");
+					if(result.getType() == Type.STRING && right.getType() == Type.STRING)
+						result = new Concat(result, right);
+					else
+						result = new Arithmetic('+', check(result, Type.NUMBER, "+"), check(right, Type.NUMBER, "+"));
+				}else if(accept("-", "-="))
+					result = new Arithmetic('-', check(result, Type.NUMBER, "-"), check(parseMultiplicative(), Type.NUMBER, "-"));
+				else
+					return result;
+			}
+		}
+
+		private RuleExpression parseMultiplicative() throws ParseException {
+			RuleExpression result = parseUnary();
+			while(true){
+				char op;
+				if(accept("*", "="))
+					op = '*';
+				else if(accept("/", "=/*"))
+					op = '/';
+				else if(accept("%", "="))
+					op = '%';
+				else
+					return result;
+				result = new Arithmetic(op, check(result, Type.NUMBER, String.valueOf(op)),
+						check(parseUnary(), Type.NUMBER, String.valueOf(op)));
+			}
+		}
+
+		private RuleExpression parseUnary() throws ParseException {
+			if(accept("!", "="))
+				return new Not(check(parseUnary(), Type.BOOLEAN, "!"));
+			if(accept("-", "-="))
+				return new Negate(check(parseUnary(), Type.NUMBER, "-"));
+			if(accept("+", "+="))
+				return check(parseUnary(), Type.NUMBER, "+");
+			return parsePrimary();
+		}
+
+		private RuleExpression parsePrimary() throws ParseException {
+			skipSpace();
+			if(pos >= text.length())
+				throw error("Missing operand");
+			final char c = text.charAt(pos);
+			if(c == '('){
+				++pos;
+				final RuleExpression result = parseOr();
+				if(!accept(")", ""))
+					throw error("Missing ')'");
+				return result;
+			}
+			if(c == '"' || c == '\'')
+				return parseString(c);
+			if(isDigit(c) || c == '.')
+				return parseNumber();
+			if(Character.isJavaIdentifierStart(c))
+				return parseIdentifier();
+			throw error("Unexpected '" + c + "'");
+		}
+
+		private RuleExpression parseString(final char quote) throws ParseException {
+			final StringBuilder sb = new StringBuilder();
+			++pos;
+			while(pos < text.length()){
+				char c = text.charAt(pos++);
+				if(c == quote)
+					return new Constant(Type.STRING, sb.toString());
+				if(c == '\\'){
+					if(pos >= text.length())
+						break;
+					c = text.charAt(pos++);
+					switch (c) {
+					case 'n':
+						c = '\n';
+						break;
+					case 't':
+						c = '\t';
+						break;
+					case 'r':
+						c = '\r';
+						break;
+					case '\\':
+					case '\'':
+					case '"':
+						break;
+					default:
+						throw error("Unsupported escape sequence \\" + c);
+					}
+				}else if(c == '\n' || c == '\r')
+					break;
+				sb.append(c);
+			}
+			throw error("Unterminated string");
+		}
+
+		private RuleExpression parseNumber() throws ParseException {
+			final int start = pos;
+			while(pos < text.length() && isDigit(text.charAt(pos)))
+				++pos;
+			// Legacy octal like 010 or hex like 0x10
+			if(pos - start > 1 && text.charAt(start) == '0')
+				throw error("Unsupported number");
+			if(pos < text.length() && text.charAt(pos) == '.'){
+				++pos;
+				while(pos < text.length() && isDigit(text.charAt(pos)))
+					++pos;
+			}
+			if(pos < text.length() && (text.charAt(pos) == 'e' || text.charAt(pos) == 'E')){
+				++pos;
+				if(pos < text.length() && (text.charAt(pos) == '+' || text.charAt(pos) == '-'))
+					++pos;
+				while(pos < text.length() && isDigit(text.charAt(pos)))
+					++pos;
+			}
+			if(pos < text.length() && Character.isJavaIdentifierPart(text.charAt(pos)))
+				throw error("Unsupported number");
+			try {
+				return new Constant(Type.NUMBER, Double.valueOf(text.substring(start, pos)));
+			} catch (NumberFormatException e) {
+				throw error("Invalid number");
+			}
+		}
+
+		private RuleExpression parseIdentifier() throws ParseException {
+			final int start = pos;
+			while(pos < text.length() && Character.isJavaIdentifierPart(text.charAt(pos)))
+				++pos;
+			final String name = text.substring(start, pos);
+			if(name.equals("true"))
+				return new Constant(Type.BOOLEAN, Boolean.TRUE);
+			if(name.equals("false"))
+				return new Constant(Type.BOOLEAN, Boolean.FALSE);
+			for(Kind kind : Kind.values()){
+				if(!name.startsWith(kind.getPrefix()))
+					continue;
+				final String index = name.substring(kind.getPrefix().length());
+				if(index.isEmpty() || !isDigits(index))
+					continue;
+				if(index.length() > 1 && index.charAt(0) == '0')
+					break;
+				final int i = Integer.parseInt(index);
+				if(i >= pvCount)
+					throw error("No input PV for " + name);
+				used.add(kind);
+				return new Variable(kind, i);
+			}
+			pos = start;
+			throw error("Unsupported identifier " + name);
+		}
+
+		private static boolean isJavaObject(final RuleExpression operand) {
+			return operand instanceof Variable && ((Variable) operand).isJavaObject();
+		}
+
+		private static boolean isLong(final RuleExpression operand) {
+			return operand instanceof Variable && ((Variable) operand).getKind() == Kind.LONG;
+		}
+
+		private static boolean isDigit(final char c) {
+			return c >= '0' && c <= '9';
+		}
+
+		private static boolean isDigits(final String s) {
+			if(s.length() > 9)
+				return false;
+			for(int i=0; i<s.length(); i++)
+				if(!isDigit(s.charAt(i)))
+					return false;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.script;
+
+import java.util.Set;
+
+import org.csstudio.opibuilder.scriptUtil.PVUtil;
+import org.csstudio.simplepv.IPV;
+
+/**The values of the input PVs of a {@link CompiledRule}.
+ * Like the JavaScript of a rule, it reads the values of all input PVs for each kind
+ * of variable used by the rule before the rule is evaluated.
+ * @author agent
+ *
+ */
+final class RuleInputs {
+
+	/**Kind of the input variables of a rule. */
+	@SuppressWarnings("nls")
+	enum Kind {
+		/** <code>pv0</code>, from {@link PVUtil#getDouble(IPV)} */
+		DOUBLE("pv"),
+		/** <code>pvInt0</code>, from {@link PVUtil#getLong(IPV)} */
+		LONG("pvInt"),
+		/** <code>pvStr0</code>, from {@link PVUtil#getString(IPV)} */
+		STRING("pvStr"),
+		/** <code>pvSev0</code>, from {@link PVUtil#getSeverity(IPV)} */
+		SEVERITY("pvSev");
+
+		private final String prefix;
+
+		private Kind(final String prefix) {
+			this.prefix = prefix;
+		}
+
+		/**
+		 * @return prefix of the variable names, which is followed by the index of the PV.
+		 */
+		String getPrefix() {
+			return prefix;
+		}
+	}
+
+	private final IPV[] pvs;
+
+	private final double[] doubles;
+
+	private final long[] longs;
+
+	private final String[] strings;
+
+	private final int[] severities;
+
+	/**
+	 * @param pvs the input PVs.
+	 * @param used the kinds of variables used by the rule.
+	 */
+	RuleInputs(final IPV[] pvs, final Set<Kind> used) {
+		this.pvs = pvs;
+		doubles = used.contains(Kind.DOUBLE) ? new double[pvs.length] : null;
+		longs = used.contains(Kind.LONG) ? new long[pvs.length] : null;
+		strings = used.contains(Kind.STRING) ? new String[pvs.length] : null;
+		severities = used.contains(Kind.SEVERITY) ? new int[pvs.length] : null;
+	}
+
+	/**Read the current values of the PVs.
+	 * @throws RuntimeException if a PV has no value.
+	 */
+	void read() {
+		for(int i=0; i<pvs.length; i++){
+			if(doubles != null)
+				doubles[i] = PVUtil.getDouble(pvs[i]);
+			if(longs != null)
+				longs[i] = PVUtil.getLong(pvs[i]);
+			if(strings != null)
+				strings[i] = PVUtil.getString(pvs[i]);
+			if(severities != null)
+				severities[i] = PVUtil.getSeverity(pvs[i]);
+		}
+	}
+
+	double getDouble(final int index) {
+		return doubles[index];
+	}
+
+	long getLong(final int index) {
+		return longs[index];
+	}
+
+	String getString(final int index) {
+		return strings[index];
+	}
+
+	int getSeverity(final int index) {
+		return severities[index];
+	}
+}
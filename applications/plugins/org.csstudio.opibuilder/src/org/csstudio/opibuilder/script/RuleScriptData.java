@@ -17,6 +17,7 @@ public class RuleScriptData extends ScriptData {
 
 	private String scriptString;
 	private RuleData ruleData;
+	private CompiledRule compiledRule;
 	
 	
 	public RuleScriptData(RuleData ruleData) {
@@ -41,6 +42,20 @@ public class RuleScriptData extends ScriptData {
 		this.scriptString = scriptString;
 	}
 	
+	/**
+	 * @return the rule compiled into Java, or null if it has to be executed as JavaScript.
+	 */
+	public final CompiledRule getCompiledRule() {
+		return compiledRule;
+	}
+
+	/**
+	 * @param compiledRule the rule compiled into Java
+	 */
+	public final void setCompiledRule(CompiledRule compiledRule) {
+		this.compiledRule = compiledRule;
+	}
+	
 	public void setPVList(List<PVTuple> pvList){
 		this.pvList = pvList;
 	}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.script;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.csstudio.opibuilder.preferences.PreferencesHelper;
+import org.csstudio.opibuilder.util.ResourceUtil;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Process-wide cache of compiled scripts, shared by all script stores.
+ * A display with many instances of the same script or rule only compiles it once.
+ * <p>
+ * Scripts from files are keyed by their resolved path and modification time,
+ * so an edited file is compiled again. Embedded scripts and rules are keyed by
+ * their text. The least recently used entry is dropped when the cache is full.
+ * @author agent
+ *
+ */
+public class ScriptCache {
+
+	private static ScriptCache instance;
+
+	private final int maxSize;
+
+	private final Map<String, Object> cache;
+
+	private long hits = 0, misses = 0;
+
+	/**
+	 * @param maxSize maximum number of compiled scripts, 0 to disable the cache.
+	 */
+	ScriptCache(final int maxSize) {
+		this.maxSize = maxSize;
+		cache = new LinkedHashMap<String, Object>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+				return size() > ScriptCache.this.maxSize;
+			}
+		};
+	}
+
+	/**
+	 * @return the instance of the script cache.
+	 */
+	public static synchronized ScriptCache getInstance() {
+		if(instance == null){
+			int size;
+			try {
+				size = PreferencesHelper.getScriptCacheSize();
+			} catch (Exception e) {
+				size = 200;
+			}
+			instance = new ScriptCache(size);
+		}
+		return instance;
+	}
+
+	/**Get the key for a script loaded from a file.
+	 * @param engine the engine or script store type which compiled the script.
+	 * @param path the absolute path of the script file.
+	 * @return the key, or null if the modification time of the file is unknown,
+	 * for example for a script loaded from a URL.
+	 */
+	@SuppressWarnings("nls")
+	public static String getFileKey(final String engine, final IPath path) {
+		final long modificationTime = ResourceUtil.getFileModificationTime(path);
+		if(modificationTime < 0)
+			return null;
+		return engine + "\nfile:" + path.toString() + "\n" + modificationTime;
+	}
+
+	/**Get the key for a script given as text, like an embedded script or a rule.
+	 * @param engine the engine or script store type which compiled the script.
+	 * @param text the script text.
+	 * @return the key.
+	 */
+	@SuppressWarnings("nls")
+	public static String getTextKey(final String engine, final String text) {
+		return engine + "\ntext:" + text;
+	}
+
+	/**
+	 * @param key the key of the script.
+	 * @return the compiled script or null if it is not in the cache.
+	 */
+	public synchronized Object get(final String key) {
+		if(key == null || maxSize <= 0)
+			return null;
+		final Object compiled = cache.get(key);
+		if(compiled == null)
+			++misses;
+		else
+			++hits;
+		return compiled;
+	}
+
+	/**Add a compiled script to the cache.
+	 * @param key the key of the script.
+	 * @param compiled the compiled script. It must be safe to share between script stores.
+	 */
+	public synchronized void put(final String key, final Object compiled) {
+		if(key == null || compiled == null || maxSize <= 0)
+			return;
+		cache.put(key, compiled);
+	}
+
+	/**
+	 * Remove all compiled scripts.
+	 */
+	public synchronized void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * @return number of compiled scripts in the cache.
+	 */
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	/**
+	 * @return number of lookups that found a compiled script.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return number of lookups that had to compile the script.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	@SuppressWarnings("nls")
+	@Override
+	public synchronized String toString() {
+		return "ScriptCache: " + cache.size() + "/" + maxSize + " scripts, " +
+				hits + " hits, " + misses + " misses";
+	}
+}
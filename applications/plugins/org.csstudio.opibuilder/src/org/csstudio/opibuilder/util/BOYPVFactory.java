@@ -1,27 +1,161 @@
 package org.csstudio.opibuilder.util;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
 
+import org.csstudio.opibuilder.OPIBuilderPlugin;
+import org.csstudio.opibuilder.model.AbstractWidgetModel;
+import org.csstudio.opibuilder.model.DisplayModel;
 import org.csstudio.opibuilder.preferences.PreferencesHelper;
 import org.csstudio.simplepv.AbstractPVFactory;
 import org.csstudio.simplepv.ExceptionHandler;
 import org.csstudio.simplepv.IPV;
+import org.csstudio.simplepv.IPVListener;
 import org.csstudio.simplepv.SimplePVLayer;
+import org.eclipse.osgi.util.NLS;
 import org.eclipse.swt.widgets.Display;
 
 /**The factory to create a PV for BOY. It will create either Utility PV or PVManager PV
  * which depends on the preference settings.
+ * PVs with the same name and a similar update duration share one PV of the 
+ * connection layer via a {@link SharedPVPool}.
+ * <p>
+ * The listeners of the PVs are notified on a number of threads, the lanes. All events
+ * of a PV are handled by the same lane, which is chosen by the name of the PV, so they
+ * stay in order while a slow listener only delays the PVs of its own lane.
+ * Listeners that take too long are reported in the console. A watchdog also reports
+ * lanes that are still busy with one event after that time, for example because
+ * a listener hangs, together with what the lane is doing.
+ * </p>
  * @author Xihui Chen
  *
  */
 public class BOYPVFactory{	
 	
 	/**
-	 * The default background thread for PV change event notification.
+	 * The background threads for PV change event notification, created on first use.
 	 */
-	private final static ExecutorService BOY_PV_THREAD = Executors
-			.newSingleThreadExecutor();
+	private static NotificationLane[] lanes;
+	
+	/**
+	 * Period of the lane watchdog in ms.
+	 */
+	private final static long WATCHDOG_PERIOD = 500;
+	
+	/**
+	 * Time after which the watchdog reports a busy lane in ns, 0 to disable.
+	 */
+	private static volatile long laneThresholdNanos = 0;
+	
+	/**A background thread for PV change event notification.
+	 * It keeps track of the event it is handling, so the watchdog can find lanes
+	 * that take too long.
+	 */
+	private static class NotificationLane implements Executor {
+		private final String name;
+		private final ExecutorService executor;
+		/** Thread of the lane, set when it runs its first event */
+		private volatile Thread thread;
+		/** Number of the current event, counted up when an event starts */
+		private volatile long event = 0;
+		/** Start of the current event from {@link System#nanoTime()} */
+		private volatile long eventStart;
+		/** If an event is running */
+		private volatile boolean busy = false;
+		/** Last event that was reported by the watchdog, only used by the watchdog */
+		private long reportedEvent = 0;
+		
+		NotificationLane(final String name) {
+			this.name = name;
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					final Thread thread = new Thread(r, NotificationLane.this.name);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		
+		@Override
+		public void execute(final Runnable command) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					thread = Thread.currentThread();
+					eventStart = System.nanoTime();
+					++event;
+					busy = true;
+					try {
+						command.run();
+					} finally {
+						busy = false;
+					}
+				}
+			});
+		}
+		
+		/**Report the lane if it has been busy with its current event for too long,
+		 * once per event.
+		 * @param thresholdNanos time in ns after which the lane is reported.
+		 */
+		void check(final long thresholdNanos) {
+			if(!busy)
+				return;
+			final long current = event;
+			final long nanos = System.nanoTime() - eventStart;
+			if(nanos < thresholdNanos || current == reportedEvent)
+				return;
+			reportedEvent = current;
+			final long millis = nanos / 1000000L;
+			final StringBuilder stack = new StringBuilder();
+			final Thread laneThread = thread;
+			if(laneThread != null){
+				final StackTraceElement[] frames = laneThread.getStackTrace();
+				for(int i=0; i<frames.length && i<10; i++)
+					stack.append("\n\tat ").append(frames[i]); //$NON-NLS-1$
+			}
+			final String message = NLS.bind(
+					"{0} has been busy with one PV event for {1} ms, " +
+					"which delays all PVs of this thread. It is in:{2}",
+					new Object[]{name, millis, stack});
+			OPIBuilderPlugin.getLogger().log(Level.WARNING, message);
+			ConsoleService.getInstance().writeWarning(message);
+		}
+	}
+	
+	/**
+	 * Slow listeners that were already reported, so the console is not flooded.
+	 */
+	private final static Set<IPVListener> reportedListeners = 
+			Collections.newSetFromMap(new WeakHashMap<IPVListener, Boolean>());
+	
+	private final static SharedPVPool.SlowListenerHandler slowListenerHandler = 
+			new SharedPVPool.SlowListenerHandler() {
+		@Override
+		public void handleSlowListener(IPV pv, IPVListener listener, long millis) {
+			synchronized (reportedListeners) {
+				if(!reportedListeners.add(listener))
+					return;
+			}
+			final String message = NLS.bind(
+					"Slow PV listener: {0} took {1} ms to handle an event of PV {2}, " +
+					"which delays the other PVs of its notification thread.",
+					new Object[]{listener, millis, pv.getName()});
+			OPIBuilderPlugin.getLogger().log(Level.WARNING, message);
+			ConsoleService.getInstance().writeWarning(message);
+		}
+	};
 	
 	private final static ExceptionHandler exceptionHandler = new ExceptionHandler() {
 		@Override
@@ -29,6 +163,11 @@ public class BOYPVFactory{
 			ErrorHandlerUtil.handleError("Error from pv connection layer: ", ex);
 		}
 	};
+	
+	/**
+	 * Pools of shared PVs by PV connection layer.
+	 */
+	private final static Map<String, SharedPVPool> pools = new HashMap<String, SharedPVPool>();
 
 	/**Create a PV. If it is using PV Manager, buffered all values is false and max update
 	 * rate is determined by GUI Refresh cycle. In RAP, this method should be called in UI thread. If not, please give the display
@@ -69,12 +208,83 @@ public class BOYPVFactory{
 			String pvConnectionLayer = PreferencesHelper.getPVConnectionLayer();
 			if(pvConnectionLayer == null || pvConnectionLayer.isEmpty())
 				throw new Exception("PV connection layer is not configured in preference.");
+			return getPool(pvConnectionLayer).createPV(
+					name, bufferAllValues, updateDuration, getNotificationLane(name));	
+	}
+	
+	/**
+	 * @param name name of the PV.
+	 * @return the thread on which the listeners of the PV are notified.
+	 */
+	private static synchronized Executor getNotificationLane(final String name){
+		if(lanes == null){
+			lanes = new NotificationLane[Math.max(1, PreferencesHelper.getPVNotificationLanes())];
+			for(int i=0; i<lanes.length; i++)
+				lanes[i] = new NotificationLane("BOY PV Notification " + i); //$NON-NLS-1$
+			laneThresholdNanos = PreferencesHelper.getPVSlowListenerThreshold() * 1000000L;
+			final NotificationLane[] watched = lanes;
+			new Timer("BOY PV Notification Watchdog", true).schedule(new TimerTask() { //$NON-NLS-1$
+				@Override
+				public void run() {
+					final long threshold = laneThresholdNanos;
+					if(threshold <= 0)
+						return;
+					for(NotificationLane lane : watched)
+						lane.check(threshold);
+				}
+			}, WATCHDOG_PERIOD, WATCHDOG_PERIOD);
+		}
+		return lanes[(name.hashCode() & Integer.MAX_VALUE) % lanes.length];
+	}
+	
+	private static synchronized SharedPVPool getPool(final String pvConnectionLayer) throws Exception{
+		SharedPVPool pool = pools.get(pvConnectionLayer);
+		if(pool == null){
 			AbstractPVFactory pvFactory = SimplePVLayer.getPVFactory
 					(pvConnectionLayer);
 			if(pvFactory == null)
-				throw new Exception("No such PVFactory extension available: " + pvConnectionLayer);			
-			return pvFactory.createPV(
-					name, false, updateDuration, bufferAllValues,  BOY_PV_THREAD, exceptionHandler);	
+				throw new Exception("No such PVFactory extension available: " + pvConnectionLayer);
+			pool = new SharedPVPool(pvFactory, exceptionHandler, 
+					PreferencesHelper.getPVSlowListenerThreshold(), slowListenerHandler);
+			pools.put(pvConnectionLayer, pool);
+		}
+		return pool;
+	}
+	
+	/**
+	 * @return statistics on how the PVs of BOY share the PVs of the connection layers.
+	 */
+	public static synchronized String getSharedPVStatistics(){
+		StringBuilder sb = new StringBuilder();
+		for(Map.Entry<String, SharedPVPool> entry : pools.entrySet()){
+			if(sb.length() > 0)
+				sb.append("\n"); //$NON-NLS-1$
+			sb.append(entry.getKey()).append(": ").append(entry.getValue().getStatistics()); //$NON-NLS-1$
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Apply the slow listener threshold preference to all pools and the lane watchdog.
+	 */
+	public static synchronized void reloadSlowListenerThreshold(){
+		final int threshold = PreferencesHelper.getPVSlowListenerThreshold();
+		for(SharedPVPool pool : pools.values())
+			pool.setSlowListenerThreshold(threshold);
+		laneThresholdNanos = threshold * 1000000L;
+	}
+	
+	/**Describe a widget for messages about its PV listeners.
+	 * @param widget the widget model, may be <code>null</code>.
+	 * @return name of the widget and path of its display.
+	 */
+	public static String getWidgetDescription(final AbstractWidgetModel widget){
+		if(widget == null)
+			return "unknown widget"; //$NON-NLS-1$
+		final DisplayModel display = widget.getRootDisplayModel();
+		if(display == null || display.getOpiFilePath() == null)
+			return "widget " + widget.getName(); //$NON-NLS-1$
+		return "widget " + widget.getName() + " in " + display.getOpiFilePath(); //$NON-NLS-1$ //$NON-NLS-2$
 	}
 
 }
@@ -8,6 +8,7 @@
 package org.csstudio.opibuilder.util;
 
 import java.util.LinkedHashSet;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 import org.csstudio.opibuilder.OPIBuilderPlugin;
@@ -54,10 +55,28 @@ public final class GUIRefreshThread implements Runnable {
 
 	private Runnable resetAsyncEmpty;
 
+	/** UI thread time of the current unbatched cycle, only accessed on the UI thread. */
+	private long cycleUINanos;
+
 	private Display rcpDisplay;
 	
 	private boolean isRuntime;
 
+	/**
+	 * Execute all tasks of a cycle in one runnable on the UI thread?
+	 */
+	private volatile boolean batched = false;
+
+	/**
+	 * Time budget in ms for one batch, 0 for no limit.
+	 */
+	private volatile int batchBudget = 50;
+
+	/** Statistics of the last cycle, see {@link #getLastCycleTaskCount()} etc. */
+	private volatile int lastCycleTaskCount, lastCycleDeferredCount;
+	private volatile long lastCycleUINanos, maxCycleUINanos;
+	private final AtomicLong cycleCount = new AtomicLong(), deferredCount = new AtomicLong();
+
 	/**
 	 * Standard constructor.
 	 */
@@ -71,7 +90,9 @@ public final class GUIRefreshThread implements Runnable {
 		resetAsyncEmpty = new Runnable() {
 
 			public void run() {
-				asyncEmpty = true;
+				// Last runnable of an unbatched cycle
+				endCycle(cycleUINanos, lastCycleTaskCount, 0);
+				cycleUINanos = 0;
 			}
 		};
 		reLoadGUIRefreshCycle();
@@ -100,8 +121,11 @@ public final class GUIRefreshThread implements Runnable {
 	 * Reschedule this task upon the new GUI refresh cycle.
 	 */
 	public void reLoadGUIRefreshCycle(){
-		if(isRuntime)
+		if(isRuntime){
 			guiRefreshCycle = PreferencesHelper.getGUIRefreshCycle();
+			batched = PreferencesHelper.isGUIRefreshBatched();
+			batchBudget = PreferencesHelper.getGUIRefreshBudget();
+		}
 	}
 	
 	/**Set GUI Refresh Cycle. This should be temporarily used only. It must be 
@@ -116,6 +140,74 @@ public final class GUIRefreshThread implements Runnable {
 		return guiRefreshCycle;
 	}
 
+	/**
+	 * @return <code>true</code> if tasks of a cycle are executed in one batch
+	 */
+	public boolean isBatched() {
+		return batched;
+	}
+
+	/**
+	 * @return number of tasks executed in the last cycle
+	 */
+	public int getLastCycleTaskCount() {
+		return lastCycleTaskCount;
+	}
+
+	/**
+	 * @return number of tasks that were deferred to the next cycle in the last cycle
+	 *         because the time budget was exceeded. Always 0 unless batched.
+	 */
+	public int getLastCycleDeferredCount() {
+		return lastCycleDeferredCount;
+	}
+
+	/**
+	 * @return time in ms spent on the UI thread by the tasks of the last cycle
+	 */
+	public double getLastCycleUITime() {
+		return lastCycleUINanos / 1e6;
+	}
+
+	/**
+	 * @return maximum time in ms spent on the UI thread in one cycle
+	 *         since the thread was started
+	 */
+	public double getMaxCycleUITime() {
+		return maxCycleUINanos / 1e6;
+	}
+
+	/**
+	 * @return number of cycles that executed tasks since the thread was started
+	 */
+	public long getCycleCount() {
+		return cycleCount.get();
+	}
+
+	/**
+	 * @return total number of deferred tasks since the thread was started
+	 */
+	public long getDeferredCount() {
+		return deferredCount.get();
+	}
+
+	/**
+	 * @return the cycle statistics as text, like the statistics of the shared PVs.
+	 */
+	@SuppressWarnings("nls")
+	public String getStatistics() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("GUI refresh: ").append(getCycleCount()).append(" cycles of ")
+			.append(guiRefreshCycle).append(" ms, last cycle ")
+			.append(getLastCycleTaskCount()).append(" tasks")
+			.append(String.format(" in %.1f ms (max %.1f ms)",
+					getLastCycleUITime(), getMaxCycleUITime()));
+		if(batched)
+			sb.append(String.format(", %d deferred (total %d)",
+					getLastCycleDeferredCount(), getDeferredCount()));
+		return sb.toString();
+	}
+
 	/**
 	 * {@inheritDoc}.
 	 */
@@ -157,18 +249,27 @@ public final class GUIRefreshThread implements Runnable {
 		if(!asyncEmpty)
 			return;
 		asyncEmpty = false;		
-		Object[] tasksArray;
+		final WidgetIgnorableUITask[] tasksArray;
 		//copy the tasks queue.
 		synchronized (this) {
-			tasksArray = tasksQueue.toArray();
+			tasksArray = tasksQueue.toArray(new WidgetIgnorableUITask[tasksQueue.size()]);
 			tasksQueue.clear();
 		}
 		if (rcpDisplay == null || rcpDisplay.isDisposed())
 			return;
-		for (Object o : tasksArray) {
+		if (batched) {
+			try {
+				rcpDisplay.asyncExec(new BatchTask(tasksArray));
+			} catch (Exception e) {
+				OPIBuilderPlugin.getLogger().log(Level.WARNING,
+						"Display has been disposed.", e); //$NON-NLS-1$
+			}
+			return;
+		}
+		lastCycleTaskCount = tasksArray.length;
+		for (WidgetIgnorableUITask task : tasksArray) {
 			try {
-				rcpDisplay.asyncExec(((WidgetIgnorableUITask) o)
-						.getRunnableTask());
+				rcpDisplay.asyncExec(new TimedTask(task.getRunnableTask()));
 			} catch (Exception e) {
 				OPIBuilderPlugin.getLogger().log(Level.WARNING,
 						"Display has been disposed.", e); //$NON-NLS-1$
@@ -177,6 +278,99 @@ public final class GUIRefreshThread implements Runnable {
 		rcpDisplay.asyncExec(resetAsyncEmpty);
 	}
 	
+	/**
+	 * Executes one task on the UI thread and adds its time to the current cycle.
+	 */
+	private class TimedTask implements Runnable {
+		private final Runnable task;
+
+		public TimedTask(final Runnable task) {
+			this.task = task;
+		}
+
+		public void run() {
+			final long start = System.nanoTime();
+			try {
+				task.run();
+			} finally {
+				cycleUINanos += System.nanoTime() - start;
+			}
+		}
+	}
+
+	/**
+	 * Update the statistics at the end of a cycle and allow the next one.
+	 * Called on the UI thread.
+	 * @param time UI thread time of the cycle in ns.
+	 * @param executed number of executed tasks.
+	 * @param deferred number of deferred tasks.
+	 */
+	private void endCycle(final long time, final int executed, final int deferred) {
+		lastCycleTaskCount = executed;
+		lastCycleDeferredCount = deferred;
+		lastCycleUINanos = time;
+		if (time > maxCycleUINanos)
+			maxCycleUINanos = time;
+		cycleCount.incrementAndGet();
+		deferredCount.addAndGet(deferred);
+		asyncEmpty = true;
+	}
+
+	/**
+	 * Executes the tasks of one cycle on the UI thread until the time budget
+	 * is used up, deferring the remaining tasks to the next cycle.
+	 */
+	private class BatchTask implements Runnable {
+		private final WidgetIgnorableUITask[] tasks;
+
+		public BatchTask(final WidgetIgnorableUITask[] tasks) {
+			this.tasks = tasks;
+		}
+
+		public void run() {
+			final long start = System.nanoTime();
+			final long budget = batchBudget * 1000000L;
+			int executed = 0;
+			try {
+				while (executed < tasks.length) {
+					try {
+						tasks[executed++].getRunnableTask().run();
+					} catch (Exception e) {
+						OPIBuilderPlugin.getLogger().log(Level.WARNING,
+								"GUI refresh error", e); //$NON-NLS-1$
+					}
+					if (budget > 0 && System.nanoTime() - start >= budget)
+						break;
+				}
+			} finally {
+				final int deferred = tasks.length - executed;
+				if (deferred > 0) {
+					defer(tasks, executed);
+					OPIBuilderPlugin.getLogger().log(Level.FINE,
+							"GUI refresh deferred {0} of {1} tasks", //$NON-NLS-1$
+							new Object[] { deferred, tasks.length });
+				}
+				endCycle(System.nanoTime() - start, executed, deferred);
+			}
+		}
+	}
+
+	/**
+	 * Put tasks that were not executed back at the start of the queue,
+	 * unless a newer task for the same object has already been queued.
+	 * @param tasks tasks of a batch.
+	 * @param from index of the first task that was not executed.
+	 */
+	private synchronized void defer(final WidgetIgnorableUITask[] tasks, final int from) {
+		final LinkedHashSet<WidgetIgnorableUITask> queue =
+				new LinkedHashSet<WidgetIgnorableUITask>(tasks.length - from + tasksQueue.size());
+		for (int i = from; i < tasks.length; i++)
+			if (!tasksQueue.contains(tasks[i]))
+				queue.add(tasks[i]);
+		queue.addAll(tasksQueue);
+		tasksQueue = queue;
+	}
+
 	/**
 	 * Process the complete queue in RAP.
 	 */
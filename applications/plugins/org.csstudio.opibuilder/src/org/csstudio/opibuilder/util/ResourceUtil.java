@@ -138,6 +138,30 @@ public class ResourceUtil {
         
 	}
 
+	/**Get the modification time of a workspace or local file.
+	 * @param path the path of the file.
+	 * @return the modification time in milliseconds, or -1 if it is unknown,
+	 * for example for a file loaded from a URL.
+	 */
+	public static long getFileModificationTime(IPath path){
+		if(path == null)
+			return -1;
+		File file = null;
+		try {
+			if(isExistingWorkspaceFile(path)){
+				final IPath sysPath = workspacePathToSysPath(path);
+				if(sysPath != null)
+					file = sysPath.toFile();
+			}else if(isExistingLocalFile(path))
+				file = path.toFile();
+		} catch (Exception e) {
+			OPIBuilderPlugin.getLogger().log(Level.FINE, "Cannot locate file " + path, e); //$NON-NLS-1$
+		}
+		if(file == null || !file.exists())
+			return -1;
+		return file.lastModified();
+	}
+
 	/**Build the absolute path from the file path (without the file name part)
 	 * of the widget model and the relative path.
 	 * @param model the widget model
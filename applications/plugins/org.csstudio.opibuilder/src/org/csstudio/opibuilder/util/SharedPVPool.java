@@ -0,0 +1,546 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.util;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import org.csstudio.opibuilder.OPIBuilderPlugin;
+
+import org.csstudio.simplepv.AbstractPVFactory;
+import org.csstudio.simplepv.ExceptionHandler;
+import org.csstudio.simplepv.IPV;
+import org.csstudio.simplepv.IPVListener;
+import org.epics.vtype.VType;
+
+/**A pool of PV readers that are shared by all BOY PVs with the same name,
+ * update period bucket and buffering.
+ * The PVs returned by the pool don't connect by themselves. While started,
+ * each of them is attached to a reader, which is one PV of the PV connection layer.
+ * The reader forwards its events to all attached PVs and is stopped
+ * when the last attached PV is stopped.
+ * A reader is created and started outside of the lock of the pool, so a slow
+ * PV connection layer only delays the PVs that wait for the same reader.
+ * <p>
+ * Update periods are rounded down to 1, 2 or 5 times a power of 10 ms,
+ * so that PVs with similar update periods share a reader.
+ * </p>
+ * <p>
+ * Listeners that take longer than a threshold to handle an event are
+ * reported to a {@link SlowListenerHandler}, because they delay all other
+ * events on the same notification thread. An exception from a listener
+ * is passed to the exception handler and doesn't keep the event from the
+ * other listeners.
+ * </p>
+ * @author agent
+ *
+ */
+public class SharedPVPool {
+
+	/**Handler of listeners that take too long to handle an event. */
+	public interface SlowListenerHandler {
+		/**Called on the notification thread after the listener returned.
+		 * @param pv the PV whose event was handled.
+		 * @param listener the slow listener.
+		 * @param millis time the listener took in ms.
+		 */
+		public void handleSlowListener(IPV pv, IPVListener listener, long millis);
+	}
+
+	private final AbstractPVFactory pvFactory;
+
+	private final ExceptionHandler exceptionHandler;
+
+	/** Threshold for slow listeners in ns, 0 to disable */
+	private volatile long slowListenerNanos;
+
+	private final SlowListenerHandler slowListenerHandler;
+
+	/** Readers by key, synchronized on the map */
+	private final Map<String, Reader> readers = new HashMap<String, Reader>();
+
+	/** Values and events received from the readers */
+	private final AtomicLong received = new AtomicLong();
+
+	/** Events forwarded to the attached PVs */
+	private final AtomicLong forwarded = new AtomicLong();
+
+	/**
+	 * @param pvFactory factory of the PV connection layer that creates the readers.
+	 * @param exceptionHandler exception handler for the readers.
+	 */
+	public SharedPVPool(final AbstractPVFactory pvFactory, final ExceptionHandler exceptionHandler) {
+		this(pvFactory, exceptionHandler, 0, null);
+	}
+
+	/**
+	 * @param pvFactory factory of the PV connection layer that creates the readers.
+	 * @param exceptionHandler exception handler for the readers.
+	 * @param slowListenerMillis listeners that take at least this long in ms to handle an
+	 * event are reported. 0 to disable.
+	 * @param slowListenerHandler handler of slow listeners.
+	 */
+	public SharedPVPool(final AbstractPVFactory pvFactory, final ExceptionHandler exceptionHandler,
+			final long slowListenerMillis, final SlowListenerHandler slowListenerHandler) {
+		this.pvFactory = pvFactory;
+		this.exceptionHandler = exceptionHandler;
+		this.slowListenerHandler = slowListenerHandler;
+		setSlowListenerThreshold(slowListenerMillis);
+	}
+
+	/**
+	 * @param slowListenerMillis listeners that take at least this long in ms to handle an
+	 * event are reported. 0 to disable.
+	 */
+	public void setSlowListenerThreshold(final long slowListenerMillis) {
+		slowListenerNanos = slowListenerHandler == null ? 0 : slowListenerMillis * 1000000L;
+	}
+
+	/**Create a PV that will share its reader with other PVs of this pool.
+	 * @param name name of the PV.
+	 * @param bufferAllValues if all values should be buffered.
+	 * @param updateDuration the fastest update duration in ms.
+	 * @param notificationThread thread on which the listeners of the PV are notified.
+	 * It should be the same for all PVs of the same name.
+	 * @return the PV
+	 */
+	public IPV createPV(final String name, final boolean bufferAllValues,
+			final int updateDuration, final Executor notificationThread) {
+		return new SharedPV(name, bufferAllValues, getUpdateBucket(updateDuration), notificationThread);
+	}
+
+	/**
+	 * @param updateDuration update period in ms
+	 * @return the period rounded down to 1, 2 or 5 times a power of 10, at least 1.
+	 */
+	static int getUpdateBucket(final int updateDuration) {
+		if(updateDuration <= 1)
+			return 1;
+		int decade = 1;
+		while(decade <= updateDuration / 10)
+			decade *= 10;
+		if(updateDuration >= 5 * decade)
+			return 5 * decade;
+		if(updateDuration >= 2 * decade)
+			return 2 * decade;
+		return decade;
+	}
+
+	/**Attach a PV to the reader of its key, creating and starting the reader if needed.
+	 * @param pv the PV to attach
+	 * @return the reader
+	 * @throws Exception on error creating or starting the reader.
+	 */
+	private Reader attach(final SharedPV pv) throws Exception {
+		final String key = pv.getKey();
+		while(true){
+			final Reader reader;
+			boolean create = false, attached = false;
+			synchronized (readers) {
+				final Reader existing = readers.get(key);
+				if(existing == null){
+					reader = new Reader(key);
+					readers.put(key, reader);
+					create = true;
+				}
+				else
+					reader = existing;
+				if(create || reader.isStarted()){
+					reader.attached.add(pv);
+					attached = true;
+				}
+			}
+			if(create){
+				startReader(reader, pv);
+				return reader;
+			}
+			if(attached){
+				sendCurrentState(reader, pv);
+				return reader;
+			}
+			// Another PV is starting the reader. Attach once it's started,
+			// or create a new reader if it was stopped in the meantime.
+			reader.awaitStarted();
+		}
+	}
+
+	/**Create and start the PV of a reader. Called without holding the lock of the pool.
+	 * @param reader the reader, which is already in the pool
+	 * @param pv the PV that created the reader
+	 * @throws Exception on error creating or starting the PV, which also removes the reader.
+	 */
+	private void startReader(final Reader reader, final SharedPV pv) throws Exception {
+		try {
+			final IPV readerPV = pvFactory.createPV(pv.getName(), false, pv.updateDuration,
+					pv.bufferAllValues, pv.notificationThread, exceptionHandler);
+			readerPV.addListener(reader);
+			reader.pv = readerPV;
+			try {
+				readerPV.start();
+			} catch (Exception e) {
+				readerPV.removeListener(reader);
+				throw e;
+			}
+		} catch (Exception e) {
+			synchronized (readers) {
+				readers.remove(reader.key);
+			}
+			reader.error = e;
+			throw e;
+		} finally {
+			reader.started.countDown();
+		}
+	}
+
+	/**Send the connection state and value of a started reader to a PV that was
+	 * attached later, because the reader may have sent its events already.
+	 * @param reader the reader
+	 * @param pv the attached PV
+	 */
+	private void sendCurrentState(final Reader reader, final SharedPV pv) {
+		pv.notificationThread.execute(new Runnable() {
+			@Override
+			public void run() {
+				if(reader.pv.isConnected()){
+					pv.fireConnectionChanged();
+					pv.fireWritePermissionChanged();
+				}
+				if(reader.pv.getValue() != null)
+					pv.fireValueChanged();
+			}
+		});
+	}
+
+	/**Detach a PV from its reader, stopping the reader when no other PV is attached.
+	 * @param pv the PV to detach
+	 * @param reader its reader
+	 */
+	private void detach(final SharedPV pv, final Reader reader) {
+		synchronized (readers) {
+			reader.attached.remove(pv);
+			if(!reader.attached.isEmpty())
+				return;
+			readers.remove(reader.key);
+		}
+		reader.pv.removeListener(reader);
+		reader.pv.stop();
+	}
+
+	/**Account for an event that was forwarded to a listener.
+	 * @param pv the PV
+	 * @param listener the listener that handled the event
+	 * @param start time when the listener was called, from {@link System#nanoTime()}
+	 */
+	private void forwarded(final IPV pv, final IPVListener listener, final long start) {
+		forwarded.incrementAndGet();
+		final long threshold = slowListenerNanos;
+		if(threshold <= 0)
+			return;
+		final long nanos = System.nanoTime() - start;
+		if(nanos >= threshold)
+			slowListenerHandler.handleSlowListener(pv, listener, nanos / 1000000L);
+	}
+
+	/**
+	 * @return number of readers, i.e. PVs of the PV connection layer.
+	 */
+	public int getReaderCount() {
+		synchronized (readers) {
+			return readers.size();
+		}
+	}
+
+	/**
+	 * @return number of started PVs that are attached to the readers.
+	 */
+	public int getAttachedCount() {
+		int count = 0;
+		synchronized (readers) {
+			for(Reader reader : readers.values())
+				count += reader.attached.size();
+		}
+		return count;
+	}
+
+	/**
+	 * @return statistics of the pool.
+	 */
+	public String getStatistics() {
+		final int readerCount, attached;
+		synchronized (readers) {
+			readerCount = getReaderCount();
+			attached = getAttachedCount();
+		}
+		return String.format("%d PVs share %d readers, %d events received, %d forwarded", //$NON-NLS-1$
+				attached, readerCount, received.get(), forwarded.get());
+	}
+
+	/**Report an exception from a listener of a PV.
+	 * @param pv the PV
+	 * @param listener the listener that failed
+	 * @param exception the exception
+	 */
+	private void listenerFailed(final IPV pv, final IPVListener listener, final RuntimeException exception) {
+		if(exceptionHandler != null)
+			exceptionHandler.handleException(exception);
+		else
+			OPIBuilderPlugin.getLogger().log(Level.WARNING,
+					"Listener " + listener + " of PV " + pv.getName() + " failed", exception); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	/**One PV of the PV connection layer, which forwards its events to all attached PVs */
+	private class Reader implements IPVListener {
+		private final String key;
+		/** Set by the PV that creates the reader, before {@link #started} is counted down */
+		private volatile IPV pv;
+		/** Error of creating or starting the PV, before {@link #started} is counted down */
+		private volatile Exception error;
+		private final CountDownLatch started = new CountDownLatch(1);
+		private final List<SharedPV> attached = new CopyOnWriteArrayList<SharedPV>();
+
+		public Reader(final String key) {
+			this.key = key;
+		}
+
+		/**
+		 * @return true if the PV of the reader has been started without error.
+		 */
+		boolean isStarted() {
+			return started.getCount() == 0 && error == null;
+		}
+
+		/**Wait until the PV that created the reader has started it.
+		 * @throws Exception the error of creating or starting the PV.
+		 */
+		void awaitStarted() throws Exception {
+			started.await();
+			if(error != null)
+				throw error;
+		}
+
+		@Override
+		public void connectionChanged(IPV pv) {
+			received.incrementAndGet();
+			for(SharedPV shared : attached)
+				shared.fireConnectionChanged();
+		}
+
+		@Override
+		public void exceptionOccurred(IPV pv, Exception exception) {
+			received.incrementAndGet();
+			for(SharedPV shared : attached)
+				shared.fireExceptionOccurred(exception);
+		}
+
+		@Override
+		public void valueChanged(IPV pv) {
+			received.incrementAndGet();
+			for(SharedPV shared : attached)
+				if(!shared.isPaused())
+					shared.fireValueChanged();
+		}
+
+		@Override
+		public void writeFinished(IPV pv, boolean isWriteSucceeded) {
+			received.incrementAndGet();
+			for(SharedPV shared : attached)
+				shared.fireWriteFinished(isWriteSucceeded);
+		}
+
+		@Override
+		public void writePermissionChanged(IPV pv) {
+			received.incrementAndGet();
+			for(SharedPV shared : attached)
+				shared.fireWritePermissionChanged();
+		}
+	}
+
+	/**PV that uses a shared reader while it is started */
+	private class SharedPV implements IPV {
+		private final String name;
+		private final boolean bufferAllValues;
+		private final int updateDuration;
+		private final Executor notificationThread;
+		private final List<IPVListener> listeners = new CopyOnWriteArrayList<IPVListener>();
+		private volatile Reader reader;
+		private volatile boolean paused = false;
+
+		public SharedPV(final String name, final boolean bufferAllValues,
+				final int updateDuration, final Executor notificationThread) {
+			this.name = name;
+			this.bufferAllValues = bufferAllValues;
+			this.updateDuration = updateDuration;
+			this.notificationThread = notificationThread;
+		}
+
+		String getKey() {
+			return name + "|" + updateDuration + "|" + bufferAllValues; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		@Override
+		public void addListener(IPVListener listener) {
+			listeners.add(listener);
+		}
+
+		@Override
+		public void removeListener(IPVListener listener) {
+			listeners.remove(listener);
+		}
+
+		@Override
+		public List<VType> getAllBufferedValues() {
+			final Reader r = reader;
+			return r == null ? null : r.pv.getAllBufferedValues();
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public VType getValue() {
+			final Reader r = reader;
+			return r == null ? null : r.pv.getValue();
+		}
+
+		@Override
+		public boolean isBufferingValues() {
+			return bufferAllValues;
+		}
+
+		@Override
+		public boolean isConnected() {
+			final Reader r = reader;
+			return r != null && r.pv.isConnected();
+		}
+
+		@Override
+		public boolean isPaused() {
+			return paused;
+		}
+
+		@Override
+		public boolean isStarted() {
+			return reader != null;
+		}
+
+		@Override
+		public boolean isWriteAllowed() {
+			final Reader r = reader;
+			return r != null && r.pv.isWriteAllowed();
+		}
+
+		@Override
+		public void setPaused(boolean paused) {
+			this.paused = paused;
+		}
+
+		@Override
+		public void setValue(Object value) throws Exception {
+			getStartedReader().pv.setValue(value);
+		}
+
+		@Override
+		public boolean setValue(Object value, int timeout) throws Exception {
+			return getStartedReader().pv.setValue(value, timeout);
+		}
+
+		private Reader getStartedReader() throws Exception {
+			final Reader r = reader;
+			if(r == null)
+				throw new Exception("PV " + name + " is not started."); //$NON-NLS-1$ //$NON-NLS-2$
+			return r;
+		}
+
+		@Override
+		public synchronized void start() throws Exception {
+			if(reader == null)
+				reader = attach(this);
+		}
+
+		@Override
+		public synchronized void stop() {
+			if(reader == null)
+				return;
+			detach(this, reader);
+			reader = null;
+		}
+
+		void fireConnectionChanged() {
+			for(IPVListener listener : listeners){
+				final long start = System.nanoTime();
+				try {
+					listener.connectionChanged(this);
+				} catch (RuntimeException e) {
+					listenerFailed(this, listener, e);
+				}
+				forwarded(this, listener, start);
+			}
+		}
+
+		void fireExceptionOccurred(Exception exception) {
+			for(IPVListener listener : listeners){
+				final long start = System.nanoTime();
+				try {
+					listener.exceptionOccurred(this, exception);
+				} catch (RuntimeException e) {
+					listenerFailed(this, listener, e);
+				}
+				forwarded(this, listener, start);
+			}
+		}
+
+		void fireValueChanged() {
+			for(IPVListener listener : listeners){
+				final long start = System.nanoTime();
+				try {
+					listener.valueChanged(this);
+				} catch (RuntimeException e) {
+					listenerFailed(this, listener, e);
+				}
+				forwarded(this, listener, start);
+			}
+		}
+
+		void fireWriteFinished(boolean isWriteSucceeded) {
+			for(IPVListener listener : listeners){
+				final long start = System.nanoTime();
+				try {
+					listener.writeFinished(this, isWriteSucceeded);
+				} catch (RuntimeException e) {
+					listenerFailed(this, listener, e);
+				}
+				forwarded(this, listener, start);
+			}
+		}
+
+		void fireWritePermissionChanged() {
+			for(IPVListener listener : listeners){
+				final long start = System.nanoTime();
+				try {
+					listener.writePermissionChanged(this);
+				} catch (RuntimeException e) {
+					listenerFailed(this, listener, e);
+				}
+				forwarded(this, listener, start);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+}
@@ -14,6 +14,7 @@ import org.csstudio.swt.rtplot.Trace;
 import org.csstudio.swt.rtplot.TraceType;
 import org.csstudio.swt.rtplot.data.PlotDataItem;
 import org.csstudio.swt.rtplot.data.PlotDataProvider;
+import org.csstudio.swt.rtplot.data.PlotDataSearch;
 import org.csstudio.swt.rtplot.internal.util.IntList;
 import org.csstudio.swt.rtplot.internal.util.ScreenTransform;
 import org.eclipse.swt.SWT;
@@ -48,6 +49,29 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
     final private static int OUTSIDE = 1000;
     private int x_min, x_max, y_min, y_max;
 
+    /** Number of 'channels' for which decimation keeps the extremes:
+     *  value, min, max, value - std.dev., value + std.dev.
+     */
+    final private static int CHANNELS = 5;
+
+    final private PlotDataSearch<XTYPE> search = new PlotDataSearch<>();
+
+    /** Indices of samples to draw, see {@link #decimate(ScreenTransform, PlotDataProvider)} */
+    final private IntList indices = new IntList(INITIAL_ARRAY_SIZE);
+
+    /** Visible range of samples, see {@link #decimate(ScreenTransform, PlotDataProvider)} */
+    private int visible_start, visible_end;
+
+    /** Current run of samples in {@link #decimate(ScreenTransform, PlotDataProvider)}:
+     *  Screen column (rounded and truncated), 'valid' state, first and last sample.
+     *  For each channel, index and value of the minimum (at [2*channel])
+     *  and maximum (at [2*channel+1])
+     */
+    private int run_x, run_x_trunc, run_state, run_first = -1, run_last;
+    final private int run_index[] = new int[2*CHANNELS];
+    final private double run_value[] = new double[2*CHANNELS];
+    final private int run_sorted[] = new int[2*CHANNELS + 2];
+
     final private int clipX(final double x)
     {
         if (x < x_min)
@@ -91,19 +115,11 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
         gc.setAdvanced(true);
         gc.setAntialias(SWT.ON);
 
-        // TODO Optimize drawing
-        //
-        // Determine first sample to draw via PlotDataSearch.findSampleLessOrEqual(),
-        // then end drawing when reaching right end of area.
-        //
-        // Loop only once, performing drawMinMax, drawStdDev, drawValueStaircase in one loop
-        //
-        // For now, main point is that this happens in non-UI thread,
-        // so the slower the better to test UI responsiveness.
         final PlotDataProvider<XTYPE> data = trace.getData();
         data.getLock().lock();
         try
         {
+            decimate(x_transform, data);
             final TraceType type = trace.getType();
             switch (type)
             {
@@ -168,6 +184,134 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
         gc.setForeground(old_color);
     }
 
+    /** Determine samples to draw
+     *
+     *  <p>Sets {@link #visible_start}, {@link #visible_end} to the samples
+     *  within the visible range, plus one sample on either side,
+     *  using binary search on the (sorted) data.
+     *
+     *  <p>Sets {@link #indices} to the samples that need to be drawn.
+     *  Consecutive samples that fall into the same screen column
+     *  and have the same 'valid' state for value, min/max and std.dev.
+     *  are reduced to the first and last sample of that run, plus
+     *  the samples with the lowest and highest value of each channel.
+     *  Lines through these samples cover the same pixels as lines through all
+     *  samples, so the result looks the same, but the number of samples
+     *  to draw is limited by the width of the plot, not the size of the data.
+     *
+     *  @param x_transform Horizontal axis
+     *  @param data Data
+     */
+    final private void decimate(final ScreenTransform<XTYPE> x_transform, final PlotDataProvider<XTYPE> data)
+    {
+        indices.clear();
+        run_first = -1;
+        final int N = data.size();
+        visible_start = 0;
+        visible_end = N-1;
+        if (N <= 0)
+            return;
+        final int start = search.findSampleLessOrEqual(data, x_transform.inverse(x_min));
+        final int end = search.findSampleLessOrEqual(data, x_transform.inverse(x_max));
+        if (start <= end)
+        {
+            visible_start = Math.max(start, 0);
+            visible_end = Math.min(end + 1, N-1);
+        }
+
+        for (int i=visible_start; i<=visible_end; ++i)
+        {
+            final PlotDataItem<XTYPE> item = data.get(i);
+            final double pos = x_transform.transform(item.getPosition());
+            final int x = clipX(Math.round(pos));
+            final int x_trunc = clipX(pos);
+            final double value = item.getValue();
+            final double min = item.getMin();
+            final double max = item.getMax();
+            final double dev = item.getStdDev();
+            final boolean value_ok = !Double.isNaN(value);
+            final int state = (value_ok ? 1 : 0) |
+                              (Double.isNaN(min)  ||  Double.isNaN(max) ? 0 : 2) |
+                              (value_ok  &&  dev > 0 ? 4 : 0);
+            if (run_first < 0  ||  x != run_x  ||  x_trunc != run_x_trunc  ||  state != run_state)
+            {
+                flushRun();
+                run_x = x;
+                run_x_trunc = x_trunc;
+                run_state = state;
+                run_first = i;
+                for (int c=0; c<2*CHANNELS; ++c)
+                    run_index[c] = i;
+                run_value[0] = run_value[1] = value;
+                run_value[2] = run_value[3] = min;
+                run_value[4] = run_value[5] = max;
+                run_value[6] = run_value[7] = value - dev;
+                run_value[8] = run_value[9] = value + dev;
+            }
+            else
+            {
+                updateRun(0, i, value);
+                updateRun(1, i, min);
+                updateRun(2, i, max);
+                updateRun(3, i, value - dev);
+                updateRun(4, i, value + dev);
+            }
+            run_last = i;
+        }
+        flushRun();
+    }
+
+    /** @param channel Channel of current run
+     *  @param index Sample index
+     *  @param value Value of that channel for the sample
+     */
+    final private void updateRun(final int channel, final int index, final double value)
+    {
+        if (value < run_value[2*channel])
+        {
+            run_value[2*channel] = value;
+            run_index[2*channel] = index;
+        }
+        if (value > run_value[2*channel+1])
+        {
+            run_value[2*channel+1] = value;
+            run_index[2*channel+1] = index;
+        }
+    }
+
+    /** Add samples of current run to {@link #indices} */
+    final private void flushRun()
+    {
+        if (run_first < 0)
+            return;
+        // Sort first, last, extremes by index, skipping duplicates
+        int n = 0;
+        run_sorted[n++] = run_first;
+        for (int c=0; c<run_index.length; ++c)
+            n = insert(run_sorted, n, run_index[c]);
+        n = insert(run_sorted, n, run_last);
+        for (int i=0; i<n; ++i)
+            indices.add(run_sorted[i]);
+        run_first = -1;
+    }
+
+    /** @param sorted Sorted indices
+     *  @param n Number of indices
+     *  @param index Index to insert unless already present
+     *  @return Updated number of indices
+     */
+    final private static int insert(final int sorted[], final int n, final int index)
+    {
+        int i = n;
+        while (i > 0  &&  sorted[i-1] > index)
+            --i;
+        if (i > 0  &&  sorted[i-1] == index)
+            return n;
+        System.arraycopy(sorted, i, sorted, i+1, n-i);
+        sorted[i] = index;
+        return n+1;
+    }
+
     /** Draw values of data as staircase line
      *  @param gc GC
      *  @param x_transform Horizontal axis
@@ -180,12 +324,12 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
             final PlotDataProvider<XTYPE> data, final int line_width)
     {
         final IntList value_poly = new IntList(INITIAL_ARRAY_SIZE);
-        final int N = data.size();
+        final int N = indices.size();
         int last_x = -1, last_y = -1;
         gc.setLineWidth(line_width);
         for (int i=0; i<N; ++i)
         {
-        	final PlotDataItem<XTYPE> item = data.get(i);
+        	final PlotDataItem<XTYPE> item = data.get(indices.get(i));
         	final int x = clipX(Math.round(x_transform.transform(item.getPosition())));
         	final double value = item.getValue();
         	if (value_poly.size() > 0  && x != last_x)
@@ -221,12 +365,12 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
             final PlotDataProvider<XTYPE> data, final int line_width)
     {
         final IntList value_poly = new IntList(INITIAL_ARRAY_SIZE);
-        final int N = data.size();
+        final int N = indices.size();
         gc.setLineWidth(line_width);
         int last_x = -1, last_y = -1;
         for (int i=0; i<N; ++i)
         {
-            final PlotDataItem<XTYPE> item = data.get(i);
+            final PlotDataItem<XTYPE> item = data.get(indices.get(i));
             final int x = clipX(Math.round(x_transform.transform(item.getPosition())));
             final double value = item.getValue();
             if (Double.isNaN(value))
@@ -259,10 +403,10 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
     	final IntList min = new IntList(INITIAL_ARRAY_SIZE);
     	final IntList max = new IntList(INITIAL_ARRAY_SIZE);
 
-        final int N = data.size();
+        final int N = indices.size();
         for (int i = 0;  i < N;  ++i)
         {
-        	final PlotDataItem<XTYPE> item = data.get(i);
+        	final PlotDataItem<XTYPE> item = data.get(indices.get(i));
         	double ymin = item.getMin();
         	double ymax = item.getMax();
         	if (Double.isNaN(ymin)  ||  Double.isNaN(ymax))
@@ -293,10 +437,10 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
         final IntList min = new IntList(INITIAL_ARRAY_SIZE);
         final IntList max = new IntList(INITIAL_ARRAY_SIZE);
 
-        final int N = data.size();
+        final int N = indices.size();
         for (int i = 0;  i < N;  ++i)
         {
-            final PlotDataItem<XTYPE> item = data.get(i);
+            final PlotDataItem<XTYPE> item = data.get(indices.get(i));
             double ymin = item.getMin();
             double ymax = item.getMax();
             if (Double.isNaN(ymin)  ||  Double.isNaN(ymax))
@@ -330,10 +474,10 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
         final IntList lower_poly = new IntList(INITIAL_ARRAY_SIZE);
         final IntList upper_poly = new IntList(INITIAL_ARRAY_SIZE);
 
-        final int N = data.size();
+        final int N = indices.size();
         for (int i = 0;  i < N;  ++i)
         {
-            final PlotDataItem<XTYPE> item = data.get(i);
+            final PlotDataItem<XTYPE> item = data.get(indices.get(i));
             double value = item.getValue();
             double dev = item.getStdDev();
             if (Double.isNaN(value) ||  ! (dev > 0))
@@ -380,9 +524,9 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
             final ScreenTransform<XTYPE> x_transform, final YAxisImpl<XTYPE> y_axis,
             final PlotDataProvider<XTYPE> data, PointType point_type, final int size)
     {
-        final int N = data.size();
+        // Each distinct point is drawn, so no decimation, only limited to visible range
         int last_x = -1, last_y = -1;
-        for (int i=0; i<N; ++i)
+        for (int i=visible_start; i<=visible_end; ++i)
         {
             final PlotDataItem<XTYPE> item = data.get(i);
             final int x = clipX(Math.round(x_transform.transform(item.getPosition())));
@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.trends.databrowser2.model;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.csstudio.archive.vtype.ArchiveVStatistics;
+import org.epics.util.time.Timestamp;
+import org.epics.vtype.AlarmSeverity;
+import org.epics.vtype.VNumber;
+import org.epics.vtype.VStatistics;
+import org.epics.vtype.VType;
+import org.epics.vtype.ValueFactory;
+import org.junit.Test;
+
+/** JUnit test for PlotSampleArray
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class PlotSampleArrayUnitTest
+{
+    final private AtomicInteger waveform_index = new AtomicInteger(0);
+
+    /** @param secs Time stamp
+     *  @param value Value
+     *  @return Sample
+     */
+    private static VType makeValue(final int secs, final double value)
+    {
+        return ValueFactory.newVDouble(value,
+                ValueFactory.newAlarm(AlarmSeverity.MINOR, "LOW"),
+                ValueFactory.newTime(Timestamp.of(secs, 0)),
+                ValueFactory.displayNone());
+    }
+
+    /** @param array Samples
+     *  @return Values of samples
+     */
+    private static String getValues(final PlotSampleArray array)
+    {
+        final StringBuilder buf = new StringBuilder();
+        for (int i=0; i<array.size(); ++i)
+        {
+            if (i > 0)
+                buf.append(", ");
+            buf.append((int) array.get(i).getValue());
+        }
+        return buf.toString();
+    }
+
+    /** Merge samples as done by HistoricSamples */
+    private static void merge(final PlotSampleArray array, final List<VType> samples)
+    {
+        final int l = array.findSampleLessThan(PlotSampleArray.getTime(samples.get(0)));
+        final int r = array.findSampleGreaterThan(PlotSampleArray.getTime(samples.get(samples.size()-1)));
+        array.splice(l + 1, r < 0 ? array.size() : r, "Test", samples);
+    }
+
+    @Test
+    public void testValues()
+    {
+        final PlotSampleArray array = new PlotSampleArray(waveform_index, 0);
+        final List<VType> samples = new ArrayList<>();
+        samples.add(makeValue(10, 3.14));
+        samples.add(ValueFactory.newVInt(42, ValueFactory.alarmNone(), ValueFactory.newTime(Timestamp.of(11, 500)), ValueFactory.displayNone()));
+        samples.add(new ArchiveVStatistics(Timestamp.of(12, 0), AlarmSeverity.NONE, "", ValueFactory.displayNone(), 2.0, 1.0, 3.0, 0.5, 10));
+        samples.add(ValueFactory.newVString("Text", ValueFactory.alarmNone(), ValueFactory.newTime(Timestamp.of(13, 0))));
+        array.splice(0, 0, "Test", samples);
+        assertEquals(4, array.size());
+
+        PlotSample sample = array.get(0);
+        assertEquals("Test", sample.getSource());
+        assertEquals(3.14, sample.getValue(), 0.0);
+        assertEquals(Double.NaN, sample.getMin(), 0.0);
+        VNumber number = (VNumber) sample.getVType();
+        assertThat(number.getValue(), equalTo((Number) Double.valueOf(3.14)));
+        assertThat(number.getAlarmSeverity(), equalTo(AlarmSeverity.MINOR));
+        assertThat(number.getAlarmName(), equalTo("LOW"));
+        assertThat(number.getTimestamp(), equalTo(Timestamp.of(10, 0)));
+
+        number = (VNumber) array.get(1).getVType();
+        assertThat(number.getValue(), equalTo((Number) Integer.valueOf(42)));
+        assertThat(number.getTimestamp(), equalTo(Timestamp.of(11, 500)));
+
+        sample = array.get(2);
+        assertEquals(2.0, sample.getValue(), 0.0);
+        assertEquals(1.0, sample.getMin(), 0.0);
+        assertEquals(3.0, sample.getMax(), 0.0);
+        assertEquals(0.5, sample.getStdDev(), 0.0);
+        assertThat(((VStatistics) sample.getVType()).getNSamples(), equalTo(10));
+
+        // Scalars have no value for other waveform elements
+        waveform_index.set(1);
+        assertEquals(Double.NaN, sample.getValue(), 0.0);
+        assertEquals(Double.NaN, sample.getMin(), 0.0);
+        waveform_index.set(0);
+
+        // String is kept as is
+        assertThat(array.get(3).getVType(), sameInstance(samples.get(3)));
+    }
+
+    @Test
+    public void testMerge()
+    {
+        final PlotSampleArray array = new PlotSampleArray(waveform_index, 0);
+        final List<VType> samples = new ArrayList<>();
+        for (int i=10; i<20; ++i)
+            samples.add(makeValue(i, i));
+        merge(array, samples);
+        assertThat(getValues(array), equalTo("10, 11, 12, 13, 14, 15, 16, 17, 18, 19"));
+
+        // Append
+        samples.clear();
+        samples.add(makeValue(25, 25));
+        samples.add(makeValue(26, 26));
+        merge(array, samples);
+        assertThat(getValues(array), equalTo("10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 25, 26"));
+
+        // Insert before
+        samples.clear();
+        samples.add(makeValue(1, 1));
+        samples.add(makeValue(2, 2));
+        merge(array, samples);
+        assertThat(getValues(array), equalTo("1, 2, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 25, 26"));
+
+        // Replace section with fewer samples
+        samples.clear();
+        samples.add(makeValue(12, 120));
+        samples.add(makeValue(16, 160));
+        merge(array, samples);
+        assertThat(getValues(array), equalTo("1, 2, 10, 11, 120, 160, 17, 18, 19, 25, 26"));
+
+        // Replace section with more samples
+        samples.clear();
+        for (int i=18; i<24; ++i)
+            samples.add(makeValue(i, i));
+        merge(array, samples);
+        assertThat(getValues(array), equalTo("1, 2, 10, 11, 120, 160, 17, 18, 19, 20, 21, 22, 23, 25, 26"));
+
+        // Replace all
+        samples.clear();
+        samples.add(makeValue(0, 0));
+        samples.add(makeValue(30, 30));
+        merge(array, samples);
+        assertThat(getValues(array), equalTo("0, 30"));
+    }
+
+    @Test
+    public void testRing()
+    {
+        final PlotSampleArray array = new PlotSampleArray(waveform_index, 3);
+        for (int i=1; i<=5; ++i)
+            array.add(new PlotSample("Test", makeValue(i, i)));
+        assertThat(getValues(array), equalTo("3, 4, 5"));
+
+        // Sample with info is kept as is
+        final PlotSample error = new PlotSample("Test", "Disconnected");
+        array.add(error);
+        assertThat(getValues(array).startsWith("4, 5, "), equalTo(true));
+        assertThat(array.get(2), sameInstance(error));
+
+        array.setCapacity(5);
+        array.add(new PlotSample("Test", makeValue(10, 10)));
+        assertEquals(4, array.size());
+        assertThat(array.get(3).getVType(), instanceOf(VNumber.class));
+
+        // Shrinking keeps the newest samples
+        array.setCapacity(2);
+        assertEquals(2, array.size());
+        assertThat(array.get(0), sameInstance(error));
+        assertEquals(10.0, array.get(1).getValue(), 0.0);
+    }
+}
@@ -43,6 +43,9 @@ public class ArchiveFetchJob extends Job
     /** Poll period in millisecs */
     private static final int POLL_PERIOD_MS = 1000;
 
+    /** Period for merging received samples into the item in millisecs */
+    private static final int CHUNK_PERIOD_MS = 1000;
+
     /** Item for which to fetch samples */
     final private PVItem item;
 
@@ -93,6 +96,7 @@ public class ArchiveFetchJob extends Job
         {
             Activator.getLogger().log(Level.FINE, "Starting {0}", ArchiveFetchJob.this); //$NON-NLS-1$
             final int bins = Preferences.getPlotBins();
+            final int chunk_size = Math.max(1, Preferences.getArchiveFetchChunkSize());
             final ArchiveDataSource archives[] = item.getArchiveDataSources();
             for (int i=0; i<archives.length && !cancelled; ++i)
             {
@@ -123,14 +127,16 @@ public class ArchiveFetchJob extends Job
                     else
                         value_iter = the_reader.getOptimizedValues(archive.getKey(), item.getResolvedName(),
                                                                    TimeHelper.toTimestamp(start), TimeHelper.toTimestamp(end), bins);
-                    // Get samples into array
-                    final List<VType> result = new ArrayList<VType>();
-                    while (value_iter.hasNext())
-                        result.add(value_iter.next());
-                    item.mergeArchivedSamples(the_reader.getServerName(), result);
+                    try
+                    {
+                        fetchChunks(the_reader.getServerName(), value_iter, chunk_size);
+                    }
+                    finally
+                    {
+                        value_iter.close();
+                    }
                     if (cancelled)
                         break;
-                    value_iter.close();
                 }
                 catch (Exception ex)
                 {   // Tell listener unless it's the result of a 'cancel'?
@@ -153,6 +159,45 @@ public class ArchiveFetchJob extends Job
             Activator.getLogger().log(Level.FINE, "Ended {0}", ArchiveFetchJob.this); //$NON-NLS-1$
         }
 
+        /** Read samples from iterator, merging them into the item in chunks
+         *
+         *  <p>Chunks are merged once per {@link #CHUNK_PERIOD_MS}
+         *  so that the plot fills in while data arrives,
+         *  or when they reach a size limit to bound memory usage.
+         *
+         *  @param server_name Name of archive server
+         *  @param value_iter Samples
+         *  @param chunk_size Maximum number of samples in a chunk
+         *  @throws Exception on error
+         */
+        private void fetchChunks(final String server_name, final ValueIterator value_iter,
+                                 final int chunk_size) throws Exception
+        {
+            final List<VType> chunk = new ArrayList<VType>(chunk_size);
+            boolean merged = false;
+            long last_merge = System.currentTimeMillis();
+            while (!cancelled  &&  value_iter.hasNext())
+            {
+                chunk.add(value_iter.next());
+                final long now = System.currentTimeMillis();
+                if (chunk.size() >= chunk_size  ||
+                    now - last_merge >= CHUNK_PERIOD_MS)
+                {
+                    item.mergeArchivedSamples(server_name, chunk);
+                    merged = true;
+                    // Start next chunk with the last sample of this one
+                    // so that consecutive chunks cover a contiguous time range
+                    // and replace all older samples within that range
+                    final VType last = chunk.get(chunk.size() - 1);
+                    chunk.clear();
+                    chunk.add(last);
+                    last_merge = now;
+                }
+            }
+            if (!cancelled  &&  (!merged  ||  chunk.size() > 1))
+                item.mergeArchivedSamples(server_name, chunk);
+        }
+
         @SuppressWarnings("nls")
         @Override
         public String toString()
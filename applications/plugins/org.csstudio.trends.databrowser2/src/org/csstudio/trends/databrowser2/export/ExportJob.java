@@ -10,7 +10,9 @@ package org.csstudio.trends.databrowser2.export;
 import java.io.PrintStream;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
@@ -18,9 +20,11 @@ import java.util.logging.Logger;
 
 import org.csstudio.apputil.time.SecondsParser;
 import org.csstudio.archive.reader.ArchiveReader;
+import org.csstudio.archive.reader.ArchiveReaderFactory;
 import org.csstudio.archive.reader.ArchiveRepository;
 import org.csstudio.archive.reader.LinearValueIterator;
 import org.csstudio.archive.reader.MergingValueIterator;
+import org.csstudio.archive.reader.ParallelArchiveFetch;
 import org.csstudio.archive.reader.ValueIterator;
 import org.csstudio.trends.databrowser2.Activator;
 import org.csstudio.trends.databrowser2.model.ArchiveDataSource;
@@ -245,4 +249,119 @@ abstract public class ExportJob extends Job
         // Return a merging iterator
         return new MergingValueIterator(iters.toArray(new ValueIterator[iters.size()]));
     }
+
+    /** Create value iterators for several items.
+     *
+     *  <p>Unlike calling {@link #createValueIterator(ModelItem)} for each item,
+     *  the channels of all items are fetched from each archive
+     *  in one batch, see {@link ParallelArchiveFetch}.
+     *  @param items ModelItems
+     *  @return ValueIterator for samples in each item
+     *  @throws Exception on error
+     */
+    protected ValueIterator[] createValueIterators(final List<ModelItem> items) throws Exception
+    {
+        final int N = items.size();
+        if (source == Source.PLOT)
+        {
+            final ValueIterator[] result = new ValueIterator[N];
+            for (int i=0; i<N; ++i)
+                result[i] = new ModelSampleIterator(items.get(i), start, end);
+            return result;
+        }
+
+        // Collect the item indices for each archive URL and key
+        final Map<String, Map<Integer, List<Integer>>> archives = new LinkedHashMap<>();
+        for (int i=0; i<N; ++i)
+        {
+            final ModelItem item = items.get(i);
+            if (! (item instanceof PVItem))
+                continue;
+            for (ArchiveDataSource archive : ((PVItem)item).getArchiveDataSources())
+                archives.computeIfAbsent(archive.getUrl(), url -> new LinkedHashMap<>())
+                        .computeIfAbsent(archive.getKey(), key -> new ArrayList<>())
+                        .add(i);
+        }
+
+        // Fetch from each archive
+        final List<List<ValueIterator>> iters = new ArrayList<>(N);
+        for (int i=0; i<N; ++i)
+            iters.add(new ArrayList<>());
+        final Exception[] errors = new Exception[N];
+        for (Map.Entry<String, Map<Integer, List<Integer>>> archive : archives.entrySet())
+        {
+            // Create reader, remember to close it when done
+            final ArchiveReader reader = ArchiveRepository.getInstance().getArchiveReader(archive.getKey());
+            archive_readers.add(reader);
+            // Concurrent fetches need additional readers, which are also closed when done
+            final ArchiveReaderFactory factory = url ->
+            {
+                final ArchiveReader additional = ArchiveRepository.getInstance().getArchiveReader(url);
+                archive_readers.add(additional);
+                return additional;
+            };
+            for (Map.Entry<Integer, List<Integer>> key : archive.getValue().entrySet())
+            {
+                final List<Integer> indices = key.getValue();
+                final String[] names = new String[indices.size()];
+                for (int i=0; i<names.length; ++i)
+                    names[i] = items.get(indices.get(i)).getName();
+                // Errors per channel, including unknown channels
+                final Exception[] fetch_errors = new Exception[names.length];
+                try
+                {
+                    final ValueIterator[] fetched;
+                    if (source == Source.OPTIMIZED_ARCHIVE  &&  optimize_parameter > 1)
+                        fetched = ParallelArchiveFetch.getOptimizedValues(reader, key.getKey(), names,
+                                TimeHelper.toTimestamp(start), TimeHelper.toTimestamp(end), (int)optimize_parameter,
+                                factory, ParallelArchiveFetch.DEFAULT_THREADS, fetch_errors);
+                    else
+                        fetched = ParallelArchiveFetch.getRawValues(reader, key.getKey(), names,
+                                TimeHelper.toTimestamp(start), TimeHelper.toTimestamp(end),
+                                factory, ParallelArchiveFetch.DEFAULT_THREADS, fetch_errors);
+                    for (int i=0; i<fetched.length; ++i)
+                    {
+                        ValueIterator iter = fetched[i];
+                        if (iter == null)
+                        {
+                            final int index = indices.get(i);
+                            if (fetch_errors[i] != null)
+                            {
+                                Logger.getLogger(getClass().getName()).log(Level.FINE,
+                                        "Export error for " + names[i], fetch_errors[i]);
+                                if (errors[index] == null)
+                                    errors[index] = fetch_errors[i];
+                            }
+                            continue;
+                        }
+                        if (source == Source.LINEAR_INTERPOLATION && optimize_parameter >= 1)
+                            iter = new LinearValueIterator(iter, TimeDuration.ofSeconds(optimize_parameter));
+                        iters.get(indices.get(i)).add(iter);
+                    }
+                }
+                catch (Exception ex)
+                {   // Error of the archive, not specific to a channel
+                    Logger.getLogger(getClass().getName()).log(Level.FINE, "Export error for " + archive.getKey(), ex);
+                    for (int index : indices)
+                        if (errors[index] == null)
+                            errors[index] = ex;
+                }
+            }
+        }
+
+        // Merge the data of each item
+        final ValueIterator[] result = new ValueIterator[N];
+        for (int i=0; i<N; ++i)
+        {
+            if (! (items.get(i) instanceof PVItem))
+                result[i] = new ModelSampleIterator(items.get(i), start, end);
+            else
+            {   // If none of the iterators work out, report the first error that we found
+                if (iters.get(i).isEmpty()  &&  errors[i] != null)
+                    throw errors[i];
+                result[i] = new MergingValueIterator(iters.get(i).toArray(new ValueIterator[iters.get(i).size()]));
+            }
+        }
+        return result;
+    }
 }
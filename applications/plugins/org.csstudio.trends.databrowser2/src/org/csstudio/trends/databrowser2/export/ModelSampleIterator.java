@@ -77,8 +77,7 @@ public class ModelSampleIterator implements ValueIterator
      */
     private int findSampleLessOrEqual(final Instant start)
     {
-        // Would like to use PlotSampleSearch, but that operates on array
-        // of PlotSample[]
+        // Binary search on the PlotSamples, which are sorted by time
         int low = 0;
         int high = samples.size()-1;
         int cmp = 0;
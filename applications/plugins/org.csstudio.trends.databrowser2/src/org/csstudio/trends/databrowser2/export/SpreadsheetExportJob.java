@@ -13,7 +13,6 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.csstudio.archive.reader.SpreadsheetIterator;
-import org.csstudio.archive.reader.ValueIterator;
 import org.csstudio.archive.vtype.TimestampHelper;
 import org.csstudio.trends.databrowser2.Messages;
 import org.csstudio.trends.databrowser2.model.Model;
@@ -54,13 +53,11 @@ public class SpreadsheetExportJob extends PlainExportJob
         out.println();
 
         // Create speadsheet interpolation
-        final List<ValueIterator> iters = new ArrayList<>();
+        final List<ModelItem> items = new ArrayList<>();
         for (ModelItem item : model.getItems())
-        {
-            monitor.subTask(NLS.bind("Fetching data for {0}", item.getName()));
-            iters.add(createValueIterator(item));
-        }
-        final SpreadsheetIterator sheet = new SpreadsheetIterator(iters.toArray(new ValueIterator[iters.size()]));
+            items.add(item);
+        monitor.subTask(NLS.bind("Fetching data for {0} channels", items.size()));
+        final SpreadsheetIterator sheet = new SpreadsheetIterator(createValueIterators(items));
         // Dump the spreadsheet lines
         long line_count = 0;
 
@@ -36,7 +36,7 @@ public class HistoricSamples extends PlotSamples
     // No locking in here, all access is via PVSamples
 
     /** "All" historic samples */
-    private PlotSample samples[] = new PlotSample[0];
+    final private PlotSampleArray samples;
 
     /** If set, samples beyond this time are hidden from access */
     private Optional<Instant> border_time = Optional.empty();
@@ -46,12 +46,9 @@ public class HistoricSamples extends PlotSamples
      */
     private int visible_size = 0;
 
-    /** Waveform index */
-    final private AtomicInteger waveform_index;
-
     HistoricSamples(final AtomicInteger waveform_index)
     {
-        this.waveform_index = waveform_index;
+        samples = new PlotSampleArray(waveform_index, 0);
     }
 
     /** Define a new 'border' time beyond which no samples
@@ -72,12 +69,13 @@ public class HistoricSamples extends PlotSamples
     {
         if (border_time.isPresent())
         {
-            final int last_index = PlotSampleSearch.findSampleLessThan(
-                    samples, border_time.get());
+            final Instant border = border_time.get();
+            final int last_index = samples.findSampleLessThan(
+                    border.getEpochSecond() * PlotSampleArray.NANOS + border.getNano());
             visible_size = (last_index < 0)   ?   0   :   last_index + 1;
         }
         else
-            visible_size = samples.length;
+            visible_size = samples.size();
     }
 
     /** {@inheritDoc} */
@@ -87,7 +85,7 @@ public class HistoricSamples extends PlotSamples
     {
         if (i >= visible_size)
             throw new IndexOutOfBoundsException("Index " + i + " exceeds visible size " + visible_size);
-        return samples[i];
+        return samples.get(i);
     }
 
     /** {@inheritDoc} */
@@ -101,7 +99,7 @@ public class HistoricSamples extends PlotSamples
      * @return the number of samples, ignoring the border time
      */
     public int getRawSize() {
-    	return samples.length;
+    	return samples.size();
     }
 
     /**
@@ -111,7 +109,7 @@ public class HistoricSamples extends PlotSamples
      * @return the plot sample
      */
     public PlotSample getRawSample(int i) {
-    	return samples[i];
+    	return samples.get(i);
     }
 
     /** Merge newly received archive data into historic samples
@@ -123,15 +121,14 @@ public class HistoricSamples extends PlotSamples
         // Anything new at all?
         if (result.size() <= 0)
             return;
-        // Turn IValues into PlotSamples
-        final PlotSample new_samples[] = new PlotSample[result.size()];
-        for (int i=0; i<new_samples.length; ++i)
-            new_samples[i] = new PlotSample(waveform_index, source, result.get(i));
-        // Merge with existing samples
-        final PlotSample merged[] = PlotSampleMerger.merge(samples, new_samples);
-        if (merged == samples)
-            return;
-        samples = merged;
+        // Where the time ranges overlap, the new data replaces the old data:
+        // Keep existing samples before the start and after the end of the new samples,
+        // replace those in between
+        final long add_start = PlotSampleArray.getTime(result.get(0));
+        final long add_end = PlotSampleArray.getTime(result.get(result.size()-1));
+        final int l = samples.findSampleLessThan(add_start);
+        final int r = samples.findSampleGreaterThan(add_end);
+        samples.splice(l + 1, (r < 0) ? samples.size() : r, source, result);
         computeVisibleSize();
     }
 
@@ -139,6 +136,6 @@ public class HistoricSamples extends PlotSamples
     public void clear()
     {
         visible_size = 0;
-        samples = new PlotSample[0];
+        samples.clear(0);
     }
 }
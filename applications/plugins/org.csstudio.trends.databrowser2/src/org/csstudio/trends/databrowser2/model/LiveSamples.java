@@ -9,7 +9,6 @@ package org.csstudio.trends.databrowser2.model;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
-import org.csstudio.apputil.ringbuffer.RingBuffer;
 import org.csstudio.trends.databrowser2.preferences.Preferences;
 
 /** Ring buffer for 'live' samples.
@@ -23,8 +22,7 @@ public class LiveSamples extends PlotSamples
 {
     // No locking in here, all access is via PVSamples
 
-    private RingBuffer<PlotSample> samples =
-        new RingBuffer<PlotSample>(Preferences.getLiveSampleBufferSize());
+    final private PlotSampleArray samples;
 
     /** Waveform index */
     final private AtomicInteger waveform_index;
@@ -32,6 +30,7 @@ public class LiveSamples extends PlotSamples
     LiveSamples(final AtomicInteger waveform_index)
     {
         this.waveform_index = waveform_index;
+        samples = new PlotSampleArray(waveform_index, Preferences.getLiveSampleBufferSize());
     }
 
     /** @return Maximum number of samples in ring buffer */
@@ -76,7 +75,7 @@ public class LiveSamples extends PlotSamples
     /** Delete all samples */
     public void clear()
     {
-        samples.clear();
+        samples.clear(samples.getCapacity());
         have_new_samples.set(true);
     }
 }
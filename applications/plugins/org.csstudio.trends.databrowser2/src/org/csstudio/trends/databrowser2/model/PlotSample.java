@@ -100,6 +100,12 @@ public class PlotSample implements PlotDataItem<Instant>
     	this.waveform_index = index;
     }
 
+    /** @return <code>true</code> if sample was created with an info text */
+    boolean hasInfo()
+    {
+        return info.isPresent();
+    }
+
     /** @return Source of the data */
     public String getSource()
     {
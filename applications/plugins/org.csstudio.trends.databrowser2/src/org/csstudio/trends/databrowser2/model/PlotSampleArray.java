@@ -7,33 +7,481 @@
  ******************************************************************************/
 package org.csstudio.trends.databrowser2.model;
 
-import java.util.Collections;
+import java.lang.reflect.Array;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
-/** Plain array implementation of PlotSamples
+import org.csstudio.archive.vtype.MetaDataHelper;
+import org.epics.util.time.Timestamp;
+import org.epics.vtype.Alarm;
+import org.epics.vtype.AlarmSeverity;
+import org.epics.vtype.Display;
+import org.epics.vtype.Time;
+import org.epics.vtype.VNumber;
+import org.epics.vtype.VStatistics;
+import org.epics.vtype.VType;
+import org.epics.vtype.ValueFactory;
+
+/** Column-oriented storage of plot samples
+ *  <p>
+ *  Scalar numbers and statistics are kept in primitive arrays
+ *  for time stamp, value, severity, ...
+ *  Status, display info and source, which tend to be
+ *  the same for many samples, are kept in small tables.
+ *  A {@link PlotSample} is only created when a sample is
+ *  read via {@link #get(int)}.
+ *  Other samples (arrays, strings, samples with info text, ...)
+ *  are kept as {@link PlotSample}.
+ *  <p>
+ *  Samples are stored in a ring.
+ *  {@link #add(PlotSample)} uses it as a ring buffer of fixed capacity,
+ *  while {@link #splice(int, int, String, List)} grows the array as needed.
+ *  <p>
+ *  Not thread-safe, access needs to be synchronized by caller.
+ *
  *  @author Kay Kasemir
  */
-public class PlotSampleArray extends PlotSamples
+class PlotSampleArray
 {
-    private List<PlotSample> samples = Collections.emptyList();
+    /** Nanoseconds per second */
+    final static long NANOS = 1000000000L;
+
+    /** Sample types.
+     *  Numbers remember their original type,
+     *  {@link #OBJECT} is kept as {@link PlotSample}
+     */
+    final static byte DOUBLE = 0, FLOAT = 1, LONG = 2, INT = 3, SHORT = 4, BYTE = 5,
+                      STATISTICS = 6, OBJECT = 7;
+
+    /** Limit for the status and source tables, which are indexed by <code>short</code> */
+    final private static int MAX_STRINGS = Short.MAX_VALUE;
+
+    /** Limit for the display table, which is searched linearly */
+    final private static int MAX_DISPLAYS = 100;
+
+    final private static AlarmSeverity severities[] = AlarmSeverity.values();
+
+    /** Waveform index */
+    final private AtomicInteger waveform_index;
+
+    /** Index of first sample, size */
+    private int start = 0, size = 0;
+
+    /** Columns */
+    private long time[];
+    private double value[];
+    private byte type[], severity[];
+    private short status[], display[], source[];
+
+    /** Columns that are allocated when first needed */
+    private double min[] = null, max[] = null, stddev[] = null;
+    private int count[] = null;
+    private PlotSample objects[] = null;
 
-    /** @param samples Samples <u>which are NOT copied</u> */
-    public void set(final List<PlotSample> samples)
+    /** Tables */
+    final private List<String> statuses = new ArrayList<>();
+    final private Map<String, Short> status_index = new HashMap<>();
+    final private List<String> sources = new ArrayList<>();
+    final private Map<String, Short> source_index = new HashMap<>();
+    final private List<Display> displays = new ArrayList<>();
+    private int last_display = -1;
+
+    /** Initialize
+     *  @param waveform_index Waveform index
+     *  @param capacity Initial capacity
+     */
+    PlotSampleArray(final AtomicInteger waveform_index, final int capacity)
     {
-        this.samples = samples;
+        this.waveform_index = waveform_index;
+        allocate(capacity);
     }
 
-    /** {@inheritDoc} */
-    @Override
+    private void allocate(final int capacity)
+    {
+        start = size = 0;
+        time = new long[capacity];
+        value = new double[capacity];
+        type = new byte[capacity];
+        severity = new byte[capacity];
+        status = new short[capacity];
+        display = new short[capacity];
+        source = new short[capacity];
+        min = max = stddev = null;
+        count = null;
+        objects = null;
+    }
+
+    /** @return Number of samples that can be held without re-allocation */
+    public int getCapacity()
+    {
+        return time.length;
+    }
+
+    /** @return Number of samples */
     public int size()
     {
-        return samples.size();
+        return size;
     }
 
-    /** {@inheritDoc} */
-    @Override
+    /** @param index Logical index 0 .. size-1
+     *  @return Index into columns
+     */
+    private int slot(final int index)
+    {
+        final int slot = start + index;
+        return slot < time.length ? slot : slot - time.length;
+    }
+
+    /** @param index 0 .. size-1
+     *  @return Sample time stamp in epoch nanoseconds
+     */
+    public long getTime(final int index)
+    {
+        return time[slot(index)];
+    }
+
+    /** @param index 0 .. size-1
+     *  @return Sample
+     */
     public PlotSample get(final int index)
     {
-        return samples.get(index);
+        if (index < 0  ||  index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " exceeds size " + size); //$NON-NLS-1$ //$NON-NLS-2$
+        final int i = slot(index);
+        final byte t = type[i];
+        if (t == OBJECT)
+            return objects[i];
+        final boolean stats = t == STATISTICS;
+        return new PlotSampleView(waveform_index, sources.get(source[i]), time[i], t, value[i],
+                                  stats ? min[i] : Double.NaN,
+                                  stats ? max[i] : Double.NaN,
+                                  stats ? stddev[i] : Double.NaN,
+                                  stats ? count[i] : 0,
+                                  severities[severity[i]], statuses.get(status[i]), displays.get(display[i]));
+    }
+
+    /** Add sample, replacing the oldest sample when the array is full
+     *  @param sample Sample to add
+     */
+    public void add(final PlotSample sample)
+    {
+        final int capacity = time.length;
+        if (capacity <= 0)
+            return;
+        final int i;
+        if (size < capacity)
+            i = slot(size++);
+        else
+        {
+            i = start;
+            start = slot(1);
+        }
+        if (sample.hasInfo()  ||  !store(i, sample.getSource(), sample.getVType()))
+            storeObject(i, sample, sample.getPosition());
+    }
+
+    /** Set new capacity, preserving the newest samples
+     *  @param new_capacity New capacity
+     */
+    public void setCapacity(final int new_capacity)
+    {
+        reallocate(new_capacity, Math.max(0, size - new_capacity));
+    }
+
+    /** Replace section of the samples
+     *  @param from Index of first sample to replace
+     *  @param to Index after last sample to replace. Same as <code>from</code> to just insert
+     *  @param new_source Source of the new samples
+     *  @param new_samples Samples to put in place of samples <code>from</code> .. <code>to-1</code>
+     */
+    public void splice(final int from, final int to, final String new_source, final List<VType> new_samples)
+    {
+        final int n = new_samples.size();
+        final int new_size = size - (to - from) + n;
+        if (start != 0  ||  new_size > time.length)
+            reallocate(Math.max(new_size, time.length + time.length/2), 0);
+        // Move tail, then fill gap
+        final int tail = size - to;
+        if (tail > 0  &&  to != from + n)
+            for (Object column : getColumns())
+                if (column != null)
+                    System.arraycopy(column, to, column, from + n, tail);
+        // Release objects that are no longer used
+        if (objects != null)
+            for (int i=new_size; i<size; ++i)
+                objects[i] = null;
+        size = new_size;
+        for (int i=0; i<n; ++i)
+        {
+            final VType sample = new_samples.get(i);
+            if (! store(from + i, new_source, sample))
+                storeObject(from + i, new PlotSample(waveform_index, new_source, sample),
+                            Instant.ofEpochSecond(0, getTime(sample)));
+        }
+    }
+
+    /** Delete all samples
+     *  @param capacity New capacity
+     */
+    public void clear(final int capacity)
+    {
+        allocate(capacity);
+        statuses.clear();
+        status_index.clear();
+        sources.clear();
+        source_index.clear();
+        displays.clear();
+        last_display = -1;
+    }
+
+    /** @param goal Time in epoch nanoseconds
+     *  @return Index of last sample before goal, or -1
+     */
+    public int findSampleLessThan(final long goal)
+    {
+        int low = 0, high = size;
+        while (low < high)
+        {
+            final int mid = (low + high) >>> 1;
+            if (getTime(mid) < goal)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low - 1;
+    }
+
+    /** @param goal Time in epoch nanoseconds
+     *  @return Index of first sample after goal, or -1
+     */
+    public int findSampleGreaterThan(final long goal)
+    {
+        int low = 0, high = size;
+        while (low < high)
+        {
+            final int mid = (low + high) >>> 1;
+            if (getTime(mid) <= goal)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low < size ? low : -1;
+    }
+
+    /** @param sample Sample
+     *  @return Time stamp of sample in epoch nanoseconds, same as {@link PlotSample#getPosition()}
+     */
+    static long getTime(final VType sample)
+    {
+        final Timestamp stamp = (sample instanceof Time)
+            ? ((Time) sample).getTimestamp()
+            : Timestamp.now();
+        return toNanos(stamp.getSec(), stamp.getNanoSec());
+    }
+
+    /** @param secs Epoch seconds
+     *  @param nanos Nanoseconds
+     *  @return Epoch nanoseconds, clamped to the range of <code>long</code>
+     */
+    private static long toNanos(final long secs, final int nanos)
+    {
+        if (secs >= Long.MAX_VALUE / NANOS)
+            return Long.MAX_VALUE;
+        if (secs <= Long.MIN_VALUE / NANOS)
+            return Long.MIN_VALUE;
+        return secs * NANOS + nanos;
+    }
+
+    /** @return All columns, including <code>null</code> for those not allocated */
+    private Object[] getColumns()
+    {
+        return new Object[] { time, value, type, severity, status, display, source,
+                              min, max, stddev, count, objects };
+    }
+
+    /** @param new_capacity New capacity, must be at least size - skip
+     *  @param skip Number of oldest samples to drop
+     */
+    private void reallocate(final int new_capacity, final int skip)
+    {
+        final int new_size = size - skip;
+        time = (long[]) copy(time, new_capacity, skip, new_size);
+        value = (double[]) copy(value, new_capacity, skip, new_size);
+        type = (byte[]) copy(type, new_capacity, skip, new_size);
+        severity = (byte[]) copy(severity, new_capacity, skip, new_size);
+        status = (short[]) copy(status, new_capacity, skip, new_size);
+        display = (short[]) copy(display, new_capacity, skip, new_size);
+        source = (short[]) copy(source, new_capacity, skip, new_size);
+        min = (double[]) copy(min, new_capacity, skip, new_size);
+        max = (double[]) copy(max, new_capacity, skip, new_size);
+        stddev = (double[]) copy(stddev, new_capacity, skip, new_size);
+        count = (int[]) copy(count, new_capacity, skip, new_size);
+        objects = (PlotSample[]) copy(objects, new_capacity, skip, new_size);
+        start = 0;
+        size = new_size;
+    }
+
+    /** @param column Column array or <code>null</code>
+     *  @param new_capacity Length of new column
+     *  @param skip Number of samples to skip
+     *  @param n Number of samples to copy
+     *  @return New column with samples skip .. skip+n-1 at the start, or <code>null</code>
+     */
+    private Object copy(final Object column, final int new_capacity, final int skip, final int n)
+    {
+        if (column == null)
+            return null;
+        final Object result = Array.newInstance(column.getClass().getComponentType(), new_capacity);
+        if (n <= 0)
+            return result;
+        final int first = slot(skip);
+        final int chunk = Math.min(n, time.length - first);
+        System.arraycopy(column, first, result, 0, chunk);
+        if (chunk < n)
+            System.arraycopy(column, 0, result, chunk, n - chunk);
+        return result;
+    }
+
+    /** @param i Slot
+     *  @param sample Sample to keep as object
+     *  @param position Position of the sample
+     */
+    private void storeObject(final int i, final PlotSample sample, final Instant position)
+    {
+        if (objects == null)
+            objects = new PlotSample[time.length];
+        objects[i] = sample;
+        type[i] = OBJECT;
+        time[i] = toNanos(position.getEpochSecond(), position.getNano());
+    }
+
+    /** Store sample in primitive columns
+     *  @param i Slot
+     *  @param sample_source Source of the sample
+     *  @param sample Sample
+     *  @return <code>false</code> if sample needs to be kept as object
+     */
+    private boolean store(final int i, final String sample_source, final VType sample)
+    {
+        final byte t;
+        final double v;
+        if (sample instanceof VStatistics)
+        {
+            t = STATISTICS;
+            v = ((VStatistics) sample).getAverage();
+        }
+        else if (sample instanceof VNumber)
+        {
+            final Number number = ((VNumber) sample).getValue();
+            if (number instanceof Double)
+                t = DOUBLE;
+            else if (number instanceof Float)
+                t = FLOAT;
+            else if (number instanceof Long  &&  (long) number.doubleValue() == number.longValue())
+                t = LONG;
+            else if (number instanceof Integer)
+                t = INT;
+            else if (number instanceof Short)
+                t = SHORT;
+            else if (number instanceof Byte)
+                t = BYTE;
+            else
+                return false;
+            v = number.doubleValue();
+        }
+        else
+            return false;
+        if (! (sample instanceof Display))
+            return false;
+
+        // Only valid time stamps, because the re-created value
+        // will consider secs <= 0 as invalid
+        final Time time_info = (Time) sample;
+        final Timestamp stamp = time_info.getTimestamp();
+        if (stamp == null  ||  !time_info.isTimeValid()  ||  stamp.getSec() <= 0  ||
+            stamp.getSec() >= Long.MAX_VALUE / NANOS)
+            return false;
+
+        final Alarm alarm = (Alarm) sample;
+        final int status_i = lookup(statuses, status_index, alarm.getAlarmName());
+        final int source_i = lookup(sources, source_index, sample_source);
+        final int display_i = lookup((Display) sample);
+        if (status_i < 0  ||  source_i < 0  ||  display_i < 0)
+            return false;
+
+        if (t == STATISTICS)
+        {
+            if (min == null)
+            {
+                min = new double[time.length];
+                max = new double[time.length];
+                stddev = new double[time.length];
+                count = new int[time.length];
+            }
+            final VStatistics stats = (VStatistics) sample;
+            min[i] = stats.getMin();
+            max[i] = stats.getMax();
+            stddev[i] = stats.getStdDev();
+            count[i] = stats.getNSamples();
+        }
+        if (objects != null)
+            objects[i] = null;
+        time[i] = stamp.getSec() * NANOS + stamp.getNanoSec();
+        value[i] = v;
+        type[i] = t;
+        severity[i] = (byte) alarm.getAlarmSeverity().ordinal();
+        status[i] = (short) status_i;
+        display[i] = (short) display_i;
+        source[i] = (short) source_i;
+        return true;
+    }
+
+    /** @param table Table of strings
+     *  @param index Index of strings in table
+     *  @param text Text to locate or add
+     *  @return Index of text in table, or -1 if table is full
+     */
+    private static int lookup(final List<String> table, final Map<String, Short> index, final String text)
+    {
+        if (text == null)
+            return -1;
+        final Short i = index.get(text);
+        if (i != null)
+            return i;
+        if (table.size() >= MAX_STRINGS)
+            return -1;
+        final short added = (short) table.size();
+        table.add(text);
+        index.put(text, added);
+        return added;
+    }
+
+    /** @param info Display info to locate or add
+     *  @return Index of display info in table, or -1 if table is full
+     */
+    private int lookup(final Display info)
+    {
+        if (info.getUnits() == null)
+            return -1;
+        // Consecutive samples typically have the same display info
+        if (last_display >= 0  &&  MetaDataHelper.equals(displays.get(last_display), info))
+            return last_display;
+        for (int i=0; i<displays.size(); ++i)
+            if (MetaDataHelper.equals(displays.get(i), info))
+                return last_display = i;
+        if (displays.size() >= MAX_DISPLAYS)
+            return -1;
+        // Copy, because the sample itself may be the Display
+        displays.add(ValueFactory.newDisplay(info.getLowerDisplayLimit(),
+                info.getLowerAlarmLimit(), info.getLowerWarningLimit(),
+                info.getUnits(), info.getFormat(),
+                info.getUpperWarningLimit(), info.getUpperAlarmLimit(),
+                info.getUpperDisplayLimit(),
+                info.getLowerCtrlLimit(), info.getUpperCtrlLimit()));
+        return last_display = displays.size() - 1;
     }
 }
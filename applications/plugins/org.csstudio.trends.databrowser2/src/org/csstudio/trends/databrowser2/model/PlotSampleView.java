@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.trends.databrowser2.model;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.csstudio.archive.vtype.ArchiveVStatistics;
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.epics.util.time.Timestamp;
+import org.epics.vtype.AlarmSeverity;
+import org.epics.vtype.Display;
+import org.epics.vtype.VType;
+
+/** {@link PlotSample} for a sample of a {@link PlotSampleArray}
+ *
+ *  <p>Holds a copy of the sample's primitive data,
+ *  so it remains valid when the array changes.
+ *  The {@link VType} is only created when requested.
+ *
+ *  @author agent
+ */
+final class PlotSampleView extends PlotSample
+{
+    private AtomicInteger waveform_index;
+    final private long time;
+    final private byte type;
+    final private double value, min, max, stddev;
+    final private int count;
+    final private AlarmSeverity severity;
+    final private String status;
+    final private Display display;
+
+    /** Created on demand */
+    private VType vtype = null;
+
+    /** Initialize
+     *  @param waveform_index Waveform index
+     *  @param source Info about the source of this sample
+     *  @param time Epoch nanoseconds
+     *  @param type Sample type, see {@link PlotSampleArray}
+     *  @param value Value or average
+     *  @param min Minimum for statistics
+     *  @param max Maximum for statistics
+     *  @param stddev Standard deviation for statistics
+     *  @param count Sample count for statistics
+     *  @param severity Alarm severity
+     *  @param status Alarm status
+     *  @param display Display info
+     */
+    PlotSampleView(final AtomicInteger waveform_index, final String source,
+                   final long time, final byte type,
+                   final double value, final double min, final double max, final double stddev, final int count,
+                   final AlarmSeverity severity, final String status, final Display display)
+    {
+        super(waveform_index, source, null, null);
+        this.waveform_index = waveform_index;
+        this.time = time;
+        this.type = type;
+        this.value = value;
+        this.min = min;
+        this.max = max;
+        this.stddev = stddev;
+        this.count = count;
+        this.severity = severity;
+        this.status = status;
+        this.display = display;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void setWaveformIndex(final AtomicInteger index)
+    {
+        super.setWaveformIndex(index);
+        waveform_index = index;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public VType getVType()
+    {
+        if (vtype == null)
+        {
+            final Timestamp stamp = Timestamp.of(Math.floorDiv(time, PlotSampleArray.NANOS),
+                                                 (int) Math.floorMod(time, PlotSampleArray.NANOS));
+            if (type == PlotSampleArray.STATISTICS)
+                vtype = new ArchiveVStatistics(stamp, severity, status, display, value, min, max, stddev, count);
+            else
+                vtype = new ArchiveVNumber(stamp, severity, status, display, getNumber());
+        }
+        return vtype;
+    }
+
+    /** @return Value as the original type of number */
+    private Number getNumber()
+    {
+        switch (type)
+        {
+        case PlotSampleArray.FLOAT:
+            return Float.valueOf((float) value);
+        case PlotSampleArray.LONG:
+            return Long.valueOf((long) value);
+        case PlotSampleArray.INT:
+            return Integer.valueOf((int) value);
+        case PlotSampleArray.SHORT:
+            return Short.valueOf((short) value);
+        case PlotSampleArray.BYTE:
+            return Byte.valueOf((byte) value);
+        default:
+            return Double.valueOf(value);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Instant getPosition()
+    {
+        return Instant.ofEpochSecond(0, time);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getValue()
+    {
+        // Scalar, so only waveform index 0 has a value
+        return waveform_index.get() == 0 ? value : Double.NaN;
+    }
+
+    /** @return <code>true</code> if statistics apply, see {@link PlotSample} */
+    private boolean haveStats()
+    {
+        return type == PlotSampleArray.STATISTICS  &&  waveform_index.get() == 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getStdDev()
+    {
+        return haveStats() ? stddev : Double.NaN;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getMin()
+    {
+        return haveStats() ? min : Double.NaN;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getMax()
+    {
+        return haveStats() ? max : Double.NaN;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getInfo()
+    {
+        return toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return VTypeHelper.toString(getVType());
+    }
+}
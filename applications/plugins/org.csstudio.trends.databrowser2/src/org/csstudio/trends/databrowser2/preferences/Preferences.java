@@ -53,6 +53,7 @@ public class Preferences
 			UPDATE_PERIOD = "update_period", LINE_WIDTH = "line_width",
 			TRACE_TYPE = "trace_type",
 			ARCHIVE_FETCH_DELAY = "archive_fetch_delay",
+			ARCHIVE_FETCH_CHUNK_SIZE = "archive_fetch_chunk_size",
 			PLOT_BINS = "plot_bins", URLS = "urls", ARCHIVES = "archives",
 			USE_DEFAULT_ARCHIVES = "use_default_archives",
 			PROMPT_FOR_ERRORS = "prompt_for_errors",
@@ -157,6 +158,14 @@ public class Preferences
         return prefs.getInt(Activator.PLUGIN_ID, PLOT_BINS, 800, null);
     }
 
+    public static int getArchiveFetchChunkSize()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        if (prefs == null)
+            return 10000;
+        return prefs.getInt(Activator.PLUGIN_ID, ARCHIVE_FETCH_CHUNK_SIZE, 10000, null);
+    }
+
     public static ArchiveServerURL[] getArchiveServerURLs()
     {
         final IPreferencesService prefs = Platform.getPreferencesService();
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.vtype.pv;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.csstudio.vtype.pv.local.LocalPVFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** JUnit test of the {@link PVPool}
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class PVPoolUnitTest
+{
+    /** Factory where creating the PV "slow://blocked" waits for 'release' */
+    private static class SlowFactory implements PVFactory
+    {
+        final CountDownLatch creating = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger created = new AtomicInteger();
+
+        @Override
+        public String getType()
+        {
+            return "slow";
+        }
+
+        @Override
+        public PV createPV(final String name, final String base_name) throws Exception
+        {
+            if (base_name.equals("blocked"))
+            {
+                creating.countDown();
+                release.await();
+            }
+            created.incrementAndGet();
+            return new PV(name)
+            {
+                @Override
+                public void write(final Object new_value) throws Exception
+                {
+                    // Ignore
+                }
+            };
+        }
+    }
+
+    private SlowFactory factory;
+
+    @Before
+    public void setup()
+    {
+        factory = new SlowFactory();
+        PVPool.addPVFactory(factory);
+        // Keep local PVs as the default type
+        PVPool.addPVFactory(new LocalPVFactory());
+    }
+
+    @After
+    public void shutdown()
+    {
+        assertThat(PVPool.getPVReferences().size(), equalTo(0));
+    }
+
+    @Test(timeout=10000)
+    public void testSlowCreation() throws Exception
+    {
+        final Callable<PV> get_blocked = new Callable<PV>()
+        {
+            @Override
+            public PV call() throws Exception
+            {
+                return PVPool.getPV("slow://blocked");
+            }
+        };
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        final Future<PV> first = executor.submit(get_blocked);
+        assertThat(factory.creating.await(5, TimeUnit.SECONDS), equalTo(true));
+        final Future<PV> second = executor.submit(get_blocked);
+
+        // While one PV is created, the pool is not blocked for other PVs
+        final PV other = PVPool.getPV("slow://other");
+        assertThat(PVPool.getPVReferences().size(), equalTo(1));
+        PVPool.releasePV(other);
+        assertThat(second.isDone(), equalTo(false));
+
+        // Both callers get the same PV, created once
+        factory.release.countDown();
+        final PV pv1 = first.get();
+        final PV pv2 = second.get();
+        assertThat(pv1, sameInstance(pv2));
+        assertThat(factory.created.get(), equalTo(2));
+        assertThat(PVPool.getPVReferences().iterator().next().getReferences(), equalTo(2));
+        PVPool.releasePV(pv1);
+        PVPool.releasePV(pv2);
+        executor.shutdown();
+    }
+
+    @Test(timeout=10000)
+    public void testCreationError() throws Exception
+    {
+        // Failed creation does not leave anything behind,
+        // so the next attempt fails again instead of waiting
+        for (int i=0; i<2; ++i)
+        {
+            boolean failed = false;
+            try
+            {
+                PVPool.getPV("unknown://x");
+            }
+            catch (Exception ex)
+            {
+                failed = true;
+            }
+            assertThat(failed, equalTo(true));
+        }
+        final PV pv = PVPool.getPV("slow://x");
+        PVPool.releasePV(pv);
+    }
+}
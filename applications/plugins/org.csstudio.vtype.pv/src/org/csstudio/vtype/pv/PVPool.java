@@ -10,6 +10,7 @@ package org.csstudio.vtype.pv;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import org.csstudio.vtype.pv.RefCountMap.ReferencedEntry;
 
@@ -60,6 +61,18 @@ public class PVPool
      */
     final private static RefCountMap<String, PV> pool = new RefCountMap<>();
 
+    /** PVs that are being created, outside of the lock.
+     *  SYNC on 'pool'
+     */
+    final private static Map<String, PendingPV> pending = new HashMap<>();
+
+    /** Creation of a PV that other threads can wait for */
+    private static class PendingPV
+    {
+        final CountDownLatch created = new CountDownLatch(1);
+        volatile Exception error;
+    }
+
     /** Singleton */
     private PVPool()
     {
@@ -94,6 +107,10 @@ public class PVPool
      *  <p>Obtains existing PV of that name from pool,
      *  or creates new PV if no existing PV found.
      *
+     *  <p>The PV is created outside of the pool lock,
+     *  because creating a channel can take time.
+     *  Concurrent calls for the same name wait for that PV.
+     *
      *  @param name PV name, where prefix might be used to determine the type
      *  @return {@link PV}
      *  @throws Exception on error
@@ -101,17 +118,51 @@ public class PVPool
      */
     public static PV getPV(final String name) throws Exception
     {
-        PV pv;
-        synchronized (pool)
+        while (true)
         {
-            pv = pool.get(name);
-            if (pv == null)
+            final PendingPV creation;
+            final boolean create;
+            synchronized (pool)
+            {
+                final PV pv = pool.get(name);
+                if (pv != null)
+                    return pv;
+                final PendingPV existing = pending.get(name);
+                create = existing == null;
+                creation = create ? new PendingPV() : existing;
+                if (create)
+                    pending.put(name, creation);
+            }
+            if (create)
             {
-                pv = createPV(name);
-                pool.put(name, pv);
+                PV pv = null;
+                try
+                {
+                    pv = createPV(name);
+                    return pv;
+                }
+                catch (Exception ex)
+                {
+                    creation.error = ex;
+                    throw ex;
+                }
+                finally
+                {
+                    synchronized (pool)
+                    {
+                        pending.remove(name);
+                        if (pv != null)
+                            pool.put(name, pv);
+                    }
+                    creation.created.countDown();
+                }
             }
+            // Wait for other thread to create the PV, then get a reference.
+            // Loop in case the PV has already been released again.
+            creation.created.await();
+            if (creation.error != null)
+                throw creation.error;
         }
-        return pv;
     }
 
     /** Create
@@ -32,6 +32,19 @@ public class JCAContext implements ContextMessageListener, ContextExceptionListe
 
     private static JCAContext instance;
 
+    /** Per-thread state of deferred flushes.
+     *  Element 0 is the nesting depth of {@link #deferFlush()},
+     *  element 1 is non-zero when a flush has been requested while deferred.
+     */
+    final private static ThreadLocal<int[]> deferred = new ThreadLocal<int[]>()
+    {
+        @Override
+        protected int[] initialValue()
+        {
+            return new int[2];
+        }
+    };
+
     final private JCALibrary jca = JCALibrary.getInstance();
     final private Context context;
 
@@ -76,6 +89,45 @@ public class JCAContext implements ContextMessageListener, ContextExceptionListe
         return context;
     }
 
+    /** Defer flushes requested by the calling thread
+     *
+     *  <p>When creating many channels, one flush after all
+     *  the search requests have been queued results in fewer
+     *  network packets than a flush per channel.
+     *  Each call must be followed by a call to {@link #flushDeferred()}.
+     */
+    public static void deferFlush()
+    {
+        ++deferred.get()[0];
+    }
+
+    /** End a {@link #deferFlush()}, performing a flush if one had been requested
+     *  @throws Exception on error
+     */
+    public static void flushDeferred() throws Exception
+    {
+        final int[] state = deferred.get();
+        if (state[0] > 0)
+            --state[0];
+        if (state[0] == 0  &&  state[1] != 0)
+        {
+            state[1] = 0;
+            getInstance().getContext().flushIO();
+        }
+    }
+
+    /** Flush the context, unless the calling thread defers flushes
+     *  @throws Exception on error
+     */
+    public void flushIO() throws Exception
+    {
+        final int[] state = deferred.get();
+        if (state[0] > 0)
+            state[1] = 1;
+        else
+            context.flushIO();
+    }
+
     @Override
     public void contextException(final ContextExceptionEvent ev)
     {
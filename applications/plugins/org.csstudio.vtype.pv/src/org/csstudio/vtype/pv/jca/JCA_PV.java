@@ -86,8 +86,9 @@ public class JCA_PV extends PV implements ConnectionListener, MonitorListener, A
         notifyListenersOfPermissions(true);
         // .RTYP does not provide meta data
         plain_dbr = base_name.endsWith(".RTYP");
-        channel = JCAContext.getInstance().getContext().createChannel(base_name, this);
-        channel.getContext().flushIO();
+        final JCAContext jca = JCAContext.getInstance();
+        channel = jca.getContext().createChannel(base_name, this);
+        jca.flushIO();
     }
 
     /** JCA connection listener */